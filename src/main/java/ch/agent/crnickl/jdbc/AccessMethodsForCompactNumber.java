@@ -0,0 +1,691 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import ch.agent.core.KeyedException;
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.T2DBMsg;
+import ch.agent.crnickl.T2DBMsg.E;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.impl.ChronicleUpdatePolicy;
+import ch.agent.crnickl.impl.Permission;
+import ch.agent.crnickl.impl.ValueAccessMethods;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+/**
+ * An implementation of {@link ValueAccessMethods} for numeric data stored in
+ * a table with a narrower element column than <code>value_double</code>.
+ * The table has the same layout as <code>value_double</code>; subclasses
+ * name it and transfer elements between statements and Java objects.
+ * Values are written with JDBC batches like in
+ * {@link AccessMethodsForNumber}: updates only appending values use plain
+ * inserts, other updates use the native upsert of the dialect when there is
+ * one, else stored values are read first to decide what to insert, update
+ * or delete. With a batch size of 0, values are written one by one.
+ *
+ * @author Jean-Paul Vetterli
+ * @param <T> the data type of values
+ */
+public abstract class AccessMethodsForCompactNumber<T extends Number> extends JDBCDatabaseMethods implements ValueAccessMethods<T> {
+
+	private final String table;
+	private final String selectRangeSQL;
+	private final String selectValuesSQL;
+	private final String selectValuesByRangeSQL;
+	private final String selectFirstSQL;
+	private final String selectFirstAfterSQL;
+	private final String selectLastSQL;
+	private final String selectLastBeforeSQL;
+	private final String deleteValueSQL;
+	private final String deleteOutsideRangeSQL;
+	private final String insertValueSQL;
+	private final String updateValueSQL;
+	private final String selectLastDateSQL;
+	private int batchSize;
+
+	/**
+	 * Construct an access method object for a table.
+	 *
+	 * @param table the name of the table with the values
+	 */
+	protected AccessMethodsForCompactNumber(String table) {
+		this.table = table;
+		selectRangeSQL = "select min(date), max(date) from " + table + " where series = ?";
+		selectValuesSQL = "select date, element from " + table + " where series = ? order by date";
+		selectValuesByRangeSQL = "select date, element from " + table +
+				" where series = ? and date between ? and ? order by date";
+		selectFirstAfterSQL = "select date, element from " + table + " where series = ? and date = " +
+				"(select min(date) from " + table + " where series = ? and date >= ?)";
+		selectFirstSQL = "select date, element from " + table + " where series = ? and date = " +
+				"(select min(date) from " + table + " where series = ?)";
+		selectLastBeforeSQL = "select date, element from " + table + " where series = ? and date = " +
+				"(select max(date) from " + table + " where series = ? and date <= ?)";
+		selectLastSQL = "select date, element from " + table + " where series = ? and date = " +
+				"(select max(date) from " + table + " where series = ?)";
+		deleteValueSQL = "delete from " + table + " where series = ? and date = ?";
+		deleteOutsideRangeSQL = "delete from " + table + " where series = ? and (date < ? or date > ?)";
+		insertValueSQL = "insert into " + table + " (series, date, element) values(?, ?, ?)";
+		updateValueSQL = "update " + table + " set element = ? where series = ? and date = ? and element != ?";
+		selectLastDateSQL = "select max(date) from " + table + " where series = ?";
+		batchSize = 1000;
+	}
+
+	/**
+	 * Return the name of the table with the values.
+	 *
+	 * @return a table name
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * Set the number of statements sent to the database in one JDBC batch by
+	 * {@link #updateValues(UpdatableSeries, TimeAddressable, ChronicleUpdatePolicy)}.
+	 * When the size is 0, values are written one by one. The default is
+	 * 1000.
+	 *
+	 * @param batchSize a non-negative number
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 0)
+			throw new IllegalArgumentException("batchSize < 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Return the JDBC batch size.
+	 *
+	 * @return the batch size, 0 when values are written one by one
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Get an element from a result set.
+	 *
+	 * @param rs a result set
+	 * @param column the column of the element
+	 * @return a non-null value
+	 * @throws SQLException
+	 */
+	protected abstract T getElement(ResultSet rs, int column) throws SQLException;
+
+	/**
+	 * Set an element parameter of a statement.
+	 *
+	 * @param stmt a prepared statement
+	 * @param index the index of the parameter
+	 * @param value a non-null value
+	 * @throws SQLException
+	 */
+	protected abstract void setElement(PreparedStatement stmt, int index, T value) throws SQLException;
+
+	/**
+	 * Return true if a value can be stored. The default implementation
+	 * rejects null.
+	 *
+	 * @param value a value
+	 * @return true if the value can be stored
+	 */
+	protected boolean isStorable(T value) {
+		return value != null;
+	}
+
+	@Override
+	public Range getRange(Series<T> series) throws T2DBException {
+		PreparedStatement select_range = null;
+		Range range = null;
+		TimeDomain timeDomain = series.getTimeDomain();
+		try {
+			select_range = open(selectRangeSQL, series, select_range);
+			select_range.setInt(1, getId(series));
+			ResultSet rs = select_range.executeQuery();
+			if (rs.next()) {
+				range = new Range(timeDomain.timeFromOffset(rs.getInt(1)), timeDomain.timeFromOffset(rs.getInt(2)));
+				if (rs.wasNull())
+					range = null;
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50122, series.getName(true));
+		} finally {
+			select_range = close(select_range);
+		}
+		if (range == null)
+			range = new Range(series.getTimeDomain());
+		return range;
+	}
+
+	@Override
+	public long getValues(Series<T> series, Range range, TimeAddressable<T> ts) throws T2DBException {
+		PreparedStatement select_values = null;
+		PreparedStatement select_values_by_range = null;
+		if (range != null && range.isEmpty())
+			return 0;
+		long count = 0;
+		try {
+			check(Permission.READ, series);
+			ResultSet rs;
+			if (range == null) {
+				select_values = open(selectValuesSQL, series, select_values);
+				select_values.setInt(1, getId(series));
+				rs = select_values.executeQuery();
+			} else {
+				select_values_by_range = open(selectValuesByRangeSQL, series, select_values_by_range);
+				select_values_by_range.setInt(1, getId(series));
+				select_values_by_range.setInt(2, range.getFirst().asOffset());
+				select_values_by_range.setInt(3, range.getLast().asOffset());
+				rs = select_values_by_range.executeQuery();
+			}
+			while (rs.next()) {
+				ts.put(rs.getInt(1), getElement(rs, 2));
+				count++;
+			}
+			rs.close();
+		} catch (Exception e) {
+			if (range == null)
+				throw T2DBMsg.exception(e, E.E50121, series.getName(true));
+			else
+				throw T2DBMsg.exception(e, E.E50120, series.getName(true), range.toString());
+		} finally {
+			select_values = close(select_values);
+			select_values_by_range = close(select_values_by_range);
+		}
+		return count;
+	}
+
+	@Override
+	public Observation<T> getFirst(Series<T> series, TimeIndex time) throws T2DBException {
+		PreparedStatement select_first1 = null;
+		PreparedStatement select_first2 = null;
+		Observation<T> obs = null;
+		try {
+			check(Permission.READ, series);
+			ResultSet rs;
+			int sid = getId(series);
+			if (time != null) {
+				select_first1 = open(selectFirstAfterSQL, series, select_first1);
+				select_first1.setInt(1, sid);
+				select_first1.setInt(2, sid);
+				select_first1.setInt(3, time.asOffset());
+				rs = select_first1.executeQuery();
+			} else {
+				select_first2 = open(selectFirstSQL, series, select_first2);
+				select_first2.setInt(1, sid);
+				select_first2.setInt(2, sid);
+				rs = select_first2.executeQuery();
+			}
+			if (rs.next()) {
+				TimeDomain dom = time == null ? series.getTimeDomain() : time.getTimeDomain();
+				obs = new Observation<T>(dom.timeFromOffset(rs.getInt(1)), getElement(rs, 2));
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50123, series.getName(true), time);
+		} finally {
+			select_first1 = close(select_first1);
+			select_first2 = close(select_first2);
+		}
+		return obs;
+	}
+
+	@Override
+	public Observation<T> getLast(Series<T> series, TimeIndex time) throws T2DBException {
+		PreparedStatement select_last1 = null;
+		PreparedStatement select_last2 = null;
+		Observation<T> obs = null;
+		try {
+			check(Permission.READ, series);
+			ResultSet rs;
+			int sid = getId(series);
+			if (time != null) {
+				select_last1 = open(selectLastBeforeSQL, series, select_last1);
+				select_last1.setInt(1, sid);
+				select_last1.setInt(2, sid);
+				select_last1.setInt(3, time.asOffset());
+				rs = select_last1.executeQuery();
+			} else {
+				select_last2 = open(selectLastSQL, series, select_last2);
+				select_last2.setInt(1, sid);
+				select_last2.setInt(2, sid);
+				rs = select_last2.executeQuery();
+			}
+			if (rs.next()) {
+				TimeDomain dom = time == null ? series.getTimeDomain() : time.getTimeDomain();
+				obs = new Observation<T>(dom.timeFromOffset(rs.getInt(1)), getElement(rs, 2));
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50124, series.getName(true), time);
+		} finally {
+			select_last1 = close(select_last1);
+			select_last2 = close(select_last2);
+		}
+		return obs;
+	}
+
+	@Override
+	public boolean deleteValue(UpdatableSeries<T> series, TimeIndex t, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement delete_value = null;
+		boolean done = false;
+		try {
+			check(Permission.MODIFY, series);
+			policy.willDelete(series, t);
+			policy.deleteValue(series, t);
+			delete_value = open(deleteValueSQL, series, delete_value);
+			delete_value.setInt(1, getId(series));
+			delete_value.setInt(2, t.asOffset());
+			delete_value.execute();
+			done = delete_value.getUpdateCount() > 0;
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50113, series.getName(true), t.toString());
+		} finally {
+			delete_value = close(delete_value);
+		}
+		return done;
+	}
+
+	@Override
+	public boolean updateSeries(UpdatableSeries<T> series, Range range, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement delete_outside_range = null;
+		boolean done = false;
+		try {
+			int first = 1;
+			int last = 0;
+			if (!range.isEmpty()) {
+				first = range.getFirst().asOffset();
+				last = range.getLast().asOffset();
+			}
+			check(Permission.MODIFY, series);
+			policy.willUpdate(series, range);
+			done = policy.update(series, range);
+			delete_outside_range = open(deleteOutsideRangeSQL, series, delete_outside_range);
+			delete_outside_range.setInt(1, getId(series));
+			delete_outside_range.setInt(2, first);
+			delete_outside_range.setInt(3, last);
+			delete_outside_range.execute();
+			if (delete_outside_range.getUpdateCount() > 0)
+				done = true;
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50109, series.getName(true));
+		} finally {
+			delete_outside_range = close(delete_outside_range);
+		}
+		return done;
+	}
+
+	@Override
+	public long updateValues(UpdatableSeries<T> series, TimeAddressable<T> values, ChronicleUpdatePolicy policy) throws T2DBException {
+		if (batchSize > 0) {
+			if (isAppend(series, values))
+				return appendValuesInBatches(series, values, policy);
+			String upsert = getDialect(series).getUpsertValueSQL(table);
+			if (upsert != null)
+				return upsertValuesInBatches(upsert, series, values, policy);
+			else
+				return updateValuesInBatches(series, values, policy);
+		}
+		long count = 0;
+		for (Observation<T> obs : values) {
+			boolean done = false;
+			if (values.isMissing(obs.getValue()))
+				done = deleteValue(series, obs.getTime(), policy);
+			else
+				done = insertOrUpdateValue(series, obs, policy);
+			if (done)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Return true if all observations are later than the last value stored.
+	 * The last date is only looked up when there are at least
+	 * {@link AccessMethodsForNumber#MIN_APPEND_PROBE} observations.
+	 *
+	 * @param series a series
+	 * @param values a time addressable with new values and missing values for values to delete
+	 * @return true if the update only appends values
+	 * @throws T2DBException
+	 */
+	protected boolean isAppend(Series<T> series, TimeAddressable<T> values) throws T2DBException {
+		PreparedStatement select_last_date = null;
+		Iterator<Observation<T>> it = values.iterator();
+		if (!it.hasNext() || values.getSize() < AccessMethodsForNumber.MIN_APPEND_PROBE)
+			return false;
+		try {
+			int first = it.next().getTime().asOffset();
+			check(Permission.READ, series);
+			select_last_date = open(selectLastDateSQL, series, select_last_date);
+			select_last_date.setInt(1, getId(series));
+			ResultSet rs = select_last_date.executeQuery();
+			boolean append = true;
+			if (rs.next()) {
+				int last = rs.getInt(1);
+				append = rs.wasNull() || first > last;
+			}
+			rs.close();
+			return append;
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		} finally {
+			select_last_date = close(select_last_date);
+		}
+	}
+
+	/**
+	 * Append values using JDBC batches of plain inserts. All observations
+	 * must be later than the last value stored. Missing values are skipped
+	 * after consulting the policy.
+	 *
+	 * @param series a series
+	 * @param values a time addressable with new values
+	 * @param policy a policy
+	 * @return the number of values inserted
+	 * @throws T2DBException
+	 */
+	private long appendValuesInBatches(UpdatableSeries<T> series, TimeAddressable<T> values, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement batch_append = null;
+		long count = 0;
+		try {
+			check(Permission.MODIFY, series);
+			int sid = getId(series);
+			batch_append = open(insertValueSQL, series, batch_append);
+			int inserts = 0;
+			for (Observation<T> obs : values) {
+				T v = obs.getValue();
+				if (values.isMissing(v)) {
+					policy.willDelete(series, obs.getTime());
+					policy.deleteValue(series, obs.getTime());
+					continue;
+				}
+				if (!isStorable(v))
+					throw new IllegalArgumentException("value cannot be stored: " + v);
+				batch_append.setInt(1, sid);
+				batch_append.setInt(2, obs.getTime().asOffset());
+				setElement(batch_append, 3, v);
+				inserts = addBatch(batch_append, inserts, batchSize);
+				count++;
+			}
+			if (inserts > 0)
+				batch_append.executeBatch();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		} finally {
+			batch_append = close(batch_append);
+		}
+		return count;
+	}
+
+	/**
+	 * Update values using JDBC batches. Values stored in the range of the
+	 * update are read first, which allows to decide for each observation
+	 * whether to insert, update or delete. Values equal to stored values are
+	 * skipped. The policy is consulted exactly as when writing values one by
+	 * one.
+	 *
+	 * @param series a series
+	 * @param values a time addressable with new values and missing values for values to delete
+	 * @param policy a policy
+	 * @return the number of values inserted, updated, or deleted
+	 * @throws T2DBException
+	 */
+	private long updateValuesInBatches(UpdatableSeries<T> series, TimeAddressable<T> values, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement batch_select = null;
+		PreparedStatement batch_insert = null;
+		PreparedStatement batch_update = null;
+		PreparedStatement batch_delete = null;
+		long count = 0;
+		try {
+			check(Permission.MODIFY, series);
+			int sid = getId(series);
+			List<Observation<T>> observations = new ArrayList<Observation<T>>(values.getSize());
+			for (Observation<T> obs : values) {
+				observations.add(obs);
+			}
+			if (observations.size() == 0)
+				return 0;
+
+			// read stored values in the range of the update
+			List<Integer> storedTimes = new ArrayList<Integer>();
+			List<T> storedValues = new ArrayList<T>();
+			batch_select = open(selectValuesByRangeSQL, series, batch_select);
+			batch_select.setInt(1, sid);
+			batch_select.setInt(2, observations.get(0).getTime().asOffset());
+			batch_select.setInt(3, observations.get(observations.size() - 1).getTime().asOffset());
+			ResultSet rs = batch_select.executeQuery();
+			while (rs.next()) {
+				storedTimes.add(rs.getInt(1));
+				storedValues.add(getElement(rs, 2));
+			}
+			rs.close();
+			batch_select = close(batch_select);
+
+			batch_insert = open(insertValueSQL, series, batch_insert);
+			batch_update = open(updateValueSQL, series, batch_update);
+			batch_delete = open(deleteValueSQL, series, batch_delete);
+			int inserts = 0;
+			int updates = 0;
+			int deletes = 0;
+			int j = 0;
+			for (Observation<T> obs : observations) {
+				int t = obs.getTime().asOffset();
+				while (j < storedTimes.size() && storedTimes.get(j) < t)
+					j++;
+				boolean stored = j < storedTimes.size() && storedTimes.get(j) == t;
+				T v = obs.getValue();
+				if (values.isMissing(v)) {
+					policy.willDelete(series, obs.getTime());
+					policy.deleteValue(series, obs.getTime());
+					if (stored) {
+						batch_delete.setInt(1, sid);
+						batch_delete.setInt(2, t);
+						deletes = addBatch(batch_delete, deletes, batchSize);
+						count++;
+					}
+				} else {
+					if (!isStorable(v))
+						throw new IllegalArgumentException("value cannot be stored: " + v);
+					if (!stored) {
+						batch_insert.setInt(1, sid);
+						batch_insert.setInt(2, t);
+						setElement(batch_insert, 3, v);
+						inserts = addBatch(batch_insert, inserts, batchSize);
+						count++;
+					} else if (!storedValues.get(j).equals(v)) {
+						setElement(batch_update, 1, v);
+						batch_update.setInt(2, sid);
+						batch_update.setInt(3, t);
+						setElement(batch_update, 4, v);
+						updates = addBatch(batch_update, updates, batchSize);
+						count++;
+					}
+				}
+			}
+			if (inserts > 0)
+				batch_insert.executeBatch();
+			if (updates > 0)
+				batch_update.executeBatch();
+			if (deletes > 0)
+				batch_delete.executeBatch();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		} finally {
+			batch_select = close(batch_select);
+			batch_insert = close(batch_insert);
+			batch_update = close(batch_update);
+			batch_delete = close(batch_delete);
+		}
+		return count;
+	}
+
+	/**
+	 * Update values using JDBC batches of native upsert statements. Missing
+	 * values are deleted in a second batch. The number of values changed is
+	 * computed from the update counts returned by the driver.
+	 *
+	 * @param sql the upsert statement of the dialect
+	 * @param series a series
+	 * @param values a time addressable with new values and missing values for values to delete
+	 * @param policy a policy
+	 * @return the number of values inserted, updated, or deleted
+	 * @throws T2DBException
+	 */
+	private long upsertValuesInBatches(String sql, UpdatableSeries<T> series, TimeAddressable<T> values, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement batch_upsert = null;
+		PreparedStatement batch_delete = null;
+		long count = 0;
+		try {
+			check(Permission.MODIFY, series);
+			int sid = getId(series);
+			batch_upsert = open(sql, series, batch_upsert);
+			batch_delete = open(deleteValueSQL, series, batch_delete);
+			int upserts = 0;
+			int deletes = 0;
+			for (Observation<T> obs : values) {
+				T v = obs.getValue();
+				if (values.isMissing(v)) {
+					policy.willDelete(series, obs.getTime());
+					policy.deleteValue(series, obs.getTime());
+					batch_delete.setInt(1, sid);
+					batch_delete.setInt(2, obs.getTime().asOffset());
+					batch_delete.addBatch();
+					deletes++;
+				} else {
+					if (!isStorable(v))
+						throw new IllegalArgumentException("value cannot be stored: " + v);
+					batch_upsert.setInt(1, sid);
+					batch_upsert.setInt(2, obs.getTime().asOffset());
+					setElement(batch_upsert, 3, v);
+					batch_upsert.addBatch();
+					upserts++;
+				}
+				if (upserts == batchSize) {
+					count += countChanges(batch_upsert.executeBatch());
+					upserts = 0;
+				}
+				if (deletes == batchSize) {
+					count += countChanges(batch_delete.executeBatch());
+					deletes = 0;
+				}
+			}
+			if (upserts > 0)
+				count += countChanges(batch_upsert.executeBatch());
+			if (deletes > 0)
+				count += countChanges(batch_delete.executeBatch());
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		} finally {
+			batch_upsert = close(batch_upsert);
+			batch_delete = close(batch_delete);
+		}
+		return count;
+	}
+
+	/**
+	 * Insert a value or update an existing value. When the dialect of the
+	 * database supports it, this is done with a single statement, else the
+	 * value is updated after an insert failed.
+	 * An IllegalArgumentException is thrown if the observation's value cannot be stored.
+	 *
+	 * @param series a series
+	 * @param obs an observation
+	 * @param policy a policy
+	 * @return true if something done
+	 * @throws T2DBException
+	 */
+	protected boolean insertOrUpdateValue(UpdatableSeries<T> series, Observation<T> obs, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement insert_value = null;
+		T v = obs.getValue();
+		if (!isStorable(v))
+			throw new IllegalArgumentException("value cannot be stored: " + v);
+		String upsert = getDialect(series).getUpsertValueSQL(table);
+		if (upsert != null)
+			return upsertValue(upsert, series, obs);
+		boolean done = false;
+		try {
+			check(Permission.MODIFY, series);
+			insert_value = open(insertValueSQL, series, insert_value);
+			insert_value.setInt(1, getId(series));
+			insert_value.setInt(2, obs.getTime().asOffset());
+			setElement(insert_value, 3, v);
+			insert_value.execute();
+			done = insert_value.getUpdateCount() > 0;
+		} catch (SQLException e) {
+			done = updateValue(e, series, obs);
+		} catch (KeyedException e) {
+			throw T2DBMsg.exception(e, E.E50110, series.getName(true), obs.getTime().toString());
+		} finally {
+			insert_value = close(insert_value);
+		}
+		return done;
+	}
+
+	private boolean updateValue(SQLException originalException, UpdatableSeries<T> series, Observation<T> obs) throws T2DBException {
+		PreparedStatement update_value = null;
+		boolean done = false;
+		try {
+			check(Permission.MODIFY, series);
+			update_value = open(updateValueSQL, series, update_value);
+			setElement(update_value, 1, obs.getValue());
+			update_value.setInt(2, getId(series));
+			update_value.setInt(3, obs.getTime().asOffset());
+			setElement(update_value, 4, obs.getValue());
+			update_value.execute();
+			done = update_value.getUpdateCount() > 0;
+		} catch (Exception e) {
+			throw T2DBMsg.exception(originalException, E.E50110, series.getName(true), obs.getTime().toString());
+		} finally {
+			update_value = close(update_value);
+		}
+		return done;
+	}
+
+	private boolean upsertValue(String sql, UpdatableSeries<T> series, Observation<T> obs) throws T2DBException {
+		PreparedStatement upsert_value = null;
+		boolean done = false;
+		try {
+			check(Permission.MODIFY, series);
+			upsert_value = open(sql, series, upsert_value);
+			upsert_value.setInt(1, getId(series));
+			upsert_value.setInt(2, obs.getTime().asOffset());
+			setElement(upsert_value, 3, obs.getValue());
+			upsert_value.execute();
+			done = upsert_value.getUpdateCount() > 0;
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50110, series.getName(true), obs.getTime().toString());
+		} finally {
+			upsert_value = close(upsert_value);
+		}
+		return done;
+	}
+
+}
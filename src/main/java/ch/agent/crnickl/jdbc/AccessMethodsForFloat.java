@@ -0,0 +1,60 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import ch.agent.crnickl.impl.ValueAccessMethods;
+
+/**
+ * An implementation of {@link ValueAccessMethods} for numeric data using
+ * {@link java.lang.Float}, stored in the table <code>value_float</code>. It is
+ * registered for value types using {@link FloatValueScanner} when the database
+ * is configured with <code>session.compactNumbers=true</code>.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class AccessMethodsForFloat extends AccessMethodsForCompactNumber<Float> {
+
+	/**
+	 * Construct an access method object.
+	 */
+	public AccessMethodsForFloat() {
+		super(DB.VALUE_FLOAT);
+	}
+
+	@Override
+	protected Float getElement(ResultSet rs, int column) throws SQLException {
+		return rs.getFloat(column);
+	}
+
+	@Override
+	protected void setElement(PreparedStatement stmt, int index, Float value) throws SQLException {
+		stmt.setFloat(index, value);
+	}
+
+	/**
+	 * Reject null and NaN.
+	 */
+	@Override
+	protected boolean isStorable(Float value) {
+		return value != null && !value.isNaN();
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import ch.agent.crnickl.impl.ValueAccessMethods;
+
+/**
+ * An implementation of {@link ValueAccessMethods} for numeric data using
+ * {@link java.lang.Integer}, stored in the table <code>value_int</code>. It is
+ * registered for value types using {@link IntegerValueScanner} when the database
+ * is configured with <code>session.compactNumbers=true</code>.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class AccessMethodsForInteger extends AccessMethodsForCompactNumber<Integer> {
+
+	/**
+	 * Construct an access method object.
+	 */
+	public AccessMethodsForInteger() {
+		super(DB.VALUE_INT);
+	}
+
+	@Override
+	protected Integer getElement(ResultSet rs, int column) throws SQLException {
+		return rs.getInt(column);
+	}
+
+	@Override
+	protected void setElement(PreparedStatement stmt, int index, Integer value) throws SQLException {
+		stmt.setInt(index, value);
+	}
+
+}
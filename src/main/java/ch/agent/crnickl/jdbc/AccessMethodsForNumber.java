@@ -19,16 +19,28 @@ package ch.agent.crnickl.jdbc;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import ch.agent.core.KeyedException;
 import ch.agent.crnickl.T2DBException;
 import ch.agent.crnickl.T2DBMsg;
 import ch.agent.crnickl.T2DBMsg.E;
+import ch.agent.crnickl.api.Database;
 import ch.agent.crnickl.api.Series;
 import ch.agent.crnickl.api.UpdatableSeries;
 import ch.agent.crnickl.impl.ChronicleUpdatePolicy;
 import ch.agent.crnickl.impl.Permission;
 import ch.agent.crnickl.impl.ValueAccessMethods;
+import ch.agent.crnickl.jdbc.T2DBJMsg.J;
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.time.Adjustment;
 import ch.agent.t2.time.Range;
 import ch.agent.t2.time.TimeDomain;
 import ch.agent.t2.time.TimeIndex;
@@ -42,21 +54,638 @@ import ch.agent.t2.timeseries.TimeAddressable;
  */
 public class AccessMethodsForNumber extends JDBCDatabaseMethods implements ValueAccessMethods<Double> {
 	
+	/**
+	 * The header of a numeric series, as stored in the table
+	 * <code>series_stats</code>. Updates are tracked incrementally. When the
+	 * first or the last value is deleted, the new one is looked up when the
+	 * header is stored.
+	 */
+	static class Header {
+		private boolean stored;
+		private boolean changed;
+		private int count;
+		private int first;
+		private int last;
+		private double firstValue;
+		private double lastValue;
+		private boolean firstUnknown;
+		private boolean lastUnknown;
+		
+		void inserted(int t, double value) {
+			changed = true;
+			if (count == 0) {
+				first = t;
+				last = t;
+				firstValue = value;
+				lastValue = value;
+				firstUnknown = false;
+				lastUnknown = false;
+			} else {
+				if (!firstUnknown && t < first) {
+					first = t;
+					firstValue = value;
+				}
+				if (!lastUnknown && t > last) {
+					last = t;
+					lastValue = value;
+				}
+			}
+			count++;
+		}
+		
+		void updated(int t, double value) {
+			changed = true;
+			if (!firstUnknown && t == first)
+				firstValue = value;
+			if (!lastUnknown && t == last)
+				lastValue = value;
+		}
+		
+		void deleted(int t) {
+			changed = true;
+			count--;
+			if (t == first)
+				firstUnknown = true;
+			if (t == last)
+				lastUnknown = true;
+		}
+		
+		void truncated(int rangeFirst, int rangeLast, int deleted) {
+			if (deleted > 0) {
+				changed = true;
+				count -= deleted;
+				if (first < rangeFirst || first > rangeLast)
+					firstUnknown = true;
+				if (last > rangeLast || last < rangeFirst)
+					lastUnknown = true;
+			}
+		}
+	}
+	
+	/**
+	 * A growable pair of arrays with time index offsets and values.
+	 */
+	static class Values {
+		int[] offsets;
+		double[] values;
+		int size;
+		
+		Values(int capacity) {
+			offsets = new int[Math.max(capacity, 16)];
+			values = new double[offsets.length];
+		}
+		
+		void add(int t, double value) {
+			if (size == offsets.length) {
+				offsets = Arrays.copyOf(offsets, 2 * size);
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			offsets[size] = t;
+			values[size] = value;
+			size++;
+		}
+	}
+	
+	/**
+	 * The number of values inserted, updated and deleted by
+	 * {@link AccessMethodsForNumber#replaceValues(UpdatableSeries, TimeAddressable, ChronicleUpdatePolicy)}.
+	 */
+	public static class Changes {
+		private final long inserted;
+		private final long updated;
+		private final long deleted;
+		/**
+		 * Construct the result of a replacement.
+		 * 
+		 * @param inserted the number of values inserted
+		 * @param updated the number of values updated
+		 * @param deleted the number of values deleted
+		 */
+		protected Changes(long inserted, long updated, long deleted) {
+			this.inserted = inserted;
+			this.updated = updated;
+			this.deleted = deleted;
+		}
+		/**
+		 * Return the number of values inserted.
+		 * 
+		 * @return a non-negative number
+		 */
+		public long getInserted() {
+			return inserted;
+		}
+		/**
+		 * Return the number of values updated.
+		 * 
+		 * @return a non-negative number
+		 */
+		public long getUpdated() {
+			return updated;
+		}
+		/**
+		 * Return the number of values deleted.
+		 * 
+		 * @return a non-negative number
+		 */
+		public long getDeleted() {
+			return deleted;
+		}
+		/**
+		 * Return the number of values inserted, updated or deleted.
+		 * 
+		 * @return a non-negative number
+		 */
+		public long getTotal() {
+			return inserted + updated + deleted;
+		}
+		@Override
+		public String toString() {
+			return String.format("inserted=%d updated=%d deleted=%d", inserted, updated, deleted);
+		}
+	}
+	
+	/**
+	 * The maximum number of partitions of the value table.
+	 */
+	public static final int MAX_PARTITIONS = 100;
+	private static final Pattern VALUE_TABLE = Pattern.compile("\\b" + DB.VALUE_DOUBLE + "\\b");
+	
+	private int batchSize;
+	private int fetchSize;
+	private boolean seriesStats;
+	private ValueCache valueCache;
+	private int partitions;
+	private ConcurrentHashMap<String, String[]> routes = new ConcurrentHashMap<String, String[]>();
+	
 	/**
 	 * Construct an access method object.
 	 */
 	public AccessMethodsForNumber() {
 	}
+	
+	/**
+	 * Set the number of statements sent to the database in one JDBC batch by
+	 * {@link #updateValues(UpdatableSeries, TimeAddressable, ChronicleUpdatePolicy)}.
+	 * When the size is 0, values are written one by one.
+	 * 
+	 * @param batchSize a non-negative number
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 0)
+			throw new IllegalArgumentException("batchSize < 0");
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Return the JDBC batch size.
+	 * 
+	 * @return the batch size, 0 when values are written one by one
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * Set the number of rows fetched from the database in one round trip when
+	 * reading values. When a range is read, the fetch size is reduced to the
+	 * size of the range. When the size is 0, the driver default is used,
+	 * which with some drivers loads the complete result before the first row
+	 * is returned.
+	 * 
+	 * @param fetchSize a non-negative number
+	 */
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize < 0)
+			throw new IllegalArgumentException("fetchSize < 0");
+		this.fetchSize = fetchSize;
+	}
+	
+	/**
+	 * Return the fetch size used when reading values.
+	 * 
+	 * @return the fetch size, 0 when the driver default is used
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+	
+	/**
+	 * Enable or disable series headers. When enabled, the range, the first
+	 * and last values, and the number of values of each series are kept in
+	 * the table <code>series_stats</code>, which is updated in the same
+	 * transaction as the values. Before enabling headers on a database with
+	 * values, headers must be built with {@link #rebuildStats(Database)}.
+	 * 
+	 * @param seriesStats if true headers are used
+	 */
+	public void setSeriesStats(boolean seriesStats) {
+		this.seriesStats = seriesStats;
+	}
+	
+	/**
+	 * Return true if series headers are used.
+	 * 
+	 * @return true if series headers are used
+	 */
+	public boolean isSeriesStats() {
+		return seriesStats;
+	}
+	
+	/**
+	 * Set the cache of values. Reads of whole series or ranges are served
+	 * from the cache, which is filled by reads of whole series, and all
+	 * updates made through this object drop the series from the cache.
+	 * 
+	 * @param valueCache a value cache or null for no cache
+	 */
+	public void setValueCache(ValueCache valueCache) {
+		this.valueCache = valueCache;
+	}
+	
+	/**
+	 * Return the cache of values.
+	 * 
+	 * @return the value cache or null
+	 */
+	public ValueCache getValueCache() {
+		return valueCache;
+	}
+	
+	/**
+	 * Drop a series from the value cache, if any, and keep it out of the
+	 * cache until the current unit of work ends. Every method updating
+	 * values must call this method before writing.
+	 * 
+	 * @param series a series
+	 */
+	protected void invalidate(Series<Double> series) {
+		if (valueCache != null)
+			valueCache.written(getId(series));
+	}
+	
+	/**
+	 * Set the number of partitions of the value table. With 0 partitions,
+	 * all values are stored in <code>value_double</code>. With N
+	 * partitions, the values of a series are stored in
+	 * <code>value_double_NN</code>, where NN is the series id modulo N on two
+	 * digits. The number of partitions must not be modified once a database
+	 * contains values, except with {@link ValuePartitionMigration}.
+	 * 
+	 * @param partitions a number between 0 and {@link #MAX_PARTITIONS}
+	 */
+	public void setPartitions(int partitions) {
+		if (partitions < 0 || partitions > MAX_PARTITIONS)
+			throw new IllegalArgumentException("partitions < 0 or > " + MAX_PARTITIONS);
+		this.partitions = partitions;
+		routes.clear();
+	}
+	
+	/**
+	 * Return the number of partitions of the value table.
+	 * 
+	 * @return a number between 0 and {@link #MAX_PARTITIONS}
+	 */
+	public int getPartitions() {
+		return partitions;
+	}
+	
+	/**
+	 * Return the partition of a series.
+	 * 
+	 * @param series the internal id of a series
+	 * @return a partition number or 0 if the value table is not partitioned
+	 */
+	protected int partitionOf(int series) {
+		return partitions == 0 ? 0 : series % partitions;
+	}
+	
+	/**
+	 * Return the name of the value table of a partition.
+	 * 
+	 * @param partitions the number of partitions or 0
+	 * @param partition a partition number
+	 * @return a table name
+	 */
+	public static String valueTable(int partitions, int partition) {
+		return partitions == 0 ? DB.VALUE_DOUBLE : String.format(DB.VALUE_DOUBLE_PARTITION, partition);
+	}
+	
+	/**
+	 * Return SQL code with the value table of a series.
+	 * 
+	 * @param sql a string in SQL syntax using <code>value_double</code> or null
+	 * @param series a series
+	 * @return a string in SQL syntax or null
+	 */
+	protected String route(String sql, Series<Double> series) {
+		return partitions == 0 ? sql : route(sql, getId(series));
+	}
+	
+	/**
+	 * Return SQL code with the value table of a series.
+	 * 
+	 * @param sql a string in SQL syntax using <code>value_double</code> or null
+	 * @param series the internal id of a series
+	 * @return a string in SQL syntax or null
+	 */
+	protected String route(String sql, int series) {
+		return partitions == 0 ? sql : routeToPartition(sql, partitionOf(series));
+	}
+	
+	/**
+	 * Return SQL code with the value table of a partition. The rewritten
+	 * code is cached.
+	 * 
+	 * @param sql a string in SQL syntax using <code>value_double</code> or null
+	 * @param partition a partition number
+	 * @return a string in SQL syntax or null
+	 */
+	protected String routeToPartition(String sql, int partition) {
+		if (partitions == 0 || sql == null)
+			return sql;
+		String[] routed = routes.get(sql);
+		if (routed == null) {
+			routed = new String[partitions];
+			for (int i = 0; i < partitions; i++) {
+				routed[i] = VALUE_TABLE.matcher(sql).replaceAll(valueTable(partitions, i));
+			}
+			routes.putIfAbsent(sql, routed);
+		}
+		return routed[partition];
+	}
+	
+	/**
+	 * Sort series ids by partition and by id within a partition.
+	 * 
+	 * @param ids an array of series ids
+	 */
+	private void sortByPartition(int[] ids) {
+		if (partitions == 0) {
+			Arrays.sort(ids);
+			return;
+		}
+		long[] keys = new long[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			keys[i] = ((long) partitionOf(ids[i]) << 32) | ids[i];
+		}
+		Arrays.sort(keys);
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = (int) keys[i];
+		}
+	}
+	
+	private static final String SELECT_HEADER = 
+		"select first_date, last_date, first_value, last_value, nvalues from " + DB.SERIES_STATS + " where series = ?";
+	/**
+	 * Return the header of a series, or null if headers are not used.
+	 * 
+	 * @param series a series
+	 * @return a header or null
+	 * @throws T2DBException
+	 */
+	protected Header loadHeader(Series<Double> series) throws T2DBException {
+		PreparedStatement select_header = null;
+		if (!seriesStats)
+			return null;
+		Header header = new Header();
+		try {
+			select_header = open(SELECT_HEADER, series, select_header);
+			select_header.setInt(1, getId(series));
+			ResultSet rs = select_header.executeQuery();
+			if (rs.next()) {
+				header.stored = true;
+				header.first = rs.getInt(1);
+				header.last = rs.getInt(2);
+				header.firstValue = rs.getDouble(3);
+				header.lastValue = rs.getDouble(4);
+				header.count = rs.getInt(5);
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBJMsg.exception(e, J.J00116, series.getName(true));
+		} finally {
+			select_header = close(select_header);
+		}
+		return header;
+	}
+	
+	/**
+	 * Return the header of a series to be modified, or null if headers are
+	 * not used. The series is locked until the end of the transaction, so
+	 * that concurrent writers of the same series modify its header one
+	 * after the other.
+	 * 
+	 * @param series a series
+	 * @return a header or null
+	 * @throws T2DBException
+	 */
+	protected Header loadHeaderForUpdate(Series<Double> series) throws T2DBException {
+		PreparedStatement lock_series = null;
+		if (!seriesStats)
+			return null;
+		try {
+			lock_series = open(getDialect(series).getLockRowSQL(DB.SERIES), series, lock_series);
+			lock_series.setInt(1, getId(series));
+			lock_series.execute();
+		} catch (Exception e) {
+			throw T2DBJMsg.exception(e, J.J00116, series.getName(true));
+		} finally {
+			lock_series = close(lock_series);
+		}
+		return loadHeader(series);
+	}
+	
+	private static final String INSERT_HEADER = 
+		"insert into " + DB.SERIES_STATS + " (first_date, last_date, first_value, last_value, nvalues, series) values(?, ?, ?, ?, ?, ?)";
+	private static final String UPDATE_HEADER = 
+		"update " + DB.SERIES_STATS + " set first_date = ?, last_date = ?, first_value = ?, last_value = ?, nvalues = ? where series = ?";
+	private static final String DELETE_HEADER = 
+		"delete from " + DB.SERIES_STATS + " where series = ?";
+	/**
+	 * Store the header of a series if it was modified. A first or last value
+	 * which is not known is looked up in the values of the series.
+	 * 
+	 * @param series a series
+	 * @param header a header or null
+	 * @throws T2DBException
+	 */
+	protected void storeHeader(Series<Double> series, Header header) throws T2DBException {
+		PreparedStatement update_header = null;
+		PreparedStatement insert_header = null;
+		PreparedStatement delete_header = null;
+		if (header == null || !header.changed)
+			return;
+		try {
+			if (header.count > 0) {
+				if (header.firstUnknown) {
+					Observation<Double> obs = findFirst(series, null);
+					header.first = obs.getTime().asOffset();
+					header.firstValue = obs.getValue();
+				}
+				if (header.lastUnknown) {
+					Observation<Double> obs = findLast(series, null);
+					header.last = obs.getTime().asOffset();
+					header.lastValue = obs.getValue();
+				}
+				PreparedStatement stmt;
+				if (header.stored)
+					stmt = update_header = open(UPDATE_HEADER, series, update_header);
+				else
+					stmt = insert_header = open(INSERT_HEADER, series, insert_header);
+				stmt.setInt(1, header.first);
+				stmt.setInt(2, header.last);
+				stmt.setDouble(3, header.firstValue);
+				stmt.setDouble(4, header.lastValue);
+				stmt.setInt(5, header.count);
+				stmt.setInt(6, getId(series));
+				stmt.execute();
+				header.stored = true;
+			} else if (header.stored) {
+				delete_header = open(DELETE_HEADER, series, delete_header);
+				delete_header.setInt(1, getId(series));
+				delete_header.execute();
+				header.stored = false;
+			}
+			header.changed = false;
+			header.firstUnknown = false;
+			header.lastUnknown = false;
+		} catch (Exception e) {
+			throw T2DBJMsg.exception(e, J.J00116, series.getName(true));
+		} finally {
+			insert_header = close(insert_header);
+			update_header = close(update_header);
+			delete_header = close(delete_header);
+		}
+	}
+	
+	/**
+	 * Recompute the header of a series from its values.
+	 * 
+	 * @param series a series
+	 * @throws T2DBException
+	 */
+	public void rebuildStats(Series<Double> series) throws T2DBException {
+		Header header = loadHeaderForUpdate(series);
+		if (header == null)
+			return;
+		header.changed = true;
+		header.count = (int) findCount(series);
+		header.firstUnknown = true;
+		header.lastUnknown = true;
+		storeHeader(series, header);
+	}
+	
+	private static final String REBUILD_DELETE = 
+		"delete from " + DB.SERIES_STATS;
+	private static final String REBUILD_INSERT = 
+		"insert into " + DB.SERIES_STATS + " (series, first_date, last_date, first_value, last_value, nvalues) " +
+		"select s.series, s.f, s.l, a.element, b.element, s.n from " + 
+		"(select series, min(date) as f, max(date) as l, count(*) as n from " + DB.VALUE_DOUBLE + " group by series) s " +
+		"join " + DB.VALUE_DOUBLE + " a on a.series = s.series and a.date = s.f " +
+		"join " + DB.VALUE_DOUBLE + " b on b.series = s.series and b.date = s.l";
+	/**
+	 * Recompute the headers of all series from their values. This is
+	 * a repair utility, to use also before enabling headers on a database
+	 * with values. Partitions are processed one after the other. Nothing
+	 * is committed.
+	 * 
+	 * @param database a database
+	 * @return the number of headers
+	 * @throws T2DBException
+	 */
+	public int rebuildStats(Database database) throws T2DBException {
+		PreparedStatement rebuild_delete = null;
+		PreparedStatement rebuild_insert = null;
+		int count = 0;
+		try {
+			rebuild_delete = open(REBUILD_DELETE, database, rebuild_delete);
+			rebuild_delete.execute();
+			for (int p = 0; p < Math.max(1, partitions); p++) {
+				rebuild_insert = open(routeToPartition(REBUILD_INSERT, p), database, rebuild_insert);
+				rebuild_insert.execute();
+				count += rebuild_insert.getUpdateCount();
+				rebuild_insert = close(rebuild_insert);
+			}
+		} catch (Exception e) {
+			throw T2DBJMsg.exception(e, J.J00116, database.toString());
+		} finally {
+			rebuild_delete = close(rebuild_delete);
+			rebuild_insert = close(rebuild_insert);
+		}
+		return count;
+	}
 
-	private PreparedStatement select_range;
-	private static final String SELECT_RANGE = 
-		"select min(date), max(date) from " + DB.VALUE_DOUBLE + " where series = ?";
 	@Override
 	public Range getRange(Series<Double> series) throws T2DBException {
+		Header header = loadHeader(series);
+		if (header == null)
+			return findRange(series);
+		if (header.count == 0)
+			return new Range(series.getTimeDomain());
+		try {
+			TimeDomain timeDomain = series.getTimeDomain();
+			return new Range(timeDomain.timeFromOffset(header.first), timeDomain.timeFromOffset(header.last));
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50122, series.getName(true));
+		}
+	}
+	
+	/**
+	 * Return the number of values of a series.
+	 * 
+	 * @param series a series
+	 * @return the number of values
+	 * @throws T2DBException
+	 */
+	public long getCount(Series<Double> series) throws T2DBException {
+		Header header = loadHeader(series);
+		if (header == null)
+			return findCount(series);
+		return header.count;
+	}
+	
+	private static final String SELECT_COUNT = 
+		"select count(*) from " + DB.VALUE_DOUBLE + " where series = ?";
+	/**
+	 * Count the values of a series.
+	 * 
+	 * @param series a series
+	 * @return the number of values
+	 * @throws T2DBException
+	 */
+	protected long findCount(Series<Double> series) throws T2DBException {
+		PreparedStatement select_count = null;
+		long count = 0;
+		try {
+			select_count = open(route(SELECT_COUNT, series), series, select_count);
+			select_count.setInt(1, getId(series));
+			ResultSet rs = select_count.executeQuery();
+			if (rs.next())
+				count = rs.getLong(1);
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50121, series.getName(true));
+		} finally {
+			select_count = close(select_count);
+		}
+		return count;
+	}
+	
+	private static final String SELECT_RANGE = 
+		"select min(date), max(date) from " + DB.VALUE_DOUBLE + " where series = ?";
+	/**
+	 * Find the range of a series in its values.
+	 * 
+	 * @param series a series
+	 * @return a range
+	 * @throws T2DBException
+	 */
+	protected Range findRange(Series<Double> series) throws T2DBException {
+		PreparedStatement select_range = null;
 		Range range = null;
 		TimeDomain timeDomain = series.getTimeDomain();
 		try {
-			select_range = open(SELECT_RANGE, series, select_range);
+			select_range = open(route(SELECT_RANGE, series), series, select_range);
 			select_range.setInt(1, getId(series));
 			ResultSet rs = select_range.executeQuery();
 			if (rs.next()) {
@@ -64,6 +693,7 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 				if (rs.wasNull())
 					range = null;
 			}
+			rs.close();
 		} catch (Exception e) {
 			throw T2DBMsg.exception(e, E.E50122, series.getName(true));
 		} finally {
@@ -74,36 +704,127 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 		return range;
 	}
 	
-	private PreparedStatement select_double_by_range;
 	private static final String SELECT_DOUBLE_BY_RANGE = 
 		"select date, element from " + DB.VALUE_DOUBLE + 
 		" where series = ? and date between ? and ? order by date";
-	private PreparedStatement select_double;
 	private static final String SELECT_DOUBLE = 
 		"select date, element from " + DB.VALUE_DOUBLE + " where series = ? order by date";
+	/**
+	 * Read values into a time addressable. When a value cache is set, values
+	 * are taken from the cache. When all values of a series not yet in the
+	 * cache are requested, they are read and put into the cache. Else, or
+	 * when the number of values of the series is too large for the cache,
+	 * values are read with
+	 * {@link #findValues(Series, Range, TimeAddressable)}, so that a range
+	 * missing from the cache costs no more than without a cache.
+	 */
 	@Override
 	public long getValues(Series<Double> series, Range range, TimeAddressable<Double> ts) throws T2DBException {
 		if (range != null && range.isEmpty())
 			return 0;
+		if (valueCache == null)
+			return findValues(series, range, ts);
 		long count = 0;
 		try {
 			check(Permission.READ, series);
-			ResultSet rs;
+			int sid = getId(series);
+			int first = Integer.MIN_VALUE;
+			int last = Integer.MAX_VALUE;
+			if (range != null) {
+				first = range.getFirst().asOffset();
+				last = range.getLast().asOffset();
+			}
+			count = valueCache.get(sid, first, last, ts);
+			if (count < 0 && range == null && !valueCache.isWritten(sid)) {
+				long token = valueCache.getToken();
+				// the count is only an estimate when it comes from statistics
+				long estimate = getCount(series);
+				if (valueCache.sizeOf((int) Math.min(estimate, Integer.MAX_VALUE)) <= valueCache.getCapacity()) {
+					Values all = readValues(series);
+					valueCache.put(sid, token, all.offsets, all.values, all.size);
+					for (int i = 0; i < all.size; i++) {
+						ts.put(all.offsets[i], all.values[i]);
+					}
+					count = all.size;
+				}
+			}
+		} catch (Exception e) {
+			if (range == null)
+				throw T2DBMsg.exception(e, E.E50121, series.getName(true));
+			else
+				throw T2DBMsg.exception(e, E.E50120, series.getName(true), range.toString());
+		}
+		if (count < 0)
+			count = findValues(series, range, ts);
+		return count;
+	}
+	
+	/**
+	 * Read all values of a series, however many they are.
+	 * 
+	 * @param series a series
+	 * @return the values
+	 * @throws T2DBException
+	 */
+	Values readValues(Series<Double> series) throws T2DBException {
+		PreparedStatement select_double = null;
+		Values result = new Values(0);
+		try {
+			select_double = open(route(SELECT_DOUBLE, series), series, select_double);
+			select_double.setInt(1, getId(series));
+			select_double.setFetchSize(getDialect(series).getFetchSize(fetchSize));
+			ResultSet rs = select_double.executeQuery();
+			while (rs.next()) {
+				result.add(rs.getInt(1), rs.getDouble(2));
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50121, series.getName(true));
+		} finally {
+			select_double = close(select_double);
+		}
+		return result;
+	}
+	
+	/**
+	 * Read values from the database into a time addressable. Rows are read
+	 * with a forward-only, read-only cursor and are put into the time
+	 * addressable as they arrive, so that with a positive fetch size the
+	 * complete result is never held in memory by the driver.
+	 * 
+	 * @param series a series
+	 * @param range a non-empty range or null for all values
+	 * @param ts a time addressable
+	 * @return the number of values read
+	 * @throws T2DBException
+	 */
+	protected long findValues(Series<Double> series, Range range, TimeAddressable<Double> ts) throws T2DBException {
+		PreparedStatement select_double = null;
+		PreparedStatement select_double_by_range = null;
+		long count = 0;
+		ResultSet rs = null;
+		try {
+			check(Permission.READ, series);
 			if (range == null) {
-				select_double = open(SELECT_DOUBLE, series, select_double);
+				select_double = open(route(SELECT_DOUBLE, series), series, select_double);
 				select_double.setInt(1, getId(series));
+				select_double.setFetchSize(getDialect(series).getFetchSize(fetchSize));
 				rs = select_double.executeQuery();
 			} else {
-				select_double_by_range = open(SELECT_DOUBLE_BY_RANGE, series, select_double_by_range);
+				select_double_by_range = open(route(SELECT_DOUBLE_BY_RANGE, series), series, select_double_by_range);
+				int first = range.getFirst().asOffset();
+				int last = range.getLast().asOffset();
 				select_double_by_range.setInt(1, getId(series));
-				select_double_by_range.setInt(2, range.getFirst().asOffset());
-				select_double_by_range.setInt(3, range.getLast().asOffset());
+				select_double_by_range.setInt(2, first);
+				select_double_by_range.setInt(3, last);
+				select_double_by_range.setFetchSize(getDialect(series).getFetchSize(fetchSize(first, last)));
 				rs = select_double_by_range.executeQuery();
 			}
 			while (rs.next()) {
-				ts.put(ts.getTimeDomain().timeFromOffset(rs.getInt(1)), rs.getDouble(2));
+				ts.put(rs.getInt(1), rs.getDouble(2));
 				count++;
 			}
+			rs.close();
 		} catch (Exception e) {
 			if (range == null)
 				throw T2DBMsg.exception(e, E.E50121, series.getName(true));
@@ -116,29 +837,491 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 		return count;
 	}
 	
-	private PreparedStatement select_first_double1;
+	/**
+	 * Return the fetch size adapted to the size of a range.
+	 * 
+	 * @param first the offset of the first time index in the range
+	 * @param last the offset of the last time index in the range
+	 * @return a non-negative number
+	 */
+	private int fetchSize(int first, int last) {
+		if (fetchSize == 0)
+			return 0;
+		long size = (long) last - first + 1;
+		return size < fetchSize ? (int) size : fetchSize;
+	}
+	
+	/**
+	 * Read values into arrays supplied by the caller. Values are read in
+	 * ascending order of time, starting at the offset <code>first</code> and
+	 * stopping after the offset <code>last</code> or when the arrays are full.
+	 * No object is allocated per value. To read a long series in pages, call
+	 * the method again with <code>first</code> set to the offset following
+	 * the last offset returned, until it returns less than the length of the
+	 * arrays. Use {@link #putValues(TimeAddressable, int[], double[], int)} to
+	 * load the arrays into a time addressable.
+	 * 
+	 * @param series a series
+	 * @param first the offset of the first time index to read
+	 * @param last the offset of the last time index to read
+	 * @param offsets an array receiving the time index offsets
+	 * @param values an array receiving the values, not shorter than <code>offsets</code>
+	 * @return the number of values read
+	 * @throws T2DBException
+	 */
+	public int getValues(Series<Double> series, int first, int last, int[] offsets, double[] values) throws T2DBException {
+		PreparedStatement select_double_by_range = null;
+		if (values.length < offsets.length)
+			throw new IllegalArgumentException("values.length < offsets.length");
+		int capacity = offsets.length;
+		if (first > last || capacity == 0)
+			return 0;
+		int count = 0;
+		try {
+			check(Permission.READ, series);
+			select_double_by_range = open(route(SELECT_DOUBLE_BY_RANGE, series), series, select_double_by_range);
+			select_double_by_range.setInt(1, getId(series));
+			select_double_by_range.setInt(2, first);
+			select_double_by_range.setInt(3, last);
+			int size = fetchSize(first, last);
+			select_double_by_range.setFetchSize(getDialect(series).getFetchSize(size < capacity ? size : capacity));
+			ResultSet rs = select_double_by_range.executeQuery();
+			while (count < capacity && rs.next()) {
+				offsets[count] = rs.getInt(1);
+				values[count] = rs.getDouble(2);
+				count++;
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50120, series.getName(true), String.format("[%d, %d]", first, last));
+		} finally {
+			select_double_by_range = close(select_double_by_range);
+		}
+		return count;
+	}
+	
+	/**
+	 * Put values read into arrays into a time addressable. When the time
+	 * addressable is indexable, each run of consecutive offsets is put with a
+	 * single call. Else values are put one by one by offset, without
+	 * allocating time indexes.
+	 * 
+	 * @param ts a time addressable
+	 * @param offsets an array of time index offsets in ascending order
+	 * @param values an array of values
+	 * @param count the number of elements to use in the arrays
+	 * @throws T2Exception
+	 */
+	public static void putValues(TimeAddressable<Double> ts, int[] offsets, double[] values, int count) throws T2Exception {
+		if (!ts.isIndexable()) {
+			for (int i = 0; i < count; i++) {
+				ts.put(offsets[i], values[i]);
+			}
+			return;
+		}
+		int start = 0;
+		while (start < count) {
+			int end = start + 1;
+			while (end < count && offsets[end] == offsets[end - 1] + 1)
+				end++;
+			Double[] run = new Double[end - start];
+			for (int i = 0; i < run.length; i++) {
+				run[i] = values[start + i];
+			}
+			ts.put(offsets[start], run);
+			start = end;
+		}
+	}
+	
+	private static final String SELECT_DOUBLE_BY_SERIES = 
+		"select series, date, element from " + DB.VALUE_DOUBLE + " where series in (%s)%s order by series, date";
+	/**
+	 * Read values of many series in one range. The series are read with
+	 * queries on lists of series, and the rows are dispatched to the time
+	 * addressables in a single pass. Lists are limited to the size allowed by
+	 * the dialect and are padded to a power of two, so that few distinct
+	 * statements are prepared. When the range is not null, all series must be
+	 * in the time domain of the range. When several keys of the panel are the
+	 * same series, the series is read once and its values are put into all
+	 * their time addressables.
+	 * 
+	 * @param panel a map of series to the time addressables receiving their values
+	 * @param range a range or null to read all values
+	 * @return the total number of values read, counting each series once
+	 * @throws T2DBException
+	 */
+	public long getValues(Map<? extends Series<Double>, ? extends TimeAddressable<Double>> panel, Range range) throws T2DBException {
+		if (panel.isEmpty() || (range != null && range.isEmpty()))
+			return 0;
+		long count = 0;
+		PreparedStatement stmt = null;
+		try {
+			Map<Integer, TimeAddressable<Double>> byId = new HashMap<Integer, TimeAddressable<Double>>(panel.size() * 2);
+			// distinct series objects can stand for the same series
+			Map<Integer, List<TimeAddressable<Double>>> duplicates = null;
+			Series<Double> series = null;
+			for (Map.Entry<? extends Series<Double>, ? extends TimeAddressable<Double>> entry : panel.entrySet()) {
+				series = entry.getKey();
+				check(Permission.READ, series);
+				int id = getId(series);
+				TimeAddressable<Double> other = byId.get(id);
+				if (other == null)
+					byId.put(id, entry.getValue());
+				else if (other != entry.getValue()) {
+					if (duplicates == null)
+						duplicates = new HashMap<Integer, List<TimeAddressable<Double>>>();
+					List<TimeAddressable<Double>> more = duplicates.get(id);
+					if (more == null) {
+						more = new ArrayList<TimeAddressable<Double>>(1);
+						duplicates.put(id, more);
+					}
+					more.add(entry.getValue());
+				}
+			}
+			int first = 0;
+			int last = 0;
+			if (range != null) {
+				first = range.getFirst().asOffset();
+				last = range.getLast().asOffset();
+			}
+			JDBCDialect dialect = getDialect(series);
+			int max = dialect.getMaxInListSize();
+			int[] ids = new int[byId.size()];
+			int k = 0;
+			for (Integer id : byId.keySet()) {
+				ids[k++] = id;
+			}
+			sortByPartition(ids);
+			int n;
+			for (int start = 0; start < ids.length; start += n) {
+				n = Math.min(max, ids.length - start);
+				for (int i = 1; i < n; i++) {
+					if (partitionOf(ids[start + i]) != partitionOf(ids[start])) {
+						n = i;
+						break;
+					}
+				}
+				int size = 1;
+				while (size < n)
+					size <<= 1;
+				if (size > max)
+					size = max;
+				stmt = open(route(selectDoubleBySeries(size, range != null), ids[start]), series, stmt);
+				int param = 1;
+				for (int i = 0; i < size; i++) {
+					stmt.setInt(param++, ids[start + Math.min(i, n - 1)]);
+				}
+				if (range != null) {
+					stmt.setInt(param++, first);
+					stmt.setInt(param++, last);
+				}
+				stmt.setFetchSize(dialect.getFetchSize(fetchSize));
+				ResultSet rs = stmt.executeQuery();
+				int current = -1;
+				TimeAddressable<Double> ts = null;
+				List<TimeAddressable<Double>> more = null;
+				while (rs.next()) {
+					int sid = rs.getInt(1);
+					if (sid != current) {
+						current = sid;
+						ts = byId.get(sid);
+						more = duplicates == null ? null : duplicates.get(sid);
+					}
+					int t = rs.getInt(2);
+					double value = rs.getDouble(3);
+					ts.put(t, value);
+					if (more != null) {
+						for (TimeAddressable<Double> other : more) {
+							other.put(t, value);
+						}
+					}
+					count++;
+				}
+				rs.close();
+				stmt = close(stmt);
+			}
+		} catch (Exception e) {
+			throw T2DBJMsg.exception(e, J.J00114, panel.size(), range == null ? "" : range.toString());
+		} finally {
+			stmt = close(stmt);
+		}
+		return count;
+	}
+	
+	private String selectDoubleBySeries(int size, boolean range) {
+		StringBuilder params = new StringBuilder(size * 3);
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				params.append(", ");
+			params.append('?');
+		}
+		return String.format(SELECT_DOUBLE_BY_SERIES, params, range ? " and date between ? and ?" : "");
+	}
+	
+	/**
+	 * The statistics computed per bucket by
+	 * {@link AccessMethodsForNumber#getAggregates(Series, Range, Map)}.
+	 */
+	public enum Aggregation {
+		/**
+		 * The number of values.
+		 */
+		COUNT,
+		/**
+		 * The sum of values.
+		 */
+		SUM,
+		/**
+		 * The smallest value.
+		 */
+		MIN,
+		/**
+		 * The largest value.
+		 */
+		MAX,
+		/**
+		 * The arithmetic mean of values.
+		 */
+		MEAN,
+		/**
+		 * The value with the earliest time.
+		 */
+		FIRST,
+		/**
+		 * The value with the latest time.
+		 */
+		LAST
+	}
+	
+	/**
+	 * The maximum number of buckets aggregated in one statement.
+	 */
+	protected static final int MAX_BUCKETS = 128;
+	
+	private static final String SELECT_AGGREGATES = 
+		"select g.bucket, g.n, g.s, g.mn, g.mx, f.element, l.element from " +
+		"(select b.bucket as bucket, count(*) as n, sum(v.element) as s, min(v.element) as mn, max(v.element) as mx, " +
+		"min(v.date) as fd, max(v.date) as ld from %s " + 
+		"join " + DB.VALUE_DOUBLE + " v on v.date between b.lo and b.hi where v.series = ? group by b.bucket) g " + 
+		"join " + DB.VALUE_DOUBLE + " f on f.series = ? and f.date = g.fd " + 
+		"join " + DB.VALUE_DOUBLE + " l on l.series = ? and l.date = g.ld " +
+		"order by g.bucket";
+	/**
+	 * Aggregate values of a series by bucket. Buckets are the time indexes
+	 * of the time domain of the time addressables receiving the results,
+	 * which is usually coarser than the time domain of the series, for
+	 * example monthly buckets for a daily series. All time addressables must
+	 * be in the same time domain. Only buckets with values are put.
+	 * <p>
+	 * The aggregation is done by the database with <code>group by</code>
+	 * queries on a derived table of bucket limits, so that only one row per
+	 * bucket is transferred.
+	 * 
+	 * @param series a series
+	 * @param range a range in the time domain of the series or null for all values
+	 * @param results a map of statistics to the time addressables receiving them
+	 * @return the number of buckets with values
+	 * @throws T2DBException
+	 */
+	public long getAggregates(Series<Double> series, Range range, Map<Aggregation, ? extends TimeAddressable<Double>> results) throws T2DBException {
+		if (results.isEmpty())
+			return 0;
+		if (range == null)
+			range = getRange(series);
+		if (range.isEmpty())
+			return 0;
+		long count = 0;
+		PreparedStatement stmt = null;
+		try {
+			check(Permission.READ, series);
+			int sid = getId(series);
+			int[] buckets = makeBuckets(range, bucketDomain(results));
+			String sql = route(String.format(SELECT_AGGREGATES, getDialect(series).getIntegerTable(MAX_BUCKETS, "b", "bucket", "lo", "hi")), sid);
+			for (int start = 0; start < buckets.length; start += 3 * MAX_BUCKETS) {
+				stmt = open(sql, series, stmt);
+				int param = 1;
+				for (int i = 0; i < 3 * MAX_BUCKETS; i += 3) {
+					if (start + i < buckets.length) {
+						stmt.setInt(param++, buckets[start + i]);
+						stmt.setInt(param++, buckets[start + i + 1]);
+						stmt.setInt(param++, buckets[start + i + 2]);
+					} else {
+						// empty bucket
+						stmt.setInt(param++, 0);
+						stmt.setInt(param++, 1);
+						stmt.setInt(param++, 0);
+					}
+				}
+				stmt.setInt(param++, sid);
+				stmt.setInt(param++, sid);
+				stmt.setInt(param++, sid);
+				ResultSet rs = stmt.executeQuery();
+				while (rs.next()) {
+					putAggregates(results, rs.getInt(1), rs.getLong(2), rs.getDouble(3), rs.getDouble(4), 
+							rs.getDouble(5), rs.getDouble(6), rs.getDouble(7));
+					count++;
+				}
+				rs.close();
+			}
+		} catch (Exception e) {
+			throw T2DBJMsg.exception(e, J.J00117, series.getName(true), range.toString());
+		} finally {
+			stmt = close(stmt);
+		}
+		return count;
+	}
+	
+	/**
+	 * Return the time domain of the time addressables receiving aggregates.
+	 * 
+	 * @param results a non-empty map of statistics to time addressables
+	 * @return a time domain
+	 */
+	protected TimeDomain bucketDomain(Map<Aggregation, ? extends TimeAddressable<Double>> results) {
+		TimeDomain domain = null;
+		for (TimeAddressable<Double> ts : results.values()) {
+			if (domain == null)
+				domain = ts.getTimeDomain();
+			else if (!domain.equals(ts.getTimeDomain()))
+				throw new IllegalArgumentException("results not in the same time domain");
+		}
+		return domain;
+	}
+	
+	/**
+	 * Return the limits of the buckets covering a range. For each bucket,
+	 * the array contains the offset of the bucket in the bucket domain and
+	 * the first and last offsets in the time domain of the range.
+	 * 
+	 * @param range a non-empty range
+	 * @param bucketDomain the time domain of buckets
+	 * @return an array of triples
+	 * @throws T2Exception
+	 */
+	protected int[] makeBuckets(Range range, TimeDomain bucketDomain) throws T2Exception {
+		TimeDomain domain = range.getTimeDomain();
+		int first = range.getFirst().asOffset();
+		int last = range.getLast().asOffset();
+		TimeIndex bucket = range.getFirst().convert(bucketDomain, Adjustment.DOWN);
+		TimeIndex end = range.getLast().convert(bucketDomain, Adjustment.DOWN);
+		int size = (int) end.sub(bucket) + 1;
+		int[] buckets = new int[3 * size];
+		int lo = first;
+		for (int i = 0; i < size; i++) {
+			TimeIndex next = bucket.add(1);
+			int hi = i == size - 1 ? last : next.convert(domain, Adjustment.UP).asOffset() - 1;
+			buckets[3 * i] = bucket.asOffset();
+			buckets[3 * i + 1] = lo;
+			buckets[3 * i + 2] = hi;
+			lo = hi + 1;
+			bucket = next;
+		}
+		return buckets;
+	}
+	
+	/**
+	 * Put the statistics of a bucket into the results.
+	 * 
+	 * @param results a map of statistics to time addressables
+	 * @param bucket the offset of the bucket
+	 * @param count the number of values
+	 * @param sum the sum of values
+	 * @param min the smallest value
+	 * @param max the largest value
+	 * @param first the first value
+	 * @param last the last value
+	 * @throws T2Exception
+	 */
+	protected void putAggregates(Map<Aggregation, ? extends TimeAddressable<Double>> results, int bucket, 
+			long count, double sum, double min, double max, double first, double last) throws T2Exception {
+		for (Map.Entry<Aggregation, ? extends TimeAddressable<Double>> entry : results.entrySet()) {
+			double value;
+			switch (entry.getKey()) {
+			case COUNT:
+				value = count;
+				break;
+			case SUM:
+				value = sum;
+				break;
+			case MIN:
+				value = min;
+				break;
+			case MAX:
+				value = max;
+				break;
+			case MEAN:
+				value = sum / count;
+				break;
+			case FIRST:
+				value = first;
+				break;
+			case LAST:
+				value = last;
+				break;
+			default:
+				throw new RuntimeException("bug: " + entry.getKey());
+			}
+			entry.getValue().put(bucket, value);
+		}
+	}
+	
 	private static final String SELECT_FIRST_DOUBLE_1 = 
 		"select date, element from " +  DB.VALUE_DOUBLE + " where series = ? and date = " + 
 		"(select min(date) from " + DB.VALUE_DOUBLE + " where series = ? and date >= ?)" ;
-	private PreparedStatement select_first_double2;
 	private static final String SELECT_FIRST_DOUBLE_2 = 
 		"select date, element from " +  DB.VALUE_DOUBLE + " where series = ? and date = " + 
 		"(select min(date) from " + DB.VALUE_DOUBLE + " where series = ?)" ;
 	@Override
 	public Observation<Double> getFirst(Series<Double> series, TimeIndex time) throws T2DBException {
+		Header header = time == null ? loadHeader(series) : null;
+		if (header == null)
+			return findFirst(series, time);
+		return headerObservation(series, header, header.first, header.firstValue, E.E50123);
+	}
+	
+	@Override
+	public Observation<Double> getLast(Series<Double> series, TimeIndex time) throws T2DBException {
+		Header header = time == null ? loadHeader(series) : null;
+		if (header == null)
+			return findLast(series, time);
+		return headerObservation(series, header, header.last, header.lastValue, E.E50124);
+	}
+	
+	private Observation<Double> headerObservation(Series<Double> series, Header header, int t, double value, String key) throws T2DBException {
+		if (header.count == 0)
+			return null;
+		try {
+			return new Observation<Double>(series.getTimeDomain().timeFromOffset(t), value);
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, key, series.getName(true), null);
+		}
+	}
+	
+	/**
+	 * Find the first observation of a series at or after a given time in its
+	 * values.
+	 * 
+	 * @param series a series
+	 * @param time a time index or null for the first observation of the series
+	 * @return an observation or null
+	 * @throws T2DBException
+	 */
+	protected Observation<Double> findFirst(Series<Double> series, TimeIndex time) throws T2DBException {
+		PreparedStatement select_first_double1 = null;
+		PreparedStatement select_first_double2 = null;
 		Observation<Double> obs = null;
 		try {
 			check(Permission.READ, series);
 			ResultSet rs;
 			int sid = getId(series);
 			if (time != null) {
-				select_first_double1 = open(SELECT_FIRST_DOUBLE_1, series, select_first_double1);
+				select_first_double1 = open(route(SELECT_FIRST_DOUBLE_1, series), series, select_first_double1);
 				select_first_double1.setInt(1, sid);
 				select_first_double1.setInt(2, sid);
 				select_first_double1.setInt(3, time.asOffset());
 				rs = select_first_double1.executeQuery();
 			} else {
-				select_first_double2 = open(SELECT_FIRST_DOUBLE_2, series, select_first_double2);
+				select_first_double2 = open(route(SELECT_FIRST_DOUBLE_2, series), series, select_first_double2);
 				select_first_double2.setInt(1, sid);
 				select_first_double2.setInt(2, sid);
 				rs = select_first_double2.executeQuery();
@@ -148,6 +1331,7 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 				TimeIndex t = dom.timeFromOffset(rs.getInt(1));
 				obs = new Observation<Double>(t, rs.getDouble(2));
 			}
+			rs.close();
 		} catch (Exception e) {
 				throw T2DBMsg.exception(e, E.E50123, series.getName(true), time.toString());
 		} finally {
@@ -157,29 +1341,37 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 		return obs;
 	}
 	
-	private PreparedStatement select_last_double1;
 	private static final String SELECT_LAST_DOUBLE_1 = 
 		"select date, element from " +  DB.VALUE_DOUBLE + " where series = ? and date = " + 
 		"(select max(date) from " + DB.VALUE_DOUBLE + " where series = ? and date <= ?)" ;
-	private PreparedStatement select_last_double2;
 	private static final String SELECT_LAST_DOUBLE_2 = 
 		"select date, element from " +  DB.VALUE_DOUBLE + " where series = ? and date = " + 
 		"(select max(date) from " + DB.VALUE_DOUBLE + " where series = ?)" ;
-	@Override
-	public Observation<Double> getLast(Series<Double> series, TimeIndex time) throws T2DBException {
+	/**
+	 * Find the last observation of a series at or before a given time in its
+	 * values.
+	 * 
+	 * @param series a series
+	 * @param time a time index or null for the last observation of the series
+	 * @return an observation or null
+	 * @throws T2DBException
+	 */
+	protected Observation<Double> findLast(Series<Double> series, TimeIndex time) throws T2DBException {
+		PreparedStatement select_last_double1 = null;
+		PreparedStatement select_last_double2 = null;
 		Observation<Double> obs = null;
 		try {
 			check(Permission.READ, series);
 			ResultSet rs;
 			int sid = getId(series);
 			if (time != null) {
-				select_last_double1 = open(SELECT_LAST_DOUBLE_1, series, select_last_double1);
+				select_last_double1 = open(route(SELECT_LAST_DOUBLE_1, series), series, select_last_double1);
 				select_last_double1.setInt(1, sid);
 				select_last_double1.setInt(2, sid);
 				select_last_double1.setInt(3, time.asOffset());
 				rs = select_last_double1.executeQuery();
 			} else {
-				select_last_double2 = open(SELECT_LAST_DOUBLE_2, series, select_last_double2);
+				select_last_double2 = open(route(SELECT_LAST_DOUBLE_2, series), series, select_last_double2);
 				select_last_double2.setInt(1, sid);
 				select_last_double2.setInt(2, sid);
 				rs = select_last_double2.executeQuery();
@@ -189,6 +1381,7 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 				TimeIndex t = dom.timeFromOffset(rs.getInt(1));
 				obs = new Observation<Double>(t, rs.getDouble(2));
 			}
+			rs.close();
 		} catch (Exception e) {
 				throw T2DBMsg.exception(e, E.E50124, series.getName(true), time.toString());
 		} finally {
@@ -198,35 +1391,42 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 		return obs;
 	}
 
-	private PreparedStatement delete_values_by_t; 
 	private static final String DELETE_VALUES_BY_T = 
 		"delete from " + DB.VALUE_DOUBLE + " where series = ? and date = ?";
 	@Override
 	public boolean deleteValue(UpdatableSeries<Double> series, TimeIndex t, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement delete_values_by_t = null;
+		invalidate(series);
 		boolean done = false;
+		Header header = loadHeaderForUpdate(series);
 		try {
 			check(Permission.MODIFY, series);
 			policy.willDelete(series, t);
 			policy.deleteValue(series, t);
-			delete_values_by_t = open(DELETE_VALUES_BY_T, series, delete_values_by_t);
+			delete_values_by_t = open(route(DELETE_VALUES_BY_T, series), series, delete_values_by_t);
 			delete_values_by_t.setInt(1, getId(series));
 			delete_values_by_t.setInt(2, t.asOffset());
 			delete_values_by_t.execute();
 			done = delete_values_by_t.getUpdateCount() > 0;
+			if (done && header != null)
+				header.deleted(t.asOffset());
 		} catch (Exception e) {
 			throw T2DBMsg.exception(e, E.E50113, series.getName(true), t.toString());
 		} finally {
 			delete_values_by_t = close(delete_values_by_t);
 		}
+		storeHeader(series, header);
 		return done;
 	}
 	
-	private PreparedStatement update_series_range;
 	private static final String UPDATE_SERIES_RANGE = 
 		"delete from " + DB.VALUE_DOUBLE + " where series = ? and (date < ? or date > ?)";
 	@Override
 	public boolean updateSeries(UpdatableSeries<Double> series, Range range, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement update_series_range = null;
+		invalidate(series);
 		boolean done = false;
+		Header header = loadHeaderForUpdate(series);
 		try {
 			int id = getId(series);
 			int first = 1;
@@ -238,25 +1438,32 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 			check(Permission.MODIFY, series);
 			policy.willUpdate(series, range);
 			done = policy.update(series, range);
-			update_series_range = open(UPDATE_SERIES_RANGE, series, update_series_range);
+			update_series_range = open(route(UPDATE_SERIES_RANGE, series), series, update_series_range);
 			update_series_range.setInt(1, id);
 			update_series_range.setInt(2, first);
 			update_series_range.setInt(3, last);
 			update_series_range.execute();
-			if (update_series_range.getUpdateCount() > 0)
+			int deleted = update_series_range.getUpdateCount();
+			if (deleted > 0) {
 				done = true;
+				if (header != null)
+					header.truncated(first, last, deleted);
+			}
 		} catch (Exception e) {
 			throw T2DBMsg.exception(e, E.E50109, series.getName(true));
 		} finally {
 			update_series_range = close(update_series_range);
 		}
+		storeHeader(series, header);
 		return done;
 	}
 	
-	private PreparedStatement insert_value;
 	private static final String INSERT_VALUE = 
 		"insert into " + DB.VALUE_DOUBLE + " (series, date, element) values(?, ?, ?)";
 	/**
+	 * Insert a value or update an existing value. When the dialect of the
+	 * database supports it, this is done with a single statement, else the
+	 * value is updated after an insert failed.
 	 * An IllegalArgumentException is thrown if the observation's value is null or a NaN.
 	 * @param series a series 
 	 * @param obs an observation
@@ -265,13 +1472,18 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 	 * @throws T2DBException
 	 */
 	protected boolean insertOrUpdateValue(UpdatableSeries<Double> series, Observation<Double> obs, ChronicleUpdatePolicy policy) throws T2DBException {
-		boolean done = false;
+		PreparedStatement insert_value = null;
+		invalidate(series);
 		Double v = obs.getValue();
 		if (v == null || Double.isNaN(v))
 			throw new IllegalArgumentException("value null or NaN");
+		String upsert = route(getDialect(series).getUpsertValueSQL(DB.VALUE_DOUBLE), series);
+		if (upsert != null)
+			return upsertValue(upsert, series, obs);
+		boolean done = false;
 		try {
 			check(Permission.MODIFY, series);
-			insert_value = open(INSERT_VALUE, series, insert_value);
+			insert_value = open(route(INSERT_VALUE, series), series, insert_value);
 			insert_value.setInt(1, getId(series));
 			insert_value.setInt(2, obs.getTime().asOffset());
 			insert_value.setDouble(3, v);
@@ -287,14 +1499,14 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 		return done;
 	}
 	
-	private PreparedStatement update_value;
 	private static final String UPDATE_VALUE = 
 		"update " + DB.VALUE_DOUBLE + " set element = ? where series = ? and date = ? and element != ?";
 	private boolean updateValue(SQLException originalException, UpdatableSeries<Double> series, Observation<Double> obs, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement update_value = null;
 		boolean done = false;
 		try {
 			check(Permission.MODIFY, series);
-			update_value = open(UPDATE_VALUE, series, update_value);
+			update_value = open(route(UPDATE_VALUE, series), series, update_value);
 			update_value.setDouble(1, obs.getValue());
 			update_value.setInt(2, getId(series));
 			update_value.setInt(3, obs.getTime().asOffset());
@@ -309,38 +1521,47 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 		return done;
 	}
 	
-//	private PreparedStatement insertOrUpdate;
-//	private static final String INSERT_OR_UPDATE = 
-//		"insert into " + DB.VALUE + " (series, date, element) values(?, ?, ?) " +
-//		"on duplicate key update element = ?";
-//	@Override
-//	public void updateValue(UpdatableSeries<Double> series, Observation<Double> obs, ChronicleUpdatePolicy policy) throws KeyedException {
-//		boolean done = false;
-//		if (Double.isNaN(obs.getValue())) {
-//			deleteValue(series, obs.getTime(), policy);
-//			done = true;
-//		} else {
-//			try {
-//				check(Permission.MODIFY, series);
-//				insertOrUpdate = open(INSERT_OR_UPDATE, series, insertOrUpdate);
-//				insertOrUpdate.setInt(1, getId(series));
-//				insertOrUpdate.setInt(2, obs.getTime().asOffset());
-//				insertOrUpdate.setDouble(3, obs.getValue());
-//				insertOrUpdate.setDouble(4, obs.getValue());
-//				insertOrUpdate.execute();
-//				done = insertOrUpdate.getUpdateCount() > 0;
-//			} catch (SQLException e) {
-//				throw new LegacyException(e, 10030);
-//			} finally {
-//				insertOrUpdate = close(insertOrUpdate);
-//			}
-//		}
-//		if (!done)
-//			throw new LegacyException(409874, series.getName(true), obs.getTime().toString());
-//	}
+	private boolean upsertValue(String sql, UpdatableSeries<Double> series, Observation<Double> obs) throws T2DBException {
+		PreparedStatement upsert_value = null;
+		boolean done = false;
+		try {
+			check(Permission.MODIFY, series);
+			upsert_value = open(sql, series, upsert_value);
+			upsert_value.setInt(1, getId(series));
+			upsert_value.setInt(2, obs.getTime().asOffset());
+			upsert_value.setDouble(3, obs.getValue());
+			upsert_value.execute();
+			done = upsert_value.getUpdateCount() > 0;
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50110, series.getName(true), obs.getTime().toString());
+		} finally {
+			upsert_value = close(upsert_value);
+		}
+		return done;
+	}
 
 	@Override
 	public long updateValues(UpdatableSeries<Double> series, TimeAddressable<Double> values, ChronicleUpdatePolicy policy) throws T2DBException {
+		invalidate(series);
+		Header header = loadHeaderForUpdate(series);
+		if (isAppend(series, values, header)) {
+			long count = appendValuesInBatches(series, values, policy, header);
+			storeHeader(series, header);
+			return count;
+		}
+		if (header != null) {
+			// only this method knows whether values were inserted or updated
+			long count = updateValuesInBatches(series, values, policy, header);
+			storeHeader(series, header);
+			return count;
+		}
+		if (batchSize > 0) {
+			String upsert = route(getDialect(series).getUpsertValueSQL(DB.VALUE_DOUBLE), series);
+			if (upsert != null)
+				return upsertValuesInBatches(upsert, series, values, policy);
+			else
+				return updateValuesInBatches(series, values, policy);
+		}
 		long count = 0;
 		for(Observation<Double> obs : values) {
 			boolean done = false;
@@ -354,4 +1575,442 @@ public class AccessMethodsForNumber extends JDBCDatabaseMethods implements Value
 		return count;
 	}
 	
+	/**
+	 * The smallest number of observations for which an update without a
+	 * header looks up the last date stored to find out whether it only
+	 * appends values. With fewer observations, the extra round trip costs
+	 * more than the plain inserts save.
+	 */
+	protected static final int MIN_APPEND_PROBE = 32;
+	
+	private static final String SELECT_LAST_DATE = 
+		"select max(date) from " + DB.VALUE_DOUBLE + " where series = ?";
+	/**
+	 * Return true if all observations are later than the last value stored.
+	 * The last date is taken from the header when available, else it is
+	 * looked up with a query using only the primary key index, but only when
+	 * there are at least {@link #MIN_APPEND_PROBE} observations.
+	 * 
+	 * @param series a series
+	 * @param values a time addressable with new values and missing values for values to delete
+	 * @param header the header of the series or null
+	 * @return true if the update only appends values
+	 * @throws T2DBException
+	 */
+	protected boolean isAppend(Series<Double> series, TimeAddressable<Double> values, Header header) throws T2DBException {
+		PreparedStatement select_last_date = null;
+		Iterator<Observation<Double>> it = values.iterator();
+		if (!it.hasNext())
+			return false;
+		try {
+			int first = it.next().getTime().asOffset();
+			if (header != null)
+				return header.count == 0 || first > header.last;
+			if (values.getSize() < MIN_APPEND_PROBE)
+				return false;
+			check(Permission.READ, series);
+			select_last_date = open(route(SELECT_LAST_DATE, series), series, select_last_date);
+			select_last_date.setInt(1, getId(series));
+			ResultSet rs = select_last_date.executeQuery();
+			boolean append = true;
+			if (rs.next()) {
+				int last = rs.getInt(1);
+				append = rs.wasNull() || first > last;
+			}
+			rs.close();
+			return append;
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		} finally {
+			select_last_date = close(select_last_date);
+		}
+	}
+	
+	/**
+	 * Append values using JDBC batches of plain inserts. All observations
+	 * must be later than the last value stored, so that no value can be
+	 * updated or deleted. Missing values are skipped after consulting the
+	 * policy, exactly as in the general case. When the batch size is 0,
+	 * values are inserted one by one.
+	 * 
+	 * @param series a series
+	 * @param values a time addressable with new values
+	 * @param policy a policy
+	 * @param header the header of the series or null
+	 * @return the number of values inserted
+	 * @throws T2DBException
+	 */
+	private long appendValuesInBatches(UpdatableSeries<Double> series, TimeAddressable<Double> values, ChronicleUpdatePolicy policy, Header header) throws T2DBException {
+		PreparedStatement batch_append = null;
+		long count = 0;
+		try {
+			check(Permission.MODIFY, series);
+			int sid = getId(series);
+			batch_append = open(route(INSERT_VALUE, series), series, batch_append);
+			int inserts = 0;
+			for (Observation<Double> obs : values) {
+				Double v = obs.getValue();
+				if (values.isMissing(v)) {
+					policy.willDelete(series, obs.getTime());
+					policy.deleteValue(series, obs.getTime());
+					continue;
+				}
+				if (v == null || Double.isNaN(v))
+					throw new IllegalArgumentException("value null or NaN");
+				int t = obs.getTime().asOffset();
+				batch_append.setInt(1, sid);
+				batch_append.setInt(2, t);
+				batch_append.setDouble(3, v);
+				inserts = add(batch_append, inserts);
+				count++;
+				if (header != null)
+					header.inserted(t, v);
+			}
+			if (inserts > 0)
+				batch_append.executeBatch();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		} finally {
+			batch_append = close(batch_append);
+		}
+		return count;
+	}
+	
+	/**
+	 * Update values using JDBC batches. Values stored in the range of the
+	 * update are read first, which allows to decide for each observation
+	 * whether to insert, update or delete. Values equal to stored values are
+	 * skipped. The policy is consulted exactly as when writing values one by
+	 * one, and the number of values changed is the same. Observations are
+	 * expected in ascending time order, which is how time series iterate.
+	 * 
+	 * @param series a series
+	 * @param values a time addressable with new values and missing values for values to delete 
+	 * @param policy a policy
+	 * @return the number of values inserted, updated, or deleted
+	 * @throws T2DBException
+	 */
+	protected long updateValuesInBatches(UpdatableSeries<Double> series, TimeAddressable<Double> values, ChronicleUpdatePolicy policy) throws T2DBException {
+		return updateValuesInBatches(series, values, policy, null);
+	}
+	
+	private long updateValuesInBatches(UpdatableSeries<Double> series, TimeAddressable<Double> values, ChronicleUpdatePolicy policy, Header header) throws T2DBException {
+		PreparedStatement batch_select = null;
+		PreparedStatement batch_insert = null;
+		PreparedStatement batch_update = null;
+		PreparedStatement batch_delete = null;
+		long count = 0;
+		try {
+			check(Permission.MODIFY, series);
+			int sid = getId(series);
+			List<Observation<Double>> observations = new ArrayList<Observation<Double>>(values.getSize());
+			for (Observation<Double> obs : values) {
+				observations.add(obs);
+			}
+			if (observations.size() == 0)
+				return 0;
+			
+			// read stored values in the range of the update
+			int[] storedTimes = new int[observations.size()];
+			double[] storedValues = new double[observations.size()];
+			int storedSize = 0;
+			batch_select = open(route(SELECT_DOUBLE_BY_RANGE, series), series, batch_select);
+			batch_select.setInt(1, sid);
+			batch_select.setInt(2, observations.get(0).getTime().asOffset());
+			batch_select.setInt(3, observations.get(observations.size() - 1).getTime().asOffset());
+			ResultSet rs = batch_select.executeQuery();
+			while (rs.next()) {
+				if (storedSize == storedTimes.length) {
+					storedTimes = Arrays.copyOf(storedTimes, 2 * storedSize);
+					storedValues = Arrays.copyOf(storedValues, 2 * storedSize);
+				}
+				storedTimes[storedSize] = rs.getInt(1);
+				storedValues[storedSize] = rs.getDouble(2);
+				storedSize++;
+			}
+			rs.close();
+			batch_select = close(batch_select);
+
+			batch_insert = open(route(INSERT_VALUE, series), series, batch_insert);
+			batch_update = open(route(UPDATE_VALUE, series), series, batch_update);
+			batch_delete = open(route(DELETE_VALUES_BY_T, series), series, batch_delete);
+			int inserts = 0;
+			int updates = 0;
+			int deletes = 0;
+			int j = 0;
+			for (Observation<Double> obs : observations) {
+				int t = obs.getTime().asOffset();
+				while (j < storedSize && storedTimes[j] < t)
+					j++;
+				boolean stored = j < storedSize && storedTimes[j] == t;
+				Double v = obs.getValue();
+				if (values.isMissing(v)) {
+					policy.willDelete(series, obs.getTime());
+					policy.deleteValue(series, obs.getTime());
+					if (stored) {
+						batch_delete.setInt(1, sid);
+						batch_delete.setInt(2, t);
+						deletes = add(batch_delete, deletes);
+						count++;
+						if (header != null)
+							header.deleted(t);
+					}
+				} else {
+					if (v == null || Double.isNaN(v))
+						throw new IllegalArgumentException("value null or NaN");
+					if (!stored) {
+						batch_insert.setInt(1, sid);
+						batch_insert.setInt(2, t);
+						batch_insert.setDouble(3, v);
+						inserts = add(batch_insert, inserts);
+						count++;
+						if (header != null)
+							header.inserted(t, v);
+					} else if (storedValues[j] != v) {
+						batch_update.setDouble(1, v);
+						batch_update.setInt(2, sid);
+						batch_update.setInt(3, t);
+						batch_update.setDouble(4, v);
+						updates = add(batch_update, updates);
+						count++;
+						if (header != null)
+							header.updated(t, v);
+					}
+				}
+			}
+			if (inserts > 0)
+				batch_insert.executeBatch();
+			if (updates > 0)
+				batch_update.executeBatch();
+			if (deletes > 0)
+				batch_delete.executeBatch();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		} finally {
+			batch_select = close(batch_select);
+			batch_insert = close(batch_insert);
+			batch_update = close(batch_update);
+			batch_delete = close(batch_delete);
+		}
+		return count;
+	}
+	
+	/**
+	 * Add the current parameters of a statement to its batch and execute the
+	 * batch when it is full. When the batch size is 0, the statement is
+	 * executed immediately.
+	 * 
+	 * @param stmt a prepared statement with all parameters set
+	 * @param pending the number of statements in the batch
+	 * @return the number of statements in the batch after the call
+	 * @throws SQLException
+	 */
+	private int add(PreparedStatement stmt, int pending) throws SQLException {
+		return addBatch(stmt, pending, batchSize);
+	}
+	
+	/**
+	 * Update values using JDBC batches of native upsert statements. Missing
+	 * values are deleted in a second batch. The policy is consulted exactly as
+	 * when writing values one by one. The number of values changed is
+	 * computed from the update counts returned by the driver. When the driver
+	 * does not return update counts, all statements are counted.
+	 * 
+	 * @param sql the upsert statement of the dialect
+	 * @param series a series
+	 * @param values a time addressable with new values and missing values for values to delete 
+	 * @param policy a policy
+	 * @return the number of values inserted, updated, or deleted
+	 * @throws T2DBException
+	 */
+	protected long upsertValuesInBatches(String sql, UpdatableSeries<Double> series, TimeAddressable<Double> values, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement batch_upsert = null;
+		PreparedStatement batch_delete = null;
+		long count = 0;
+		try {
+			check(Permission.MODIFY, series);
+			int sid = getId(series);
+			batch_upsert = open(sql, series, batch_upsert);
+			batch_delete = open(route(DELETE_VALUES_BY_T, series), series, batch_delete);
+			int upserts = 0;
+			int deletes = 0;
+			for (Observation<Double> obs : values) {
+				Double v = obs.getValue();
+				if (values.isMissing(v)) {
+					policy.willDelete(series, obs.getTime());
+					policy.deleteValue(series, obs.getTime());
+					batch_delete.setInt(1, sid);
+					batch_delete.setInt(2, obs.getTime().asOffset());
+					batch_delete.addBatch();
+					deletes++;
+				} else {
+					if (v == null || Double.isNaN(v))
+						throw new IllegalArgumentException("value null or NaN");
+					batch_upsert.setInt(1, sid);
+					batch_upsert.setInt(2, obs.getTime().asOffset());
+					batch_upsert.setDouble(3, v);
+					batch_upsert.addBatch();
+					upserts++;
+				}
+				if (upserts == batchSize) {
+					count += countChanges(batch_upsert.executeBatch());
+					upserts = 0;
+				}
+				if (deletes == batchSize) {
+					count += countChanges(batch_delete.executeBatch());
+					deletes = 0;
+				}
+			}
+			if (upserts > 0)
+				count += countChanges(batch_upsert.executeBatch());
+			if (deletes > 0)
+				count += countChanges(batch_delete.executeBatch());
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		} finally {
+			batch_upsert = close(batch_upsert);
+			batch_delete = close(batch_delete);
+		}
+		return count;
+	}
+	
+	/**
+	 * Replace the values of a series with new values. Stored values are
+	 * read with a single streaming query and merged with the new values in
+	 * time order. Only the differences are written: values not yet stored
+	 * are inserted, values which changed are updated, and stored values
+	 * absent from the new values are deleted. Missing values among the new
+	 * values are treated as absent. The policy is consulted for each value
+	 * deleted.
+	 * <p>
+	 * The differences are collected in arrays and written in JDBC batches
+	 * once all stored values have been read, because some drivers do not
+	 * allow other statements on a connection while a result is being
+	 * streamed.
+	 * 
+	 * @param series a series
+	 * @param values a time addressable with the complete new content of the series
+	 * @param policy a policy
+	 * @return the number of values inserted, updated and deleted
+	 * @throws T2DBException
+	 */
+	public Changes replaceValues(UpdatableSeries<Double> series, TimeAddressable<Double> values, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement batch_insert = null;
+		PreparedStatement batch_update = null;
+		PreparedStatement batch_delete = null;
+		PreparedStatement select_double = null;
+		invalidate(series);
+		Header header = loadHeaderForUpdate(series);
+		Values inserts = new Values(0);
+		Values updates = new Values(0);
+		Values deletes = new Values(0);
+		try {
+			check(Permission.MODIFY, series);
+			int sid = getId(series);
+			select_double = open(route(SELECT_DOUBLE, series), series, select_double);
+			select_double.setInt(1, sid);
+			select_double.setFetchSize(getDialect(series).getFetchSize(fetchSize));
+			ResultSet rs = select_double.executeQuery();
+			Iterator<Observation<Double>> it = values.iterator();
+			Observation<Double> obs = nextValue(values, it);
+			boolean stored = rs.next();
+			while (stored || obs != null) {
+				int storedTime = stored ? rs.getInt(1) : 0;
+				int t = obs == null ? 0 : obs.getTime().asOffset();
+				if (stored && (obs == null || storedTime < t)) {
+					TimeIndex time = series.getTimeDomain().timeFromOffset(storedTime);
+					policy.willDelete(series, time);
+					policy.deleteValue(series, time);
+					deletes.add(storedTime, Double.NaN);
+					if (header != null)
+						header.deleted(storedTime);
+					stored = rs.next();
+				} else if (!stored || storedTime > t) {
+					double v = obs.getValue();
+					inserts.add(t, v);
+					if (header != null)
+						header.inserted(t, v);
+					obs = nextValue(values, it);
+				} else {
+					double v = obs.getValue();
+					if (rs.getDouble(2) != v) {
+						updates.add(t, v);
+						if (header != null)
+							header.updated(t, v);
+					}
+					stored = rs.next();
+					obs = nextValue(values, it);
+				}
+			}
+			rs.close();
+			select_double = close(select_double);
+			
+			int pending = 0;
+			if (inserts.size > 0) {
+				batch_insert = open(route(INSERT_VALUE, series), series, batch_insert);
+				for (int i = 0; i < inserts.size; i++) {
+					batch_insert.setInt(1, sid);
+					batch_insert.setInt(2, inserts.offsets[i]);
+					batch_insert.setDouble(3, inserts.values[i]);
+					pending = add(batch_insert, pending);
+				}
+				if (pending > 0)
+					batch_insert.executeBatch();
+				pending = 0;
+			}
+			if (updates.size > 0) {
+				batch_update = open(route(UPDATE_VALUE, series), series, batch_update);
+				for (int i = 0; i < updates.size; i++) {
+					batch_update.setDouble(1, updates.values[i]);
+					batch_update.setInt(2, sid);
+					batch_update.setInt(3, updates.offsets[i]);
+					batch_update.setDouble(4, updates.values[i]);
+					pending = add(batch_update, pending);
+				}
+				if (pending > 0)
+					batch_update.executeBatch();
+				pending = 0;
+			}
+			if (deletes.size > 0) {
+				batch_delete = open(route(DELETE_VALUES_BY_T, series), series, batch_delete);
+				for (int i = 0; i < deletes.size; i++) {
+					batch_delete.setInt(1, sid);
+					batch_delete.setInt(2, deletes.offsets[i]);
+					pending = add(batch_delete, pending);
+				}
+				if (pending > 0)
+					batch_delete.executeBatch();
+			}
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		} finally {
+			select_double = close(select_double);
+			batch_insert = close(batch_insert);
+			batch_update = close(batch_update);
+			batch_delete = close(batch_delete);
+		}
+		storeHeader(series, header);
+		return new Changes(inserts.size, updates.size, deletes.size);
+	}
+	
+	/**
+	 * Return the next observation which is not missing.
+	 * 
+	 * @param values a time addressable 
+	 * @param it an iterator on the time addressable
+	 * @return an observation or null when there are no more
+	 */
+	protected Observation<Double> nextValue(TimeAddressable<Double> values, Iterator<Observation<Double>> it) {
+		while (it.hasNext()) {
+			Observation<Double> obs = it.next();
+			Double v = obs.getValue();
+			if (values.isMissing(v))
+				continue;
+			if (v == null || Double.isNaN(v))
+				throw new IllegalArgumentException("value null or NaN");
+			return obs;
+		}
+		return null;
+	}
+	
 }
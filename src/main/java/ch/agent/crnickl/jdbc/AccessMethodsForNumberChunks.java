@@ -0,0 +1,871 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.T2DBMsg;
+import ch.agent.crnickl.T2DBMsg.E;
+import ch.agent.crnickl.api.Database;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.impl.ChronicleUpdatePolicy;
+import ch.agent.crnickl.impl.Permission;
+import ch.agent.crnickl.jdbc.T2DBJMsg.J;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.time.TimeDomain;
+import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+/**
+ * An implementation of {@link AccessMethodsForNumber} storing values in
+ * compressed chunks in the table <code>value_chunk</code> instead of one row
+ * per value in <code>value_double</code>. A chunk holds the values of a
+ * series in a fixed interval of time index offsets, the chunk size. The
+ * chunk number of an offset is the offset divided by the chunk size. Chunks
+ * are encoded with {@link ValueChunkCodec}.
+ * <p>
+ * Reads only fetch chunks overlapping the range requested. Updates read the
+ * chunks touched, merge the new values into them, and write back the chunks
+ * which changed. The chunk size must not be modified once a database contains
+ * chunks. The table is created with <code>sql/HyperSQL_DDL_chunk.sql</code>
+ * and existing values can be moved to it with {@link ValueChunkMigration}.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class AccessMethodsForNumberChunks extends AccessMethodsForNumber {
+
+	/**
+	 * The largest chunk size supported.
+	 */
+	public static final int MAX_CHUNK_SIZE = 4096;
+
+	private int chunkSize = 1024;
+
+	/**
+	 * Construct an access method object.
+	 */
+	public AccessMethodsForNumberChunks() {
+	}
+
+	/**
+	 * Set the number of time index offsets covered by a chunk.
+	 *
+	 * @param chunkSize a positive number not larger than {@link #MAX_CHUNK_SIZE}
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE)
+			throw new IllegalArgumentException("chunkSize < 1 or chunkSize > " + MAX_CHUNK_SIZE);
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Return the number of time index offsets covered by a chunk.
+	 *
+	 * @return the chunk size
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Return the number of the chunk containing a time index offset.
+	 *
+	 * @param offset a time index offset
+	 * @return a chunk number
+	 */
+	protected int chunkOf(int offset) {
+		int chunk = offset / chunkSize;
+		if (offset < 0 && chunk * chunkSize != offset)
+			chunk--;
+		return chunk;
+	}
+
+	private static final String SELECT_RANGE =
+		"select min(first_date), max(last_date) from " + DB.VALUE_CHUNK + " where series = ?";
+	@Override
+	protected Range findRange(Series<Double> series) throws T2DBException {
+		PreparedStatement select_range = null;
+		Range range = null;
+		TimeDomain timeDomain = series.getTimeDomain();
+		try {
+			select_range = open(SELECT_RANGE, series, select_range);
+			select_range.setInt(1, getId(series));
+			ResultSet rs = select_range.executeQuery();
+			if (rs.next()) {
+				range = new Range(timeDomain.timeFromOffset(rs.getInt(1)), timeDomain.timeFromOffset(rs.getInt(2)));
+				if (rs.wasNull())
+					range = null;
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50122, series.getName(true));
+		} finally {
+			select_range = close(select_range);
+		}
+		if (range == null)
+			range = new Range(series.getTimeDomain());
+		return range;
+	}
+
+	private static final String SELECT_COUNT =
+		"select sum(nvalues) from " + DB.VALUE_CHUNK + " where series = ?";
+	@Override
+	protected long findCount(Series<Double> series) throws T2DBException {
+		PreparedStatement select_count = null;
+		long count = 0;
+		try {
+			select_count = open(SELECT_COUNT, series, select_count);
+			select_count.setInt(1, getId(series));
+			ResultSet rs = select_count.executeQuery();
+			if (rs.next())
+				count = rs.getLong(1);
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50121, series.getName(true));
+		} finally {
+			select_count = close(select_count);
+		}
+		return count;
+	}
+
+	private static final String REBUILD_DELETE =
+		"delete from " + DB.SERIES_STATS;
+	private static final String REBUILD_SELECT =
+		"select series, min(chunk), max(chunk), sum(nvalues) from " + DB.VALUE_CHUNK + " group by series";
+	private static final String REBUILD_CHUNK =
+		"select data from " + DB.VALUE_CHUNK + " where series = ? and chunk = ?";
+	private static final String REBUILD_INSERT =
+		"insert into " + DB.SERIES_STATS + " (series, first_date, last_date, first_value, last_value, nvalues) values(?, ?, ?, ?, ?, ?)";
+	/**
+	 * Recompute the headers of all series. The first and the last chunk of
+	 * each series are decoded.
+	 */
+	@Override
+	public int rebuildStats(Database database) throws T2DBException {
+		PreparedStatement rebuild_delete = null;
+		PreparedStatement rebuild_select = null;
+		PreparedStatement rebuild_chunk = null;
+		PreparedStatement rebuild_insert = null;
+		int count = 0;
+		try {
+			rebuild_delete = open(REBUILD_DELETE, database, rebuild_delete);
+			rebuild_delete.execute();
+			List<int[]> summaries = new ArrayList<int[]>();
+			rebuild_select = open(REBUILD_SELECT, database, rebuild_select);
+			ResultSet rs = rebuild_select.executeQuery();
+			while (rs.next()) {
+				summaries.add(new int[] {rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4)});
+			}
+			rs.close();
+			rebuild_chunk = open(REBUILD_CHUNK, database, rebuild_chunk);
+			rebuild_insert = open(REBUILD_INSERT, database, rebuild_insert);
+			int[] offsets = new int[chunkSize];
+			double[] values = new double[chunkSize];
+			for (int[] summary : summaries) {
+				rebuild_insert.setInt(1, summary[0]);
+				for (int i = 0; i < 2; i++) {
+					rebuild_chunk.setInt(1, summary[0]);
+					rebuild_chunk.setInt(2, summary[1 + i]);
+					rs = rebuild_chunk.executeQuery();
+					rs.next();
+					byte[] data = rs.getBytes(1);
+					rs.close();
+					int size = ValueChunkCodec.size(data);
+					if (size > offsets.length) {
+						offsets = new int[size];
+						values = new double[size];
+					}
+					ValueChunkCodec.decode(data, offsets, values, 0);
+					int k = i == 0 ? 0 : size - 1;
+					rebuild_insert.setInt(2 + i, offsets[k]);
+					rebuild_insert.setDouble(4 + i, values[k]);
+				}
+				rebuild_insert.setInt(6, summary[3]);
+				rebuild_insert.execute();
+				count++;
+			}
+		} catch (Exception e) {
+			throw T2DBJMsg.exception(e, J.J00116, database.toString());
+		} finally {
+			rebuild_delete = close(rebuild_delete);
+			rebuild_select = close(rebuild_select);
+			rebuild_chunk = close(rebuild_chunk);
+			rebuild_insert = close(rebuild_insert);
+		}
+		return count;
+	}
+
+	private static final String SELECT_CHUNKS =
+		"select chunk, data from " + DB.VALUE_CHUNK +
+		" where series = ? and chunk between ? and ? order by chunk";
+	@Override
+	protected long findValues(Series<Double> series, Range range, TimeAddressable<Double> ts) throws T2DBException {
+		PreparedStatement select_chunks = null;
+		long count = 0;
+		try {
+			check(Permission.READ, series);
+			int first = Integer.MIN_VALUE;
+			int last = Integer.MAX_VALUE;
+			if (range != null) {
+				first = range.getFirst().asOffset();
+				last = range.getLast().asOffset();
+			}
+			select_chunks = open(SELECT_CHUNKS, series, select_chunks);
+			select_chunks.setInt(1, getId(series));
+			select_chunks.setInt(2, chunkOf(first));
+			select_chunks.setInt(3, chunkOf(last));
+			ResultSet rs = select_chunks.executeQuery();
+			int[] offsets = new int[chunkSize];
+			double[] values = new double[chunkSize];
+			while (rs.next()) {
+				byte[] chunk = rs.getBytes(2);
+				int size = ValueChunkCodec.size(chunk);
+				if (size > offsets.length) {
+					offsets = new int[size];
+					values = new double[size];
+				}
+				ValueChunkCodec.decode(chunk, offsets, values, 0);
+				for (int i = 0; i < size; i++) {
+					if (offsets[i] >= first && offsets[i] <= last) {
+						ts.put(offsets[i], values[i]);
+						count++;
+					}
+				}
+			}
+			rs.close();
+		} catch (Exception e) {
+			if (range == null)
+				throw T2DBMsg.exception(e, E.E50121, series.getName(true));
+			else
+				throw T2DBMsg.exception(e, E.E50120, series.getName(true), range.toString());
+		} finally {
+			select_chunks = close(select_chunks);
+		}
+		return count;
+	}
+
+	@Override
+	public int getValues(Series<Double> series, int first, int last, int[] offsets, double[] values) throws T2DBException {
+		PreparedStatement select_chunks = null;
+		if (values.length < offsets.length)
+			throw new IllegalArgumentException("values.length < offsets.length");
+		int capacity = offsets.length;
+		if (first > last || capacity == 0)
+			return 0;
+		int count = 0;
+		try {
+			check(Permission.READ, series);
+			select_chunks = open(SELECT_CHUNKS, series, select_chunks);
+			select_chunks.setInt(1, getId(series));
+			select_chunks.setInt(2, chunkOf(first));
+			select_chunks.setInt(3, chunkOf(last));
+			ResultSet rs = select_chunks.executeQuery();
+			int[] chunkOffsets = new int[chunkSize];
+			double[] chunkValues = new double[chunkSize];
+			while (count < capacity && rs.next()) {
+				byte[] chunk = rs.getBytes(2);
+				int size = ValueChunkCodec.size(chunk);
+				if (size > chunkOffsets.length) {
+					chunkOffsets = new int[size];
+					chunkValues = new double[size];
+				}
+				ValueChunkCodec.decode(chunk, chunkOffsets, chunkValues, 0);
+				for (int i = 0; i < size && count < capacity; i++) {
+					if (chunkOffsets[i] >= first && chunkOffsets[i] <= last) {
+						offsets[count] = chunkOffsets[i];
+						values[count] = chunkValues[i];
+						count++;
+					}
+				}
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50120, series.getName(true), String.format("[%d, %d]", first, last));
+		} finally {
+			select_chunks = close(select_chunks);
+		}
+		return count;
+	}
+
+	/**
+	 * Read values of many series in one range. Chunks are read series by
+	 * series.
+	 */
+	@Override
+	public long getValues(Map<? extends Series<Double>, ? extends TimeAddressable<Double>> panel, Range range) throws T2DBException {
+		long count = 0;
+		for (Map.Entry<? extends Series<Double>, ? extends TimeAddressable<Double>> entry : panel.entrySet()) {
+			count += getValues(entry.getKey(), range, entry.getValue());
+		}
+		return count;
+	}
+
+	/**
+	 * Aggregate values by bucket. Chunks cannot be aggregated by the
+	 * database, so they are decoded and aggregated in a single pass.
+	 */
+	@Override
+	public long getAggregates(Series<Double> series, Range range, Map<Aggregation, ? extends TimeAddressable<Double>> results) throws T2DBException {
+		PreparedStatement select_chunks = null;
+		if (results.isEmpty())
+			return 0;
+		if (range == null)
+			range = getRange(series);
+		if (range.isEmpty())
+			return 0;
+		long buckets = 0;
+		try {
+			check(Permission.READ, series);
+			int[] limits = makeBuckets(range, bucketDomain(results));
+			int first = limits[1];
+			int last = limits[limits.length - 1];
+			select_chunks = open(SELECT_CHUNKS, series, select_chunks);
+			select_chunks.setInt(1, getId(series));
+			select_chunks.setInt(2, chunkOf(first));
+			select_chunks.setInt(3, chunkOf(last));
+			ResultSet rs = select_chunks.executeQuery();
+			int[] offsets = new int[chunkSize];
+			double[] values = new double[chunkSize];
+			int b = 0;
+			long count = 0;
+			double sum = 0, min = 0, max = 0, firstValue = 0, lastValue = 0;
+			while (rs.next()) {
+				byte[] chunk = rs.getBytes(2);
+				int size = ValueChunkCodec.size(chunk);
+				if (size > offsets.length) {
+					offsets = new int[size];
+					values = new double[size];
+				}
+				ValueChunkCodec.decode(chunk, offsets, values, 0);
+				for (int i = 0; i < size; i++) {
+					if (offsets[i] < first || offsets[i] > last)
+						continue;
+					while (offsets[i] > limits[b + 2]) {
+						if (count > 0) {
+							putAggregates(results, limits[b], count, sum, min, max, firstValue, lastValue);
+							buckets++;
+							count = 0;
+						}
+						b += 3;
+					}
+					double value = values[i];
+					if (count == 0) {
+						sum = 0;
+						min = value;
+						max = value;
+						firstValue = value;
+					}
+					count++;
+					sum += value;
+					if (value < min)
+						min = value;
+					if (value > max)
+						max = value;
+					lastValue = value;
+				}
+			}
+			rs.close();
+			if (count > 0) {
+				putAggregates(results, limits[b], count, sum, min, max, firstValue, lastValue);
+				buckets++;
+			}
+		} catch (Exception e) {
+			throw T2DBJMsg.exception(e, J.J00117, series.getName(true), range.toString());
+		} finally {
+			select_chunks = close(select_chunks);
+		}
+		return buckets;
+	}
+
+	private static final String SELECT_FIRST_CHUNK =
+		"select data from " + DB.VALUE_CHUNK + " where series = ? and chunk = " +
+		"(select min(chunk) from " + DB.VALUE_CHUNK + " where series = ? and last_date >= ?)";
+	@Override
+	protected Observation<Double> findFirst(Series<Double> series, TimeIndex time) throws T2DBException {
+		PreparedStatement select_first_chunk = null;
+		Observation<Double> obs = null;
+		try {
+			check(Permission.READ, series);
+			int sid = getId(series);
+			int t = time == null ? Integer.MIN_VALUE : time.asOffset();
+			select_first_chunk = open(SELECT_FIRST_CHUNK, series, select_first_chunk);
+			select_first_chunk.setInt(1, sid);
+			select_first_chunk.setInt(2, sid);
+			select_first_chunk.setInt(3, t);
+			ResultSet rs = select_first_chunk.executeQuery();
+			if (rs.next()) {
+				byte[] chunk = rs.getBytes(1);
+				int size = ValueChunkCodec.size(chunk);
+				int[] offsets = new int[size];
+				double[] values = new double[size];
+				ValueChunkCodec.decode(chunk, offsets, values, 0);
+				for (int i = 0; i < size; i++) {
+					if (offsets[i] >= t) {
+						TimeDomain dom = time == null ? series.getTimeDomain() : time.getTimeDomain();
+						obs = new Observation<Double>(dom.timeFromOffset(offsets[i]), values[i]);
+						break;
+					}
+				}
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50123, series.getName(true), String.valueOf(time));
+		} finally {
+			select_first_chunk = close(select_first_chunk);
+		}
+		return obs;
+	}
+
+	private static final String SELECT_LAST_CHUNK =
+		"select data from " + DB.VALUE_CHUNK + " where series = ? and chunk = " +
+		"(select max(chunk) from " + DB.VALUE_CHUNK + " where series = ? and first_date <= ?)";
+	@Override
+	protected Observation<Double> findLast(Series<Double> series, TimeIndex time) throws T2DBException {
+		PreparedStatement select_last_chunk = null;
+		Observation<Double> obs = null;
+		try {
+			check(Permission.READ, series);
+			int sid = getId(series);
+			int t = time == null ? Integer.MAX_VALUE : time.asOffset();
+			select_last_chunk = open(SELECT_LAST_CHUNK, series, select_last_chunk);
+			select_last_chunk.setInt(1, sid);
+			select_last_chunk.setInt(2, sid);
+			select_last_chunk.setInt(3, t);
+			ResultSet rs = select_last_chunk.executeQuery();
+			if (rs.next()) {
+				byte[] chunk = rs.getBytes(1);
+				int size = ValueChunkCodec.size(chunk);
+				int[] offsets = new int[size];
+				double[] values = new double[size];
+				ValueChunkCodec.decode(chunk, offsets, values, 0);
+				for (int i = size - 1; i >= 0; i--) {
+					if (offsets[i] <= t) {
+						TimeDomain dom = time == null ? series.getTimeDomain() : time.getTimeDomain();
+						obs = new Observation<Double>(dom.timeFromOffset(offsets[i]), values[i]);
+						break;
+					}
+				}
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50124, series.getName(true), String.valueOf(time));
+		} finally {
+			select_last_chunk = close(select_last_chunk);
+		}
+		return obs;
+	}
+
+	@Override
+	public boolean deleteValue(UpdatableSeries<Double> series, TimeIndex t, ChronicleUpdatePolicy policy) throws T2DBException {
+		int offset;
+		try {
+			check(Permission.MODIFY, series);
+			policy.willDelete(series, t);
+			policy.deleteValue(series, t);
+			offset = t.asOffset();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50113, series.getName(true), t.toString());
+		}
+		Header header = loadHeaderForUpdate(series);
+		boolean done = merge(series, new int[] {offset}, new double[] {Double.NaN}, 1, header) > 0;
+		storeHeader(series, header);
+		return done;
+	}
+
+	private static final String DELETE_ALL_CHUNKS =
+		"delete from " + DB.VALUE_CHUNK + " where series = ?";
+	private static final String DELETE_CHUNKS_OUTSIDE =
+		"delete from " + DB.VALUE_CHUNK + " where series = ? and (chunk < ? or chunk > ?)";
+	@Override
+	public boolean updateSeries(UpdatableSeries<Double> series, Range range, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement delete_all_chunks = null;
+		PreparedStatement delete_chunks_outside = null;
+		PreparedStatement select_chunks = null;
+		invalidate(series);
+		boolean done = false;
+		int[] offsets = new int[0];
+		int count = 0;
+		try {
+			int id = getId(series);
+			check(Permission.MODIFY, series);
+			policy.willUpdate(series, range);
+			done = policy.update(series, range);
+			if (range.isEmpty()) {
+				delete_all_chunks = open(DELETE_ALL_CHUNKS, series, delete_all_chunks);
+				delete_all_chunks.setInt(1, id);
+				delete_all_chunks.execute();
+				if (delete_all_chunks.getUpdateCount() > 0)
+					done = true;
+			} else {
+				int first = range.getFirst().asOffset();
+				int last = range.getLast().asOffset();
+				delete_chunks_outside = open(DELETE_CHUNKS_OUTSIDE, series, delete_chunks_outside);
+				delete_chunks_outside.setInt(1, id);
+				delete_chunks_outside.setInt(2, chunkOf(first));
+				delete_chunks_outside.setInt(3, chunkOf(last));
+				delete_chunks_outside.execute();
+				if (delete_chunks_outside.getUpdateCount() > 0)
+					done = true;
+				// find values outside the range in the boundary chunks
+				select_chunks = open(SELECT_CHUNKS, series, select_chunks);
+				select_chunks.setInt(1, id);
+				select_chunks.setInt(2, chunkOf(first));
+				select_chunks.setInt(3, chunkOf(last));
+				ResultSet rs = select_chunks.executeQuery();
+				while (rs.next()) {
+					int chunk = rs.getInt(1);
+					if (chunk != chunkOf(first) && chunk != chunkOf(last))
+						continue;
+					byte[] data = rs.getBytes(2);
+					int size = ValueChunkCodec.size(data);
+					int[] chunkOffsets = new int[size];
+					double[] chunkValues = new double[size];
+					ValueChunkCodec.decode(data, chunkOffsets, chunkValues, 0);
+					for (int i = 0; i < size; i++) {
+						if (chunkOffsets[i] < first || chunkOffsets[i] > last) {
+							if (count == offsets.length) {
+								int[] larger = new int[2 * count + 16];
+								System.arraycopy(offsets, 0, larger, 0, count);
+								offsets = larger;
+							}
+							offsets[count++] = chunkOffsets[i];
+						}
+					}
+				}
+				rs.close();
+			}
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50109, series.getName(true));
+		} finally {
+			delete_all_chunks = close(delete_all_chunks);
+			delete_chunks_outside = close(delete_chunks_outside);
+			select_chunks = close(select_chunks);
+		}
+		if (count > 0) {
+			double[] nothing = new double[count];
+			for (int i = 0; i < count; i++) {
+				nothing[i] = Double.NaN;
+			}
+			if (merge(series, offsets, nothing, count, null) > 0)
+				done = true;
+		}
+		if (done && isSeriesStats())
+			rebuildStats(series);
+		return done;
+	}
+
+	@Override
+	public long updateValues(UpdatableSeries<Double> series, TimeAddressable<Double> values, ChronicleUpdatePolicy policy) throws T2DBException {
+		int[] offsets = new int[values.getSize()];
+		double[] elements = new double[offsets.length];
+		int count = 0;
+		try {
+			check(Permission.MODIFY, series);
+			for (Observation<Double> obs : values) {
+				Double v = obs.getValue();
+				if (values.isMissing(v)) {
+					policy.willDelete(series, obs.getTime());
+					policy.deleteValue(series, obs.getTime());
+					v = Double.NaN;
+				} else if (v == null || Double.isNaN(v))
+					throw new IllegalArgumentException("value null or NaN");
+				if (count == offsets.length) {
+					int[] largerOffsets = new int[2 * count + 16];
+					double[] largerElements = new double[largerOffsets.length];
+					System.arraycopy(offsets, 0, largerOffsets, 0, count);
+					System.arraycopy(elements, 0, largerElements, 0, count);
+					offsets = largerOffsets;
+					elements = largerElements;
+				}
+				offsets[count] = obs.getTime().asOffset();
+				elements[count] = v;
+				count++;
+			}
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		}
+		Header header = loadHeaderForUpdate(series);
+		long changes = merge(series, offsets, elements, count, header);
+		storeHeader(series, header);
+		return changes;
+	}
+
+	/**
+	 * Replace the values of a series. All chunks are read and decoded with a
+	 * single query to find the differences, then only the chunks with
+	 * differences are merged.
+	 */
+	@Override
+	public Changes replaceValues(UpdatableSeries<Double> series, TimeAddressable<Double> values, ChronicleUpdatePolicy policy) throws T2DBException {
+		Values stored = readValues(series);
+		Values changes = new Values(0);
+		long inserted = 0;
+		long updated = 0;
+		long deleted = 0;
+		try {
+			check(Permission.MODIFY, series);
+			Iterator<Observation<Double>> it = values.iterator();
+			Observation<Double> obs = nextValue(values, it);
+			int j = 0;
+			while (j < stored.size || obs != null) {
+				int t = obs == null ? 0 : obs.getTime().asOffset();
+				if (j < stored.size && (obs == null || stored.offsets[j] < t)) {
+					int offset = stored.offsets[j++];
+					TimeIndex time = series.getTimeDomain().timeFromOffset(offset);
+					policy.willDelete(series, time);
+					policy.deleteValue(series, time);
+					changes.add(offset, Double.NaN);
+					deleted++;
+				} else if (j == stored.size || stored.offsets[j] > t) {
+					changes.add(t, obs.getValue());
+					inserted++;
+					obs = nextValue(values, it);
+				} else {
+					double element = obs.getValue();
+					obs = nextValue(values, it);
+					if (stored.values[j++] == element)
+						continue;
+					changes.add(t, element);
+					updated++;
+				}
+			}
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		}
+		Header header = loadHeaderForUpdate(series);
+		merge(series, changes.offsets, changes.values, changes.size, header);
+		storeHeader(series, header);
+		return new Changes(inserted, updated, deleted);
+	}
+
+	/**
+	 * Read all values of a series by decoding all its chunks.
+	 */
+	@Override
+	Values readValues(Series<Double> series) throws T2DBException {
+		PreparedStatement select_chunks = null;
+		Values result = new Values(chunkSize);
+		try {
+			check(Permission.READ, series);
+			select_chunks = open(SELECT_CHUNKS, series, select_chunks);
+			select_chunks.setInt(1, getId(series));
+			select_chunks.setInt(2, chunkOf(Integer.MIN_VALUE));
+			select_chunks.setInt(3, chunkOf(Integer.MAX_VALUE));
+			ResultSet rs = select_chunks.executeQuery();
+			int[] offsets = new int[chunkSize];
+			double[] values = new double[chunkSize];
+			while (rs.next()) {
+				byte[] chunk = rs.getBytes(2);
+				int size = ValueChunkCodec.size(chunk);
+				if (size > offsets.length) {
+					offsets = new int[size];
+					values = new double[size];
+				}
+				ValueChunkCodec.decode(chunk, offsets, values, 0);
+				for (int i = 0; i < size; i++) {
+					result.add(offsets[i], values[i]);
+				}
+			}
+			rs.close();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50121, series.getName(true));
+		} finally {
+			select_chunks = close(select_chunks);
+		}
+		return result;
+	}
+
+	private static final String INSERT_CHUNK =
+		"insert into " + DB.VALUE_CHUNK + " (series, chunk, first_date, last_date, nvalues, data) values(?, ?, ?, ?, ?, ?)";
+	private static final String UPDATE_CHUNK =
+		"update " + DB.VALUE_CHUNK + " set first_date = ?, last_date = ?, nvalues = ?, data = ? where series = ? and chunk = ?";
+	private static final String DELETE_CHUNK =
+		"delete from " + DB.VALUE_CHUNK + " where series = ? and chunk = ?";
+	/**
+	 * Merge values into the chunks of a series. A NaN value deletes the value
+	 * at its offset. The chunks touched are read with a single query, and
+	 * chunks which changed are written back with JDBC batches. The policy must
+	 * have been consulted by the caller.
+	 *
+	 * @param series a series
+	 * @param offsets an array of time index offsets in ascending order
+	 * @param values an array of values, NaN for values to delete
+	 * @param count the number of elements to use in the arrays
+	 * @param header the header of the series or null
+	 * @return the number of values inserted, updated, or deleted
+	 * @throws T2DBException
+	 */
+	protected long merge(UpdatableSeries<Double> series, int[] offsets, double[] values, int count, Header header) throws T2DBException {
+		PreparedStatement merge_select = null;
+		PreparedStatement insert_chunk = null;
+		PreparedStatement update_chunk = null;
+		PreparedStatement delete_chunk = null;
+		invalidate(series);
+		if (count == 0)
+			return 0;
+		long changes = 0;
+		try {
+			int sid = getId(series);
+			Map<Integer, byte[]> stored = new HashMap<Integer, byte[]>();
+			merge_select = open(SELECT_CHUNKS, series, merge_select);
+			merge_select.setInt(1, sid);
+			merge_select.setInt(2, chunkOf(offsets[0]));
+			merge_select.setInt(3, chunkOf(offsets[count - 1]));
+			ResultSet rs = merge_select.executeQuery();
+			while (rs.next()) {
+				stored.put(rs.getInt(1), rs.getBytes(2));
+			}
+			rs.close();
+			merge_select = close(merge_select);
+
+			insert_chunk = open(INSERT_CHUNK, series, insert_chunk);
+			update_chunk = open(UPDATE_CHUNK, series, update_chunk);
+			delete_chunk = open(DELETE_CHUNK, series, delete_chunk);
+			int limit = getBatchSize() > 0 ? getBatchSize() : 1;
+			int inserts = 0;
+			int updates = 0;
+			int deletes = 0;
+			int[] storedOffsets = new int[chunkSize];
+			double[] storedValues = new double[chunkSize];
+			int[] mergedOffsets = new int[chunkSize];
+			double[] mergedValues = new double[chunkSize];
+			int start = 0;
+			while (start < count) {
+				int chunk = chunkOf(offsets[start]);
+				int end = start + 1;
+				while (end < count && chunkOf(offsets[end]) == chunk)
+					end++;
+				byte[] data = stored.get(chunk);
+				int storedSize = 0;
+				if (data != null) {
+					storedSize = ValueChunkCodec.size(data);
+					if (storedSize > storedOffsets.length) {
+						storedOffsets = new int[storedSize];
+						storedValues = new double[storedSize];
+					}
+					ValueChunkCodec.decode(data, storedOffsets, storedValues, 0);
+				}
+				if (storedSize + end - start > mergedOffsets.length) {
+					mergedOffsets = new int[storedSize + end - start];
+					mergedValues = new double[mergedOffsets.length];
+				}
+				int mergedSize = 0;
+				int chunkChanges = 0;
+				int i = 0;
+				int j = start;
+				while (i < storedSize || j < end) {
+					if (j == end || (i < storedSize && storedOffsets[i] < offsets[j])) {
+						mergedOffsets[mergedSize] = storedOffsets[i];
+						mergedValues[mergedSize++] = storedValues[i++];
+					} else if (i == storedSize || offsets[j] < storedOffsets[i]) {
+						if (!Double.isNaN(values[j])) {
+							mergedOffsets[mergedSize] = offsets[j];
+							mergedValues[mergedSize++] = values[j];
+							chunkChanges++;
+							if (header != null)
+								header.inserted(offsets[j], values[j]);
+						}
+						j++;
+					} else {
+						if (Double.isNaN(values[j])) {
+							chunkChanges++;
+							if (header != null)
+								header.deleted(offsets[j]);
+						} else {
+							if (storedValues[i] != values[j]) {
+								chunkChanges++;
+								if (header != null)
+									header.updated(offsets[j], values[j]);
+							}
+							mergedOffsets[mergedSize] = offsets[j];
+							mergedValues[mergedSize++] = values[j];
+						}
+						i++;
+						j++;
+					}
+				}
+				if (chunkChanges > 0) {
+					if (mergedSize == 0) {
+						delete_chunk.setInt(1, sid);
+						delete_chunk.setInt(2, chunk);
+						delete_chunk.addBatch();
+						deletes++;
+					} else {
+						byte[] merged = ValueChunkCodec.encode(mergedOffsets, mergedValues, 0, mergedSize);
+						if (data == null) {
+							insert_chunk.setInt(1, sid);
+							insert_chunk.setInt(2, chunk);
+							insert_chunk.setInt(3, mergedOffsets[0]);
+							insert_chunk.setInt(4, mergedOffsets[mergedSize - 1]);
+							insert_chunk.setInt(5, mergedSize);
+							insert_chunk.setBytes(6, merged);
+							insert_chunk.addBatch();
+							inserts++;
+						} else {
+							update_chunk.setInt(1, mergedOffsets[0]);
+							update_chunk.setInt(2, mergedOffsets[mergedSize - 1]);
+							update_chunk.setInt(3, mergedSize);
+							update_chunk.setBytes(4, merged);
+							update_chunk.setInt(5, sid);
+							update_chunk.setInt(6, chunk);
+							update_chunk.addBatch();
+							updates++;
+						}
+					}
+					changes += chunkChanges;
+				}
+				if (inserts == limit) {
+					insert_chunk.executeBatch();
+					inserts = 0;
+				}
+				if (updates == limit) {
+					update_chunk.executeBatch();
+					updates = 0;
+				}
+				if (deletes == limit) {
+					delete_chunk.executeBatch();
+					deletes = 0;
+				}
+				start = end;
+			}
+			if (inserts > 0)
+				insert_chunk.executeBatch();
+			if (updates > 0)
+				update_chunk.executeBatch();
+			if (deletes > 0)
+				delete_chunk.executeBatch();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, E.E50114, series.getName(true));
+		} finally {
+			merge_select = close(merge_select);
+			insert_chunk = close(insert_chunk);
+			update_chunk = close(update_chunk);
+			delete_chunk = close(delete_chunk);
+		}
+		return changes;
+	}
+
+}
@@ -0,0 +1,322 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ch.agent.crnickl.api.DBObjectType;
+import ch.agent.crnickl.api.UpdateEvent;
+import ch.agent.crnickl.api.UpdateEventSubscriber;
+
+/**
+ * A cache of the rows of the chronicle table, keyed by the internal id of
+ * chronicles and by the internal id of the parent and the simple name.
+ * Lookups by name which found nothing are remembered as negative entries.
+ * The number of rows and the number of negative entries are bounded, with
+ * the least recently used evicted first. The cache holds raw data only:
+ * chronicles are built from it and permissions are checked as usual.
+ * <p>
+ * The cache subscribes to update events of chronicles and drops a
+ * chronicle when it is created, modified or deleted. Since a new or renamed
+ * chronicle can match any negative entry, all negative entries are dropped
+ * at the same time. Updates made by other processes are not seen. Like
+ * {@link ValueCache}, the cache refuses rows read while an invalidation
+ * took place.
+ * <p>
+ * Like in {@link ValueCache}, chronicles written in the current unit of
+ * work are neither served from the cache nor put into it until the unit of
+ * work ends, and negative entries are neither served nor kept while the
+ * unit of work has written chronicles, so that rows not yet committed are
+ * never seen by other units of work.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class ChronicleCache implements UpdateEventSubscriber {
+
+	/**
+	 * A row of the chronicle table.
+	 */
+	static class Row {
+		final int id;
+		final int parent;
+		final int schema;
+		final String name;
+		final String description;
+		Row(int id, int parent, int schema, String name, String description) {
+			this.id = id;
+			this.parent = parent;
+			this.schema = schema;
+			this.name = name;
+			this.description = description;
+		}
+	}
+
+	/**
+	 * The row returned by {@link #get(int, String)} for a chronicle known
+	 * not to exist.
+	 */
+	static final Row MISSING = new Row(0, 0, 0, null, null);
+
+	private int capacity;
+	private LinkedHashMap<Integer, Row> rows;
+	private Map<String, Row> names;
+	private LinkedHashMap<String, Row> missing;
+	private long invalidations;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private UnitOfWork unitOfWork;
+
+	/**
+	 * Construct a cache.
+	 *
+	 * @param capacity the maximum number of rows and of negative entries
+	 */
+	public ChronicleCache(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity < 1");
+		this.capacity = capacity;
+		rows = new LinkedHashMap<Integer, Row>(16, 0.75f, true);
+		names = new HashMap<String, Row>();
+		missing = new LinkedHashMap<String, Row>(16, 0.75f, true);
+	}
+
+	/**
+	 * Set the unit of work tracking the chronicles written.
+	 *
+	 * @param unitOfWork a unit of work or null
+	 */
+	void setUnitOfWork(UnitOfWork unitOfWork) {
+		this.unitOfWork = unitOfWork;
+	}
+
+	private boolean isWritten(int id) {
+		return unitOfWork != null && unitOfWork.isChronicleWritten(id);
+	}
+
+	private boolean hasWrites() {
+		return unitOfWork != null && unitOfWork.hasChronicleWrites();
+	}
+
+	/**
+	 * Drop a chronicle and all negative entries from the cache and keep the
+	 * chronicle out of the cache until the current unit of work ends. This
+	 * method must be called when creating, modifying or deleting a
+	 * chronicle.
+	 *
+	 * @param id the internal id of a chronicle
+	 */
+	void written(int id) {
+		if (unitOfWork != null)
+			unitOfWork.addChronicle(id);
+		invalidate(id);
+	}
+
+	private String key(int parent, String name) {
+		return parent + "/" + name;
+	}
+
+	/**
+	 * Return the token to pass to {@link #put(long, Row)} and
+	 * {@link #putMissing(long, int, String)}. The token must be taken before
+	 * reading from the database.
+	 *
+	 * @return a token
+	 */
+	synchronized long getToken() {
+		return invalidations;
+	}
+
+	/**
+	 * Return the row of a chronicle.
+	 *
+	 * @param id the internal id of a chronicle
+	 * @return a row or null if the chronicle is not in the cache
+	 */
+	synchronized Row get(int id) {
+		Row row = isWritten(id) ? null : rows.get(id);
+		if (row == null)
+			misses++;
+		else
+			hits++;
+		return row;
+	}
+
+	/**
+	 * Return the row of a chronicle with a given parent and name.
+	 *
+	 * @param parent the internal id of the parent or 0 for the top chronicle
+	 * @param name a simple name
+	 * @return a row, {@link #MISSING} if the chronicle does not exist, or null if not in the cache
+	 */
+	synchronized Row get(int parent, String name) {
+		String key = key(parent, name);
+		Row row = names.get(key);
+		if (row != null)
+			rows.get(row.id); // touch
+		else if (!hasWrites())
+			row = missing.get(key);
+		if (row != null && row != MISSING && isWritten(row.id))
+			row = null;
+		if (row == null)
+			misses++;
+		else
+			hits++;
+		return row;
+	}
+
+	/**
+	 * Put the row of a chronicle into the cache. The row is refused if the
+	 * chronicle was written in the current unit of work or if any chronicle
+	 * was invalidated since the token was taken.
+	 *
+	 * @param token the token taken before reading the row
+	 * @param row a row
+	 * @return true if the row was put into the cache
+	 */
+	synchronized boolean put(long token, Row row) {
+		if (token != invalidations || isWritten(row.id))
+			return false;
+		Row previous = rows.put(row.id, row);
+		if (previous != null)
+			removeName(previous);
+		names.put(key(row.parent, row.name), row);
+		Iterator<Row> it = rows.values().iterator();
+		while (rows.size() > capacity && it.hasNext()) {
+			Row evicted = it.next();
+			it.remove();
+			removeName(evicted);
+			evictions++;
+		}
+		return true;
+	}
+
+	/**
+	 * Remember that there is no chronicle with a given parent and name. The
+	 * entry is refused if chronicles were written in the current unit of
+	 * work or if any chronicle was invalidated since the token was taken.
+	 *
+	 * @param token the token taken before the lookup
+	 * @param parent the internal id of the parent or 0 for the top chronicle
+	 * @param name a simple name
+	 * @return true if the entry was put into the cache
+	 */
+	synchronized boolean putMissing(long token, int parent, String name) {
+		if (token != invalidations || hasWrites())
+			return false;
+		missing.put(key(parent, name), MISSING);
+		Iterator<Row> it = missing.values().iterator();
+		while (missing.size() > capacity && it.hasNext()) {
+			it.next();
+			it.remove();
+			evictions++;
+		}
+		return true;
+	}
+
+	/**
+	 * Drop a chronicle and all negative entries from the cache.
+	 *
+	 * @param id the internal id of a chronicle
+	 */
+	public synchronized void invalidate(int id) {
+		invalidations++;
+		Row row = rows.remove(id);
+		if (row != null)
+			removeName(row);
+		missing.clear();
+	}
+
+	/**
+	 * Remove the name of a row, unless the name is now used by another
+	 * chronicle, for example after a chronicle was renamed and another one
+	 * took its name.
+	 *
+	 * @param row a row removed from the cache
+	 */
+	private void removeName(Row row) {
+		String key = key(row.parent, row.name);
+		Row named = names.get(key);
+		if (named != null && named.id == row.id)
+			names.remove(key);
+	}
+
+	/**
+	 * Drop all entries from the cache.
+	 */
+	public synchronized void clear() {
+		invalidations++;
+		rows.clear();
+		names.clear();
+		missing.clear();
+	}
+
+	/**
+	 * Drop a chronicle when it is created, modified or deleted.
+	 */
+	@Override
+	public void notify(UpdateEvent event) {
+		if (event.getType() == DBObjectType.CHRONICLE)
+			invalidate(((JDBCObjectId) event.getSurrogate().getId()).value());
+	}
+
+	/**
+	 * Return the maximum number of rows.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Return the number of lookups served by the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Return the number of lookups not served by the cache.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Return the number of entries dropped to make room in the cache.
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("chronicle cache: capacity=%d rows=%d missing=%d hits=%d misses=%d evictions=%d",
+				capacity, rows.size(), missing.size(), hits, misses, evictions);
+	}
+
+}
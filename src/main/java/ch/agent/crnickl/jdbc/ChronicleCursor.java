@@ -0,0 +1,167 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.T2DBMsg;
+import ch.agent.crnickl.T2DBMsg.E;
+import ch.agent.crnickl.api.Chronicle;
+
+/**
+ * A cursor over the chronicles with a given direct parent, in the order of
+ * their names. The cursor holds a statement and a result set open until it
+ * is exhausted or closed, and rows are fetched from the database as the
+ * cursor advances, so that collections of any size are walked with bounded
+ * memory. A cursor must always be closed, typically in a
+ * <code>finally</code> block. Like a JDBC result set, a cursor is
+ * positioned before the first chronicle and is advanced with
+ * {@link #next()}.
+ * <p>
+ * Whether rows are actually streamed depends on the driver. Some drivers
+ * stream only when the fetch size is set and the connection is not in
+ * auto-commit mode, or only in a dialect-specific way, see
+ * {@link JDBCDialect#getFetchSize(int)}. Depending on the driver, a commit
+ * or a rollback on the connection can close the cursor. When the session is
+ * pooled, the cursor has a connection of its own and is not affected by the
+ * end of the unit of work of the current thread. The connection is returned
+ * to the pool when the cursor is closed.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class ChronicleCursor implements Closeable {
+
+	private ReadMethodsForChroniclesAndSeries methods;
+	private Chronicle parent;
+	private JDBCDatabase database;
+	private Connection connection;
+	private PreparedStatement stmt;
+	private ResultSet rs;
+	private Chronicle current;
+	private int count;
+
+	/**
+	 * Construct a cursor. The cursor takes ownership of the statement and
+	 * the result set, and of the connection if not null. When there is a
+	 * connection, the statement was prepared on it and is closed with the
+	 * cursor, else the statement is given back to the read methods.
+	 *
+	 * @param methods the read methods which opened the statement
+	 * @param parent the parent of the chronicles
+	 * @param database the database of the parent
+	 * @param connection a connection taken for the cursor alone, or null
+	 * @param stmt a statement
+	 * @param rs the result set of the statement
+	 */
+	ChronicleCursor(ReadMethodsForChroniclesAndSeries methods, Chronicle parent, JDBCDatabase database, 
+			Connection connection, PreparedStatement stmt, ResultSet rs) {
+		this.methods = methods;
+		this.parent = parent;
+		this.database = database;
+		this.connection = connection;
+		this.stmt = stmt;
+		this.rs = rs;
+	}
+
+	/**
+	 * Advance to the next chronicle. When there are no more chronicles, the
+	 * cursor is closed and false is returned.
+	 *
+	 * @return true if there is a current chronicle
+	 * @throws T2DBException
+	 */
+	public boolean next() throws T2DBException {
+		current = null;
+		if (rs == null)
+			return false;
+		try {
+			if (rs.next()) {
+				current = methods.makeChild(parent, rs);
+				count++;
+			} else
+				close();
+		} catch (SQLException e) {
+			close();
+			throw T2DBMsg.exception(e, E.E40122, parent.getName(true));
+		} catch (T2DBException e) {
+			close();
+			throw e;
+		}
+		return current != null;
+	}
+
+	/**
+	 * Return the current chronicle.
+	 *
+	 * @return the current chronicle
+	 * @throws IllegalStateException if the cursor is not positioned on a chronicle
+	 */
+	public Chronicle get() {
+		if (current == null)
+			throw new IllegalStateException("no current chronicle");
+		return current;
+	}
+
+	/**
+	 * Return the number of chronicles returned so far.
+	 *
+	 * @return the number of chronicles
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Close the result set and give the statement back. If the cursor has a
+	 * connection of its own, close the statement and end the unit of work of
+	 * the connection. Closing a closed cursor has no effect.
+	 */
+	@Override
+	public void close() {
+		if (rs != null) {
+			try {
+				rs.close();
+			} catch (SQLException e) {
+				// ignore
+			}
+			rs = null;
+		}
+		if (stmt != null) {
+			try {
+				if (connection == null)
+					methods.close(stmt);
+				else
+					stmt.close();
+			} catch (T2DBException e) {
+				// ignore
+			} catch (SQLException e) {
+				// ignore
+			}
+			stmt = null;
+		}
+		if (connection != null) {
+			database.releaseConnection(connection);
+			connection = null;
+		}
+	}
+
+}
@@ -26,6 +26,12 @@ public interface DB {
 	static final String CHRONICLE = "chronicle";
 	static final String SERIES = "series";
 	static final String VALUE_DOUBLE = "value_double";
+	static final String VALUE_DOUBLE_PARTITION = "value_double_%02d";
+	static final String VALUE_FLOAT = "value_float";
+	static final String VALUE_INT = "value_int";
+	static final String VALUE_LONG = "value_long";
+	static final String VALUE_CHUNK = "value_chunk";
+	static final String SERIES_STATS = "series_stats";
 	static final String ATTRIBUTE_VALUE = "attribute_value";
 	static final String SCHEMA_NAME = "schema_name";
 	static final String SCHEMA_ITEM = "schema_item";
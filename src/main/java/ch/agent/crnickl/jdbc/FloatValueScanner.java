@@ -0,0 +1,56 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.T2DBMsg;
+import ch.agent.crnickl.T2DBMsg.D;
+import ch.agent.crnickl.api.ValueScanner;
+
+/**
+ * A scanner for <code>float</code> values. A value type is defined with this scanner by
+ * using the name of the class as type. Series of such a value type are
+ * stored with {@link AccessMethodsForFloat}.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class FloatValueScanner implements ValueScanner<Float> {
+
+	@Override
+	public Class<Float> getType() {
+		return Float.class;
+	}
+
+	@Override
+	public Float scan(String value) throws T2DBException {
+		try {
+			return Float.valueOf(value.trim());
+		} catch (NumberFormatException e) {
+			throw T2DBMsg.exception(D.D10103, value);
+		}
+	}
+
+	@Override
+	public void check(Float value) throws T2DBException {
+	}
+
+	@Override
+	public String toString(Float value) throws T2DBException {
+		return value == null ? null : value.toString();
+	}
+
+}
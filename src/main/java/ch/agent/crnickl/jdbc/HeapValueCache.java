@@ -0,0 +1,79 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.util.Arrays;
+
+/**
+ * An in-memory {@link ValueCache}. The values of a series are kept in an
+ * array of <code>int</code> for the time index offsets and an array of
+ * <code>double</code> for the values. The size of an entry includes an
+ * estimate of the overhead of the arrays.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class HeapValueCache extends ValueCache {
+
+	private static final int OVERHEAD = 64;
+
+	private static class HeapEntry implements Entry {
+		private int[] offsets;
+		private double[] values;
+		@Override
+		public int getCount() {
+			return offsets.length;
+		}
+		@Override
+		public int getOffset(int i) {
+			return offsets[i];
+		}
+		@Override
+		public double getValue(int i) {
+			return values[i];
+		}
+		@Override
+		public long getSize() {
+			return OVERHEAD + 12L * offsets.length;
+		}
+		@Override
+		public void discard() {
+		}
+	}
+
+	/**
+	 * Construct a cache.
+	 *
+	 * @param capacity the maximum size of the cache in bytes
+	 */
+	public HeapValueCache(long capacity) {
+		super(capacity);
+	}
+
+	@Override
+	protected long sizeOf(int count) {
+		return OVERHEAD + 12L * count;
+	}
+
+	@Override
+	protected Entry makeEntry(int series, long token, int[] offsets, double[] values, int count) {
+		HeapEntry entry = new HeapEntry();
+		entry.offsets = Arrays.copyOf(offsets, count);
+		entry.values = Arrays.copyOf(values, count);
+		return entry;
+	}
+
+}
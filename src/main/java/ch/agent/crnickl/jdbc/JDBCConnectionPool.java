@@ -0,0 +1,251 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.jdbc.T2DBJMsg.J;
+
+/**
+ * A bounded pool of JDBC connections. Connections are created on demand up to
+ * a maximum size. Idle connections are closed after a timeout, but never
+ * below a minimum size. A connection taken from the pool is validated before
+ * it is handed out; an invalid connection is discarded and replaced.
+ * <p>
+ * The pool is used by {@link JDBCSession} when the session is configured in
+ * pooled mode.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class JDBCConnectionPool {
+
+	/**
+	 * A connection factory creates the connections managed by the pool.
+	 */
+	public interface ConnectionFactory {
+		/**
+		 * Return a new open connection.
+		 *
+		 * @return a JDBC connection
+		 * @throws T2DBException
+		 */
+		Connection makeConnection() throws T2DBException;
+
+		/**
+		 * Close a connection. Any exception is ignored.
+		 *
+		 * @param connection a connection made by this factory
+		 */
+		void closeConnection(Connection connection);
+	}
+
+	private static class IdleConnection {
+		private Connection connection;
+		private long since;
+		private IdleConnection(Connection connection, long since) {
+			this.connection = connection;
+			this.since = since;
+		}
+	}
+
+	private ConnectionFactory factory;
+	private int minSize;
+	private int maxSize;
+	private long idleTimeout;
+	private int validationTimeout;
+	private long maxWait;
+
+	/* most recently released first */
+	private LinkedList<IdleConnection> idle;
+	private int borrowed;
+	private boolean closed;
+
+	/**
+	 * Construct a connection pool.
+	 *
+	 * @param factory the factory making connections
+	 * @param minSize the number of idle connections never evicted
+	 * @param maxSize the maximum number of open connections, positive
+	 * @param idleTimeout the time in milliseconds after which an idle connection is closed
+	 * @param validationTimeout the time in seconds allowed for validating a connection, 0 for no limit
+	 * @param maxWait the time in milliseconds to wait for a connection when the pool is exhausted
+	 */
+	public JDBCConnectionPool(ConnectionFactory factory, int minSize, int maxSize, long idleTimeout, int validationTimeout, long maxWait) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("maxSize < 1");
+		if (minSize < 0 || minSize > maxSize)
+			throw new IllegalArgumentException("minSize < 0 or minSize > maxSize");
+		this.factory = factory;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.idleTimeout = idleTimeout;
+		this.validationTimeout = validationTimeout;
+		this.maxWait = maxWait;
+		idle = new LinkedList<IdleConnection>();
+	}
+
+	/**
+	 * Take a valid connection from the pool. If no idle connection is
+	 * available and the pool is not full, a new connection is made. If the pool
+	 * is full, wait until a connection is released. An exception is thrown if
+	 * no connection becomes available in time.
+	 *
+	 * @return a JDBC connection
+	 * @throws T2DBException
+	 */
+	public Connection borrow() throws T2DBException {
+		long deadline = System.currentTimeMillis() + maxWait;
+		while (true) {
+			Connection connection = null;
+			synchronized (this) {
+				if (closed)
+					throw T2DBJMsg.exception(J.J00112);
+				evictIdle(System.currentTimeMillis());
+				if (idle.size() > 0) {
+					connection = idle.removeFirst().connection;
+					borrowed++;
+				} else if (borrowed < maxSize) {
+					borrowed++;
+				} else {
+					long wait = deadline - System.currentTimeMillis();
+					if (wait <= 0)
+						throw T2DBJMsg.exception(J.J00113, maxSize, maxWait);
+					try {
+						wait(wait);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw T2DBJMsg.exception(e, J.J00113, maxSize, maxWait);
+					}
+					continue;
+				}
+			}
+			if (connection == null) {
+				try {
+					return factory.makeConnection();
+				} catch (T2DBException e) {
+					discard(null);
+					throw e;
+				}
+			}
+			if (isValid(connection))
+				return connection;
+			discard(connection);
+		}
+	}
+
+	/**
+	 * Give a connection back to the pool. A connection which is not reusable
+	 * is closed. All connections are closed once the pool itself is closed.
+	 *
+	 * @param connection a connection obtained with {@link #borrow()}
+	 * @param reusable if false the connection is closed
+	 */
+	public void release(Connection connection, boolean reusable) {
+		if (!reusable) {
+			discard(connection);
+			return;
+		}
+		synchronized (this) {
+			if (!closed) {
+				idle.addFirst(new IdleConnection(connection, System.currentTimeMillis()));
+				borrowed--;
+				notifyAll();
+				return;
+			}
+		}
+		discard(connection);
+	}
+
+	/**
+	 * Close all idle connections and refuse further requests. Connections
+	 * currently borrowed are closed when they are released.
+	 */
+	public void close() {
+		LinkedList<IdleConnection> toClose;
+		synchronized (this) {
+			closed = true;
+			toClose = idle;
+			idle = new LinkedList<IdleConnection>();
+			notifyAll();
+		}
+		for (IdleConnection c : toClose) {
+			closeQuietly(c.connection);
+		}
+	}
+
+	/**
+	 * Return the number of connections currently borrowed.
+	 *
+	 * @return the number of borrowed connections
+	 */
+	public synchronized int getBorrowedCount() {
+		return borrowed;
+	}
+
+	/**
+	 * Return the number of idle connections.
+	 *
+	 * @return the number of idle connections
+	 */
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * Close idle connections older than the idle timeout, oldest first, as
+	 * long as more than the minimum number of connections is open.
+	 * Must be called with the lock held.
+	 *
+	 * @param now the current time in milliseconds
+	 */
+	private void evictIdle(long now) {
+		Iterator<IdleConnection> it = idle.descendingIterator();
+		while (it.hasNext() && borrowed + idle.size() > minSize) {
+			IdleConnection c = it.next();
+			if (now - c.since < idleTimeout)
+				break;
+			it.remove();
+			closeQuietly(c.connection);
+		}
+	}
+
+	private void discard(Connection connection) {
+		if (connection != null)
+			closeQuietly(connection);
+		synchronized (this) {
+			borrowed--;
+			notifyAll();
+		}
+	}
+
+	private boolean isValid(Connection connection) {
+		try {
+			return !connection.isClosed() && connection.isValid(validationTimeout);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void closeQuietly(Connection connection) {
+		factory.closeConnection(connection);
+	}
+
+}
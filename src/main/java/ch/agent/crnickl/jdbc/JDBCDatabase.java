@@ -16,13 +16,16 @@
  */
 package ch.agent.crnickl.jdbc;
 
+import java.io.File;
 import java.sql.Connection;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 import ch.agent.crnickl.T2DBException;
 import ch.agent.crnickl.T2DBMsg;
+import ch.agent.crnickl.T2DBMsg.D;
 import ch.agent.crnickl.T2DBMsg.E;
 import ch.agent.crnickl.api.Attribute;
 import ch.agent.crnickl.api.AttributeDefinition;
@@ -41,17 +44,26 @@ import ch.agent.crnickl.api.UpdatableSchema;
 import ch.agent.crnickl.api.UpdatableSeries;
 import ch.agent.crnickl.api.UpdatableValueType;
 import ch.agent.crnickl.api.UpdateEventOperation;
+import ch.agent.crnickl.api.UpdateEventPublisher;
 import ch.agent.crnickl.api.ValueType;
+import ch.agent.crnickl.impl.ChronicleImpl;
 import ch.agent.crnickl.impl.DatabaseBackend;
 import ch.agent.crnickl.impl.DatabaseBackendImpl;
+import ch.agent.crnickl.impl.DatabaseCache;
 import ch.agent.crnickl.impl.SchemaUpdatePolicy;
 import ch.agent.crnickl.impl.UpdateEventImpl;
-import ch.agent.crnickl.impl.UpdateEventPublisherImpl;
 import ch.agent.crnickl.jdbc.T2DBJMsg.J;
+import ch.agent.t2.time.Range;
 import ch.agent.t2.time.TimeDomainCatalog;
+import ch.agent.t2.timeseries.TimeAddressable;
 
 /**
  * A JDBC implementation of {@link DatabaseBackendImpl}. 
+ * <p>
+ * Pending update events are kept by a {@link JDBCUpdateEventPublisher}, per
+ * thread when the session is pooled, and the cache of the base class is
+ * synchronized, so that threads of a pooled database can write
+ * concurrently, each in its own unit of work.
  * 
  * @author Jean-Paul Vetterli
  */
@@ -65,6 +77,7 @@ public class JDBCDatabase extends DatabaseBackendImpl {
 	
 	private ReadMethodsForChroniclesAndSeries esRMethods;
 	private WriteMethodsForChroniclesAndSeries esWMethods;
+	private ChronicleCache chronicleCache;
 	private ReadMethodsForValueType vtRMethods;
 	private WriteMethodsForValueType vtWMethods;
 	private ReadMethodsForProperty pRMethods;
@@ -73,6 +86,10 @@ public class JDBCDatabase extends DatabaseBackendImpl {
 	private WriteMethodsForSchema sWMethods;
 	private JDBCSession session;
 	private JDBCSchemaUpdatePolicy jsup;
+	private AccessMethodsForNumber numberMethods;
+	private JDBCUpdateEventPublisher publisher;
+	private DatabaseCache databaseCache;
+	private UnitOfWork unitOfWork;
 	
 	/**
 	 * Construct a {@link DatabaseBackend}.
@@ -86,21 +103,119 @@ public class JDBCDatabase extends DatabaseBackendImpl {
 	
 	@Override
 	public void open() throws T2DBException {
-		JDBCSession.getInstance().getConnection();
+		getJDBCSession().getConnection();
 	}
 	
 	@Override
 	public void close() throws T2DBException {
-		JDBCSession.getInstance().close(true);
+		getJDBCSession().close(true);
+		if (numberMethods != null && numberMethods.getValueCache() != null)
+			numberMethods.getValueCache().close();
 	}
 
 	@Override
 	public void configure(DatabaseConfiguration configuration) throws T2DBException {
-		new JDBCSession(configuration);
+		session = new JDBCSession(configuration);
+		boolean pooled = JDBCSession.getIntParameter(configuration, JDBCSession.JDBC_POOL_MAX_SIZE, 0) > 0;
+		publisher = new JDBCUpdateEventPublisher(pooled);
+		unitOfWork = new UnitOfWork(pooled);
 		super.configure(configuration);
-		setAccessMethods(ValueType.StandardValueType.NUMBER.name(), new AccessMethodsForNumber());
+		databaseCache = new SynchronizedCache(super.getCache());
+		String storage = configuration.getParameter(JDBCSession.JDBC_NUMBER_STORAGE, false);
+		if (storage == null || storage.trim().length() == 0 || storage.trim().equals("row"))
+			numberMethods = new AccessMethodsForNumber();
+		else if (storage.trim().equals("chunk")) {
+			AccessMethodsForNumberChunks chunkMethods = new AccessMethodsForNumberChunks();
+			try {
+				chunkMethods.setChunkSize(JDBCSession.getIntParameter(configuration, JDBCSession.JDBC_CHUNK_SIZE, 1024));
+			} catch (IllegalArgumentException e) {
+				throw T2DBMsg.exception(e, D.D00108, JDBCSession.JDBC_CHUNK_SIZE, configuration.getParameter(JDBCSession.JDBC_CHUNK_SIZE, false));
+			}
+			numberMethods = chunkMethods;
+		} else
+			throw T2DBMsg.exception(D.D00108, JDBCSession.JDBC_NUMBER_STORAGE, storage);
+		String stats = configuration.getParameter(JDBCSession.JDBC_SERIES_STATS, false);
+		if (stats != null && stats.trim().equals("true"))
+			numberMethods.setSeriesStats(true);
+		else if (stats != null && stats.trim().length() > 0 && !stats.trim().equals("false"))
+			throw T2DBMsg.exception(D.D00108, JDBCSession.JDBC_SERIES_STATS, stats);
+		int partitions = JDBCSession.getIntParameter(configuration, JDBCSession.JDBC_VALUE_PARTITIONS, 0);
+		// chunks have their own table, which is not partitioned
+		if (partitions != 0 && numberMethods instanceof AccessMethodsForNumberChunks)
+			throw T2DBMsg.exception(D.D00108, JDBCSession.JDBC_VALUE_PARTITIONS, configuration.getParameter(JDBCSession.JDBC_VALUE_PARTITIONS, false));
+		try {
+			numberMethods.setPartitions(partitions);
+		} catch (IllegalArgumentException e) {
+			throw T2DBMsg.exception(e, D.D00108, JDBCSession.JDBC_VALUE_PARTITIONS, configuration.getParameter(JDBCSession.JDBC_VALUE_PARTITIONS, false));
+		}
+		int batchSize = JDBCSession.getIntParameter(configuration, JDBCSession.JDBC_BATCH_SIZE, 1000);
+		numberMethods.setBatchSize(batchSize);
+		int fetchSize = JDBCSession.getIntParameter(configuration, JDBCSession.JDBC_FETCH_SIZE, 1000);
+		numberMethods.setFetchSize(fetchSize);
+		getReadMethodsForChronicleAndSeries().setFetchSize(fetchSize);
+		String cache = configuration.getParameter(JDBCSession.JDBC_VALUE_CACHE, false);
+		if (cache != null && cache.trim().length() > 0) {
+			int megabytes = JDBCSession.getIntParameter(configuration, JDBCSession.JDBC_VALUE_CACHE_SIZE, 256);
+			try {
+				long capacity = megabytes * 1024L * 1024L;
+				ValueCache valueCache = cache.trim().equals("heap") ? 
+						new HeapValueCache(capacity) : new MappedValueCache(new File(cache.trim()), capacity);
+				valueCache.setUnitOfWork(unitOfWork);
+				getUpdateEventPublisher().subscribe(valueCache, DBObjectType.SERIES, true);
+				numberMethods.setValueCache(valueCache);
+			} catch (Exception e) {
+				throw T2DBMsg.exception(e, D.D00108, JDBCSession.JDBC_VALUE_CACHE, cache);
+			}
+		}
+		setAccessMethods(ValueType.StandardValueType.NUMBER.name(), numberMethods);
+		String compact = configuration.getParameter(JDBCSession.JDBC_COMPACT_NUMBERS, false);
+		if (compact != null && compact.trim().equals("true")) {
+			AccessMethodsForFloat floatMethods = new AccessMethodsForFloat();
+			floatMethods.setBatchSize(batchSize);
+			setAccessMethods(FloatValueScanner.class.getName(), floatMethods);
+			AccessMethodsForInteger integerMethods = new AccessMethodsForInteger();
+			integerMethods.setBatchSize(batchSize);
+			setAccessMethods(IntegerValueScanner.class.getName(), integerMethods);
+			AccessMethodsForLong longMethods = new AccessMethodsForLong();
+			longMethods.setBatchSize(batchSize);
+			setAccessMethods(LongValueScanner.class.getName(), longMethods);
+		} else if (compact != null && compact.trim().length() > 0 && !compact.trim().equals("false"))
+			throw T2DBMsg.exception(D.D00108, JDBCSession.JDBC_COMPACT_NUMBERS, compact);
+		int chronicles = JDBCSession.getIntParameter(configuration, JDBCSession.JDBC_CHRONICLE_CACHE, 0);
+		if (chronicles > 0) {
+			chronicleCache = new ChronicleCache(chronicles);
+			chronicleCache.setUnitOfWork(unitOfWork);
+			getUpdateEventPublisher().subscribe(chronicleCache, DBObjectType.CHRONICLE, true);
+		}
+		getReadMethodsForChronicleAndSeries().setChronicleCache(chronicleCache);
+		getWriteMethodsForChroniclesAndSeries().setChronicleCache(chronicleCache);
 	}
 
+	/**
+	 * Return the update event publisher. Events not published immediately
+	 * are kept per unit of work.
+	 * 
+	 * @return the update event publisher
+	 * @see JDBCUpdateEventPublisher
+	 */
+	@Override
+	public UpdateEventPublisher getUpdateEventPublisher() {
+		if (publisher == null)
+			throw new IllegalStateException("not initialized");
+		return publisher;
+	}
+	
+	/**
+	 * Return the cache of the base class, synchronized once the database is
+	 * configured.
+	 * 
+	 * @return the cache
+	 */
+	@Override
+	public DatabaseCache getCache() {
+		return databaseCache == null ? super.getCache() : databaseCache;
+	}
+	
 	@Override
 	public SchemaUpdatePolicy getSchemaUpdatePolicy() {
 		if (jsup == null)
@@ -111,20 +226,126 @@ public class JDBCDatabase extends DatabaseBackendImpl {
 	/*** manage back end store ***/
 
 	/**
-	 * Return the JDBC session.
+	 * Return the JDBC session of this database.
 	 * 
 	 * @return the session
 	 */
 	private JDBCSession getJDBCSession() {
 		if (session == null)
-			session = JDBCSession.getInstance();
+			throw new IllegalStateException("not initialized");
 		return session;
 	}
 	
+	/**
+	 * Return the JDBC connection of the current unit of work. When the session
+	 * is pooled, the connection stays bound to the current thread until
+	 * {@link #commit()} or {@link #rollback()}.
+	 * 
+	 * @return a JDBC connection
+	 * @throws T2DBException
+	 */
 	public Connection getConnection() throws T2DBException {
 		return getJDBCSession().getConnection();
 	}
 	
+	/**
+	 * Take a connection for a unit of work of its own, or return null when
+	 * the session is not pooled.
+	 * 
+	 * @return a JDBC connection or null
+	 * @throws T2DBException
+	 * @see JDBCSession#borrowConnection()
+	 */
+	Connection borrowConnection() throws T2DBException {
+		return getJDBCSession().borrowConnection();
+	}
+	
+	/**
+	 * End the unit of work of a connection taken with
+	 * {@link #borrowConnection()}.
+	 * 
+	 * @param connection a JDBC connection
+	 * @see JDBCSession#releaseConnection(Connection)
+	 */
+	void releaseConnection(Connection connection) {
+		getJDBCSession().releaseConnection(connection);
+	}
+	
+	/**
+	 * Return the prepared statement cache. The cache provides hit, miss and
+	 * eviction counters.
+	 * 
+	 * @return the statement cache
+	 * @throws T2DBException
+	 */
+	public JDBCStatementCache getStatementCache() throws T2DBException {
+		JDBCStatementCache cache = getJDBCSession().getStatementCache();
+		if (cache == null) {
+			getJDBCSession().getConnection();
+			cache = getJDBCSession().getStatementCache();
+		}
+		return cache;
+	}
+	
+	/**
+	 * Return the access methods for numeric values. The object gives access
+	 * to methods not in {@link ch.agent.crnickl.impl.ValueAccessMethods}, like
+	 * the bulk read of values into arrays.
+	 * 
+	 * @return the access methods for numeric values
+	 */
+	public AccessMethodsForNumber getNumberAccessMethods() {
+		if (numberMethods == null)
+			throw new IllegalStateException("not initialized");
+		return numberMethods;
+	}
+	
+	/**
+	 * Return the chronicle cache.
+	 * 
+	 * @return the chronicle cache or null if the database is configured without one
+	 */
+	public ChronicleCache getChronicleCache() {
+		return chronicleCache;
+	}
+	
+	/**
+	 * Recompute the headers of all numeric series and commit. Headers are
+	 * used when the database is configured with
+	 * <code>session.seriesStats=true</code>.
+	 * 
+	 * @return the number of series with values
+	 * @throws T2DBException
+	 */
+	public int rebuildSeriesStats() throws T2DBException {
+		int count = getNumberAccessMethods().rebuildStats(this);
+		commit();
+		return count;
+	}
+	
+	/**
+	 * Read numeric values of many series in one range with few round trips.
+	 * 
+	 * @param panel a map of series to the time addressables receiving their values
+	 * @param range a range or null to read all values
+	 * @return the total number of values read
+	 * @throws T2DBException
+	 * @see AccessMethodsForNumber#getValues(Map, Range)
+	 */
+	public long getValues(Map<? extends Series<Double>, ? extends TimeAddressable<Double>> panel, Range range) throws T2DBException {
+		return getNumberAccessMethods().getValues(panel, range);
+	}
+	
+	/**
+	 * Return the SQL dialect of the database.
+	 * 
+	 * @return a dialect
+	 * @throws T2DBException
+	 */
+	public JDBCDialect getDialect() throws T2DBException {
+		return getJDBCSession().getDialect();
+	}
+	
 	@Override
 	public DBObjectId makeDBObjectId(Object object) throws T2DBException {
 		return new JDBCObjectId(object);
@@ -133,14 +354,41 @@ public class JDBCDatabase extends DatabaseBackendImpl {
 	@Override
 	public void commit() throws T2DBException {
 		getJDBCSession().commit();
-		((UpdateEventPublisherImpl)getUpdateEventPublisher()).release();
+		if (unitOfWork != null)
+			unitOfWork.end();
+		if (publisher != null)
+			publisher.release();
+	}
+
+	/**
+	 * End a unit of work without updates. When the session is pooled, the
+	 * connection bound to the current thread is returned to the pool, so a
+	 * thread which only reads must call this method, or commit or rollback,
+	 * when done. Unlike {@link #rollback()}, caches are not cleared, so the
+	 * method must not be used to discard updates.
+	 * 
+	 * @throws T2DBException
+	 */
+	public void release() throws T2DBException {
+		getJDBCSession().release();
+		if (unitOfWork != null && unitOfWork.isPerThread())
+			unitOfWork.end();
 	}
 
 	@Override
 	public void rollback() throws T2DBException {
-		JDBCSession.rollbackIfAlive();
-		int count = ((UpdateEventPublisherImpl)getUpdateEventPublisher()).clear();
-		getMessageListener().log(Level.FINER, new T2DBJMsg(J.J00111, count));
+		if (session != null)
+			session.rollbackIfAlive();
+		if (unitOfWork != null)
+			unitOfWork.end();
+		if (numberMethods != null && numberMethods.getValueCache() != null)
+			numberMethods.getValueCache().clear();
+		if (chronicleCache != null)
+			chronicleCache.clear();
+		if (publisher != null) {
+			int count = publisher.clear();
+			getMessageListener().log(Level.FINER, new T2DBJMsg(J.J00111, count));
+		}
 	}
 
 	/*** Chronicle and Series ***/
@@ -213,6 +461,44 @@ public class JDBCDatabase extends DatabaseBackendImpl {
 		publish(new UpdateEventImpl(UpdateEventOperation.DELETE, series).withComment(comment));
 	}
 	
+	/**
+	 * Find a chronicle by its full name. All chronicles along the name are
+	 * found with a single query, unless the chronicle is in the cache of the
+	 * database. The name is resolved level by level by the base class, with
+	 * its exact behavior, in strict name space mode, for the name of the top
+	 * chronicle, for names with an invalid simple name, when a chronicle is
+	 * not found but must exist, and when a chronicle other than the last one
+	 * is not found.
+	 * 
+	 * @see ReadMethodsForChroniclesAndSeries#getChroniclePath(Chronicle, String[])
+	 */
+	@Override
+	public Chronicle getChronicle(String name, boolean mustExist) throws T2DBException {
+		if (isStrictNameSpaceMode() || name.equals(getTopChronicle().getName(false)))
+			return super.getChronicle(name, mustExist);
+		ChronicleImpl chronicle = getCache().lookUpChronicle(name);
+		if (chronicle != null)
+			return chronicle;
+		String[] names = getNamingPolicy().asStringArray(name);
+		for (String simpleName : names) {
+			try {
+				getNamingPolicy().checkSimpleName(simpleName, false);
+			} catch (T2DBException e) {
+				return super.getChronicle(name, mustExist);
+			}
+		}
+		List<Chronicle> path = getReadMethodsForChronicleAndSeries().getChroniclePath(getTopChronicle(), names);
+		if (path.size() < names.length) {
+			if (mustExist || path.size() < names.length - 1)
+				return super.getChronicle(name, mustExist);
+			return null;
+		}
+		for (int i = 0; i < path.size() - 1; i++) {
+			getCache().store((ChronicleImpl) path.get(i));
+		}
+		return path.get(path.size() - 1);
+	}
+	
 	@Override
 	public Chronicle getChronicle(Chronicle chronicle) throws T2DBException {
 		return getReadMethodsForChronicleAndSeries().getChronicle(chronicle.getSurrogate());
@@ -228,15 +514,90 @@ public class JDBCDatabase extends DatabaseBackendImpl {
 		return getReadMethodsForChronicleAndSeries().getChroniclesByParent(parent);
 	}
 	
+	/**
+	 * Return a page of the chronicles with a given direct parent, in the
+	 * order of their names, starting after a given simple name.
+	 * 
+	 * @param parent a chronicle
+	 * @param after the simple name of the last chronicle of the previous page or null for the first page
+	 * @param limit the maximum size of the page or 0 for no limit
+	 * @return a list of chronicles, possibly empty, never null
+	 * @throws T2DBException
+	 * @see ReadMethodsForChroniclesAndSeries#getChroniclesByParent(Chronicle, String, int)
+	 */
+	public List<Chronicle> getChroniclesByParent(Chronicle parent, String after, int limit) throws T2DBException {
+		return getReadMethodsForChronicleAndSeries().getChroniclesByParent(parent, after, limit);
+	}
+	
+	/**
+	 * Return a cursor over the chronicles with a given direct parent, in the
+	 * order of their names. The cursor must be closed by the caller.
+	 * 
+	 * @param parent a chronicle
+	 * @return a cursor
+	 * @throws T2DBException
+	 * @see ReadMethodsForChroniclesAndSeries#getChronicleCursor(Chronicle)
+	 */
+	public ChronicleCursor getChronicleCursor(Chronicle parent) throws T2DBException {
+		return getReadMethodsForChronicleAndSeries().getChronicleCursor(parent);
+	}
+	
 	@Override
 	public <T> List<Chronicle> getChroniclesByAttributeValue(Property<T> property, T value, int maxSize) throws T2DBException {
 		return getReadMethodsForChronicleAndSeries().getChroniclesByAttributeValue(property, value, maxSize);
 	}
+	
+	/**
+	 * Return a list of chronicles with a given value for a given property,
+	 * with the option to read the chronicles in the same query.
+	 * 
+	 * @param property a property
+	 * @param value a value
+	 * @param maxSize the maximum size of the result or 0 or less for no limit
+	 * @param eager if true read the chronicles in the same query
+	 * @return a list of chronicles, possibly empty, never null
+	 * @throws T2DBException
+	 * @see ReadMethodsForChroniclesAndSeries#getChroniclesByAttributeValue(Property, Object, int, boolean)
+	 */
+	public <T> List<Chronicle> getChroniclesByAttributeValue(Property<T> property, T value, int maxSize, boolean eager) throws T2DBException {
+		return getReadMethodsForChronicleAndSeries().getChroniclesByAttributeValue(property, value, maxSize, eager);
+	}
 
 	@Override
 	public boolean getAttributeValue(List<Chronicle> chronicles, Attribute<?> attribute)	throws T2DBException {
 		return getReadMethodsForChronicleAndSeries().getAttributeValue(chronicles, attribute);
 	}
+	
+	/**
+	 * Complete the attribute with the value found for a chronicle or for its
+	 * nearest ancestor with a value. The parent chain is walked by the
+	 * database. Unlike {@link Chronicle#getAttribute(String, boolean)}, the
+	 * method does not consult schemas: it neither checks that the attribute
+	 * is defined for each ancestor nor applies defaults.
+	 * 
+	 * @param chronicle a chronicle
+	 * @param attribute an attribute
+	 * @return true if any value found
+	 * @throws T2DBException
+	 * @see ReadMethodsForChroniclesAndSeries#getAttributeValue(Chronicle, Attribute)
+	 */
+	public boolean getAttributeValue(Chronicle chronicle, Attribute<?> attribute) throws T2DBException {
+		return getReadMethodsForChronicleAndSeries().getAttributeValue(chronicle, attribute);
+	}
+	
+	/**
+	 * Return the values of many properties for many chronicles, with values
+	 * inherited from ancestors, using a few queries on lists of ids.
+	 * 
+	 * @param chronicles a list of chronicles
+	 * @param properties a list of properties
+	 * @return an array of values with one row per chronicle and one column per property
+	 * @throws T2DBException
+	 * @see ReadMethodsForChroniclesAndSeries#getAttributeValues(List, List)
+	 */
+	public Object[][] getAttributeValues(List<Chronicle> chronicles, List<Property<?>> properties) throws T2DBException {
+		return getReadMethodsForChronicleAndSeries().getAttributeValues(chronicles, properties);
+	}
 
 	@Override
 	public <T> Series<T>[] getSeries(Chronicle chronicle, String[] names, int[] numbers)	throws T2DBException {
@@ -427,7 +788,7 @@ public class JDBCDatabase extends DatabaseBackendImpl {
 	@Override
 	public void update(UpdatableSchema schema) throws T2DBException {
 		getWriteMethodsForSchema().updateSchema(schema);
-		((UpdateEventPublisherImpl)getUpdateEventPublisher()).publish(new UpdateEventImpl(UpdateEventOperation.MODIFY, schema), false);
+		getUpdateEventPublisher().publish(new UpdateEventImpl(UpdateEventOperation.MODIFY, schema), false);
 	}
 		
 	@Override
@@ -457,4 +818,55 @@ public class JDBCDatabase extends DatabaseBackendImpl {
 		return getJDBCSession().toString();
 	}
 
+	/**
+	 * A database cache with all methods synchronized, so that the threads of
+	 * a pooled database can share it.
+	 */
+	private static class SynchronizedCache implements DatabaseCache {
+		private final DatabaseCache cache;
+		private SynchronizedCache(DatabaseCache cache) {
+			this.cache = cache;
+		}
+		@Override
+		public synchronized ChronicleImpl lookUpChronicle(Surrogate surrogate) {
+			return cache.lookUpChronicle(surrogate);
+		}
+		@Override
+		public synchronized ChronicleImpl lookUpChronicle(String name) {
+			return cache.lookUpChronicle(name);
+		}
+		@Override
+		public synchronized Property<?> lookUpProperty(String name) throws T2DBException {
+			return cache.lookUpProperty(name);
+		}
+		@Override
+		public synchronized ChronicleImpl store(ChronicleImpl chronicle) throws T2DBException {
+			return cache.store(chronicle);
+		}
+		@Override
+		public synchronized int size() {
+			return cache.size();
+		}
+		@Override
+		public synchronized void clear(Chronicle chronicle) {
+			cache.clear(chronicle);
+		}
+		@Override
+		public synchronized void clear(Schema schema) {
+			cache.clear(schema);
+		}
+		@Override
+		public synchronized void clear(Property<?> property) {
+			cache.clear(property);
+		}
+		@Override
+		public synchronized void clear(ValueType<?> valueType) {
+			cache.clear(valueType);
+		}
+		@Override
+		public synchronized void clear() {
+			cache.clear();
+		}
+	}
+
 }
@@ -16,6 +16,7 @@
  */
 package ch.agent.crnickl.jdbc;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -34,12 +35,18 @@ import ch.agent.crnickl.jdbc.T2DBJMsg.J;
  * A JDBCDatabaseMethods object provides support for prepared statements. It is
  * meant as base class for actual access methods. All database accesses should
  * be bracketed between one of the <code>open</code> and the <code>close</code>
- * method.
+ * method. Statements are taken from and returned to the
+ * {@link JDBCStatementCache} of the database. Statements are kept in local
+ * variables and are never kept between calls, so that an object can be used
+ * by several threads, each with its own connection.
  * 
  * @author Jean-Paul Vetterli
  */
 public class JDBCDatabaseMethods extends DatabaseMethodsImpl {
 	
+	// the same cache for the life of the database, see JDBCSession
+	private volatile JDBCStatementCache statementCache;
+	
 	/**
 	 * Return the internal ID of a database object or 0 if the object is null or 
 	 * is <em>in construction</em>.
@@ -116,9 +123,21 @@ public class JDBCDatabaseMethods extends DatabaseMethodsImpl {
 		return super.makeSurrogate(db,  dot, new JDBCObjectId(id));
 	}
 	
+	/**
+	 * Return the SQL dialect of the database of a database object.
+	 * 
+	 * @param dBObject a database object
+	 * @return a dialect
+	 * @throws T2DBException
+	 */
+	protected JDBCDialect getDialect(DBObject dBObject) throws T2DBException {
+		return ((JDBCDatabase) dBObject.getSurrogate().getDatabase()).getDialect();
+	}
+	
 	/**
 	 * Execute a prepared statement of the "insertion" type and return the 
-	 * generated id.
+	 * generated id. The statement must have been obtained with one of the
+	 * <code>openWithGeneratedKeys</code> methods.
 	 * 
 	 * @param stmt a prepared statement
 	 * @return a generated id
@@ -156,11 +175,56 @@ public class JDBCDatabaseMethods extends DatabaseMethodsImpl {
 	 * @throws T2DBException
 	 */
 	public PreparedStatement open(String sql, Database database, PreparedStatement stmt) throws T2DBException {
+		return open(sql, database, stmt, false);
+	}
+	
+	/**
+	 * Return a valid prepared statement for the SQL code specified, able to
+	 * return keys generated by the database. Such statements are needed with
+	 * {@link #executeAndGetNewId(PreparedStatement)} and should not be used
+	 * for anything else. Apart from this, the method behaves like
+	 * {@link #open(String, Database, PreparedStatement)}.
+	 * 
+	 * @param sql
+	 *            a string in SQL syntax
+	 * @param database
+	 *            a database
+	 * @param stmt
+	 *            a prepared statement
+	 * @return a prepared statement
+	 * @throws T2DBException
+	 */
+	public PreparedStatement openWithGeneratedKeys(String sql, Database database, PreparedStatement stmt) throws T2DBException {
+		return open(sql, database, stmt, true);
+	}
+	
+	/**
+	 * Return a valid prepared statement for the SQL code specified, able to
+	 * return keys generated by the database. The statement is prepared using
+	 * the connection embedded in the <code>dBObject</code> parameter.
+	 * 
+	 * @param sql
+	 *            a string in SQL syntax
+	 * @param dBObject
+	 *            a database object
+	 * @param stmt
+	 *            a prepared statement
+	 * @return a prepared statement
+	 * @throws T2DBException
+	 */
+	public PreparedStatement openWithGeneratedKeys(String sql, DBObject dBObject, PreparedStatement stmt) throws T2DBException {
+		return open(sql, dBObject.getSurrogate().getDatabase(), stmt, true);
+	}
+	
+	private PreparedStatement open(String sql, Database database, PreparedStatement stmt, boolean generatedKeys) throws T2DBException {
 		try {
-			if (stmt != null && ((JDBCDatabase) database).getConnection().equals(stmt.getConnection()))
+			Connection connection = ((JDBCDatabase) database).getConnection();
+			if (stmt != null && connection.equals(stmt.getConnection()))
 				return stmt;
-			else 
-				return ((JDBCDatabase) database).getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			else {
+				statementCache = ((JDBCDatabase) database).getStatementCache();
+				return statementCache.take(connection, sql, generatedKeys);
+			}
 		} catch (SQLException e) {
 			throw T2DBJMsg.exception(e, J.J00101, sql);
 		}
@@ -210,11 +274,10 @@ public class JDBCDatabaseMethods extends DatabaseMethodsImpl {
 	}
 	
 	/**
-	 * Close the prepared statement. This implementation actually closes the
-	 * statement and returns null. Possibly, a future implementation could
-	 * decide not to close the statement and to return it to the client. For
-	 * this reason it is meaningful for clients to cache the statement for
-	 * reuse, with a possible positive effect on performance.
+	 * Close the prepared statement. This implementation returns the statement
+	 * to the statement cache, from where the next <code>open</code> with the
+	 * same SQL code and connection will take it again, and returns null. A
+	 * statement which does not come from the cache is actually closed.
 	 * 
 	 * @param stmt
 	 *            a prepared statement
@@ -224,7 +287,10 @@ public class JDBCDatabaseMethods extends DatabaseMethodsImpl {
 	public PreparedStatement close(PreparedStatement stmt) throws T2DBException {
 		try {
 			if (stmt != null) {
-				stmt.close();
+				if (statementCache != null)
+					statementCache.release(stmt);
+				else
+					stmt.close();
 				stmt = null;
 			}
 			return stmt;
@@ -234,4 +300,45 @@ public class JDBCDatabaseMethods extends DatabaseMethodsImpl {
 	}
 
 	
+	/**
+	 * Add the current parameters of a statement to its batch and execute the
+	 * batch when it is full. When the batch size is 0, the statement is
+	 * executed immediately.
+	 * 
+	 * @param stmt a prepared statement with all parameters set
+	 * @param pending the number of statements in the batch
+	 * @param batchSize the maximum number of statements in a batch, or 0
+	 * @return the number of statements in the batch after the call
+	 * @throws SQLException
+	 */
+	protected int addBatch(PreparedStatement stmt, int pending, int batchSize) throws SQLException {
+		if (batchSize == 0) {
+			stmt.execute();
+			return 0;
+		}
+		stmt.addBatch();
+		if (++pending == batchSize) {
+			stmt.executeBatch();
+			pending = 0;
+		}
+		return pending;
+	}
+	
+	/**
+	 * Return the number of statements of an executed batch which changed
+	 * something. When the driver does not return update counts, all
+	 * statements are counted.
+	 * 
+	 * @param updateCounts the result of {@link Statement#executeBatch()}
+	 * @return the number of statements with a positive or unknown update count
+	 */
+	protected int countChanges(int[] updateCounts) {
+		int count = 0;
+		for (int c : updateCounts) {
+			if (c > 0 || c == Statement.SUCCESS_NO_INFO)
+				count++;
+		}
+		return count;
+	}
+	
 }
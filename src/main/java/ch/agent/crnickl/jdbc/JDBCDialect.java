@@ -0,0 +1,412 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.T2DBMsg;
+import ch.agent.crnickl.T2DBMsg.D;
+
+/**
+ * A JDBCDialect provides SQL code which cannot be written in a portable way.
+ * The dialect of a database is selected with the configuration parameter
+ * <code>session.dialect</code>, which is either one of the names
+ * <q>hsqldb</q>, <q>h2</q>, <q>postgresql</q>, <q>mysql</q>, <q>mariadb</q>,
+ * <q>generic</q> or the name of a subclass with a public no-argument constructor. When the
+ * parameter is omitted, the dialect is guessed from the JDBC URL.
+ * <p>
+ * The base class is the generic dialect. It uses only portable SQL and does
+ * not support anything optional.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class JDBCDialect {
+
+	/**
+	 * The dialect of HyperSQL.
+	 */
+	public static class HSQLDB extends JDBCDialect {
+		@Override
+		public String getUpsertValueSQL(String table) {
+			return mergeUpsert(table);
+		}
+	}
+
+	/**
+	 * The dialect of H2.
+	 */
+	public static class H2 extends JDBCDialect {
+		@Override
+		public String getUpsertValueSQL(String table) {
+			return mergeUpsert(table);
+		}
+		@Override
+		public String getLockRowSQL(String table) {
+			return selectForUpdate(table);
+		}
+	}
+
+	/**
+	 * The dialect of PostgreSQL. The upsert requires PostgreSQL 9.5 or later
+	 * and the recursive queries PostgreSQL 8.4 or later.
+	 */
+	public static class PostgreSQL extends JDBCDialect {
+		@Override
+		public String getUpsertValueSQL(String table) {
+			return "insert into " + table + " (series, date, element) values(?, ?, ?) " +
+					"on conflict (series, date) do update set element = excluded.element " +
+					"where " + table + ".element <> excluded.element";
+		}
+		@Override
+		public String getChroniclePathSQL(int depth) {
+			return recursivePath(depth);
+		}
+		@Override
+		public String getAttributeLookupSQL() {
+			return recursiveAttributeLookup();
+		}
+		@Override
+		public String getLockRowSQL(String table) {
+			return selectForUpdate(table);
+		}
+	}
+
+	/**
+	 * The dialect of MySQL. The SQL code requires MySQL 5.0 or later.
+	 */
+	public static class MySQL extends JDBCDialect {
+		@Override
+		public String getUpsertValueSQL(String table) {
+			return "insert into " + table + " (series, date, element) values(?, ?, ?) " +
+					"on duplicate key update element = values(element)";
+		}
+		@Override
+		public String getLockRowSQL(String table) {
+			return selectForUpdate(table);
+		}
+		/**
+		 * Without the <code>useCursorFetch</code> connection property, the
+		 * MySQL driver streams rows only when the fetch size is
+		 * <code>Integer.MIN_VALUE</code>.
+		 */
+		@Override
+		public int getFetchSize(int fetchSize) {
+			return fetchSize > 0 ? Integer.MIN_VALUE : fetchSize;
+		}
+		/**
+		 * Table value constructors require MySQL 8.0.19 and differ in
+		 * MariaDB, so rows are selected and combined with
+		 * <code>union all</code>.
+		 */
+		@Override
+		public String getIntegerTable(int rows, String alias, String... columns) {
+			return unionTable(rows, alias, columns, "cast(? as signed)");
+		}
+	}
+
+	/**
+	 * The dialect of MariaDB. MariaDB shares the SQL code of MySQL, which it
+	 * supports from MariaDB 5.1, but its driver streams rows with any
+	 * positive fetch size.
+	 */
+	public static class MariaDB extends MySQL {
+		@Override
+		public int getFetchSize(int fetchSize) {
+			return fetchSize;
+		}
+	}
+
+	/**
+	 * Return the dialect with the given name. The name is one of the
+	 * predefined names or the name of a subclass.
+	 *
+	 * @param name a dialect name or a class name
+	 * @return a dialect
+	 * @throws T2DBException
+	 */
+	public static JDBCDialect forName(String name) throws T2DBException {
+		String n = name.trim().toLowerCase();
+		if (n.equals("hsqldb"))
+			return new HSQLDB();
+		if (n.equals("h2"))
+			return new H2();
+		if (n.equals("postgresql"))
+			return new PostgreSQL();
+		if (n.equals("mysql"))
+			return new MySQL();
+		if (n.equals("mariadb"))
+			return new MariaDB();
+		if (n.equals("generic"))
+			return new JDBCDialect();
+		try {
+			return (JDBCDialect) Class.forName(name.trim()).newInstance();
+		} catch (Exception e) {
+			throw T2DBMsg.exception(e, D.D00108, JDBCSession.JDBC_DIALECT, name);
+		}
+	}
+
+	/**
+	 * Return the dialect corresponding to a JDBC URL. The generic dialect is
+	 * returned when the URL is not recognized.
+	 *
+	 * @param url a JDBC URL
+	 * @return a dialect
+	 */
+	public static JDBCDialect forURL(String url) {
+		String u = url == null ? "" : url.toLowerCase();
+		if (u.startsWith("jdbc:hsqldb:"))
+			return new HSQLDB();
+		if (u.startsWith("jdbc:h2:"))
+			return new H2();
+		if (u.startsWith("jdbc:postgresql:"))
+			return new PostgreSQL();
+		if (u.startsWith("jdbc:mysql:"))
+			return new MySQL();
+		if (u.startsWith("jdbc:mariadb:"))
+			return new MariaDB();
+		return new JDBCDialect();
+	}
+
+	/**
+	 * Construct a generic dialect.
+	 */
+	public JDBCDialect() {
+	}
+
+	/**
+	 * Return SQL code inserting a value or updating an existing value in a
+	 * single statement. The parameters of the statement are the series, the
+	 * date offset, and the value, in this sequence. The update count of the
+	 * statement must be positive when a row was inserted or when a value was
+	 * modified, and zero when the value was already stored. Return null if the
+	 * dialect has no such statement.
+	 *
+	 * @param table the name of a value table
+	 * @return a string in SQL syntax or null
+	 */
+	public String getUpsertValueSQL(String table) {
+		return null;
+	}
+
+	/**
+	 * Return SQL code resolving a path of chronicle names in a single
+	 * recursive query. The parameters of the statement are the id of the
+	 * parent of the first chronicle followed by the names along the path.
+	 * The result has one row per chronicle found, with the columns level
+	 * (starting at 1), id, schema_id and descrip, in ascending order of
+	 * level. Return null if the dialect has no reliable recursive queries.
+	 * HyperSQL 2.2 stops recursive queries after the first iteration, so
+	 * its dialect returns null.
+	 *
+	 * @param depth the number of names in the path, at least 2
+	 * @return a string in SQL syntax or null
+	 */
+	public String getChroniclePathSQL(int depth) {
+		return null;
+	}
+
+	/**
+	 * Return SQL code finding the values of a property for a chronicle and
+	 * all its ancestors in a single recursive query. The parameters of the
+	 * statement are the id of the chronicle and the id of the property, in
+	 * this sequence. The result has the columns chronicle, value and
+	 * descrip, with the value of the chronicle nearest to the given one
+	 * first. Return null if the dialect has no reliable recursive queries.
+	 *
+	 * @return a string in SQL syntax or null
+	 */
+	public String getAttributeLookupSQL() {
+		return null;
+	}
+
+	/**
+	 * Return the fetch size to set on a statement reading rows with a
+	 * forward-only cursor. The generic dialect returns the requested size.
+	 *
+	 * @param fetchSize the requested number of rows per round trip, 0 for the driver default
+	 * @return the fetch size to pass to the driver
+	 */
+	public int getFetchSize(int fetchSize) {
+		return fetchSize;
+	}
+
+	/**
+	 * Return the maximum number of parameters in an <code>in</code> list.
+	 * The generic dialect returns a size accepted by all common databases.
+	 *
+	 * @return a positive number
+	 */
+	public int getMaxInListSize() {
+		return 512;
+	}
+
+	/**
+	 * Return SQL code locking a row until the end of the transaction. The
+	 * parameter of the statement is the id of the row. The generic dialect
+	 * updates the id to itself, which locks the row in all databases with
+	 * row locks. HyperSQL uses it too, because its <code>for update</code>
+	 * clause does not lock rows.
+	 *
+	 * @param table the name of a table with an <code>id</code> column
+	 * @return a string in SQL syntax
+	 */
+	public String getLockRowSQL(String table) {
+		return "update " + table + " set id = id where id = ?";
+	}
+
+	/**
+	 * Return a derived table with integer parameters. The parameters are
+	 * given row by row.
+	 *
+	 * @param rows the number of rows
+	 * @param alias the name of the table
+	 * @param columns the names of the columns
+	 * @return a string in SQL syntax, for use in a <code>from</code> clause
+	 */
+	public String getIntegerTable(int rows, String alias, String... columns) {
+		return valuesTable(rows, alias, columns, "cast(? as int)");
+	}
+
+	/**
+	 * Return a derived table made of a table value constructor.
+	 *
+	 * @param rows the number of rows
+	 * @param alias the name of the table
+	 * @param columns the names of the columns
+	 * @param parameter the text of a parameter
+	 * @return a string in SQL syntax
+	 */
+	protected String valuesTable(int rows, String alias, String[] columns, String parameter) {
+		StringBuilder sql = new StringBuilder("(values ");
+		for (int i = 0; i < rows; i++) {
+			if (i > 0)
+				sql.append(", ");
+			sql.append('(');
+			for (int j = 0; j < columns.length; j++) {
+				if (j > 0)
+					sql.append(", ");
+				sql.append(parameter);
+			}
+			sql.append(')');
+		}
+		sql.append(") as ").append(alias).append('(');
+		for (int j = 0; j < columns.length; j++) {
+			if (j > 0)
+				sql.append(", ");
+			sql.append(columns[j]);
+		}
+		return sql.append(')').toString();
+	}
+
+	/**
+	 * Return a derived table made of single row selects combined with
+	 * <code>union all</code>. The columns are named in the first select.
+	 *
+	 * @param rows the number of rows
+	 * @param alias the name of the table
+	 * @param columns the names of the columns
+	 * @param parameter the text of a parameter
+	 * @return a string in SQL syntax
+	 */
+	protected String unionTable(int rows, String alias, String[] columns, String parameter) {
+		StringBuilder sql = new StringBuilder("(");
+		for (int i = 0; i < rows; i++) {
+			if (i > 0)
+				sql.append(" union all ");
+			sql.append("select ");
+			for (int j = 0; j < columns.length; j++) {
+				if (j > 0)
+					sql.append(", ");
+				sql.append(parameter);
+				if (i == 0)
+					sql.append(" as ").append(columns[j]);
+			}
+		}
+		return sql.append(") as ").append(alias).toString();
+	}
+
+	/**
+	 * Return a <code>merge</code> statement for the upsert of a value. The
+	 * source row is filtered out when the value is already stored, so that
+	 * the update count is zero in that case.
+	 *
+	 * @param table the name of a value table
+	 * @return a string in SQL syntax
+	 */
+	protected String mergeUpsert(String table) {
+		return "merge into " + table + " v using (select * from (values(?, ?, ?)) as x(series, date, element) " +
+				"where not exists (select 1 from " + table + " w " +
+				"where w.series = x.series and w.date = x.date and w.element = x.element)) as n " +
+				"on v.series = n.series and v.date = n.date " +
+				"when matched then update set v.element = n.element " +
+				"when not matched then insert (series, date, element) values (n.series, n.date, n.element)";
+	}
+
+	/**
+	 * Return a <code>select for update</code> statement locking a row.
+	 *
+	 * @param table the name of a table with an <code>id</code> column
+	 * @return a string in SQL syntax
+	 */
+	protected String selectForUpdate(String table) {
+		return "select id from " + table + " where id = ? for update";
+	}
+
+	/**
+	 * Return a recursive query resolving a path of chronicle names. The
+	 * names after the first are joined as a table value constructor with
+	 * their levels.
+	 *
+	 * @param depth the number of names in the path, at least 2
+	 * @return a string in SQL syntax
+	 */
+	protected String recursivePath(int depth) {
+		StringBuilder names = new StringBuilder();
+		for (int i = 2; i <= depth; i++) {
+			if (i > 2)
+				names.append(", ");
+			names.append('(').append(i).append(", cast(? as varchar(255)))");
+		}
+		return "with recursive p(lvl, id, schema_id, descrip) as (" +
+				"select 1, c.id, c.schema_id, c.descrip from " + DB.CHRONICLE + " c " +
+				"where c.parent = ? and c.name = ? " +
+				"union all " +
+				"select n.lvl, c.id, c.schema_id, c.descrip from p, (values " + names + ") as n(lvl, name), " + DB.CHRONICLE + " c " +
+				"where n.lvl = p.lvl + 1 and c.parent = p.id and c.name = n.name) " +
+				"select lvl, id, schema_id, descrip from p order by lvl";
+	}
+
+	/**
+	 * Return a recursive query finding the values of a property for a
+	 * chronicle and its ancestors.
+	 *
+	 * @return a string in SQL syntax
+	 */
+	protected String recursiveAttributeLookup() {
+		return "with recursive a(lvl, id, parent) as (" +
+				"select 0, id, parent from " + DB.CHRONICLE + " where id = ? " +
+				"union all " +
+				"select a.lvl + 1, c.id, c.parent from a, " + DB.CHRONICLE + " c where c.id = a.parent) " +
+				"select v.chronicle, v.value, v.descrip from a, " + DB.ATTRIBUTE_VALUE + " v " +
+				"where v.chronicle = a.id and v.prop = ? order by a.lvl";
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+
+}
@@ -44,11 +44,11 @@ public class JDBCSchemaUpdatePolicy extends SchemaUpdatePolicyImpl {
 			throw T2DBMsg.exception(E.E10158, name, value);
 	}
 
-	private PreparedStatement count_default_values;
 	private static final String COUNT_DEFAULT_VALUES = 
 		"select count(*) from " + DB.SCHEMA_ITEM + " s, " + DB.PROPERTY + " p " + 
 		"where s.prop = p.id and p.type = ? and s.value = ?";
 	private <T> int countDefaultValues(ValueType<T> vt, String value) throws T2DBException {
+		PreparedStatement count_default_values = null;
 		try {
 			count_default_values = methods.open(COUNT_DEFAULT_VALUES, vt, count_default_values);
 			count_default_values.setInt(1, methods.getId(vt));
@@ -63,11 +63,11 @@ public class JDBCSchemaUpdatePolicy extends SchemaUpdatePolicyImpl {
 		}
 	}
 	
-	private PreparedStatement count_actual_values;
 	private static final String COUNT_ACTUAL_VALUES = 
 		"select count(*) from " + DB.PROPERTY + " p, " + DB.ATTRIBUTE_VALUE + " a " + 
 		" where a.value = ? and p.type = ? and p.id = a.prop";
 	private <T>int countActualValues(ValueType<T> vt, String value) throws T2DBException {
+		PreparedStatement count_actual_values = null;
 		try {
 			count_actual_values = methods.open(COUNT_ACTUAL_VALUES, vt, count_actual_values);
 			count_actual_values.setString(1, value);
@@ -82,10 +82,10 @@ public class JDBCSchemaUpdatePolicy extends SchemaUpdatePolicyImpl {
 		}
 	}
 
-	private PreparedStatement count_property;
 	private static final String COUNT_PROPERTY = 
 		"select count(*) from " + DB.PROPERTY + " where type = ?";
 	private int countProperties(ValueType<?> vt) throws T2DBException {
+		PreparedStatement count_property = null;
 		try {
 			count_property = methods.open(COUNT_PROPERTY, vt, count_property);
 			count_property.setInt(1, methods.getId(vt));
@@ -99,10 +99,10 @@ public class JDBCSchemaUpdatePolicy extends SchemaUpdatePolicyImpl {
 		}
 	}
 
-	private PreparedStatement count_slot;
 	private static final String COUNT_SLOT = 
 			"select count(*) from " + DB.SCHEMA_ITEM + " where prop = ?";
 	private <T>int countProperties(Property<T> property) throws T2DBException {
+		PreparedStatement count_slot = null;
 		try {
 			count_slot = methods.open(COUNT_SLOT, property, count_slot);
 			count_slot.setInt(1, methods.getId(property));
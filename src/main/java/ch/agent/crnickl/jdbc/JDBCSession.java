@@ -23,75 +23,205 @@ import java.util.Properties;
 
 import ch.agent.crnickl.T2DBException;
 import ch.agent.crnickl.T2DBMsg;
+import ch.agent.crnickl.T2DBMsg.D;
 import ch.agent.crnickl.T2DBMsg.E;
 import ch.agent.crnickl.api.DatabaseConfiguration;
 import ch.agent.crnickl.jdbc.T2DBJMsg.J;
 
 /**
- * JDBCSession is a singleton keeping track of the JDBC connection.
+ * JDBCSession keeps track of the JDBC connections of a database. Each
+ * {@link JDBCDatabase} owns its session, so that several databases can be
+ * used in the same JVM.
+ * <p>
+ * By default the session uses a single connection. When the parameter
+ * <code>session.poolMaxSize</code> is positive, the session works in pooled
+ * mode and takes connections from a {@link JDBCConnectionPool}. In pooled
+ * mode, a connection is bound to the current thread when it is first
+ * requested and stays bound until the unit of work ends with a commit, a
+ * rollback, or a {@link #release()}, when it is returned to the pool. A
+ * thread which only reads must end its unit of work with a release, else its
+ * connection is never returned. Access methods keep no statement between
+ * calls, so that several threads can use a pooled database concurrently.
+ * A {@link ChronicleCursor} keeps its statement open between calls and
+ * takes a connection of its own, so that it survives the end of the unit
+ * of work of the thread.
+ * Pending update events are kept per thread too, so that a commit releases
+ * only the events of the thread which commits and a rollback discards only
+ * its events, see {@link JDBCUpdateEventPublisher}. The following
+ * parameters configure the pool:
+ * <ul>
+ * <li><code>session.poolMaxSize</code>: the maximum number of connections
+ * (default 0, no pool),
+ * <li><code>session.poolMinSize</code>: the number of idle connections never
+ * closed (default 0),
+ * <li><code>session.poolIdleTimeout</code>: the time in seconds after which an
+ * idle connection is closed (default 600),
+ * <li><code>session.poolValidationTimeout</code>: the time in seconds allowed
+ * for validating a connection taken from the pool (default 5),
+ * <li><code>session.poolMaxWait</code>: the time in seconds to wait for a
+ * connection when all are in use (default 30).
+ * </ul>
+ * <p>
+ * Prepared statements are kept in a {@link JDBCStatementCache}. The parameter
+ * <code>session.statementCacheSize</code> gives the maximum number of
+ * statements cached per connection (default 50, 0 disables the cache).
+ * <p>
+ * The parameter <code>session.batchSize</code> gives the number of statements
+ * sent to the database in one JDBC batch when writing series values (default
+ * 1000, 0 writes values one by one). The parameter
+ * <code>session.fetchSize</code> gives the number of rows fetched in one round
+ * trip when reading series values and when walking chronicles with a
+ * {@link ChronicleCursor} (default 1000, 0 uses the driver default).
+ * <p>
+ * The parameter <code>session.numberStorage</code> selects how numeric values
+ * are stored: <q>row</q> (the default) stores one row per value in
+ * <code>value_double</code>, <q>chunk</q> stores compressed chunks in
+ * <code>value_chunk</code> using {@link AccessMethodsForNumberChunks}. The
+ * parameter <code>session.chunkSize</code> gives the number of time index
+ * offsets covered by a chunk (default 1024). When the parameter
+ * <code>session.seriesStats</code> is <q>true</q>, the range, the first and
+ * last values, and the number of values of numeric series are kept in the
+ * table <code>series_stats</code> (default false). The parameter
+ * <code>session.valuePartitions</code> gives the number of tables
+ * <code>value_double_NN</code> over which row storage is partitioned by
+ * series (default 0, a single table <code>value_double</code>); see
+ * {@link ValuePartitionMigration}. Partitions cannot be combined with chunk
+ * storage.
+ * <p>
+ * When the parameter <code>session.compactNumbers</code> is <q>true</q>,
+ * value types with a {@link FloatValueScanner}, an
+ * {@link IntegerValueScanner} or a {@link LongValueScanner} keep their
+ * values in the tables <code>value_float</code>, <code>value_int</code> and
+ * <code>value_long</code> (default false). The tables are created with
+ * <code>sql/HyperSQL_DDL_compact.sql</code>,
+ * <code>sql/PostgreSQL_DDL_compact.sql</code> or
+ * <code>sql/MySQL_DDL_compact.sql</code>.
+ * <p>
+ * The parameter <code>session.valueCache</code> configures a
+ * {@link ValueCache} of numeric values: <q>heap</q> selects a
+ * {@link HeapValueCache}, anything else names the directory of a
+ * {@link MappedValueCache} (default none, no cache). The parameter
+ * <code>session.valueCacheSize</code> gives the maximum size of the cache in
+ * megabytes (default 256). The cache is cleared on rollback.
+ * <p>
+ * The parameter <code>session.chronicleCache</code> gives the maximum number
+ * of chronicles kept in a {@link ChronicleCache} (default 0, no cache). The
+ * cache is cleared on rollback.
+ * <p>
+ * The parameter <code>session.dialect</code> selects the {@link JDBCDialect}.
+ * When omitted, the dialect is guessed from the JDBC URL.
  * 
  * @author Jean-Paul Vetterli
  */
 public class JDBCSession {
 
-	private static class Singleton {
-		private static JDBCSession jdbc_connection;
-		static {
-			jdbc_connection = new JDBCSession();
-		};
-	}
-
 	private DatabaseConfiguration configuration;
 	private String url;
 	private String user;
 
-	private Connection connection = null;
+	private volatile Connection connection = null;
+	private volatile JDBCConnectionPool pool = null;
+	private volatile JDBCStatementCache statementCache = null;
+	private JDBCDialect dialect = null;
+	private ThreadLocal<Connection> boundConnection = new ThreadLocal<Connection>();
 	
 	public static final String JDBC_DRIVER = "session.jdbcDriver";
 	public static final String JDBC_URL = "session.jdbcUrl"; // must contain a %s for session.db
 	public static final String JDBC_DB = "session.db";
 	public static final String JDBC_USER = "session.user";
 	public static final String JDBC_PASSWORD = "session.password";
-
-	private JDBCSession() {
-	}
+	public static final String JDBC_POOL_MAX_SIZE = "session.poolMaxSize";
+	public static final String JDBC_POOL_MIN_SIZE = "session.poolMinSize";
+	public static final String JDBC_POOL_IDLE_TIMEOUT = "session.poolIdleTimeout";
+	public static final String JDBC_POOL_VALIDATION_TIMEOUT = "session.poolValidationTimeout";
+	public static final String JDBC_POOL_MAX_WAIT = "session.poolMaxWait";
+	public static final String JDBC_STATEMENT_CACHE_SIZE = "session.statementCacheSize";
+	public static final String JDBC_BATCH_SIZE = "session.batchSize";
+	public static final String JDBC_DIALECT = "session.dialect";
+	public static final String JDBC_FETCH_SIZE = "session.fetchSize";
+	public static final String JDBC_NUMBER_STORAGE = "session.numberStorage";
+	public static final String JDBC_CHUNK_SIZE = "session.chunkSize";
+	public static final String JDBC_SERIES_STATS = "session.seriesStats";
+	public static final String JDBC_VALUE_PARTITIONS = "session.valuePartitions";
+	public static final String JDBC_COMPACT_NUMBERS = "session.compactNumbers";
+	public static final String JDBC_VALUE_CACHE = "session.valueCache";
+	public static final String JDBC_VALUE_CACHE_SIZE = "session.valueCacheSize";
+	public static final String JDBC_CHRONICLE_CACHE = "session.chronicleCache";
 
 	/**
-	 * Construct a JDBC session. This constructor can be invoked only once.
+	 * Construct a JDBC session.
 	 * 
 	 * @param configuration a database configuration
 	 */
 	public JDBCSession(DatabaseConfiguration configuration) {
-		if (Singleton.jdbc_connection.configuration != null)
-			throw new IllegalStateException("already initialized");
-		Singleton.jdbc_connection.configuration = configuration;
+		if (configuration == null)
+			throw new IllegalArgumentException("configuration null");
+		this.configuration = configuration;
 	}
 	
 	/**
-	 * Return the JDBC session.
-	 * 
-	 * @return the JDBC session
+	 * Perform a rollback if the session is open, else do nothing.
+	 * Catch and discard any exception.
 	 */
-	public static JDBCSession getInstance() {
-		if (Singleton.jdbc_connection.configuration == null)
-			throw new IllegalStateException("not initialized");
-		return Singleton.jdbc_connection;
+	public void rollbackIfAlive() {
+		try {
+			if (isOpen())
+				rollback();
+		} catch (T2DBException e) {
+			// ignore
+		}
+	}
+	
+	private synchronized void open() throws T2DBException {
+		if (isOpen())
+			return;
+		// the cache is kept when the session is closed and opened again
+		if (statementCache == null)
+			statementCache = new JDBCStatementCache(getIntParameter(configuration, JDBC_STATEMENT_CACHE_SIZE, 50));
+		int maxSize = getIntParameter(configuration, JDBC_POOL_MAX_SIZE, 0);
+		if (maxSize > 0) {
+			pool = new JDBCConnectionPool(new JDBCConnectionPool.ConnectionFactory() {
+					@Override
+					public Connection makeConnection() throws T2DBException {
+						return connect();
+					}
+					@Override
+					public void closeConnection(Connection connection) {
+						statementCache.clear(connection);
+						try {
+							connection.close();
+						} catch (SQLException e) {
+							// ignore
+						}
+					}
+				},
+				getIntParameter(configuration, JDBC_POOL_MIN_SIZE, 0), maxSize,
+				getIntParameter(configuration, JDBC_POOL_IDLE_TIMEOUT, 600) * 1000L,
+				getIntParameter(configuration, JDBC_POOL_VALIDATION_TIMEOUT, 5),
+				getIntParameter(configuration, JDBC_POOL_MAX_WAIT, 30) * 1000L);
+		} else
+			connection = connect();
 	}
 	
 	/**
-	 * Perform a rollback if there is a session, else do nothing.
-	 * Catch and discard any exception.
+	 * Return the value of an optional integer configuration parameter.
+	 * 
+	 * @param configuration a database configuration
+	 * @param name the name of the parameter
+	 * @param defaultValue the value returned when the parameter is not set
+	 * @return the value of the parameter
+	 * @throws T2DBException
 	 */
-	public static void rollbackIfAlive() {
+	static int getIntParameter(DatabaseConfiguration configuration, String name, int defaultValue) throws T2DBException {
+		String value = configuration.getParameter(name, false);
 		try {
-			if (Singleton.jdbc_connection.configuration != null)
-				Singleton.jdbc_connection.rollback();
-		} catch (T2DBException e) {
-			// ignore
+			return value == null ? defaultValue : Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw T2DBMsg.exception(e, D.D00108, name, value);
 		}
 	}
 	
-	private void open() throws T2DBException {
+	private Connection connect() throws T2DBException {
 		Properties prop = new Properties();
 		String driver = null;
 		try {
@@ -105,8 +235,9 @@ public class JDBCSession {
 			// don't zap credentials so we can restart
 			// next one is a workaround for a mysql problem
 			prop.setProperty("useServerPrepStmts", "false");
-			connection = DriverManager.getConnection(url, prop);
-			connection.setAutoCommit(false);
+			Connection c = DriverManager.getConnection(url, prop);
+			c.setAutoCommit(false);
+			return c;
 		} catch (ClassNotFoundException e) {
 			throw T2DBJMsg.exception(e, J.J00105);
 		} catch (SQLException e) {
@@ -118,14 +249,26 @@ public class JDBCSession {
 	}
 	
 	/**
-	 * Close the JDBC connection if it is open.
+	 * Close the JDBC connection if it is open. In pooled mode, close the pool.
+	 * Connections in use by other threads are closed when their unit of work
+	 * ends.
 	 */
-	public void close(boolean ignoreException) throws T2DBException {
+	public synchronized void close(boolean ignoreException) throws T2DBException {
 		try {
-			if (isOpen())
+			if (pool != null) {
+				Connection bound = boundConnection.get();
+				if (bound != null) {
+					boundConnection.remove();
+					pool.release(bound, false);
+				}
+				pool.close();
+				pool = null;
+			}
+			if (connection != null) {
+				statementCache.clear(connection);
 				connection.close();
+			}
 			connection = null;
-			configuration = null;
 			user = null;
 			url = null;
 		} catch (Exception e) {
@@ -135,46 +278,166 @@ public class JDBCSession {
 	}
 
 	/**
-	 * Return the JDBC connection. If there is no connection, open one.
+	 * Return the JDBC connection. If there is no connection, open one. In
+	 * pooled mode, return the connection bound to the current thread, taking
+	 * one from the pool if none is bound yet.
 	 * 
 	 * @return a JDBC connection
 	 */
 	public Connection getConnection() throws T2DBException {
 		if (!isOpen())
 			open();
+		if (pool != null) {
+			Connection bound = boundConnection.get();
+			if (bound == null) {
+				bound = pool.borrow();
+				boundConnection.set(bound);
+			}
+			return bound;
+		}
 		return connection;
 	}
 	
 	private boolean isOpen() {
-		return connection != null;
+		return connection != null || pool != null;
 	}
 
 	/**
-	 * Commit the current transaction.
+	 * Commit the current transaction. In pooled mode, the connection bound to
+	 * the current thread is returned to the pool. Nothing is done if no
+	 * connection is bound.
 	 * 
 	 * @throws T2DBException
 	 */
 	public void commit() throws T2DBException {
 		try {
-			getConnection().commit();
+			if (pool != null) {
+				Connection bound = boundConnection.get();
+				if (bound != null) {
+					bound.commit();
+					boundConnection.remove();
+					pool.release(bound, true);
+				}
+			} else
+				getConnection().commit();
 		} catch (SQLException e) {
 			throw T2DBJMsg.exception(e, J.J00106);
 		}
 	}
 	
 	/**
-	 * Rollback the current transaction.
+	 * Rollback the current transaction. In pooled mode, the connection bound
+	 * to the current thread is returned to the pool, or closed if the rollback
+	 * fails. Nothing is done if no connection is bound.
 	 * 
 	 * @throws T2DBException
 	 */
 	public void rollback() throws T2DBException {
 		try {
-			getConnection().rollback();
+			if (pool != null) {
+				Connection bound = boundConnection.get();
+				if (bound != null) {
+					boundConnection.remove();
+					boolean done = false;
+					try {
+						bound.rollback();
+						done = true;
+					} finally {
+						pool.release(bound, done);
+					}
+				}
+			} else
+				getConnection().rollback();
 		} catch (SQLException e) {
 			throw T2DBJMsg.exception(e, J.J00107);
 		}
 	}
 	
+	/**
+	 * End a unit of work without updates. In pooled mode, the transaction of
+	 * the connection bound to the current thread is rolled back and the
+	 * connection is returned to the pool. Nothing is done if no connection is
+	 * bound or if the session is not pooled.
+	 * 
+	 * @throws T2DBException
+	 */
+	public void release() throws T2DBException {
+		if (pool != null)
+			rollback();
+	}
+
+	/**
+	 * Take a connection for a unit of work of its own. In pooled mode, the
+	 * connection is taken from the pool but is not bound to the current
+	 * thread, so that a commit or a rollback of the thread does not affect
+	 * it, and it must be given back with {@link #releaseConnection(Connection)}.
+	 * Without a pool, null is returned.
+	 *
+	 * @return a connection or null
+	 * @throws T2DBException
+	 */
+	Connection borrowConnection() throws T2DBException {
+		if (!isOpen())
+			open();
+		return pool == null ? null : pool.borrow();
+	}
+
+	/**
+	 * End the unit of work of a connection taken with
+	 * {@link #borrowConnection()}. The transaction is rolled back and the
+	 * connection is returned to the pool, or closed if the rollback fails or
+	 * if the session was closed in the meantime.
+	 *
+	 * @param connection a connection
+	 */
+	void releaseConnection(Connection connection) {
+		boolean done = false;
+		try {
+			connection.rollback();
+			done = true;
+		} catch (SQLException e) {
+			// ignore
+		}
+		JDBCConnectionPool current = pool;
+		if (current != null)
+			current.release(connection, done);
+		else {
+			statementCache.clear(connection);
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Return the prepared statement cache of the session. The cache exists
+	 * once the session is open.
+	 * 
+	 * @return the statement cache or null
+	 */
+	public JDBCStatementCache getStatementCache() {
+		return statementCache;
+	}
+	
+	/**
+	 * Return the SQL dialect of the session.
+	 * 
+	 * @return a dialect
+	 * @throws T2DBException
+	 */
+	public JDBCDialect getDialect() throws T2DBException {
+		if (dialect == null) {
+			String name = configuration.getParameter(JDBC_DIALECT, false);
+			if (name == null || name.trim().length() == 0)
+				dialect = JDBCDialect.forURL(configuration.getParameter(JDBC_URL, true));
+			else
+				dialect = JDBCDialect.forName(name);
+		}
+		return dialect;
+	}
+	
 	/**
 	 * Return the URL of the session.
 	 * 
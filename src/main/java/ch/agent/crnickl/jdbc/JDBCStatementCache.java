@@ -0,0 +1,269 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of prepared statements keyed by connection and SQL text, and by
+ * whether the statement returns generated keys. Each
+ * connection has its own cache with a bounded number of statements, with the
+ * least recently used statement evicted first. A statement taken from the
+ * cache is not available to other clients until it is released.
+ * <p>
+ * The cache keeps counters of hits, misses and evictions.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class JDBCStatementCache {
+
+	private static class Key {
+		private String sql;
+		private boolean generatedKeys;
+		private Key(String sql, boolean generatedKeys) {
+			this.sql = sql;
+			this.generatedKeys = generatedKeys;
+		}
+		@Override
+		public int hashCode() {
+			return generatedKeys ? ~sql.hashCode() : sql.hashCode();
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key key = (Key) obj;
+			return generatedKeys == key.generatedKeys && sql.equals(key.sql);
+		}
+	}
+	
+	private int capacity;
+	private Map<Connection, LinkedHashMap<Key, PreparedStatement>> caches;
+	private Map<PreparedStatement, Key> inUse;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Construct a statement cache.
+	 *
+	 * @param capacity the maximum number of statements cached per connection, 0 to disable caching
+	 */
+	public JDBCStatementCache(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity < 0");
+		this.capacity = capacity;
+		caches = new HashMap<Connection, LinkedHashMap<Key, PreparedStatement>>();
+		inUse = new IdentityHashMap<PreparedStatement, Key>();
+	}
+
+	/**
+	 * Return a prepared statement for the SQL code on the connection. A
+	 * statement is taken from the cache if available, else a new one is
+	 * prepared. Only statements used to insert rows with a key generated by
+	 * the database should ask for generated keys, because some drivers handle
+	 * such statements less efficiently. The statement must be given back with
+	 * {@link #release(PreparedStatement)}.
+	 *
+	 * @param connection a connection
+	 * @param sql a string in SQL syntax
+	 * @param generatedKeys if true the statement returns generated keys
+	 * @return a prepared statement
+	 * @throws SQLException
+	 */
+	public PreparedStatement take(Connection connection, String sql, boolean generatedKeys) throws SQLException {
+		Key key = new Key(sql, generatedKeys);
+		PreparedStatement stmt = null;
+		synchronized (this) {
+			LinkedHashMap<Key, PreparedStatement> cache = caches.get(connection);
+			if (cache != null)
+				stmt = cache.remove(key);
+			if (stmt != null)
+				hits++;
+			else
+				misses++;
+		}
+		if (stmt == null) {
+			if (generatedKeys)
+				stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			else
+				stmt = connection.prepareStatement(sql);
+		}
+		if (capacity > 0) {
+			synchronized (this) {
+				inUse.put(stmt, key);
+			}
+		}
+		return stmt;
+	}
+
+	/**
+	 * Give a statement back to the cache. If the statement was not taken
+	 * from the cache, or if it is closed, or if caching is disabled, the
+	 * statement is closed. When the cache of the connection is full, the least
+	 * recently used statement is closed. Before a statement is cached, its
+	 * parameters, batch, maximum number of rows and fetch size are reset, so
+	 * that the next client gets the statement as if it had just been
+	 * prepared. The current result set is closed if the driver returns it,
+	 * but not all drivers do so after <code>executeQuery</code>, and clients
+	 * should close result sets themselves.
+	 *
+	 * @param stmt a prepared statement
+	 * @throws SQLException
+	 */
+	public void release(PreparedStatement stmt) throws SQLException {
+		PreparedStatement evicted = null;
+		Key key;
+		synchronized (this) {
+			key = inUse.remove(stmt);
+		}
+		if (key != null && !stmt.isClosed()) {
+			try {
+				reset(stmt);
+			} catch (SQLException e) {
+				key = null;
+			}
+		}
+		synchronized (this) {
+			if (key != null && !stmt.isClosed()) {
+				Connection connection = stmt.getConnection();
+				LinkedHashMap<Key, PreparedStatement> cache = caches.get(connection);
+				if (cache == null) {
+					cache = new LinkedHashMap<Key, PreparedStatement>(16, 0.75f, true);
+					caches.put(connection, cache);
+				}
+				if (!cache.containsKey(key)) {
+					cache.put(key, stmt);
+					stmt = null;
+					if (cache.size() > capacity) {
+						Iterator<PreparedStatement> it = cache.values().iterator();
+						evicted = it.next();
+						it.remove();
+						evictions++;
+					}
+				}
+			}
+		}
+		if (stmt != null)
+			stmt.close();
+		if (evicted != null)
+			evicted.close();
+	}
+
+	/**
+	 * Close and forget all statements cached for a connection. This method
+	 * must be called before a connection is closed.
+	 *
+	 * @param connection a connection
+	 */
+	public void clear(Connection connection) {
+		LinkedHashMap<Key, PreparedStatement> cache;
+		synchronized (this) {
+			cache = caches.remove(connection);
+		}
+		if (cache != null)
+			closeQuietly(cache.values());
+	}
+
+	/**
+	 * Close and forget all cached statements.
+	 */
+	public void clear() {
+		List<PreparedStatement> statements = new ArrayList<PreparedStatement>();
+		synchronized (this) {
+			for (LinkedHashMap<Key, PreparedStatement> cache : caches.values()) {
+				statements.addAll(cache.values());
+			}
+			caches.clear();
+		}
+		closeQuietly(statements);
+	}
+
+	/**
+	 * Return the maximum number of statements cached per connection.
+	 *
+	 * @return the capacity of the cache per connection
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Return the number of statements found in the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Return the number of statements which had to be prepared.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Return the number of statements closed to make room in the cache.
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("statement cache: capacity=%d hits=%d misses=%d evictions=%d",
+				capacity, hits, misses, evictions);
+	}
+
+	private void reset(PreparedStatement stmt) throws SQLException {
+		ResultSet rs = stmt.getResultSet();
+		if (rs != null)
+			rs.close();
+		stmt.clearParameters();
+		stmt.clearBatch();
+		stmt.setMaxRows(0);
+		stmt.setFetchSize(0);
+	}
+
+	private void closeQuietly(Iterable<PreparedStatement> statements) {
+		for (PreparedStatement stmt : statements) {
+			try {
+				stmt.close();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+	}
+
+}
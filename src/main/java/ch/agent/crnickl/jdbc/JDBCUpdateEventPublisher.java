@@ -0,0 +1,149 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.agent.crnickl.api.DBObjectType;
+import ch.agent.crnickl.api.UpdateEvent;
+import ch.agent.crnickl.api.UpdateEventSubscriber;
+import ch.agent.crnickl.impl.UpdateEventPublisherImpl;
+
+/**
+ * An update event publisher which keeps pending events per unit of work.
+ * Events not published immediately are kept until the unit of work ends,
+ * with {@link #release()} on commit or {@link #clear()} on rollback. When
+ * the session is pooled, the unit of work is bound to the current thread,
+ * like its connection: a commit releases only the events of the thread
+ * which commits and a rollback discards only its events. Without a pool,
+ * there is a single unit of work. Subscribers are notified by one thread at
+ * a time.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class JDBCUpdateEventPublisher extends UpdateEventPublisherImpl {
+
+	private final boolean perThread;
+	private final List<UpdateEvent> shared;
+	private final ThreadLocal<List<UpdateEvent>> bound;
+	private boolean releasing;
+
+	/**
+	 * Construct an update event publisher.
+	 *
+	 * @param perThread if true, each thread has its own unit of work
+	 */
+	public JDBCUpdateEventPublisher(boolean perThread) {
+		super();
+		this.perThread = perThread;
+		shared = new ArrayList<UpdateEvent>();
+		bound = new ThreadLocal<List<UpdateEvent>>() {
+			@Override
+			protected List<UpdateEvent> initialValue() {
+				return new ArrayList<UpdateEvent>();
+			}
+		};
+	}
+
+	/**
+	 * Return true if each thread has its own unit of work.
+	 *
+	 * @return true if pending events are kept per thread
+	 */
+	public boolean isPerThread() {
+		return perThread;
+	}
+
+	/**
+	 * Return the number of events pending in the current unit of work.
+	 *
+	 * @return the number of pending events
+	 */
+	public synchronized int getPendingCount() {
+		return pending().size();
+	}
+
+	private List<UpdateEvent> pending() {
+		return perThread ? bound.get() : shared;
+	}
+
+	@Override
+	public synchronized void subscribe(UpdateEventSubscriber subscriber, DBObjectType type, boolean priority) {
+		super.subscribe(subscriber, type, priority);
+	}
+
+	@Override
+	public synchronized void unsubscribe(UpdateEventSubscriber subscriber) {
+		super.unsubscribe(subscriber);
+	}
+
+	@Override
+	public synchronized void unsubscribeAll() {
+		super.unsubscribeAll();
+	}
+
+	@Override
+	public synchronized void publish(UpdateEvent event, boolean immediate) {
+		if (immediate)
+			super.publish(event, true);
+		else
+			pending().add(event);
+	}
+
+	/**
+	 * Notify subscribers of the events pending in the current unit of work
+	 * and forget them. Priority subscribers are notified of all events
+	 * before the others.
+	 */
+	@Override
+	public synchronized void release() {
+		List<UpdateEvent> events = pending();
+		for (UpdateEvent event : events) {
+			super.publish(event, false);
+		}
+		events.clear();
+		if (perThread)
+			bound.remove();
+		releasing = true;
+		try {
+			super.release();
+		} finally {
+			releasing = false;
+			super.clear();
+		}
+	}
+
+	/**
+	 * Forget the events pending in the current unit of work.
+	 *
+	 * @return the number of events forgotten
+	 */
+	@Override
+	public synchronized int clear() {
+		// the base class calls clear() at the end of release()
+		if (releasing)
+			return super.clear();
+		List<UpdateEvent> events = pending();
+		int count = events.size();
+		events.clear();
+		if (perThread)
+			bound.remove();
+		return count;
+	}
+
+}
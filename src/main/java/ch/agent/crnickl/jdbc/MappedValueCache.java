@@ -0,0 +1,154 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A disk-backed {@link ValueCache}. The values of a series are kept in a
+ * file of a subdirectory private to the cache, with the time index offsets as an array of
+ * <code>int</code> followed by the values as an array of <code>double</code>.
+ * Files are memory-mapped, so that values are read without SQL and without
+ * copies until they are put into a time addressable.
+ * <p>
+ * Series have no modification stamp maintained by value updates, so files
+ * cannot be validated against the database: each cache starts empty in a
+ * new subdirectory with a unique name, so that caches of other databases
+ * or processes on the same directory are left alone, and updates made by
+ * other processes are not seen. The subdirectory is deleted by
+ * {@link #close()}.
+ * <p>
+ * Java has no method to unmap a file. When an entry leaves the cache, its
+ * file is deleted and the mapping is dropped, but the mapped pages and the
+ * disk space stay in use until the buffer is garbage collected. The memory
+ * and disk actually in use can therefore exceed the capacity by the size
+ * of entries discarded since the last garbage collection. Where this
+ * matters, the capacity should leave room for it, for example by making it
+ * no larger than half of the space available. On systems which cannot
+ * delete a mapped file, files of discarded entries are only deleted when
+ * the cache is closed.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class MappedValueCache extends ValueCache {
+
+	private static final String SUFFIX = ".values";
+
+	private static class MappedEntry implements Entry {
+		private File file;
+		private MappedByteBuffer buffer;
+		private int count;
+		@Override
+		public int getCount() {
+			return count;
+		}
+		@Override
+		public int getOffset(int i) {
+			return buffer.getInt(4 * i);
+		}
+		@Override
+		public double getValue(int i) {
+			return buffer.getDouble(4 * count + 8 * i);
+		}
+		@Override
+		public long getSize() {
+			return 12L * count;
+		}
+		@Override
+		public void discard() {
+			buffer = null;
+			file.delete();
+		}
+	}
+
+	private File directory;
+
+	/**
+	 * Construct a cache. The directory is created if necessary and the cache
+	 * creates its own subdirectory in it.
+	 *
+	 * @param directory the cache directory
+	 * @param capacity the maximum size of the cache in bytes
+	 * @throws IOException
+	 */
+	public MappedValueCache(File directory, long capacity) throws IOException {
+		super(capacity);
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("cannot create directory " + directory);
+		File subdirectory = File.createTempFile("cache", "", directory);
+		if (!subdirectory.delete() || !subdirectory.mkdir())
+			throw new IOException("cannot create directory " + subdirectory);
+		subdirectory.deleteOnExit();
+		this.directory = subdirectory;
+	}
+
+	/**
+	 * Return the subdirectory of the cache.
+	 *
+	 * @return a directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Drop all series and delete the subdirectory of the cache.
+	 */
+	@Override
+	public synchronized void close() {
+		super.close();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.getName().endsWith(SUFFIX))
+					file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Override
+	protected long sizeOf(int count) {
+		long size = 12L * count;
+		return size > Integer.MAX_VALUE ? Long.MAX_VALUE : size;
+	}
+
+	@Override
+	protected Entry makeEntry(int series, long token, int[] offsets, double[] values, int count) throws IOException {
+		MappedEntry entry = new MappedEntry();
+		entry.file = new File(directory, series + "-" + token + SUFFIX);
+		entry.count = count;
+		long bytes = entry.getSize();
+		RandomAccessFile raf = new RandomAccessFile(entry.file, "rw");
+		try {
+			raf.setLength(bytes);
+			entry.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+		} finally {
+			raf.close();
+		}
+		for (int i = 0; i < count; i++) {
+			entry.buffer.putInt(4 * i, offsets[i]);
+			entry.buffer.putDouble(4 * count + 8 * i, values[i]);
+		}
+		return entry;
+	}
+
+}
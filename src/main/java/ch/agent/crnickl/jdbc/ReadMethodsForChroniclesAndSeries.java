@@ -16,14 +16,18 @@
  */
 package ch.agent.crnickl.jdbc;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import ch.agent.crnickl.T2DBException;
 import ch.agent.crnickl.T2DBMsg;
@@ -37,8 +41,10 @@ import ch.agent.crnickl.api.Series;
 import ch.agent.crnickl.api.Surrogate;
 import ch.agent.crnickl.impl.ChronicleImpl;
 import ch.agent.crnickl.impl.ChronicleImpl.RawData;
+import ch.agent.crnickl.impl.DatabaseBackend;
 import ch.agent.crnickl.impl.Permission;
 import ch.agent.crnickl.impl.SeriesImpl;
+import ch.agent.crnickl.jdbc.T2DBJMsg.J;
 
 /**
  * A stateless object with methods providing read access to chronicles and
@@ -53,7 +59,42 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 	public ReadMethodsForChroniclesAndSeries() {
 	}
 
-	private PreparedStatement select_entity_by_id;
+	private ChronicleCache chronicleCache;
+	private int fetchSize;
+	
+	/**
+	 * Set the number of rows fetched from the database in one round trip by
+	 * a {@link ChronicleCursor}. When the size is 0, the driver default is
+	 * used, which with some drivers loads the complete result before the
+	 * first row is returned.
+	 * 
+	 * @param fetchSize a non-negative number
+	 */
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize < 0)
+			throw new IllegalArgumentException("fetchSize < 0");
+		this.fetchSize = fetchSize;
+	}
+	
+	/**
+	 * Set the chronicle cache. When a cache is set, chronicles are looked up
+	 * in the cache before the database.
+	 * 
+	 * @param chronicleCache a chronicle cache or null
+	 */
+	public void setChronicleCache(ChronicleCache chronicleCache) {
+		this.chronicleCache = chronicleCache;
+	}
+	
+	/**
+	 * Return the chronicle cache.
+	 * 
+	 * @return the chronicle cache or null
+	 */
+	public ChronicleCache getChronicleCache() {
+		return chronicleCache;
+	}
+
 	private static final String SELECT_ENTITY_BY_ID = 
 		"select parent, name, schema_id, descrip from " + DB.CHRONICLE + " where id = ?";
 	/**
@@ -65,38 +106,58 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public Chronicle getChronicle(Surrogate surrogate) throws T2DBException {
-		Chronicle chronicle = null;
+		PreparedStatement select_entity_by_id = null;
+		ChronicleCache.Row row = null;
 		Throwable cause = null;
 		try {
-			select_entity_by_id = open(SELECT_ENTITY_BY_ID, surrogate, select_entity_by_id);
-
-			select_entity_by_id.setInt(1, getId(surrogate));
-			ResultSet rs = select_entity_by_id.executeQuery();
-			if (rs.next()) {
-				ChronicleImpl.RawData data = new ChronicleImpl.RawData();
-				data.setSurrogate(surrogate);
-				data.setName(rs.getString(2));
-				data.setDescription(rs.getString(4));
-				int collection = rs.getInt(1);
-				data.setCollection(collection == 0 ? surrogate.getDatabase().getTopChronicle() : 
-					new ChronicleImpl(makeSurrogate(surrogate.getDatabase(), DBObjectType.CHRONICLE, collection)));
-				int schema = rs.getInt(3);
-				data.setSchema(schema == 0 ? null : makeSurrogate(surrogate.getDatabase(), DBObjectType.SCHEMA, schema));
-				chronicle = new ChronicleImpl(data);
-				check(Permission.READ, chronicle);
+			int id = getId(surrogate);
+			if (chronicleCache != null)
+				row = chronicleCache.get(id);
+			if (row == null) {
+				long token = chronicleCache == null ? 0 : chronicleCache.getToken();
+				select_entity_by_id = open(SELECT_ENTITY_BY_ID, surrogate, select_entity_by_id);
+				select_entity_by_id.setInt(1, id);
+				ResultSet rs = select_entity_by_id.executeQuery();
+				if (rs.next()) {
+					row = new ChronicleCache.Row(id, rs.getInt(1), rs.getInt(3), rs.getString(2), rs.getString(4));
+					if (chronicleCache != null)
+						chronicleCache.put(token, row);
+				}
+				rs.close();
 			}
-			rs.close();
 		} catch (SQLException e) {
 			cause = e;
 		} finally {
 			select_entity_by_id = close(select_entity_by_id);
 		}
-		if (chronicle == null || cause != null)
+		if (row == null || cause != null)
 			throw T2DBMsg.exception(cause, E.E40104, surrogate.toString());
+		return makeChronicle(surrogate, row);
+	}
+	
+	/**
+	 * Return a chronicle from a row of the chronicle table. The parent is
+	 * not loaded. An exception is thrown if the chronicle may not be read.
+	 * 
+	 * @param surrogate the surrogate of the chronicle
+	 * @param row a row
+	 * @return a chronicle
+	 * @throws T2DBException
+	 */
+	private Chronicle makeChronicle(Surrogate surrogate, ChronicleCache.Row row) throws T2DBException {
+		Database database = surrogate.getDatabase();
+		ChronicleImpl.RawData data = new ChronicleImpl.RawData();
+		data.setSurrogate(surrogate);
+		data.setName(row.name);
+		data.setDescription(row.description);
+		data.setCollection(row.parent == 0 ? database.getTopChronicle() : 
+			new ChronicleImpl(makeSurrogate(database, DBObjectType.CHRONICLE, row.parent)));
+		data.setSchema(row.schema == 0 ? null : makeSurrogate(database, DBObjectType.SCHEMA, row.schema));
+		Chronicle chronicle = new ChronicleImpl(data);
+		check(Permission.READ, chronicle);
 		return chronicle;
 	}
 	
-	private PreparedStatement select_entity_by_parent_and_name;
 	private static final String SELECT_ENTITY_BY_PARENT_AND_NAME = 
 		"select id, schema_id, descrip from " + DB.CHRONICLE + " where parent = ? and name = ?";
 	/**
@@ -108,39 +169,184 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public Chronicle getChronicleOrNull(Chronicle parent, String name) throws T2DBException {
-		Chronicle chronicle = null;
+		PreparedStatement select_entity_by_parent_and_name = null;
+		int parentId = getIdOrZero(parent);
+		ChronicleCache.Row row = null;
+		if (chronicleCache != null)
+			row = chronicleCache.get(parentId, name);
+		if (row == null) {
+			try {
+				long token = chronicleCache == null ? 0 : chronicleCache.getToken();
+				select_entity_by_parent_and_name = open(SELECT_ENTITY_BY_PARENT_AND_NAME, parent, select_entity_by_parent_and_name);
+				select_entity_by_parent_and_name.setInt(1, parentId);
+				select_entity_by_parent_and_name.setString(2, name);
+				ResultSet rs = select_entity_by_parent_and_name.executeQuery();
+				if (rs.next()) {
+					int id = rs.getInt(1);
+					if (id == 0)
+						throw T2DBMsg.exception(E.E40105, parent == null ? null : parent.toString(), name);
+					row = new ChronicleCache.Row(id, parentId, rs.getInt(2), name, rs.getString(3));
+					if (chronicleCache != null)
+						chronicleCache.put(token, row);
+				} else {
+					row = ChronicleCache.MISSING;
+					if (chronicleCache != null)
+						chronicleCache.putMissing(token, parentId, name);
+				}
+				rs.close();
+			} catch (SQLException e) {
+				throw T2DBMsg.exception(e, E.E40123, name, parent.getName(true));
+			} finally {
+				select_entity_by_parent_and_name = close(select_entity_by_parent_and_name);
+			}
+		}
+		if (row == ChronicleCache.MISSING)
+			return null;
+		return makeChronicle(parent, row);
+	}
+	
+	/**
+	 * Find the chronicles along a path of simple names below a given parent.
+	 * All chronicles not in the chronicle cache are found with a single
+	 * query: a recursive query when the dialect supports it, else a join of
+	 * the chronicle table with itself once per name. The result stops before
+	 * the first name which is not found or not readable.
+	 * 
+	 * @param parent a chronicle
+	 * @param names an array of simple names
+	 * @return the chronicles found along the path, possibly empty, never null
+	 * @throws T2DBException
+	 */
+	public List<Chronicle> getChroniclePath(Chronicle parent, String[] names) throws T2DBException {
+		PreparedStatement select_path = null;
+		List<Chronicle> path = new ArrayList<Chronicle>(names.length);
+		Chronicle current = parent;
+		int level = 0;
+		if (chronicleCache != null) {
+			while (level < names.length) {
+				ChronicleCache.Row row = chronicleCache.get(getIdOrZero(current), names[level]);
+				if (row == null)
+					break;
+				if (row == ChronicleCache.MISSING)
+					return path;
+				current = makeChronicle(current, row);
+				if (current == null)
+					return path;
+				path.add(current);
+				level++;
+			}
+			if (level == names.length)
+				return path;
+		}
+		int depth = names.length - level;
+		int parentId = getIdOrZero(current);
+		List<ChronicleCache.Row> rows = new ArrayList<ChronicleCache.Row>(depth);
 		try {
-			select_entity_by_parent_and_name = open(SELECT_ENTITY_BY_PARENT_AND_NAME, parent, select_entity_by_parent_and_name);
-			select_entity_by_parent_and_name.setInt(1, getIdOrZero(parent));
-			select_entity_by_parent_and_name.setString(2, name);
-			ResultSet rs = select_entity_by_parent_and_name.executeQuery();
-			if (rs.next()) {
-				int id = rs.getInt(1);
-				if (id == 0)
-					throw T2DBMsg.exception(E.E40105, parent == null ? null : parent.toString(), name);
-				Surrogate surrogate = makeSurrogate(parent.getSurrogate().getDatabase(), DBObjectType.CHRONICLE, id);
-				ChronicleImpl.RawData data = new ChronicleImpl.RawData();
-				data.setSurrogate(surrogate);
-				int schema = rs.getInt(2);
-				data.setCollection(parent);
-				data.setSchema(schema == 0 ? null : makeSurrogate(parent.getSurrogate().getDatabase(), DBObjectType.SCHEMA, schema));
-				data.setName(name);
-				data.setDescription(rs.getString(3));
-				chronicle = new ChronicleImpl(data);
-				boolean permitted = check(Permission.READ, chronicle, false);
-				if (!permitted)
-					chronicle = null;
+			long token = chronicleCache == null ? 0 : chronicleCache.getToken();
+			String sql = depth > 1 ? getDialect(current).getChroniclePathSQL(depth) : null;
+			if (sql != null) {
+				select_path = open(sql, current, select_path);
+				select_path.setInt(1, parentId);
+				for (int i = 0; i < depth; i++)
+					select_path.setString(i + 2, names[level + i]);
+				ResultSet rs = select_path.executeQuery();
+				int id = parentId;
+				while (rs.next() && rs.getInt(1) == rows.size() + 1) {
+					ChronicleCache.Row row = new ChronicleCache.Row(rs.getInt(2), id, rs.getInt(3), names[level + rows.size()], rs.getString(4));
+					rows.add(row);
+					id = row.id;
+				}
+				rs.close();
+			} else {
+				select_path = open(selfJoinPath(depth), current, select_path);
+				for (int i = 1; i < depth; i++)
+					select_path.setString(i, names[level + i]);
+				select_path.setInt(depth, parentId);
+				select_path.setString(depth + 1, names[level]);
+				ResultSet rs = select_path.executeQuery();
+				if (rs.next()) {
+					int id = parentId;
+					for (int i = 0; i < depth; i++) {
+						int child = rs.getInt(3 * i + 1);
+						if (child == 0)
+							break;
+						ChronicleCache.Row row = new ChronicleCache.Row(child, id, rs.getInt(3 * i + 2), names[level + i], rs.getString(3 * i + 3));
+						rows.add(row);
+						id = child;
+					}
+				}
+				rs.close();
+			}
+			if (chronicleCache != null) {
+				for (ChronicleCache.Row row : rows) {
+					chronicleCache.put(token, row);
+				}
+				if (rows.size() < depth)
+					chronicleCache.putMissing(token, rows.size() == 0 ? parentId : rows.get(rows.size() - 1).id, names[level + rows.size()]);
 			}
-			rs.close();
 		} catch (SQLException e) {
-			throw T2DBMsg.exception(e, E.E40123, name, parent.getName(true));
+			String remainder = ((DatabaseBackend) parent.getSurrogate().getDatabase()).getNamingPolicy().fullName(Arrays.copyOfRange(names, level, names.length));
+			throw T2DBMsg.exception(e, E.E40123, remainder, current.getName(true));
 		} finally {
-			select_entity_by_parent_and_name = close(select_entity_by_parent_and_name);
+			select_path = close(select_path);
+		}
+		for (ChronicleCache.Row row : rows) {
+			current = makeChronicle(current, row);
+			if (current == null)
+				break;
+			path.add(current);
 		}
+		return path;
+	}
+	
+	/**
+	 * Return a query resolving a path of chronicle names with a join of the
+	 * chronicle table with itself once per name. The parameters are the
+	 * names from the second to the last, the id of the parent of the first
+	 * chronicle, and the first name, in this sequence. The result has a
+	 * single row, with the id, schema_id and descrip of each chronicle, which
+	 * are null after the first name not found.
+	 * 
+	 * @param depth the number of names in the path
+	 * @return a string in SQL syntax
+	 */
+	private String selfJoinPath(int depth) {
+		StringBuilder columns = new StringBuilder();
+		StringBuilder joins = new StringBuilder();
+		for (int i = 1; i <= depth; i++) {
+			if (i > 1) {
+				columns.append(", ");
+				joins.append(String.format(" left outer join %s c%d on c%d.parent = c%d.id and c%d.name = ?", 
+						DB.CHRONICLE, i, i, i - 1, i));
+			}
+			columns.append(String.format("c%d.id, c%d.schema_id, c%d.descrip", i, i, i));
+		}
+		return "select " + columns + " from " + DB.CHRONICLE + " c1" + joins + " where c1.parent = ? and c1.name = ?";
+	}
+	
+	/**
+	 * Make a chronicle from a row of the chronicle table. Return null if the
+	 * chronicle may not be read.
+	 * 
+	 * @param parent the parent chronicle
+	 * @param row a row
+	 * @return a chronicle or null
+	 * @throws T2DBException
+	 */
+	private Chronicle makeChronicle(Chronicle parent, ChronicleCache.Row row) throws T2DBException {
+		Database database = parent.getSurrogate().getDatabase();
+		ChronicleImpl.RawData data = new ChronicleImpl.RawData();
+		data.setSurrogate(makeSurrogate(database, DBObjectType.CHRONICLE, row.id));
+		data.setCollection(parent);
+		data.setSchema(row.schema == 0 ? null : makeSurrogate(database, DBObjectType.SCHEMA, row.schema));
+		data.setName(row.name);
+		data.setDescription(row.description);
+		Chronicle chronicle = new ChronicleImpl(data);
+		if (!check(Permission.READ, chronicle, false))
+			chronicle = null;
 		return chronicle;
 	}
 	
-	private PreparedStatement select_entities_by_parent;
 	private static final String SELECT_ENTITIES_BY_PARENT = 
 		"select id, schema_id, name, descrip from " + DB.CHRONICLE + " where parent = ?";
 	/**
@@ -150,28 +356,15 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public Collection<Chronicle> getChroniclesByParent(Chronicle parent) throws T2DBException {
+		PreparedStatement select_entities_by_parent = null;
 		Collection<Chronicle> result = new ArrayList<Chronicle>();
 		if (check(Permission.DISCOVER, parent, false)) {
 			try {
 				select_entities_by_parent = open(SELECT_ENTITIES_BY_PARENT, parent, select_entities_by_parent);
 				select_entities_by_parent.setInt(1, getIdOrZero(parent));
 				ResultSet rs = select_entities_by_parent.executeQuery();
-				Database database = parent.getSurrogate().getDatabase();
 				while (rs.next()) {
-					int id = rs.getInt(1);
-					if (id == 0)
-						throw T2DBMsg.exception(E.E40105, parent == null ? null : parent.toString(), rs.getString(3));
-					Surrogate surrogate = makeSurrogate(database, DBObjectType.CHRONICLE, id);
-					RawData data = new ChronicleImpl.RawData();
-					data.setSurrogate(surrogate);
-					int schema = rs.getInt(2);
-					data.setCollection(parent);
-					data.setSchema(schema == 0 ? null : makeSurrogate(database, DBObjectType.SCHEMA, schema));
-					data.setName(rs.getString(3));
-					data.setDescription(rs.getString(4));
-					Chronicle chronicle = new ChronicleImpl(data);
-					check(Permission.READ, chronicle);
-					result.add(chronicle);
+					result.add(makeChild(parent, rs));
 				}
 				rs.close();
 			} catch (SQLException e) {
@@ -183,7 +376,123 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 		return result;
 	}
 	
-	private PreparedStatement[] sel_attibute_prop_in_ent;
+	private static final String SELECT_ENTITIES_BY_PARENT_AFTER = 
+		"select id, schema_id, name, descrip from " + DB.CHRONICLE + " where parent = ? and name > ? order by name";
+	private static final String SELECT_ENTITIES_BY_PARENT_ORDERED = 
+		"select id, schema_id, name, descrip from " + DB.CHRONICLE + " where parent = ? order by name";
+	/**
+	 * Return a page of the chronicles with a given direct parent, in the
+	 * order of their names. The page starts after the chronicle with the
+	 * given simple name, so that the next page is obtained by passing the
+	 * name of the last chronicle of the current page. The position is a key
+	 * and not an offset: pages remain consistent when chronicles are added
+	 * or removed between calls, and each page is read with the unique index
+	 * on parent and name, whatever its position.
+	 * 
+	 * @param parent a chronicle
+	 * @param after the simple name of the last chronicle of the previous page or null for the first page
+	 * @param limit the maximum size of the page or 0 for no limit
+	 * @return a list of chronicles, possibly empty, never null
+	 * @throws T2DBException
+	 */
+	public List<Chronicle> getChroniclesByParent(Chronicle parent, String after, int limit) throws T2DBException {
+		PreparedStatement select_entities_by_parent_after = null;
+		if (limit < 0)
+			throw new IllegalArgumentException("limit < 0");
+		List<Chronicle> result = new ArrayList<Chronicle>();
+		if (check(Permission.DISCOVER, parent, false)) {
+			try {
+				if (after == null) {
+					select_entities_by_parent_after = open(SELECT_ENTITIES_BY_PARENT_ORDERED, parent, select_entities_by_parent_after);
+					select_entities_by_parent_after.setInt(1, getIdOrZero(parent));
+				} else {
+					select_entities_by_parent_after = open(SELECT_ENTITIES_BY_PARENT_AFTER, parent, select_entities_by_parent_after);
+					select_entities_by_parent_after.setInt(1, getIdOrZero(parent));
+					select_entities_by_parent_after.setString(2, after);
+				}
+				select_entities_by_parent_after.setMaxRows(limit);
+				select_entities_by_parent_after.setFetchSize(getDialect(parent).getFetchSize(limit));
+				ResultSet rs = select_entities_by_parent_after.executeQuery();
+				while (rs.next()) {
+					result.add(makeChild(parent, rs));
+				}
+				rs.close();
+			} catch (SQLException e) {
+				throw T2DBMsg.exception(e, E.E40122, parent.getName(true));
+			} finally {
+				select_entities_by_parent_after = close(select_entities_by_parent_after);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Return a cursor over the chronicles with a given direct parent, in the
+	 * order of their names. The cursor holds its own statement, which is
+	 * not available to other calls until the cursor is closed. When the
+	 * session is pooled, the statement is prepared on a connection taken
+	 * for the cursor alone, so that the cursor remains valid when the
+	 * current thread commits or rolls back, and the connection is returned
+	 * to the pool when the cursor is closed. If the parent may not be
+	 * discovered, the cursor is empty.
+	 * 
+	 * @param parent a chronicle
+	 * @return a cursor, to be closed by the caller
+	 * @throws T2DBException
+	 */
+	public ChronicleCursor getChronicleCursor(Chronicle parent) throws T2DBException {
+		JDBCDatabase database = (JDBCDatabase) parent.getSurrogate().getDatabase();
+		Connection connection = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		if (check(Permission.DISCOVER, parent, false)) {
+			try {
+				int size = getDialect(parent).getFetchSize(fetchSize);
+				connection = database.borrowConnection();
+				if (connection == null)
+					stmt = open(SELECT_ENTITIES_BY_PARENT_ORDERED, parent, null);
+				else
+					stmt = connection.prepareStatement(SELECT_ENTITIES_BY_PARENT_ORDERED);
+				stmt.setInt(1, getIdOrZero(parent));
+				stmt.setMaxRows(0);
+				stmt.setFetchSize(size);
+				rs = stmt.executeQuery();
+			} catch (SQLException e) {
+				new ChronicleCursor(this, parent, database, connection, stmt, null).close();
+				throw T2DBMsg.exception(e, E.E40122, parent.getName(true));
+			}
+		}
+		return new ChronicleCursor(this, parent, database, connection, stmt, rs);
+	}
+	
+	/**
+	 * Return a chronicle from the current row of a result set with the
+	 * columns id, schema_id, name, and descrip.
+	 * 
+	 * @param parent the parent chronicle
+	 * @param rs a result set
+	 * @return a chronicle
+	 * @throws SQLException
+	 * @throws T2DBException
+	 */
+	Chronicle makeChild(Chronicle parent, ResultSet rs) throws SQLException, T2DBException {
+		int id = rs.getInt(1);
+		if (id == 0)
+			throw T2DBMsg.exception(E.E40105, parent == null ? null : parent.toString(), rs.getString(3));
+		Database database = parent.getSurrogate().getDatabase();
+		Surrogate surrogate = makeSurrogate(database, DBObjectType.CHRONICLE, id);
+		RawData data = new ChronicleImpl.RawData();
+		data.setSurrogate(surrogate);
+		int schema = rs.getInt(2);
+		data.setCollection(parent);
+		data.setSchema(schema == 0 ? null : makeSurrogate(database, DBObjectType.SCHEMA, schema));
+		data.setName(rs.getString(3));
+		data.setDescription(rs.getString(4));
+		Chronicle chronicle = new ChronicleImpl(data);
+		check(Permission.READ, chronicle);
+		return chronicle;
+	}
+	
 	private static final String SEL_ATTRIBUTE_BY_PROP_IN_ENT = 
 		"select chronicle, value, descrip from " + DB.ATTRIBUTE_VALUE + " where prop = ? and chronicle in (%s)";
 	/**
@@ -200,33 +509,17 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 	public boolean getAttributeValue(List<Chronicle> chronicles, Attribute<?> attribute) throws T2DBException {
 		// note: things would be easier here with Spring's SimpleJdbcTemplate and a named parameter
 		Database db = null;
-		if (sel_attibute_prop_in_ent == null)
-			sel_attibute_prop_in_ent = new PreparedStatement[MAX_ENTITY_DEPTH];
-		
-		// index zero reserved for MAX_ENTITY_DEPTH elements or more
 		int found = 0;
 		int size = chronicles.size();
 		if (size == 0)
 			throw new IllegalArgumentException("entities list empty");
+		PreparedStatement stmt = null;
 		try {
-			String sql = null;
-			PreparedStatement stmt = null;
 			int[] ids = new int[size];
 			db = chronicles.get(0).getSurrogate().getDatabase();
-			if (size > MAX_ENTITY_DEPTH) {
-				// "dynamic" statement
-				stmt = sel_attibute_prop_in_ent[0];
-				if (stmt != null && stmt.getParameterMetaData().getParameterCount() != size + 1)
-					stmt = null;
-				sql = String.format(SEL_ATTRIBUTE_BY_PROP_IN_ENT, repeat("?", ",", size));
-				stmt = open(sql, db, stmt);
-				sel_attibute_prop_in_ent[0] = stmt;
-			} else {
-				stmt = sel_attibute_prop_in_ent[size];
-				sql = String.format(SEL_ATTRIBUTE_BY_PROP_IN_ENT, repeat("?", ",", size));
-				stmt = open(sql, db, stmt);
-				sel_attibute_prop_in_ent[size] = stmt;
-			}
+			// one statement per list size, kept by the statement cache
+			String sql = String.format(SEL_ATTRIBUTE_BY_PROP_IN_ENT, repeat("?", ",", size));
+			stmt = open(sql, db, stmt);
 			stmt.setInt(1, getId(attribute.getProperty()));
 			for (int i = 0; i < size; i++) {
 				ids[i] = getId(chronicles.get(i));
@@ -235,11 +528,8 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 			ResultSet rs = stmt.executeQuery();
 			while(rs.next()) {
 				int name = rs.getInt(1);
-				if (name == 0) {
-					stmt.close(); 
-					stmt = null; 
+				if (name == 0)
 					throw T2DBMsg.exception(E.E40106, sql);
-				}
 				if (found == 0 || moreSpecific(ids, name, found)) {
 					found = name;
 					attribute.scan(rs.getString(2));
@@ -252,10 +542,7 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 		} catch (SQLException e) {
 			throw T2DBMsg.exception(e, E.E40120, attribute.getProperty().getName());
 		} finally {
-			if (size > MAX_ENTITY_DEPTH)
-				sel_attibute_prop_in_ent[0] = close(sel_attibute_prop_in_ent[0]);
-			else if (size > 0)
-				sel_attibute_prop_in_ent[size] = close(sel_attibute_prop_in_ent[size]);
+			stmt = close(stmt);
 		}
 		if (found > 0) {
 			Surrogate s = makeSurrogate(db, DBObjectType.CHRONICLE, found);
@@ -264,39 +551,350 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 		return found > 0;
 	}
 	
-	private PreparedStatement sel_entities_by_attribute;
+	private static final String SEL_ATTRIBUTE_IN_ANCESTORS = ancestorJoin(MAX_ENTITY_DEPTH);
+	/**
+	 * Complete the attribute with the value found for a chronicle or for its
+	 * nearest ancestor with a value, and return true. If no value was found,
+	 * return false. Unlike {@link #getAttributeValue(List, Attribute)}, the
+	 * caller does not build the list of ancestors: the parent chain is
+	 * walked by the database, in a single recursive query when the dialect
+	 * supports it, else with a join of the chronicle table with itself
+	 * covering {@link #MAX_ENTITY_DEPTH} levels per round trip.
+	 * 
+	 * @param chronicle a chronicle
+	 * @param attribute an attribute
+	 * @return true if any value found
+	 * @throws T2DBException
+	 */
+	public boolean getAttributeValue(Chronicle chronicle, Attribute<?> attribute) throws T2DBException {
+		PreparedStatement sel_attribute_in_ancestors = null;
+		int found = 0;
+		String value = null;
+		String description = null;
+		try {
+			int id = getId(chronicle);
+			int prop = getId(attribute.getProperty());
+			String sql = getDialect(chronicle).getAttributeLookupSQL();
+			if (sql != null) {
+				sel_attribute_in_ancestors = open(sql, chronicle, sel_attribute_in_ancestors);
+				sel_attribute_in_ancestors.setInt(1, id);
+				sel_attribute_in_ancestors.setInt(2, prop);
+				ResultSet rs = sel_attribute_in_ancestors.executeQuery();
+				if (rs.next()) {
+					found = rs.getInt(1);
+					value = rs.getString(2);
+					description = rs.getString(3);
+				}
+				rs.close();
+			} else {
+				sel_attribute_in_ancestors = open(SEL_ATTRIBUTE_IN_ANCESTORS, chronicle, sel_attribute_in_ancestors);
+				while (id > 0 && found == 0) {
+					for (int i = 0; i < MAX_ENTITY_DEPTH; i++) {
+						sel_attribute_in_ancestors.setInt(i + 1, prop);
+					}
+					sel_attribute_in_ancestors.setInt(MAX_ENTITY_DEPTH + 1, id);
+					ResultSet rs = sel_attribute_in_ancestors.executeQuery();
+					id = 0;
+					if (rs.next()) {
+						for (int i = 0; i < MAX_ENTITY_DEPTH; i++) {
+							int ancestor = rs.getInt(3 * i + 1);
+							if (ancestor == 0)
+								break;
+							value = rs.getString(3 * i + 2);
+							if (value != null) {
+								found = ancestor;
+								description = rs.getString(3 * i + 3);
+								break;
+							}
+						}
+						if (found == 0)
+							id = rs.getInt(3 * MAX_ENTITY_DEPTH + 1);
+					}
+					rs.close();
+				}
+			}
+		} catch (SQLException e) {
+			throw T2DBMsg.exception(e, E.E40120, attribute.getProperty().getName());
+		} finally {
+			sel_attribute_in_ancestors = close(sel_attribute_in_ancestors);
+		}
+		if (found > 0) {
+			Surrogate s = makeSurrogate(chronicle.getSurrogate().getDatabase(), DBObjectType.CHRONICLE, found);
+			check(Permission.READ, s);
+			attribute.scan(value);
+			if (description.length() > 0)
+				attribute.setDescription(description);
+		}
+		return found > 0;
+	}
+	
+	/**
+	 * Return a query finding the values of a property for a chronicle and
+	 * its ancestors with a join of the chronicle table with itself. The
+	 * parameters are the id of the property once per level and the id of
+	 * the chronicle. The result has a single row, with the id of each
+	 * chronicle along the parent chain and its value and description,
+	 * followed by the parent of the last chronicle.
+	 * 
+	 * @param depth the number of levels
+	 * @return a string in SQL syntax
+	 */
+	private static String ancestorJoin(int depth) {
+		StringBuilder columns = new StringBuilder();
+		StringBuilder joins = new StringBuilder();
+		for (int i = 1; i <= depth; i++) {
+			if (i > 1)
+				joins.append(String.format(" left outer join %s c%d on c%d.id = c%d.parent", DB.CHRONICLE, i, i, i - 1));
+			joins.append(String.format(" left outer join %s v%d on v%d.chronicle = c%d.id and v%d.prop = ?", 
+					DB.ATTRIBUTE_VALUE, i, i, i, i));
+			columns.append(String.format("c%d.id, v%d.value, v%d.descrip, ", i, i, i));
+		}
+		return "select " + columns + "c" + depth + ".parent from " + DB.CHRONICLE + " c1" + joins + " where c1.id = ?";
+	}
+	
+	private static final String SEL_CHRONICLES_BY_ID = 
+		"select id, parent, name, schema_id, descrip from " + DB.CHRONICLE + " where id in (%s)";
+	private static final String SEL_ATTRIBUTES_BY_PROP_AND_CHRONICLE = 
+		"select chronicle, prop, value from " + DB.ATTRIBUTE_VALUE + " where prop in (%s) and chronicle in (%s)";
+	/**
+	 * Return the values of many properties for many chronicles. Element
+	 * <code>[i][j]</code> of the result is the value of property
+	 * <code>j</code> for chronicle <code>i</code> or for its nearest ancestor
+	 * with a value, or null if there is none. Instead of one lookup per
+	 * element, the ancestors of all chronicles are read level by level, and
+	 * the values of all properties are read for all chronicles and ancestors,
+	 * with queries on lists of ids. Lists are limited to the size allowed by
+	 * the dialect and are padded to a power of two, so that few distinct
+	 * statements are prepared. When there is a chronicle cache, ancestors
+	 * are taken from it and put into it.
+	 * <p>
+	 * Like {@link #getAttributeValue(Chronicle, Attribute)}, the method does
+	 * not consult schemas: defaults are not applied. Descriptions are not
+	 * returned.
+	 * 
+	 * @param chronicles a list of chronicles
+	 * @param properties a list of properties
+	 * @return an array of values with one row per chronicle and one column per property
+	 * @throws T2DBException
+	 */
+	public Object[][] getAttributeValues(List<Chronicle> chronicles, List<Property<?>> properties) throws T2DBException {
+		Object[][] result = new Object[chronicles.size()][properties.size()];
+		if (chronicles.isEmpty() || properties.isEmpty())
+			return result;
+		Chronicle any = chronicles.get(0);
+		Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+		Map<Integer, String[]> values = new HashMap<Integer, String[]>();
+		Map<Integer, Integer> columns = new HashMap<Integer, Integer>();
+		int[] props = new int[properties.size()];
+		PreparedStatement stmt = null;
+		try {
+			int max = getDialect(any).getMaxInListSize();
+			for (int j = 0; j < props.length; j++) {
+				props[j] = getId(properties.get(j));
+				if (!columns.containsKey(props[j]))
+					columns.put(props[j], j);
+			}
+			// parent chains, one level per round
+			Set<Integer> level = new HashSet<Integer>();
+			for (Chronicle chronicle : chronicles) {
+				level.add(getId(chronicle));
+			}
+			while (!level.isEmpty()) {
+				int[] ids = new int[level.size()];
+				int count = 0;
+				for (Integer id : level) {
+					ChronicleCache.Row row = chronicleCache == null ? null : chronicleCache.get(id);
+					if (row == null)
+						ids[count++] = id;
+					else
+						parents.put(id, row.parent);
+				}
+				long token = chronicleCache == null ? 0 : chronicleCache.getToken();
+				int n;
+				for (int start = 0; start < count; start += n) {
+					n = Math.min(max, count - start);
+					int size = paddedSize(n, max);
+					stmt = open(String.format(SEL_CHRONICLES_BY_ID, repeat("?", ",", size)), any, stmt);
+					for (int i = 0; i < size; i++) {
+						stmt.setInt(i + 1, ids[start + Math.min(i, n - 1)]);
+					}
+					ResultSet rs = stmt.executeQuery();
+					while (rs.next()) {
+						ChronicleCache.Row row = new ChronicleCache.Row(rs.getInt(1), rs.getInt(2), rs.getInt(4), rs.getString(3), rs.getString(5));
+						parents.put(row.id, row.parent);
+						if (chronicleCache != null)
+							chronicleCache.put(token, row);
+					}
+					rs.close();
+					stmt = close(stmt);
+				}
+				Set<Integer> next = new HashSet<Integer>();
+				for (Integer id : level) {
+					Integer parent = parents.get(id);
+					if (parent != null && parent != 0 && !parents.containsKey(parent))
+						next.add(parent);
+				}
+				level = next;
+			}
+			// values of all chronicles and ancestors
+			int[] ids = new int[parents.size()];
+			int count = 0;
+			for (Integer id : parents.keySet()) {
+				ids[count++] = id;
+			}
+			int np;
+			for (int pstart = 0; pstart < props.length; pstart += np) {
+				np = Math.min(max, props.length - pstart);
+				int psize = paddedSize(np, max);
+				int n;
+				for (int start = 0; start < count; start += n) {
+					n = Math.min(max, count - start);
+					int size = paddedSize(n, max);
+					stmt = open(String.format(SEL_ATTRIBUTES_BY_PROP_AND_CHRONICLE, 
+							repeat("?", ",", psize), repeat("?", ",", size)), any, stmt);
+					int param = 1;
+					for (int i = 0; i < psize; i++) {
+						stmt.setInt(param++, props[pstart + Math.min(i, np - 1)]);
+					}
+					for (int i = 0; i < size; i++) {
+						stmt.setInt(param++, ids[start + Math.min(i, n - 1)]);
+					}
+					ResultSet rs = stmt.executeQuery();
+					while (rs.next()) {
+						int id = rs.getInt(1);
+						String[] row = values.get(id);
+						if (row == null) {
+							row = new String[props.length];
+							values.put(id, row);
+						}
+						row[columns.get(rs.getInt(2))] = rs.getString(3);
+					}
+					rs.close();
+					stmt = close(stmt);
+				}
+			}
+		} catch (Exception e) {
+			throw T2DBJMsg.exception(e, J.J00120, properties.size(), chronicles.size());
+		} finally {
+			stmt = close(stmt);
+		}
+		Set<Integer> found = new HashSet<Integer>();
+		for (int i = 0; i < result.length; i++) {
+			int start = getId(chronicles.get(i));
+			for (int j = 0; j < props.length; j++) {
+				int column = columns.get(props[j]);
+				Integer id = start;
+				// the bound protects against a cycle in corrupt data
+				for (int k = 0; k <= parents.size() && id != null && id != 0; k++) {
+					String[] row = values.get(id);
+					if (row != null && row[column] != null) {
+						result[i][j] = properties.get(j).scan(row[column]);
+						found.add(id);
+						break;
+					}
+					id = parents.get(id);
+				}
+			}
+		}
+		Database db = any.getSurrogate().getDatabase();
+		for (Integer id : found) {
+			check(Permission.READ, makeSurrogate(db, DBObjectType.CHRONICLE, id));
+		}
+		return result;
+	}
+	
+	/**
+	 * Return the smallest power of two not less than a number of elements,
+	 * limited to a maximum.
+	 * 
+	 * @param n a number of elements
+	 * @param max the maximum
+	 * @return the padded size
+	 */
+	private static int paddedSize(int n, int max) {
+		int size = 1;
+		while (size < n)
+			size <<= 1;
+		return Math.min(size, max);
+	}
+	
 	private static final String SEL_ENTITIES_BY_ATTRIBUTE = 
 		"select chronicle from " + DB.ATTRIBUTE_VALUE + " where value = ? and prop = ?";
+	private static final String SEL_ENTITIES_BY_ATTRIBUTE_EAGER = 
+		"select c.id, c.parent, c.name, c.schema_id, c.descrip from " + DB.ATTRIBUTE_VALUE + " v join " + 
+		DB.CHRONICLE + " c on c.id = v.chronicle where v.value = ? and v.prop = ?";
 	/**
 	 * Return a list of chronicles with a given value for a given property.
+	 * The chronicles are read with their name, parent, schema and
+	 * description, as with {@link #getChroniclesByAttributeValue(Property, Object, int, boolean)}
+	 * with <code>eager</code> true.
 	 * 
 	 * @param property a property
 	 * @param value a value
-	 * @param maxSize the maximum size of the result or 0 for no limit
+	 * @param maxSize the maximum size of the result or 0 or less for no limit
 	 * @return a list of chronicles, possibly empty, never null
 	 * @throws T2DBException
 	 */
 	public <T>List<Chronicle> getChroniclesByAttributeValue(Property<T> property, T value, int maxSize) throws T2DBException {
+		return getChroniclesByAttributeValue(property, value, maxSize, true);
+	}
+	
+	/**
+	 * Return a list of chronicles with a given value for a given property.
+	 * The maximum size is applied by the database. When <code>eager</code>
+	 * is true, the chronicle table is joined, so that chronicles come back
+	 * complete from the same query, and are put into the chronicle cache if
+	 * there is one. Else the chronicles are returned as bare surrogates,
+	 * each loaded with a separate query when first used.
+	 * 
+	 * @param property a property
+	 * @param value a value
+	 * @param maxSize the maximum size of the result or 0 or less for no limit
+	 * @param eager if true read the chronicles in the same query
+	 * @return a list of chronicles, possibly empty, never null
+	 * @throws T2DBException
+	 */
+	public <T>List<Chronicle> getChroniclesByAttributeValue(Property<T> property, T value, int maxSize, boolean eager) throws T2DBException {
+		PreparedStatement sel_entities_by_attribute_eager = null;
+		PreparedStatement sel_entities_by_attribute = null;
+		int maxRows = maxSize > 0 ? maxSize : 0;
 		List<Chronicle> chronicles = new ArrayList<Chronicle>();
 		String stringValue = property.getValueType().toString(value);
+		Database database = property.getSurrogate().getDatabase();
 		try {
-			sel_entities_by_attribute = open(SEL_ENTITIES_BY_ATTRIBUTE, property, sel_entities_by_attribute);
-			sel_entities_by_attribute.setString(1, stringValue);
-			sel_entities_by_attribute.setInt(2, getId(property));
-			ResultSet rs = sel_entities_by_attribute.executeQuery();
-			while (rs.next()) {
-				Surrogate surrogate = makeSurrogate(property.getSurrogate().getDatabase(), DBObjectType.CHRONICLE, rs.getInt(1));
-				Chronicle chronicle = new ChronicleImpl(surrogate);
-				check(Permission.READ, chronicle);
-				chronicles.add(chronicle);
-				if (maxSize > 0 && chronicles.size() >= maxSize)
-					break;
+			if (eager) {
+				long token = chronicleCache == null ? 0 : chronicleCache.getToken();
+				sel_entities_by_attribute_eager = open(SEL_ENTITIES_BY_ATTRIBUTE_EAGER, property, sel_entities_by_attribute_eager);
+				sel_entities_by_attribute_eager.setString(1, stringValue);
+				sel_entities_by_attribute_eager.setInt(2, getId(property));
+				sel_entities_by_attribute_eager.setMaxRows(maxRows);
+				ResultSet rs = sel_entities_by_attribute_eager.executeQuery();
+				while (rs.next()) {
+					ChronicleCache.Row row = new ChronicleCache.Row(rs.getInt(1), rs.getInt(2), rs.getInt(4), rs.getString(3), rs.getString(5));
+					if (chronicleCache != null)
+						chronicleCache.put(token, row);
+					chronicles.add(makeChronicle(makeSurrogate(database, DBObjectType.CHRONICLE, row.id), row));
+				}
+				rs.close();
+			} else {
+				sel_entities_by_attribute = open(SEL_ENTITIES_BY_ATTRIBUTE, property, sel_entities_by_attribute);
+				sel_entities_by_attribute.setString(1, stringValue);
+				sel_entities_by_attribute.setInt(2, getId(property));
+				sel_entities_by_attribute.setMaxRows(maxRows);
+				ResultSet rs = sel_entities_by_attribute.executeQuery();
+				while (rs.next()) {
+					Surrogate surrogate = makeSurrogate(database, DBObjectType.CHRONICLE, rs.getInt(1));
+					Chronicle chronicle = new ChronicleImpl(surrogate);
+					check(Permission.READ, chronicle);
+					chronicles.add(chronicle);
+				}
+				rs.close();
 			}
-			rs.close();
 		} catch (SQLException e) {
 			throw T2DBMsg.exception(e, E.E40119, property.getName(), value);
 		} finally {
 			sel_entities_by_attribute = close(sel_entities_by_attribute);
+			sel_entities_by_attribute_eager = close(sel_entities_by_attribute_eager);
 		}
 		return chronicles;
 	}
@@ -335,7 +933,6 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 		return b.toString();
 	}
 	
-	private PreparedStatement select_series_by_id;
 	private static final String SELECT_SERIES_BY_ID = 
 			"select chronicle, ssn from " + DB.SERIES + " where id = ?";
 	/**
@@ -346,6 +943,7 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public <T>Series<T> getSeries(Surrogate surrogate) throws T2DBException {
+		PreparedStatement select_series_by_id = null;
 		try {
 			select_series_by_id = open(SELECT_SERIES_BY_ID, surrogate, select_series_by_id);
 			int id = getId(surrogate);
@@ -363,10 +961,8 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 		}
 	}
 	
-	private PreparedStatement select_series_by_entity_and_nr;
 	private static final String SELECT_SERIES_BY_ENTITY_AND_NR = 
     	"select id from " + DB.SERIES + " where chronicle = ? and ssn = ?";
-	private PreparedStatement select_series_by_entity;
 	private static final String SELECT_SERIES_BY_ENTITY = 
     	"select id, ssn from " + DB.SERIES + " where chronicle = ? order by ssn";
 
@@ -386,6 +982,8 @@ public class ReadMethodsForChroniclesAndSeries extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public <T>Series<T>[] getSeries(Chronicle chronicle, String[] names, int[] numbers) throws T2DBException {
+		PreparedStatement select_series_by_entity_and_nr = null;
+		PreparedStatement select_series_by_entity = null;
 		if (names.length != numbers.length)
 			throw new IllegalArgumentException("names and numbers emtpy or unequally sized arrays");
 		@SuppressWarnings("unchecked")
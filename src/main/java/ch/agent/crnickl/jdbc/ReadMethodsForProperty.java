@@ -43,7 +43,6 @@ public class ReadMethodsForProperty extends JDBCDatabaseMethods {
 	public ReadMethodsForProperty() {
 	}
 
-	private PreparedStatement select_property_by_name;
 	private static final String SELECT_PROPERTY_BY_NAME = 
 		"select id, type, label from " + DB.PROPERTY + " where label = ?";
 	/**
@@ -55,6 +54,7 @@ public class ReadMethodsForProperty extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public Property<?> getProperty(Database database, String name) throws T2DBException {
+		PreparedStatement select_property_by_name = null;
 		try {
 			select_property_by_name = open(SELECT_PROPERTY_BY_NAME, database, select_property_by_name);
 			select_property_by_name.setString(1, name);
@@ -71,7 +71,6 @@ public class ReadMethodsForProperty extends JDBCDatabaseMethods {
 		}
 	}
 	
-	private PreparedStatement select_property_by_pattern;
 	private static final String SELECT_PROPERTY_BY_PATTERN = 
 		"select id, type, label from " + DB.PROPERTY + " where label like ? order by label";
 	/**
@@ -82,6 +81,7 @@ public class ReadMethodsForProperty extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public Collection<Property<?>> getProperties(Database database, String pattern) throws T2DBException {
+		PreparedStatement select_property_by_pattern = null;
 		if (pattern == null)
 			pattern = "*";
 		pattern = pattern.replace('*', '%');
@@ -102,7 +102,6 @@ public class ReadMethodsForProperty extends JDBCDatabaseMethods {
 		}
 	}
 	
-	private PreparedStatement select_property_by_id;
 	private static final String SELECT_PROPERTY_BY_ID = 
 		"select id, type, label from " + DB.PROPERTY + " where id = ?";
 	/**
@@ -113,6 +112,7 @@ public class ReadMethodsForProperty extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public Property<?> getProperty(Surrogate surrogate) throws T2DBException {
+		PreparedStatement select_property_by_id = null;
 		try {
 			select_property_by_id = open(SELECT_PROPERTY_BY_ID, surrogate, select_property_by_id);
 			select_property_by_id.setInt(1, getId(surrogate));
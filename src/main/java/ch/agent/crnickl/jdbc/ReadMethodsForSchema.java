@@ -168,11 +168,11 @@ public class ReadMethodsForSchema extends JDBCDatabaseMethods {
 		}
 	}
 	
-	private PreparedStatement select_schema_by_pattern;
 	private static final String SELECT_SCHEMA_BY_PATTERN = 
 		"select id, parent, label from " + DB.SCHEMA_NAME + " " +
 		"where label like ? order by label";
 	private Collection<RawSchema> getRawSchemas(Database database, String pattern) throws T2DBException {
+		PreparedStatement select_schema_by_pattern = null;
 		select_schema_by_pattern = open(SELECT_SCHEMA_BY_PATTERN, database, select_schema_by_pattern);
 		if (pattern == null)
 			pattern = "*";
@@ -192,7 +192,6 @@ public class ReadMethodsForSchema extends JDBCDatabaseMethods {
 		}
 	}
 	
-	private PreparedStatement select_schema_by_id;
 	private static final String SELECT_SCHEMA_BY_ID = 
 		"select id, parent, label from " + DB.SCHEMA_NAME + " where id = ?";
 	/**
@@ -203,6 +202,7 @@ public class ReadMethodsForSchema extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	protected RawSchema getRawSchema(Surrogate surrogate) throws T2DBException {
+		PreparedStatement select_schema_by_id = null;
 		try {
 			select_schema_by_id = open(SELECT_SCHEMA_BY_ID, surrogate, select_schema_by_id);
 			select_schema_by_id.setInt(1, getId(surrogate));
@@ -218,11 +218,11 @@ public class ReadMethodsForSchema extends JDBCDatabaseMethods {
 		}
 	}
 	
-	private PreparedStatement select_schema_components;
 	private static final String SELECT_SCHEMA_COMPONENTS = 
 		"select ssn, attrib, prop, value, descrip from " + DB.SCHEMA_ITEM + 
 		" where id = ? order by ssn, attrib";
 	private RawSchemaComponents getRawSchemaComponents(Surrogate surrogate) throws T2DBException {
+		PreparedStatement select_schema_components = null;
 		Collection<RawSchemaComponent> result = new ArrayList<RawSchemaComponent>();
 		try {
 			select_schema_components = open(SELECT_SCHEMA_COMPONENTS, surrogate, select_schema_components);
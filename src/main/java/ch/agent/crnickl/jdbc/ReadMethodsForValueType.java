@@ -43,7 +43,6 @@ public class ReadMethodsForValueType extends JDBCDatabaseMethods {
 	public ReadMethodsForValueType() {
 	}
 
-	private PreparedStatement select_valuetype_by_name;
 	private static final String SELECT_VALUETYPE_BY_NAME = 
 		"select id, restricted, scanner, lastmod "
 		+ "from " + DB.VALUE_TYPE + " where label = ?";
@@ -56,6 +55,7 @@ public class ReadMethodsForValueType extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public <T>ValueType<T> getValueType(Database database, String name) throws T2DBException {
+		PreparedStatement select_valuetype_by_name = null;
 		try {
 			select_valuetype_by_name = open(SELECT_VALUETYPE_BY_NAME, database, select_valuetype_by_name);
 			select_valuetype_by_name.setString(1, name);
@@ -72,7 +72,6 @@ public class ReadMethodsForValueType extends JDBCDatabaseMethods {
 		}
 	}
 	
-	private PreparedStatement select_valuetype_by_pattern;
 	private static final String SELECT_VALUETYPE_BY_PATTERN = 
 		"select id, label, restricted, scanner, lastmod "
 		+ "from " + DB.VALUE_TYPE + " where label like ? order by label";
@@ -85,6 +84,7 @@ public class ReadMethodsForValueType extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public Collection<ValueType<?>> getValueTypes(Database database, String pattern) throws T2DBException {
+		PreparedStatement select_valuetype_by_pattern = null;
 		if (pattern == null)
 			pattern = "*";
 		pattern = pattern.replace('*', '%');
@@ -105,7 +105,6 @@ public class ReadMethodsForValueType extends JDBCDatabaseMethods {
 		}
 	}
 	
-	private PreparedStatement select_valuetype_by_id;
 	private static final String SELECT_VALUETYPE_BY_ID = 
 		"select label, restricted, scanner, lastmod "
 		+ "from " + DB.VALUE_TYPE + " where id = ?";
@@ -117,6 +116,7 @@ public class ReadMethodsForValueType extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public <T>ValueType<T> getValueType(Surrogate surrogate) throws T2DBException {
+		PreparedStatement select_valuetype_by_id = null;
 		try {
 			select_valuetype_by_id = open(SELECT_VALUETYPE_BY_ID, surrogate, select_valuetype_by_id);
 			select_valuetype_by_id.setInt(1, getId(surrogate));
@@ -132,10 +132,10 @@ public class ReadMethodsForValueType extends JDBCDatabaseMethods {
 		}
 	}
 	
-	private PreparedStatement select_valuelist_by_id;
 	private static final String SELECT_VALUELIST_BY_ID = 
 		"select value, descrip from " + DB.VALUE_TYPE_VALUE + " where type = ? order by value";
 	private Map<String, String> getValues(Surrogate surrogate) throws T2DBException, SQLException {
+		PreparedStatement select_valuelist_by_id = null;
 		Map<String, String> values = new LinkedHashMap<String, String>();
 		try {
 			select_valuelist_by_id = open(SELECT_VALUELIST_BY_ID, surrogate, select_valuelist_by_id);
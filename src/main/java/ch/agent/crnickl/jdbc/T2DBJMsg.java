@@ -40,6 +40,15 @@ public class T2DBJMsg extends KeyedMessage {
 		public static final String J00107 = "J00107"; 
 		public static final String J00108 = "J00108"; 
 		public static final String J00111 = "J00111"; 
+		public static final String J00112 = "J00112";
+		public static final String J00113 = "J00113";
+		public static final String J00114 = "J00114";
+		public static final String J00115 = "J00115";
+		public static final String J00116 = "J00116";
+		public static final String J00117 = "J00117";
+		public static final String J00118 = "J00118";
+		public static final String J00119 = "J00119";
+		public static final String J00120 = "J00120";
 		public static final String J01101 = "J01101";
 	}
 	
@@ -0,0 +1,131 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The objects written in the current unit of work. Caches use it to keep
+ * out values which are not committed yet, which other threads must not
+ * see, and to let the unit of work read its own writes. When the session
+ * is pooled, the unit of work is bound to the current thread, like its
+ * connection. Without a pool, there is a single unit of work. A unit of
+ * work ends with a commit, a rollback or a release.
+ *
+ * @author Jean-Paul Vetterli
+ */
+class UnitOfWork {
+
+	private static class Writes {
+		private Set<Integer> series = new HashSet<Integer>();
+		private Set<Integer> chronicles = new HashSet<Integer>();
+	}
+
+	private final boolean perThread;
+	private final Writes shared;
+	private final ThreadLocal<Writes> bound;
+
+	/**
+	 * Construct a unit of work.
+	 *
+	 * @param perThread if true, each thread has its own unit of work
+	 */
+	UnitOfWork(boolean perThread) {
+		this.perThread = perThread;
+		shared = new Writes();
+		bound = new ThreadLocal<Writes>() {
+			@Override
+			protected Writes initialValue() {
+				return new Writes();
+			}
+		};
+	}
+
+	/**
+	 * Return true if each thread has its own unit of work.
+	 *
+	 * @return true if writes are kept per thread
+	 */
+	boolean isPerThread() {
+		return perThread;
+	}
+
+	private Writes writes() {
+		return perThread ? bound.get() : shared;
+	}
+
+	/**
+	 * Remember that a series was written.
+	 *
+	 * @param series the internal id of a series
+	 */
+	synchronized void addSeries(int series) {
+		writes().series.add(series);
+	}
+
+	/**
+	 * Return true if a series was written.
+	 *
+	 * @param series the internal id of a series
+	 * @return true if the series was written in the current unit of work
+	 */
+	synchronized boolean isSeriesWritten(int series) {
+		return writes().series.contains(series);
+	}
+
+	/**
+	 * Remember that a chronicle was written.
+	 *
+	 * @param chronicle the internal id of a chronicle
+	 */
+	synchronized void addChronicle(int chronicle) {
+		writes().chronicles.add(chronicle);
+	}
+
+	/**
+	 * Return true if a chronicle was written.
+	 *
+	 * @param chronicle the internal id of a chronicle
+	 * @return true if the chronicle was written in the current unit of work
+	 */
+	synchronized boolean isChronicleWritten(int chronicle) {
+		return writes().chronicles.contains(chronicle);
+	}
+
+	/**
+	 * Return true if any chronicle was written.
+	 *
+	 * @return true if chronicles were written in the current unit of work
+	 */
+	synchronized boolean hasChronicleWrites() {
+		return writes().chronicles.size() > 0;
+	}
+
+	/**
+	 * Forget all writes of the current unit of work.
+	 */
+	synchronized void end() {
+		if (perThread)
+			bound.remove();
+		else {
+			shared.series.clear();
+			shared.chronicles.clear();
+		}
+	}
+
+}
@@ -0,0 +1,389 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import ch.agent.crnickl.api.DBObjectType;
+import ch.agent.crnickl.api.UpdateEvent;
+import ch.agent.crnickl.api.UpdateEventOperation;
+import ch.agent.crnickl.api.UpdateEventSubscriber;
+import ch.agent.t2.T2Exception;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+/**
+ * A cache of the values of numeric series, keyed by the internal id of
+ * series. An entry holds all values of a series, and reads of a range are
+ * served from it. The total size of entries is bounded, with the least
+ * recently used series evicted first. Subclasses decide how values are
+ * stored.
+ * <p>
+ * The cache subscribes to update events of series and drops a series when
+ * it is modified or deleted. Each entry carries a token, the number of
+ * invalidations when its values were read from the database. An entry is
+ * refused when a series was invalidated while its values were being read,
+ * so that a concurrent update never leaves stale values in the cache.
+ * Entries are counted while they are read, and an entry dropped during a
+ * read is discarded when the last reader is done.
+ * <p>
+ * Series written in the current unit of work are neither served from the
+ * cache nor put into it until the unit of work ends, so that values not
+ * yet committed are never seen by other units of work, and the unit of
+ * work sees its own writes.
+ * <p>
+ * The cache keeps counters of hits, misses and evictions.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public abstract class ValueCache implements UpdateEventSubscriber {
+
+	/**
+	 * The values of a series in the cache.
+	 */
+	protected interface Entry {
+		/**
+		 * Return the number of values.
+		 *
+		 * @return a non-negative number
+		 */
+		int getCount();
+		/**
+		 * Return the offset of a value.
+		 *
+		 * @param i the index of a value
+		 * @return a time index offset
+		 */
+		int getOffset(int i);
+		/**
+		 * Return a value.
+		 *
+		 * @param i the index of a value
+		 * @return a value
+		 */
+		double getValue(int i);
+		/**
+		 * Return the size of the entry.
+		 *
+		 * @return a number of bytes
+		 */
+		long getSize();
+		/**
+		 * Release resources held by an entry no longer in the cache. The
+		 * method is called once, when the entry has left the cache and no
+		 * thread is reading it.
+		 */
+		void discard();
+	}
+
+	/**
+	 * An entry with the number of threads reading it.
+	 */
+	private static class Slot {
+		private final Entry entry;
+		private int readers;
+		private boolean dropped;
+		private Slot(Entry entry) {
+			this.entry = entry;
+		}
+	}
+
+	private long capacity;
+	private long size;
+	private LinkedHashMap<Integer, Slot> entries;
+	private long invalidations;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private UnitOfWork unitOfWork;
+
+	/**
+	 * Construct a cache.
+	 *
+	 * @param capacity the maximum size of the cache in bytes
+	 */
+	public ValueCache(long capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity < 0");
+		this.capacity = capacity;
+		entries = new LinkedHashMap<Integer, Slot>(16, 0.75f, true);
+	}
+
+	/**
+	 * Set the unit of work tracking the series written.
+	 *
+	 * @param unitOfWork a unit of work or null
+	 */
+	void setUnitOfWork(UnitOfWork unitOfWork) {
+		this.unitOfWork = unitOfWork;
+	}
+
+	/**
+	 * Return true if a series was written in the current unit of work.
+	 *
+	 * @param series the internal id of a series
+	 * @return true if the series must not be cached now
+	 */
+	boolean isWritten(int series) {
+		return unitOfWork != null && unitOfWork.isSeriesWritten(series);
+	}
+
+	/**
+	 * Drop a series from the cache and keep it out of the cache until the
+	 * current unit of work ends. This method must be called before writing
+	 * the values of a series.
+	 *
+	 * @param series the internal id of a series
+	 */
+	void written(int series) {
+		if (unitOfWork != null)
+			unitOfWork.addSeries(series);
+		invalidate(series);
+	}
+
+	/**
+	 * Create an entry with the values of a series.
+	 *
+	 * @param series the internal id of a series
+	 * @param token the token taken before reading the values
+	 * @param offsets an array of time index offsets in ascending order
+	 * @param values an array of values
+	 * @param count the number of elements to use in the arrays
+	 * @return an entry
+	 * @throws IOException
+	 */
+	protected abstract Entry makeEntry(int series, long token, int[] offsets, double[] values, int count) throws IOException;
+
+	/**
+	 * Return the size an entry would have.
+	 *
+	 * @param count the number of values
+	 * @return a number of bytes
+	 */
+	protected abstract long sizeOf(int count);
+
+	/**
+	 * Return the token to pass to {@link #put(int, long, int[], double[], int)}.
+	 * The token must be taken before reading values from the database.
+	 *
+	 * @return a token
+	 */
+	public synchronized long getToken() {
+		return invalidations;
+	}
+
+	/**
+	 * Put values of a series into a time addressable. Only values with
+	 * offsets in the range given are put.
+	 *
+	 * @param series the internal id of a series
+	 * @param first the offset of the first time index in the range
+	 * @param last the offset of the last time index in the range
+	 * @param ts a time addressable
+	 * @return the number of values put, or -1 if the series is not in the cache
+	 *         or was written in the current unit of work
+	 * @throws T2Exception
+	 */
+	public long get(int series, int first, int last, TimeAddressable<Double> ts) throws T2Exception {
+		if (isWritten(series))
+			return -1;
+		Slot slot;
+		synchronized (this) {
+			slot = entries.get(series);
+			if (slot == null) {
+				misses++;
+				return -1;
+			}
+			hits++;
+			slot.readers++;
+		}
+		try {
+			Entry entry = slot.entry;
+			int lo = 0;
+			int hi = entry.getCount();
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (entry.getOffset(mid) < first)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			long count = 0;
+			for (int i = lo; i < entry.getCount(); i++) {
+				int offset = entry.getOffset(i);
+				if (offset > last)
+					break;
+				ts.put(offset, entry.getValue(i));
+				count++;
+			}
+			return count;
+		} finally {
+			synchronized (this) {
+				if (--slot.readers == 0 && slot.dropped)
+					slot.entry.discard();
+			}
+		}
+	}
+
+	/**
+	 * Put all values of a series into the cache. The values are refused if
+	 * the series is larger than the capacity, if it was written in the
+	 * current unit of work, or if any series was invalidated since the token
+	 * was taken.
+	 *
+	 * @param series the internal id of a series
+	 * @param token the token taken before reading the values
+	 * @param offsets an array of time index offsets in ascending order
+	 * @param values an array of values
+	 * @param count the number of elements to use in the arrays
+	 * @return true if the values were put into the cache
+	 * @throws IOException
+	 */
+	public boolean put(int series, long token, int[] offsets, double[] values, int count) throws IOException {
+		if (sizeOf(count) > capacity || isWritten(series))
+			return false;
+		synchronized (this) {
+			if (token != invalidations)
+				return false;
+		}
+		Entry entry = makeEntry(series, token, offsets, values, count);
+		synchronized (this) {
+			if (token != invalidations) {
+				entry.discard();
+				return false;
+			}
+			Slot previous = entries.put(series, new Slot(entry));
+			if (previous != null)
+				drop(previous);
+			size += entry.getSize();
+			Iterator<Slot> it = entries.values().iterator();
+			while (size > capacity && it.hasNext()) {
+				Slot evicted = it.next();
+				it.remove();
+				drop(evicted);
+				evictions++;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Drop a series from the cache.
+	 *
+	 * @param series the internal id of a series
+	 */
+	public synchronized void invalidate(int series) {
+		invalidations++;
+		Slot slot = entries.remove(series);
+		if (slot != null)
+			drop(slot);
+	}
+
+	/**
+	 * Drop all series from the cache.
+	 */
+	public synchronized void clear() {
+		invalidations++;
+		for (Slot slot : entries.values()) {
+			drop(slot);
+		}
+		entries.clear();
+	}
+
+	/**
+	 * Drop all series and release the resources of the cache. The cache
+	 * must not be used afterwards.
+	 */
+	public synchronized void close() {
+		clear();
+	}
+
+	/**
+	 * Account for an entry removed from the map. The entry is discarded now
+	 * or, if it is being read, by the last reader.
+	 *
+	 * @param slot a slot no longer in the map
+	 */
+	private void drop(Slot slot) {
+		size -= slot.entry.getSize();
+		slot.dropped = true;
+		if (slot.readers == 0)
+			slot.entry.discard();
+	}
+
+	/**
+	 * Drop a series when it is modified or deleted.
+	 */
+	@Override
+	public void notify(UpdateEvent event) {
+		if (event.getType() == DBObjectType.SERIES && event.getOperation() != UpdateEventOperation.CREATE)
+			invalidate(((JDBCObjectId) event.getSurrogate().getId()).value());
+	}
+
+	/**
+	 * Return the maximum size of the cache.
+	 *
+	 * @return a number of bytes
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Return the current size of the cache.
+	 *
+	 * @return a number of bytes
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Return the number of reads served by the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Return the number of reads of series not in the cache.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Return the number of series dropped to make room in the cache.
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("value cache: capacity=%d size=%d series=%d hits=%d misses=%d evictions=%d",
+				capacity, size, entries.size(), hits, misses, evictions);
+	}
+
+}
@@ -0,0 +1,214 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+/**
+ * ValueChunkCodec packs numeric observations into the binary chunks stored in
+ * the table <code>value_chunk</code>. Time index offsets are encoded as
+ * deltas of deltas and values as the XOR with the previous value, both with
+ * variable bit lengths, in the manner of the Gorilla time series database.
+ * Regular series with slowly changing values compress to a few bits per
+ * observation.
+ * <p>
+ * The layout of a chunk is: the number of observations (32 bits), the first
+ * offset (32 bits), the first value (64 bits), then for each further
+ * observation the delta of delta of its offset and the XOR of its value.
+ *
+ * @author Jean-Paul Vetterli
+ */
+final class ValueChunkCodec {
+
+	private static class BitWriter {
+		private byte[] buffer;
+		private int position;
+		private BitWriter(int capacity) {
+			buffer = new byte[capacity < 16 ? 16 : capacity];
+		}
+		private void write(long value, int bits) {
+			while (bits > 0) {
+				int index = position >>> 3;
+				if (index == buffer.length) {
+					byte[] larger = new byte[buffer.length * 2];
+					System.arraycopy(buffer, 0, larger, 0, buffer.length);
+					buffer = larger;
+				}
+				int free = 8 - (position & 7);
+				int take = bits < free ? bits : free;
+				int chunk = (int) (value >>> (bits - take)) & ((1 << take) - 1);
+				buffer[index] |= chunk << (free - take);
+				position += take;
+				bits -= take;
+			}
+		}
+		private byte[] toByteArray() {
+			byte[] result = new byte[(position + 7) >>> 3];
+			System.arraycopy(buffer, 0, result, 0, result.length);
+			return result;
+		}
+	}
+
+	private static class BitReader {
+		private byte[] buffer;
+		private int position;
+		private BitReader(byte[] buffer) {
+			this.buffer = buffer;
+		}
+		private long read(int bits) {
+			long value = 0;
+			while (bits > 0) {
+				int available = 8 - (position & 7);
+				int take = bits < available ? bits : available;
+				int b = buffer[position >>> 3] & 0xff;
+				value = (value << take) | ((b >>> (available - take)) & ((1 << take) - 1));
+				position += take;
+				bits -= take;
+			}
+			return value;
+		}
+	}
+
+	private ValueChunkCodec() {
+	}
+
+	/**
+	 * Encode observations into a chunk. Offsets must be in ascending order.
+	 *
+	 * @param offsets an array of time index offsets
+	 * @param values an array of values
+	 * @param start the index of the first observation in the arrays
+	 * @param count the number of observations to encode
+	 * @return a chunk
+	 */
+	static byte[] encode(int[] offsets, double[] values, int start, int count) {
+		BitWriter w = new BitWriter(16 + count * 2);
+		w.write(count, 32);
+		if (count == 0)
+			return w.toByteArray();
+		w.write(offsets[start], 32);
+		long previousBits = Double.doubleToLongBits(values[start]);
+		w.write(previousBits, 64);
+		long previousDelta = 0;
+		int leading = -1;
+		int trailing = 0;
+		for (int i = start + 1; i < start + count; i++) {
+			long delta = (long) offsets[i] - offsets[i - 1];
+			long dod = delta - previousDelta;
+			previousDelta = delta;
+			long z = (dod << 1) ^ (dod >> 63);
+			if (z == 0)
+				w.write(0, 1);
+			else if (z < (1L << 7)) {
+				w.write(2, 2);
+				w.write(z, 7);
+			} else if (z < (1L << 9)) {
+				w.write(6, 3);
+				w.write(z, 9);
+			} else if (z < (1L << 12)) {
+				w.write(14, 4);
+				w.write(z, 12);
+			} else {
+				w.write(15, 4);
+				w.write(z, 40);
+			}
+			long bits = Double.doubleToLongBits(values[i]);
+			long xor = bits ^ previousBits;
+			previousBits = bits;
+			if (xor == 0)
+				w.write(0, 1);
+			else {
+				int lz = Long.numberOfLeadingZeros(xor);
+				int tz = Long.numberOfTrailingZeros(xor);
+				if (lz > 31)
+					lz = 31;
+				if (leading >= 0 && lz >= leading && tz >= trailing) {
+					w.write(2, 2);
+					w.write(xor >>> trailing, 64 - leading - trailing);
+				} else {
+					int significant = 64 - lz - tz;
+					w.write(3, 2);
+					w.write(lz, 5);
+					w.write(significant - 1, 6);
+					w.write(xor >>> tz, significant);
+					leading = lz;
+					trailing = tz;
+				}
+			}
+		}
+		return w.toByteArray();
+	}
+
+	/**
+	 * Return the number of observations in a chunk.
+	 *
+	 * @param chunk a chunk
+	 * @return the number of observations
+	 */
+	static int size(byte[] chunk) {
+		return (int) new BitReader(chunk).read(32);
+	}
+
+	/**
+	 * Decode a chunk into arrays. The arrays must have room for all
+	 * observations in the chunk.
+	 *
+	 * @param chunk a chunk
+	 * @param offsets an array receiving the time index offsets
+	 * @param values an array receiving the values
+	 * @param start the index in the arrays of the first observation
+	 * @return the number of observations decoded
+	 */
+	static int decode(byte[] chunk, int[] offsets, double[] values, int start) {
+		BitReader r = new BitReader(chunk);
+		int count = (int) r.read(32);
+		if (count == 0)
+			return 0;
+		int offset = (int) r.read(32);
+		long bits = r.read(64);
+		offsets[start] = offset;
+		values[start] = Double.longBitsToDouble(bits);
+		long delta = 0;
+		int leading = 0;
+		int trailing = 0;
+		for (int i = start + 1; i < start + count; i++) {
+			long z;
+			if (r.read(1) == 0)
+				z = 0;
+			else if (r.read(1) == 0)
+				z = r.read(7);
+			else if (r.read(1) == 0)
+				z = r.read(9);
+			else if (r.read(1) == 0)
+				z = r.read(12);
+			else
+				z = r.read(40);
+			delta += (z >>> 1) ^ -(z & 1);
+			offset += (int) delta;
+			offsets[i] = offset;
+			if (r.read(1) == 1) {
+				if (r.read(1) == 1) {
+					leading = (int) r.read(5);
+					int significant = (int) r.read(6) + 1;
+					trailing = 64 - leading - significant;
+				}
+				bits ^= r.read(64 - leading - trailing) << trailing;
+			}
+			values[i] = Double.longBitsToDouble(bits);
+		}
+		return count;
+	}
+
+}
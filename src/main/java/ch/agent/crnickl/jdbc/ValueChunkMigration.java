@@ -0,0 +1,257 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.api.SimpleDatabaseManager;
+import ch.agent.crnickl.jdbc.T2DBJMsg.J;
+
+/**
+ * ValueChunkMigration copies numeric values from the table
+ * <code>value_double</code>, or from the tables of a partition layout, to the
+ * table <code>value_chunk</code>. The database must be configured with
+ * <code>session.numberStorage=chunk</code>, and the chunk size of the
+ * configuration is used. Chunks already present for migrated values are
+ * replaced, so that an interrupted migration can be run again. All work is
+ * done in a single transaction.
+ * <p>
+ * Values are read one series at a time, and the chunks of a series are
+ * written once its values have been read, so that no statement is executed
+ * on the connection while a result set is open. This is required by drivers
+ * which stream result sets, and it bounds the memory used by the size of the
+ * largest series.
+ * <p>
+ * The class can be run from the command line. The first argument is passed
+ * to {@link SimpleDatabaseManager}, typically <code>file=db.config</code>.
+ * The optional argument <code>from=</code> gives the number of partitions of
+ * the source layout, see {@link ValuePartitionMigration}. When the last
+ * argument is <code>delete</code>, rows are deleted from the source tables
+ * once copied.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class ValueChunkMigration {
+
+	private static final String SELECT_SERIES =
+		"select distinct series from %s order by series";
+	private static final String SELECT_VALUES =
+		"select date, element from %s where series = ? order by date";
+	private static final String DELETE_CHUNK =
+		"delete from " + DB.VALUE_CHUNK + " where series = ? and chunk = ?";
+	private static final String INSERT_CHUNK =
+		"insert into " + DB.VALUE_CHUNK + " (series, chunk, first_date, last_date, nvalues, data) values(?, ?, ?, ?, ?, ?)";
+	private static final String DELETE_VALUES =
+		"delete from %s";
+
+	private JDBCDatabase database;
+	private AccessMethodsForNumberChunks methods;
+	private int batchSize;
+	private int partitions;
+	private int[] offsets;
+	private double[] values;
+
+	/**
+	 * Construct a migration of values stored in <code>value_double</code>.
+	 *
+	 * @param database a database configured to store numbers in chunks
+	 */
+	public ValueChunkMigration(JDBCDatabase database) {
+		this(database, 0);
+	}
+
+	/**
+	 * Construct a migration of values stored in a partition layout.
+	 *
+	 * @param database a database configured to store numbers in chunks
+	 * @param partitions the number of partitions of the source layout, 0 for <code>value_double</code>
+	 */
+	public ValueChunkMigration(JDBCDatabase database, int partitions) {
+		if (!(database.getNumberAccessMethods() instanceof AccessMethodsForNumberChunks))
+			throw new IllegalArgumentException("database not configured with " + JDBCSession.JDBC_NUMBER_STORAGE + "=chunk");
+		if (partitions < 0 || partitions > AccessMethodsForNumber.MAX_PARTITIONS)
+			throw new IllegalArgumentException("partitions < 0 or > " + AccessMethodsForNumber.MAX_PARTITIONS);
+		this.database = database;
+		this.methods = (AccessMethodsForNumberChunks) database.getNumberAccessMethods();
+		this.batchSize = methods.getBatchSize() > 0 ? methods.getBatchSize() : 1;
+		this.partitions = partitions;
+	}
+
+	/**
+	 * Copy all values to chunks and commit.
+	 *
+	 * @param deleteRows if true, delete all rows of the source tables once copied
+	 * @return the number of values copied
+	 * @throws T2DBException
+	 */
+	public long migrate(boolean deleteRows) throws T2DBException {
+		long count = 0;
+		PreparedStatement select = null;
+		PreparedStatement delete = null;
+		PreparedStatement insert = null;
+		try {
+			Connection connection = database.getConnection();
+			delete = connection.prepareStatement(DELETE_CHUNK);
+			insert = connection.prepareStatement(INSERT_CHUNK);
+			offsets = new int[methods.getChunkSize()];
+			values = new double[methods.getChunkSize()];
+			for (int p = 0; p < Math.max(1, partitions); p++) {
+				String table = AccessMethodsForNumber.valueTable(partitions, p);
+				List<Integer> ids = new ArrayList<Integer>();
+				select = connection.prepareStatement(String.format(SELECT_SERIES, table));
+				ResultSet rs = select.executeQuery();
+				while (rs.next()) {
+					ids.add(rs.getInt(1));
+				}
+				rs.close();
+				closeQuietly(select);
+				select = connection.prepareStatement(String.format(SELECT_VALUES, table));
+				select.setFetchSize(methods.getFetchSize());
+				for (int series : ids) {
+					int size = read(select, series);
+					addChunks(delete, insert, series, size);
+					count += size;
+				}
+				closeQuietly(select);
+				select = null;
+			}
+			if (deleteRows) {
+				for (int p = 0; p < Math.max(1, partitions); p++) {
+					select = connection.prepareStatement(String.format(DELETE_VALUES, AccessMethodsForNumber.valueTable(partitions, p)));
+					select.executeUpdate();
+					closeQuietly(select);
+					select = null;
+				}
+			}
+			database.commit();
+		} catch (Exception e) {
+			database.rollback();
+			throw T2DBJMsg.exception(e, J.J00115, count);
+		} finally {
+			closeQuietly(select);
+			closeQuietly(delete);
+			closeQuietly(insert);
+			offsets = null;
+			values = null;
+		}
+		return count;
+	}
+
+	/**
+	 * Read all values of a series into the buffers, which grow as needed.
+	 */
+	private int read(PreparedStatement select, int series) throws SQLException {
+		int size = 0;
+		select.setInt(1, series);
+		ResultSet rs = select.executeQuery();
+		while (rs.next()) {
+			if (size == offsets.length) {
+				offsets = Arrays.copyOf(offsets, 2 * size);
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			offsets[size] = rs.getInt(1);
+			values[size] = rs.getDouble(2);
+			size++;
+		}
+		rs.close();
+		return size;
+	}
+
+	/**
+	 * Write the values in the buffers as chunks, in batches.
+	 */
+	private void addChunks(PreparedStatement delete, PreparedStatement insert, int series, int size) throws SQLException {
+		int pending = 0;
+		int start = 0;
+		while (start < size) {
+			int chunk = methods.chunkOf(offsets[start]);
+			int end = start + 1;
+			while (end < size && methods.chunkOf(offsets[end]) == chunk)
+				end++;
+			delete.setInt(1, series);
+			delete.setInt(2, chunk);
+			delete.addBatch();
+			insert.setInt(1, series);
+			insert.setInt(2, chunk);
+			insert.setInt(3, offsets[start]);
+			insert.setInt(4, offsets[end - 1]);
+			insert.setInt(5, end - start);
+			insert.setBytes(6, ValueChunkCodec.encode(offsets, values, start, end - start));
+			insert.addBatch();
+			if (++pending == batchSize) {
+				delete.executeBatch();
+				insert.executeBatch();
+				pending = 0;
+			}
+			start = end;
+		}
+		if (pending > 0) {
+			delete.executeBatch();
+			insert.executeBatch();
+		}
+	}
+
+	private void closeQuietly(PreparedStatement stmt) {
+		if (stmt != null) {
+			try {
+				stmt.close();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Run a migration from the command line.
+	 *
+	 * @param args the database manager parameters, optionally <code>from=</code> a number of partitions, and optionally <code>delete</code>
+	 */
+	public static void main(String[] args) {
+		int partitions = 0;
+		boolean delete = false;
+		boolean usage = args.length < 1 || args.length > 3;
+		for (int i = 1; i < args.length && !usage; i++) {
+			if (args[i].equals("delete") && i == args.length - 1)
+				delete = true;
+			else if (args[i].startsWith("from=") && i == 1)
+				partitions = Integer.parseInt(args[i].substring("from=".length()));
+			else
+				usage = true;
+		}
+		if (usage) {
+			System.err.println("usage: ValueChunkMigration file=<configuration file> [from=<partitions>] [delete]");
+			System.exit(2);
+		}
+		try {
+			SimpleDatabaseManager dbm = new SimpleDatabaseManager(args[0]);
+			ValueChunkMigration migration = new ValueChunkMigration((JDBCDatabase) dbm.getDatabase(), partitions);
+			long count = migration.migrate(delete);
+			System.out.println(count + " values migrated");
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+}
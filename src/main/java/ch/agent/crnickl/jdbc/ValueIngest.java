@@ -0,0 +1,432 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.api.Chronicle;
+import ch.agent.crnickl.api.NamingPolicy;
+import ch.agent.crnickl.api.SimpleDatabaseManager;
+import ch.agent.crnickl.api.UpdatableChronicle;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.impl.ChronicleUpdatePolicy;
+import ch.agent.crnickl.jdbc.T2DBJMsg.J;
+import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+/**
+ * ValueIngest loads numeric values from a file into a database. Each record
+ * of the file has a series name, a time and a value. In the CSV format a
+ * record is a line <code>name,time,value</code>. In the binary format a
+ * record is written with {@link java.io.DataOutput#writeUTF(String)} for the
+ * name and the time and {@link java.io.DataOutput#writeDouble(double)} for
+ * the value. An empty value in CSV or a NaN deletes the value stored at that
+ * time. The time is parsed in the time domain of the series.
+ * <p>
+ * The file is streamed. Consecutive records of the same series are buffered
+ * and written with
+ * {@link AccessMethodsForNumber#updateValues(UpdatableSeries, TimeAddressable, ChronicleUpdatePolicy)},
+ * which uses JDBC batches, so files sorted by series load fastest. Each
+ * write publishes a modification event for the series, as
+ * {@link UpdatableSeries#applyUpdates()} does. Only series with numeric
+ * values can be loaded. Missing
+ * chronicles and series are created when requested. A transaction is
+ * committed each time the number of records given by the transaction size
+ * has been written. When a checkpoint file is set, the number of records
+ * committed is saved to it after each commit, and an interrupted ingest of
+ * the same file resumes after the last commit. The checkpoint file is
+ * deleted once the file has been completely loaded.
+ * <p>
+ * The class can be run from the command line. The first argument is passed
+ * to {@link SimpleDatabaseManager}, typically <code>file=db.config</code>,
+ * the second is the name of the input file. Options are
+ * <code>binary</code>, <code>create</code> and
+ * <code>checkpoint=&lt;file&gt;</code>.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class ValueIngest {
+
+	/**
+	 * The format of an input file.
+	 */
+	public enum Format {
+		/**
+		 * Text lines with comma-separated fields.
+		 */
+		CSV,
+		/**
+		 * Records written with {@link java.io.DataOutput}.
+		 */
+		BINARY
+	}
+
+	private static final String CHECKPOINT_FILE = "file";
+	private static final String CHECKPOINT_RECORDS = "records";
+
+	private JDBCDatabase database;
+	private AccessMethodsForNumber methods;
+	private int transactionSize;
+	private boolean create;
+	private File checkpoint;
+
+	private long records;
+	private long skipped;
+	private long changes;
+	private long seriesCount;
+	private long commits;
+	private long elapsed;
+
+	private String seriesName;
+	private UpdatableSeries<Double> series;
+	private TimeAddressable<Double> buffer;
+	private long uncommitted;
+
+	/**
+	 * Construct an ingest.
+	 *
+	 * @param database a database
+	 */
+	public ValueIngest(JDBCDatabase database) {
+		this.database = database;
+		this.methods = database.getNumberAccessMethods();
+		this.transactionSize = 100000;
+	}
+
+	/**
+	 * Set the number of records written in a transaction. The default is
+	 * 100000.
+	 *
+	 * @param transactionSize a positive number
+	 */
+	public void setTransactionSize(int transactionSize) {
+		if (transactionSize < 1)
+			throw new IllegalArgumentException("transactionSize < 1");
+		this.transactionSize = transactionSize;
+	}
+
+	/**
+	 * Return the number of records written in a transaction.
+	 *
+	 * @return a positive number
+	 */
+	public int getTransactionSize() {
+		return transactionSize;
+	}
+
+	/**
+	 * Set whether missing chronicles and series are created. Chronicles are
+	 * created with their simple name as description and inherit their
+	 * schema. The default is false.
+	 *
+	 * @param create if true create missing chronicles and series
+	 */
+	public void setCreate(boolean create) {
+		this.create = create;
+	}
+
+	/**
+	 * Set the checkpoint file. The default is no checkpoint.
+	 *
+	 * @param checkpoint a file or null
+	 */
+	public void setCheckpoint(File checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Load a file. All changes are committed, except in case of error,
+	 * where the current transaction is rolled back.
+	 *
+	 * @param file a file
+	 * @param format the format of the file
+	 * @return the number of values inserted, updated or deleted
+	 * @throws T2DBException
+	 */
+	public long ingest(File file, Format format) throws T2DBException {
+		long start = System.currentTimeMillis();
+		records = 0;
+		skipped = 0;
+		changes = 0;
+		seriesCount = 0;
+		commits = 0;
+		uncommitted = 0;
+		seriesName = null;
+		series = null;
+		buffer = null;
+		Closeable input = null;
+		try {
+			long resume = readCheckpoint(file);
+			if (format == Format.CSV) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+				input = reader;
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.trim().length() == 0)
+						continue;
+					String[] fields = line.split(",", -1);
+					if (fields.length != 3)
+						throw new IllegalArgumentException("expected 3 fields: " + line);
+					String value = fields[2].trim();
+					record(fields[0].trim(), fields[1].trim(), value.length() == 0 ? Double.NaN : Double.parseDouble(value), resume, file);
+				}
+			} else {
+				DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				input = stream;
+				while (true) {
+					String name;
+					try {
+						name = stream.readUTF();
+					} catch (EOFException e) {
+						break;
+					}
+					record(name, stream.readUTF(), stream.readDouble(), resume, file);
+				}
+			}
+			flush();
+			commit(file);
+			if (checkpoint != null)
+				checkpoint.delete();
+		} catch (Exception e) {
+			database.rollback();
+			throw T2DBJMsg.exception(e, J.J00118, file.getPath(), records);
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+			elapsed = System.currentTimeMillis() - start;
+		}
+		return changes;
+	}
+
+	private void record(String name, String time, double value, long resume, File file) throws Exception {
+		records++;
+		if (records <= resume) {
+			skipped++;
+			return;
+		}
+		if (!name.equals(seriesName)) {
+			flush();
+			seriesName = name;
+			series = getSeries(name);
+			buffer = new SparseTimeSeries<Double>(Double.class, series.getTimeDomain(), Double.NaN);
+			seriesCount++;
+		}
+		TimeIndex t = series.getTimeDomain().time(time);
+		if (Double.isNaN(value)) {
+			flush();
+			if (database.deleteValue(series, t))
+				changes++;
+		} else
+			buffer.put(t, value);
+		if (++uncommitted >= transactionSize) {
+			flush();
+			commit(file);
+		}
+	}
+
+	private void flush() throws T2DBException {
+		if (buffer != null && buffer.getSize() > 0) {
+			changes += database.update(series, buffer);
+			buffer = buffer.makeEmptyCopy();
+		}
+	}
+
+	private void commit(File file) throws Exception {
+		if (uncommitted == 0)
+			return;
+		database.commit();
+		commits++;
+		uncommitted = 0;
+		writeCheckpoint(file);
+	}
+
+	private UpdatableSeries<Double> getSeries(String name) throws T2DBException {
+		if (create) {
+			String[] split = database.getNamingPolicy().split(name);
+			getChronicle(split[0]);
+		}
+		UpdatableSeries<Double> s = database.getUpdatableSeries(name, create);
+		if (s == null)
+			throw new IllegalArgumentException("series not found: " + name);
+		if (database.getAccessMethods(s.getValueType()) != methods)
+			throw new IllegalArgumentException("series not numeric: " + name);
+		if (s.inConstruction())
+			s.applyUpdates();
+		return s;
+	}
+
+	private Chronicle getChronicle(String name) throws T2DBException {
+		// parents first: a missing parent is an error for Database#getChronicle
+		int dot = name.lastIndexOf(NamingPolicy.NAME_SEPARATOR);
+		Chronicle parent = dot < 0 ? database.getTopChronicle() : getChronicle(name.substring(0, dot));
+		String simpleName = name.substring(dot + 1);
+		Chronicle chronicle = parent.getChronicle(simpleName, false);
+		if (chronicle == null) {
+			UpdatableChronicle c = parent.edit().createChronicle(simpleName, false, simpleName, null, null);
+			c.applyUpdates();
+			chronicle = c;
+		}
+		return chronicle;
+	}
+
+	private long readCheckpoint(File file) throws IOException {
+		if (checkpoint == null || !checkpoint.exists())
+			return 0;
+		Properties p = new Properties();
+		InputStream in = new FileInputStream(checkpoint);
+		try {
+			p.load(in);
+		} finally {
+			in.close();
+		}
+		if (!file.getAbsolutePath().equals(p.getProperty(CHECKPOINT_FILE)))
+			return 0;
+		return Long.parseLong(p.getProperty(CHECKPOINT_RECORDS, "0"));
+	}
+
+	private void writeCheckpoint(File file) throws IOException {
+		if (checkpoint == null)
+			return;
+		Properties p = new Properties();
+		p.setProperty(CHECKPOINT_FILE, file.getAbsolutePath());
+		p.setProperty(CHECKPOINT_RECORDS, Long.toString(records));
+		File tmp = new File(checkpoint.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(tmp);
+		try {
+			p.store(out, null);
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(checkpoint)) {
+			checkpoint.delete();
+			if (!tmp.renameTo(checkpoint))
+				throw new IOException("cannot rename " + tmp + " to " + checkpoint);
+		}
+	}
+
+	/**
+	 * Return the number of records read by the last ingest, including
+	 * records skipped.
+	 *
+	 * @return a non-negative number
+	 */
+	public long getRecords() {
+		return records;
+	}
+
+	/**
+	 * Return the number of records skipped by the last ingest because they
+	 * had been committed by an earlier run.
+	 *
+	 * @return a non-negative number
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * Return the number of values inserted, updated or deleted by the last
+	 * ingest.
+	 *
+	 * @return a non-negative number
+	 */
+	public long getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Return the number of transactions committed by the last ingest.
+	 *
+	 * @return a non-negative number
+	 */
+	public long getCommits() {
+		return commits;
+	}
+
+	/**
+	 * Return the duration of the last ingest.
+	 *
+	 * @return a number of milliseconds
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	@Override
+	public String toString() {
+		long loaded = records - skipped;
+		return String.format("records=%d skipped=%d series=%d changes=%d commits=%d elapsed=%dms rate=%d/s",
+				records, skipped, seriesCount, changes, commits, elapsed,
+				elapsed == 0 ? 0 : loaded * 1000 / elapsed);
+	}
+
+	/**
+	 * Run an ingest from the command line.
+	 *
+	 * @param args the database manager parameters, the input file, and options
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("usage: ValueIngest file=<configuration file> <input file> [binary] [create] [checkpoint=<file>]");
+			System.exit(2);
+		}
+		try {
+			Format format = Format.CSV;
+			boolean create = false;
+			File checkpoint = null;
+			for (int i = 2; i < args.length; i++) {
+				if (args[i].equals("binary"))
+					format = Format.BINARY;
+				else if (args[i].equals("create"))
+					create = true;
+				else if (args[i].startsWith("checkpoint="))
+					checkpoint = new File(args[i].substring("checkpoint=".length()));
+				else
+					throw new IllegalArgumentException("unknown option: " + args[i]);
+			}
+			SimpleDatabaseManager dbm = new SimpleDatabaseManager(args[0]);
+			ValueIngest ingest = new ValueIngest((JDBCDatabase) dbm.getDatabase());
+			ingest.setCreate(create);
+			ingest.setCheckpoint(checkpoint);
+			ingest.ingest(new File(args[1]), format);
+			System.out.println(ingest);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+}
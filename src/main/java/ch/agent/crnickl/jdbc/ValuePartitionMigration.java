@@ -0,0 +1,171 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.api.SimpleDatabaseManager;
+import ch.agent.crnickl.jdbc.T2DBJMsg.J;
+
+/**
+ * ValuePartitionMigration moves numeric values between partition layouts of
+ * the value table. The target layout is the number of partitions configured
+ * with <code>session.valuePartitions</code>, the source layout is given to
+ * the constructor. With 0 partitions, values are in the table
+ * <code>value_double</code>; with N partitions, the values of a series are in
+ * the table <code>value_double_NN</code>, where NN is the series id modulo N.
+ * The target tables must exist; {@link #getDDL(int)} returns the statements
+ * creating them. All work is done in a single transaction.
+ * <p>
+ * The class can be run from the command line. To print the DDL, the
+ * arguments are <code>ddl</code> and the number of partitions. To migrate,
+ * the first argument is passed to {@link SimpleDatabaseManager}, typically
+ * <code>file=db.config</code>, and the second is <code>from=</code> followed
+ * by the number of partitions of the source layout.
+ *
+ * @author Jean-Paul Vetterli
+ */
+public class ValuePartitionMigration {
+
+	private static final String DDL =
+		"create table %1$s (\n" +
+		"  series int not null,\n" +
+		"  date int not null,\n" +
+		"  element double not null,\n" +
+		"  constraint %1$s_pk primary key (series, date),\n" +
+		"  constraint %1$s_fk foreign key (series) references " + DB.SERIES + " (id)\n" +
+		" );\n";
+	private static final String COPY_ALL =
+		"insert into %s (series, date, element) select series, date, element from %s";
+	private static final String COPY_PARTITION =
+		"insert into %s (series, date, element) select series, date, element from %s where mod(series, %d) = %d";
+	private static final String DELETE_ALL =
+		"delete from %s";
+	private static final String DELETE_OTHERS =
+		"delete from %s where mod(series, %d) <> %d";
+
+	private JDBCDatabase database;
+	private int from;
+	private int to;
+
+	/**
+	 * Construct a migration.
+	 *
+	 * @param database a database configured with the target number of partitions
+	 * @param from the number of partitions of the source layout
+	 */
+	public ValuePartitionMigration(JDBCDatabase database, int from) {
+		if (from < 0 || from > AccessMethodsForNumber.MAX_PARTITIONS)
+			throw new IllegalArgumentException("from < 0 or > " + AccessMethodsForNumber.MAX_PARTITIONS);
+		this.database = database;
+		this.from = from;
+		this.to = database.getNumberAccessMethods().getPartitions();
+	}
+
+	/**
+	 * Return the DDL creating the value tables of a partition layout. The
+	 * DDL is in the syntax of <code>sql/HyperSQL_DDL_base.sql</code>.
+	 *
+	 * @param partitions a number of partitions, at least 1
+	 * @return statements in SQL syntax
+	 */
+	public static String getDDL(int partitions) {
+		if (partitions < 1 || partitions > AccessMethodsForNumber.MAX_PARTITIONS)
+			throw new IllegalArgumentException("partitions < 1 or > " + AccessMethodsForNumber.MAX_PARTITIONS);
+		StringBuilder ddl = new StringBuilder();
+		for (int i = 0; i < partitions; i++) {
+			ddl.append(String.format(DDL, AccessMethodsForNumber.valueTable(partitions, i)));
+			ddl.append('\n');
+		}
+		return ddl.toString();
+	}
+
+	/**
+	 * Move all values from the source layout to the target layout and
+	 * commit. Values already in the right table are not moved.
+	 *
+	 * @return the number of values moved
+	 * @throws T2DBException
+	 */
+	public long migrate() throws T2DBException {
+		long count = 0;
+		Statement stmt = null;
+		try {
+			Connection connection = database.getConnection();
+			stmt = connection.createStatement();
+			for (int s = 0; s < Math.max(1, from); s++) {
+				String source = AccessMethodsForNumber.valueTable(from, s);
+				int self = -1;
+				for (int t = 0; t < Math.max(1, to); t++) {
+					String target = AccessMethodsForNumber.valueTable(to, t);
+					if (target.equals(source))
+						self = t;
+					else if (to == 0)
+						count += stmt.executeUpdate(String.format(COPY_ALL, target, source));
+					else
+						count += stmt.executeUpdate(String.format(COPY_PARTITION, target, source, to, t));
+				}
+				if (self < 0)
+					stmt.executeUpdate(String.format(DELETE_ALL, source));
+				else if (to > 0)
+					stmt.executeUpdate(String.format(DELETE_OTHERS, source, to, self));
+			}
+			database.commit();
+		} catch (Exception e) {
+			database.rollback();
+			throw T2DBJMsg.exception(e, J.J00119, to, count);
+		} finally {
+			if (stmt != null) {
+				try {
+					stmt.close();
+				} catch (SQLException e) {
+					// ignore
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Print the DDL or run a migration from the command line.
+	 *
+	 * @param args <code>ddl</code> and a number of partitions, or the database manager parameters and <code>from=</code> a number of partitions
+	 */
+	public static void main(String[] args) {
+		try {
+			if (args.length == 2 && args[0].equals("ddl")) {
+				System.out.print(getDDL(Integer.parseInt(args[1])));
+			} else if (args.length == 2 && args[1].startsWith("from=")) {
+				SimpleDatabaseManager dbm = new SimpleDatabaseManager(args[0]);
+				int from = Integer.parseInt(args[1].substring("from=".length()));
+				ValuePartitionMigration migration = new ValuePartitionMigration((JDBCDatabase) dbm.getDatabase(), from);
+				long count = migration.migrate();
+				System.out.println(count + " values moved");
+			} else {
+				System.err.println("usage: ValuePartitionMigration ddl <partitions> | file=<configuration file> from=<partitions>");
+				System.exit(2);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+}
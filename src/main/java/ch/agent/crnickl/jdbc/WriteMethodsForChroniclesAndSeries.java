@@ -44,7 +44,6 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 	public WriteMethodsForChroniclesAndSeries() {
 	}
 
-	private PreparedStatement create_entity;
 	private static final String CREATE_ENTITY = 
 			"insert into " + DB.CHRONICLE + "(parent, schema_id, name, descrip) values(?, ?, ?, ?)";
 	/**
@@ -55,6 +54,7 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 	 * @throws T2DBException
 	 */
 	public void createChronicle(Chronicle chronicle) throws T2DBException {
+		PreparedStatement create_entity = null;
 		Surrogate surrogate = null;
 		Throwable cause = null;
 		try {
@@ -72,12 +72,14 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 			}
 			if (schema != null)
 				check(Permission.READ, schema);
-			create_entity = open(CREATE_ENTITY, chronicle, create_entity);
+			create_entity = openWithGeneratedKeys(CREATE_ENTITY, chronicle, create_entity);
 			create_entity.setInt(1, getIdOrZero(collection));
 			create_entity.setInt(2, getIdOrZero(schema));
 			create_entity.setString(3, name);
 			create_entity.setString(4, description);
 			surrogate = makeSurrogate(chronicle, executeAndGetNewId(create_entity));
+			if (getChronicleCache() != null)
+				getChronicleCache().written(getId(surrogate));
 		} catch (Exception e) {
 			cause = e;
 		} finally {
@@ -88,9 +90,7 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 		chronicle.getSurrogate().upgrade(surrogate);
 	}
 	
-	private PreparedStatement delete_entity;
 	private static final String DELETE_ENTITY = "delete from " + DB.CHRONICLE + " where id = ?";
-	private PreparedStatement delete_entity_attributes;
 	private static final String DELETE_ENTITY_ATTIBUTES = "delete from " + DB.ATTRIBUTE_VALUE + " where chronicle = ?";
 
 	/**
@@ -105,10 +105,14 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 	 * @throws T2DBException
 	 */
 	public void deleteChronicle(UpdatableChronicle chronicle, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement delete_entity_attributes = null;
+		PreparedStatement delete_entity = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
 			int id = getId(chronicle);
+			if (getChronicleCache() != null)
+				getChronicleCache().written(id);
 			check(Permission.MODIFY, chronicle);
 			policy.willDelete(chronicle);
 			done = policy.deleteChronicle(chronicle);
@@ -132,7 +136,6 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 			throw T2DBMsg.exception(cause, E.E40110, chronicle.getName(true));
 	}
 	
-	private PreparedStatement update_entity;
 	private static final String UPDATE_ENTITY = 
 		"update " + DB.CHRONICLE + " set name = ?, descrip = ? where id = ?";
 
@@ -148,6 +151,7 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 	 * @throws T2DBException
 	 */
 	public void updateChronicle(UpdatableChronicle chronicle, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement update_entity = null;
 		boolean done = false;
 		Throwable cause = null;
 		String name = chronicle.getName(false);
@@ -156,6 +160,8 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 			description = "";
 		try {
 			int id = getId(chronicle);
+			if (getChronicleCache() != null)
+				getChronicleCache().written(id);
 			check(Permission.MODIFY, chronicle);
 			policy.willUpdate(chronicle);
 			update_entity = open(UPDATE_ENTITY, chronicle, update_entity);
@@ -173,7 +179,6 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 			throw T2DBMsg.exception(cause, E.E40111, chronicle.getName(true));
 	}
 	
-	private PreparedStatement insert_attribute;
 	private static final String INSERT_ATTRIBUTE = 
 		"insert into " + DB.ATTRIBUTE_VALUE + "(chronicle, attrib, prop, value, descrip) values(?, ?, ?, ?, ?) ";
 	/**
@@ -187,6 +192,7 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 	 * @throws T2DBException
 	 */
 	public void updateAttribute(UpdatableChronicle chronicle, AttributeDefinition<?> def, String value, String description) throws T2DBException {
+		PreparedStatement insert_attribute = null;
 		boolean done = false;
 		try {
 			check(Permission.MODIFY, chronicle);
@@ -207,10 +213,10 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 			throw T2DBMsg.exception(E.E40112, chronicle.getName(true), def.getNumber());
 	}
 	
-	private PreparedStatement update_attribute;
 	private static final String UPDATE_ATTRIBUTE = 
 		"update " + DB.ATTRIBUTE_VALUE + " set value = ?, descrip = ? where chronicle = ? and prop = ?";
 	private boolean updateAttribute(SQLException originalException, UpdatableChronicle entity, AttributeDefinition<?> def, String value, String description) throws T2DBException {
+		PreparedStatement update_attribute = null;
 		boolean done = false;
 		try {
 			check(Permission.MODIFY, entity);
@@ -229,7 +235,6 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 		return done;
 	}
 	
-	private PreparedStatement delete_attribute;
 	private static final String DELETE_ATTRIBUTE = 
 		"delete from " + DB.ATTRIBUTE_VALUE + " where chronicle = ? and prop = ?";
 	/**
@@ -241,6 +246,7 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 	 * @throws T2DBException
 	 */
 	public void deleteAttribute(Chronicle chronicle, AttributeDefinition<?> def) throws T2DBException {
+		PreparedStatement delete_attribute = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -259,7 +265,6 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 			throw T2DBMsg.exception(cause, E.E40114, chronicle.getName(true), def.getNumber());
 	}
 
-	private PreparedStatement create_series;
 	private static final String CREATE_SERIES = 
 		"insert into " + DB.SERIES + "(chronicle, ssn) values(?, ?)";
 
@@ -272,12 +277,13 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 	 * @throws T2DBException
 	 */
 	public void createSeries(Series<?> series) throws T2DBException {
+		PreparedStatement create_series = null;
 		Throwable cause = null;
 		Surrogate surrogate = null;
 		Chronicle chronicle = series.getChronicle();
 		try {
 			check(Permission.MODIFY, chronicle, true);
-			create_series = open(CREATE_SERIES, series, create_series);
+			create_series = openWithGeneratedKeys(CREATE_SERIES, series, create_series);
 			create_series.setInt(1, getId(chronicle));
 			create_series.setInt(2, series.getNumber());
 			surrogate = makeSurrogate(series, executeAndGetNewId(create_series));
@@ -291,7 +297,6 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 		series.getSurrogate().upgrade(surrogate);
 	}
 	
-	private PreparedStatement delete_series;
 	private static final String DELETE_SERIES = "delete from " + DB.SERIES + " where id = ?";
 
 	/**
@@ -305,6 +310,7 @@ public class WriteMethodsForChroniclesAndSeries extends	ReadMethodsForChronicles
 	 * @throws T2DBException
 	 */
 	public void deleteSeries(UpdatableSeries<?> series, ChronicleUpdatePolicy policy) throws T2DBException {
+		PreparedStatement delete_series = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -39,7 +39,6 @@ public class WriteMethodsForProperty extends ReadMethodsForProperty {
 	public WriteMethodsForProperty() {
 	}
 	
-	private PreparedStatement create_property;
 	private static final String CREATE_PROPERTY = 
 		"insert into " + DB.PROPERTY + "(type, label) values(?, ?)";
 	/**
@@ -50,11 +49,12 @@ public class WriteMethodsForProperty extends ReadMethodsForProperty {
 	 * @throws T2DBException
 	 */
 	public void createProperty(Property<?> property) throws T2DBException {
+		PreparedStatement create_property = null;
 		Surrogate surrogate = null;
 		Throwable cause = null;
 		try {
 			check(Permission.CREATE, property);
-			create_property = open(CREATE_PROPERTY, property, create_property);
+			create_property = openWithGeneratedKeys(CREATE_PROPERTY, property, create_property);
 			ValueType<?> vt = property.getValueType();
 			create_property.setInt(1, getId(vt));
 			create_property.setString(2, property.getName());
@@ -69,7 +69,6 @@ public class WriteMethodsForProperty extends ReadMethodsForProperty {
 		property.getSurrogate().upgrade(surrogate);
 	}
 
-	private PreparedStatement delete_property;
 	private static final String DELETE_PROPERTY = 
 		"delete from " + DB.PROPERTY + " where id = ?";
 	/**
@@ -81,6 +80,7 @@ public class WriteMethodsForProperty extends ReadMethodsForProperty {
 	 * @throws T2DBException
 	 */
 	public void deleteProperty(Property<?> property, SchemaUpdatePolicy policy) throws T2DBException {
+		PreparedStatement delete_property = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -102,7 +102,6 @@ public class WriteMethodsForProperty extends ReadMethodsForProperty {
 			throw T2DBMsg.exception(cause, E.E20115, property.getName());
 	}
 	
-	private PreparedStatement update_property;
 	private static final String UPDATE_PROPERTY = 
 		"update " + DB.PROPERTY + " set label = ? where id = ?";
 	/**
@@ -114,6 +113,7 @@ public class WriteMethodsForProperty extends ReadMethodsForProperty {
 	 * @throws T2DBException
 	 */
 	public void updateProperty(Property<?> property, SchemaUpdatePolicy policy) throws T2DBException {
+		PreparedStatement update_property = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -108,7 +108,6 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 		visitor = new Visitor(this);
 	}
 	
-	private PreparedStatement create_schema;
 	private static final String CREATE_SCHEMA = "insert into " + DB.SCHEMA_NAME + "(parent, label) values(?, ?)";
 	/**
 	 * Create an empty schema in the database.
@@ -118,6 +117,7 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 	 * @throws T2DBException
 	 */
 	public void createSchema(UpdatableSchema schema) throws T2DBException {
+		PreparedStatement create_schema = null;
 		Surrogate surrogate = null;
 		Throwable cause = null;
 		try {
@@ -125,7 +125,7 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 			Schema base = schema.getBase();
 			if (base != null)
 				check(Permission.READ, base);
-			create_schema = open(CREATE_SCHEMA, schema, create_schema);
+			create_schema = openWithGeneratedKeys(CREATE_SCHEMA, schema, create_schema);
 			create_schema.setInt(1, getIdOrZero(base));
 			create_schema.setString(2, schema.getName());
 			surrogate = makeSurrogate(schema, executeAndGetNewId(create_schema));
@@ -141,8 +141,6 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 			throw T2DBMsg.exception(cause, E.E30122, schema.getName());
 	}
 	
-	private PreparedStatement delete_schema;
-	private PreparedStatement delete_schema_components;
 	private static final String DELETE_SCHEMA = "delete from " + DB.SCHEMA_NAME + " where id = ?";
 	private static final String DELETE_SCHEMA_COMPONENTS = "delete from " + DB.SCHEMA_ITEM + " where id = ?";
 	/**
@@ -153,6 +151,8 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 	 * @throws T2DBException
 	 */
 	public void deleteSchema(UpdatableSchema schema) throws T2DBException {
+		PreparedStatement delete_schema_components = null;
+		PreparedStatement delete_schema = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -175,7 +175,6 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 			throw T2DBMsg.exception(cause, E.E30123, schema.getName());
 	}
 
-	private PreparedStatement create_schema_component;
 	private static final String CREATE_SCHEMA_COMPONENT = 
 		"insert into " + DB.SCHEMA_ITEM + "(id, ssn, attrib, prop, value, descrip) " +
 		"values(?, ?, ?, ?, ?, ?)";
@@ -190,6 +189,7 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 	 * @throws T2DBException
 	 */
 	private void createSchemaComponent(UpdatableSchema schema, int seriesNr, String description, AttributeDefinition<?> def) throws T2DBException {
+		PreparedStatement create_schema_component = null;
 		boolean done = false;
 		try {
 			check(Permission.MODIFY, schema);
@@ -226,7 +226,6 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 		}
 	}
 
-	private PreparedStatement update_schema;
 	private static final String UPDATE_SCHEMA = 
 		"update " + DB.SCHEMA_NAME + " set label = ?, parent = ? where id = ?";
 	/**
@@ -238,6 +237,7 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 	 * @throws T2DBException
 	 */
 	public boolean updateSchema(UpdatableSchema schema) throws T2DBException {
+		PreparedStatement update_schema = null;
 		boolean done = false;
 		Throwable cause = null;
 		RawSchema rawSchema = getRawSchema(schema.getSurrogate());
@@ -275,7 +275,6 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 		return ((UpdatableSchemaImpl) schema).traverse(false, visitor) > 0;
 	}
 	
-	private PreparedStatement delete_schema_by_attribute;
 	private static final String DELETE_SCHEMA_BY_ATTRIBUTE = 
 		"delete from " + DB.SCHEMA_ITEM + " where id = ? and ssn = ? and attrib = ?";
 	/**
@@ -288,6 +287,7 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 	 * @throws T2DBException
 	 */
 	private void deleteSchemaComponent(UpdatableSchema schema, int seriesNr, int attribNr) throws T2DBException {
+		PreparedStatement delete_schema_by_attribute = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -308,7 +308,6 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 			throw T2DBMsg.exception(cause, E.E30128, schema, seriesNr, attribNr);
 	}
 	
-	private PreparedStatement delete_schema_by_series;
 	private static final String DELETE_SCHEMA_BY_SERIES = 
 		"delete from " + DB.SCHEMA_ITEM + " where id = ? and ssn = ?";
 	/**
@@ -320,6 +319,7 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 	 * @throws T2DBException
 	 */
 	private void deleteSchemaComponents(UpdatableSchema schema, int seriesNr) throws T2DBException {
+		PreparedStatement delete_schema_by_series = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -339,7 +339,6 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 			throw T2DBMsg.exception(cause, E.E30129, schema, seriesNr);
 	}
 	
-	private PreparedStatement update_schema_by_attribute;
 	private static final String UPDATE_SCHEMA_BY_ATTRIBUTE = 
 		"update " + DB.SCHEMA_ITEM + " set value = ?, descrip = ? where id = ? and ssn = ? and attrib = ?";
 	/**
@@ -353,6 +352,7 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 	 * @throws T2DBException
 	 */
 	private void updateSchemaComponent(UpdatableSchema schema, int seriesNr, String description, AttributeDefinition<?> def) throws T2DBException {
+		PreparedStatement update_schema_by_attribute = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -387,7 +387,6 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 		return editedBaseId != currentBaseId;
 	}
 	
-	private PreparedStatement find_entity_with_schema;
 	private static final String FIND_ENTITY_WITH_SCHEMA = "select id from " + DB.CHRONICLE + " where schema_id = ?";
 	/**
 	 * Find a chronicle referencing the schema. 
@@ -398,6 +397,7 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 	 * @throws T2DBException
 	 */
 	public Surrogate findChronicle(Schema schema) throws T2DBException {
+		PreparedStatement find_entity_with_schema = null;
 		Surrogate result = null;
 		Database database = schema.getSurrogate().getDatabase();
 		try {
@@ -416,7 +416,6 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 		return result;
 	}
 	
-	private PreparedStatement find_entity_with_property;
 	private static final String FIND_ENTITY_WITH_PROPERTY = "select chronicle from " + DB.ATTRIBUTE_VALUE + " where prop = ?";
 	/**
 	 * Find a chronicle with an explicit attribute value for a given property and schema. 
@@ -428,6 +427,7 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 	 * @throws T2DBException
 	 */
 	public Surrogate findChronicle(Property<?> property, Schema schema) throws T2DBException {
+		PreparedStatement find_entity_with_property = null;
 		Surrogate result = null;
 		Database database = property.getSurrogate().getDatabase();
 		try {
@@ -450,7 +450,6 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 		return result;
 	}
 
-	private PreparedStatement find_entity_with_series;
 	private static final String FIND_ENTITY_WITH_SERIES = "select chronicle from " + DB.SERIES + " where ssn = ?";
 	/**
 	 * Find a chronicle depending one a given series in a schema.
@@ -462,6 +461,7 @@ public class WriteMethodsForSchema extends ReadMethodsForSchema {
 	 * @throws T2DBException
 	 */
 	public Surrogate findChronicle(SeriesDefinition ss, Schema schema) throws T2DBException {
+		PreparedStatement find_entity_with_series = null;
 		Surrogate result = null;
 		Database database = schema.getSurrogate().getDatabase();
 		try {
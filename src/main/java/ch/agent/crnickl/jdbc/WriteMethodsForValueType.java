@@ -42,7 +42,6 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 	public WriteMethodsForValueType() {
 	}
 	
-	private PreparedStatement create_valuetype;
 	private static final String CREATE_VALUETYPE = 
 		"insert into " + DB.VALUE_TYPE + " (label, restricted, scanner) " + 
 		"values(?, ?, ?)";
@@ -54,11 +53,12 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public <T>void createValueType(ValueType<T> vt) throws T2DBException {
+		PreparedStatement create_valuetype = null;
 		Surrogate surrogate = null;
 		Throwable cause = null;
 		try {
 			check(Permission.CREATE, vt);
-			create_valuetype = open(CREATE_VALUETYPE, vt, create_valuetype);
+			create_valuetype = openWithGeneratedKeys(CREATE_VALUETYPE, vt, create_valuetype);
 			create_valuetype.setString(1, vt.getName());
 			create_valuetype.setBoolean(2, vt.isRestricted());
 			create_valuetype.setString(3, ((ValueTypeImpl<T>)vt).getExternalRepresentation());
@@ -74,7 +74,6 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 			throw T2DBMsg.exception(cause, E.E10114, vt.getName());
 	}
 
-	private PreparedStatement delete_valuetype;
 	private static final String DELETE_VALUETYPE = 
 		"delete from " + DB.VALUE_TYPE + " where id = ?";
 	/**
@@ -86,6 +85,7 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public <T>void deleteValueType(ValueType<T> vt, SchemaUpdatePolicy policy) throws T2DBException {
+		PreparedStatement delete_valuetype = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -106,7 +106,6 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 			throw T2DBMsg.exception(cause, E.E10145, vt.getName());
 	}
 	
-	private PreparedStatement update_valuetype;
 	private static final String UPDATE_VALUETYPE = 
 		"update " + DB.VALUE_TYPE + " set label = ? where id = ?";
 	/**
@@ -118,6 +117,7 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	public <T>void updateValueType(ValueType<T> vt, SchemaUpdatePolicy policy) throws T2DBException {
+		PreparedStatement update_valuetype = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -207,7 +207,6 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 		return count > 0;
 	}
 	
-	private PreparedStatement insert_valuelist;
 	private static final String INSERT_VALUELIST = 
 		"insert into " + DB.VALUE_TYPE_VALUE + "(type, value, descrip) values(?, ?, ?)";
 	/**
@@ -221,6 +220,7 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	private <T>void insertValueTypeValue(ValueType<T> vt, String value, String description) throws T2DBException {
+		PreparedStatement insert_valuelist = null;
 		boolean done = false;
 		Throwable cause = null;
 		if (value == null)
@@ -244,10 +244,10 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 		}
 	}
 	
-	private PreparedStatement update_valuelist;
 	private static final String UPDATE_VALUELIST = 
 		"update " + DB.VALUE_TYPE_VALUE + " set descrip = ? where type = ? and value = ?";
 	private <T>void updateValueTypeValue(ValueType<T> vt, String value, String description) throws T2DBException {
+		PreparedStatement update_valuelist = null;
 		boolean done = false;
 		Throwable cause = null;
 		try {
@@ -267,7 +267,6 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 		}
 	}
 
-	private PreparedStatement delete_valuelist;
 	private static final String DELETE_VALUELIST = 
 		"delete from " + DB.VALUE_TYPE_VALUE + " where type = ? and value = ?";
 	/**
@@ -283,6 +282,7 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 	 * @throws T2DBException
 	 */
 	private <T>void deleteValueTypeValue(ValueType<T> vt, T value, SchemaUpdatePolicy policy) throws T2DBException {
+		PreparedStatement delete_valuelist = null;
 		boolean done = false;
 		Throwable cause = null;
 		String name = vt.getName();
@@ -304,10 +304,10 @@ public class WriteMethodsForValueType extends JDBCDatabaseMethods {
 			throw T2DBMsg.exception(cause, E.E10126, name, value);
 	}
 
-	private PreparedStatement delete_values;
 	private static final String DELETE_VALUES = 
 		"delete from " + DB.VALUE_TYPE_VALUE + " where type = ?";
 	private void deleteValues(ValueType<?> vt) throws T2DBException, SQLException {
+		PreparedStatement delete_values = null;
 		try  {
 			delete_values = open(DELETE_VALUES, vt, delete_values);
 			delete_values.setInt(1, getId(vt));
@@ -83,6 +83,18 @@ create table value_double (
   constraint val2 foreign key (series) references series (id)
  );
 
+-- used when the database is configured with session.seriesStats=true
+create table series_stats (
+  series int not null,
+  first_date int not null,
+  last_date int not null,
+  first_value double not null,
+  last_value double not null,
+  nvalues int not null,
+  constraint sst1 primary key (series),
+  constraint sst2 foreign key (series) references series (id)
+ );
+
 create table attribute_value (
   chronicle int not null,
   attrib int not null,
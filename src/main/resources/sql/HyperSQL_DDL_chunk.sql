@@ -0,0 +1,17 @@
+-- CREATE TABLE FOR COMPRESSED NUMERIC VALUES
+-- Idiom: HSQL
+-- Run after HyperSQL_DDL_base.sql. The table is used when the database is
+-- configured with session.numberStorage=chunk.
+-- A chunk holds the values of a series with date offsets in
+-- [chunk * chunkSize, (chunk + 1) * chunkSize - 1], encoded by ValueChunkCodec.
+
+create table value_chunk (
+  series int not null,
+  chunk int not null,
+  first_date int not null,
+  last_date int not null,
+  nvalues int not null,
+  data varbinary(65536) not null,
+  constraint vch1 primary key (series, chunk),
+  constraint vch2 foreign key (series) references series (id)
+ );
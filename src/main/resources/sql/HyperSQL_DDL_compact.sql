@@ -0,0 +1,32 @@
+-- CREATE TABLES FOR COMPACT NUMERIC VALUES
+-- Idiom: HSQL
+-- Run after HyperSQL_DDL_base.sql. The tables are used when the database is
+-- configured with session.compactNumbers=true, by value types with a scanner
+-- for float, int or long values.
+-- In HyperSQL, real is a synonym of double and takes 8 bytes like
+-- value_double; see PostgreSQL_DDL_compact.sql and MySQL_DDL_compact.sql for
+-- databases with a 4 byte float.
+
+create table value_float (
+  series int not null,
+  date int not null,
+  element real not null,
+  constraint vfl1 primary key (series, date),
+  constraint vfl2 foreign key (series) references series (id)
+ );
+
+create table value_int (
+  series int not null,
+  date int not null,
+  element int not null,
+  constraint vin1 primary key (series, date),
+  constraint vin2 foreign key (series) references series (id)
+ );
+
+create table value_long (
+  series int not null,
+  date int not null,
+  element bigint not null,
+  constraint vlg1 primary key (series, date),
+  constraint vlg2 foreign key (series) references series (id)
+ );
@@ -0,0 +1,30 @@
+-- CREATE TABLES FOR COMPACT NUMERIC VALUES
+-- Idiom: PostgreSQL
+-- Run after the base tables were created. The tables are used when the
+-- database is configured with session.compactNumbers=true, by value types
+-- with a scanner for float, int or long values.
+-- real takes 4 bytes, integer 4 bytes and bigint 8 bytes.
+
+create table value_float (
+  series int not null,
+  date int not null,
+  element real not null,
+  constraint vfl1 primary key (series, date),
+  constraint vfl2 foreign key (series) references series (id)
+ );
+
+create table value_int (
+  series int not null,
+  date int not null,
+  element integer not null,
+  constraint vin1 primary key (series, date),
+  constraint vin2 foreign key (series) references series (id)
+ );
+
+create table value_long (
+  series int not null,
+  date int not null,
+  element bigint not null,
+  constraint vlg1 primary key (series, date),
+  constraint vlg2 foreign key (series) references series (id)
+ );
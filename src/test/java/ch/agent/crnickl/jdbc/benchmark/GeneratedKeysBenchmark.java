@@ -0,0 +1,111 @@
+/*
+ *   Copyright 2012-2017 Hauser Olsson GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package ch.agent.crnickl.jdbc.benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.JDBCDatabaseMethods;
+import ch.agent.crnickl.jdbc.junit.JDBCTestDatabase;
+
+/**
+ * Measure the cost of statements opened with
+ * {@link JDBCDatabaseMethods#openWithGeneratedKeys(String, ch.agent.crnickl.api.Database, PreparedStatement)}
+ * compared to
+ * {@link JDBCDatabaseMethods#open(String, ch.agent.crnickl.api.Database, PreparedStatement)},
+ * using the in-memory HyperSQL database of the unit tests. The statement
+ * cache is disabled, so that each iteration prepares, executes and closes
+ * one query, as done when a statement is not found in the cache. After a
+ * warm up, both variants are run alternately in several rounds, so that
+ * both get the same share of JIT compilation and garbage collection.
+ * <p>
+ * Usage: <code>GeneratedKeysBenchmark [iterations [rounds]]</code>
+ */
+public class GeneratedKeysBenchmark {
+
+	private static final String SELECT_CHRONICLES =
+		"select id, name, descrip from chronicle where parent = (select parent from chronicle where id = ?) order by name";
+	private static final int CHRONICLES = 100;
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		JDBCDatabase db = JDBCTestDatabase.open("session.statementCacheSize=0");
+		try {
+			int chronicle = setUp(db);
+			JDBCDatabaseMethods methods = new JDBCDatabaseMethods();
+			// warm up both variants
+			run(db, methods, chronicle, iterations, true);
+			run(db, methods, chronicle, iterations, false);
+			long withKeys = 0;
+			long withoutKeys = 0;
+			for (int i = 0; i < rounds; i++) {
+				if (i % 2 == 0) {
+					withKeys += run(db, methods, chronicle, iterations, true);
+					withoutKeys += run(db, methods, chronicle, iterations, false);
+				} else {
+					withoutKeys += run(db, methods, chronicle, iterations, false);
+					withKeys += run(db, methods, chronicle, iterations, true);
+				}
+			}
+			long total = (long) iterations * rounds;
+			System.out.println(String.format("iterations: %d x %d rounds", iterations, rounds));
+			System.out.println(String.format("with generated keys:    %8.2f us/query", withKeys / 1000d / total));
+			System.out.println(String.format("without generated keys: %8.2f us/query", withoutKeys / 1000d / total));
+			System.out.println(String.format("saving:                 %8.2f us/query (%.1f%%)",
+					(withKeys - withoutKeys) / 1000d / total, 100d * (withKeys - withoutKeys) / withKeys));
+		} finally {
+			JDBCTestDatabase.close(db);
+		}
+	}
+
+	private static int setUp(JDBCDatabase db) throws Exception {
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "benchmark");
+		for (int i = 0; i < CHRONICLES; i++) {
+			db.getTopChronicle().edit().createChronicle("c" + i, false, "chronicle " + i, null, schema.resolve()).applyUpdates();
+		}
+		db.commit();
+		return db.getNumberAccessMethods().getId(db.getChronicle("c0", true).getSurrogate());
+	}
+
+	private static long run(JDBCDatabase db, JDBCDatabaseMethods methods, int chronicle, int iterations, boolean generatedKeys) throws Exception {
+		long count = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			PreparedStatement stmt = null;
+			try {
+				stmt = generatedKeys ?
+						methods.openWithGeneratedKeys(SELECT_CHRONICLES, db, stmt) :
+						methods.open(SELECT_CHRONICLES, db, stmt);
+				stmt.setInt(1, chronicle);
+				ResultSet rs = stmt.executeQuery();
+				while (rs.next())
+					count++;
+				rs.close();
+			} finally {
+				stmt = methods.close(stmt);
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		if (count != (long) iterations * CHRONICLES)
+			throw new IllegalStateException("unexpected row count: " + count);
+		return elapsed;
+	}
+
+}
@@ -23,6 +23,31 @@ public class AllTests {
 		suite.addTestSuite(T045_EventTest.class);
 		suite.addTestSuite(T050_ChronicleTest.class);
 		suite.addTestSuite(T060_ByAttributeValueTest.class);
+		suite.addTestSuite(T070_ConnectionPoolTest.class);
+		suite.addTestSuite(T071_IndependentDatabasesTest.class);
+		suite.addTestSuite(T072_StatementCacheTest.class);
+		suite.addTestSuite(T073_GeneratedKeysTest.class);
+		suite.addTestSuite(T074_BatchWriteTest.class);
+		suite.addTestSuite(T075_UpsertTest.class);
+		suite.addTestSuite(T076_FetchSizeTest.class);
+		suite.addTestSuite(T077_PrimitiveReadTest.class);
+		suite.addTestSuite(T078_PanelReadTest.class);
+		suite.addTestSuite(T079_ChunkStorageTest.class);
+		suite.addTestSuite(T080_SeriesStatsTest.class);
+		suite.addTestSuite(T081_AggregationTest.class);
+		suite.addTestSuite(T082_AppendTest.class);
+		suite.addTestSuite(T083_ReplaceValuesTest.class);
+		suite.addTestSuite(T084_ValueIngestTest.class);
+		suite.addTestSuite(T085_ValueCacheTest.class);
+		suite.addTestSuite(T086_HeapValueCacheTest.class);
+		suite.addTestSuite(T087_ValuePartitionTest.class);
+		suite.addTestSuite(T088_CompactNumberTest.class);
+		suite.addTestSuite(T089_ChronicleCacheTest.class);
+		suite.addTestSuite(T090_ChroniclePathTest.class);
+		suite.addTestSuite(T091_InheritedAttributeTest.class);
+		suite.addTestSuite(T092_AttributeValuesTest.class);
+		suite.addTestSuite(T093_ChronicleCursorTest.class);
+		suite.addTestSuite(T094_ByAttributeLimitTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,198 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.hsqldb.cmdline.SqlFile;
+
+import ch.agent.crnickl.api.DatabaseConfiguration;
+import ch.agent.crnickl.api.UpdatableChronicle;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.api.UpdatableValueType;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.TimeIndex;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+/**
+ * Helper for tests of features of the JDBC implementation. Each database is
+ * configured like <code>db.test.config</code> but has its own in-memory
+ * HyperSQL database, so that tests can use different session parameters.
+ * The name space is not strict, so that top level chronicles need no prefix.
+ */
+public class JDBCTestDatabase {
+
+	private static final String CONFIG = "db.test.config";
+	private static final String DDL = "feature.DDL";
+	private static int count;
+
+	/**
+	 * Create and open a database with the tables of <code>feature.DDL</code>.
+	 * Parameters are given as <code>name=value</code>. The parameter
+	 * <code>feature.DDL</code> can name a comma-separated list of DDL
+	 * resources.
+	 *
+	 * @param parameters session parameters overriding the configuration
+	 * @return an open database
+	 * @throws Exception
+	 */
+	public static JDBCDatabase open(String... parameters) throws Exception {
+		Properties config = new Properties();
+		InputStream in = ClassLoader.getSystemClassLoader().getResourceAsStream(CONFIG);
+		try {
+			config.load(in);
+		} finally {
+			in.close();
+		}
+		String name = "feature" + nextCount();
+		config.setProperty("session.jdbcUrl", "jdbc:hsqldb:mem:" + name);
+		config.setProperty("dbStrictNameSpace", "false");
+		for (String parameter : parameters) {
+			int eq = parameter.indexOf('=');
+			config.setProperty(parameter.substring(0, eq), parameter.substring(eq + 1));
+		}
+		DatabaseConfiguration configuration = new DatabaseConfiguration(name,
+				config.getProperty("db.class"), "ch.agent.t2.applied.DefaultTimeDomainCatalog");
+		for (String key : config.stringPropertyNames()) {
+			configuration.setParameter(key, config.getProperty(key).trim());
+		}
+		JDBCDatabase db = new JDBCDatabase(name, configuration.getTimeDomainCatalog());
+		db.configure(configuration);
+		db.open();
+		Connection c = db.getConnection();
+		for (String resource : config.getProperty(DDL).split(",")) {
+			sql(c, resource.trim());
+		}
+		db.commit();
+		return db;
+	}
+
+	private static void sql(Connection c, String resource) throws Exception {
+		InputStream inputStream = ClassLoader.getSystemClassLoader().getResourceAsStream(resource);
+		SqlFile sqlf = new SqlFile(new InputStreamReader(inputStream), resource, null, null, false, null);
+		sqlf.setConnection(c);
+		sqlf.execute();
+	}
+
+	private static synchronized int nextCount() {
+		return ++count;
+	}
+
+	/**
+	 * Drop the in-memory database and close the database.
+	 *
+	 * @param db a database or null
+	 * @throws Exception
+	 */
+	public static void close(JDBCDatabase db) throws Exception {
+		if (db == null)
+			return;
+		db.rollback();
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			stmt.execute("shutdown");
+		} finally {
+			stmt.close();
+		}
+		db.close();
+	}
+
+	/**
+	 * Create the value type <q>numeric</q> and a schema with two numeric
+	 * daily series, <q>price</q> and <q>vol</q>, and commit.
+	 *
+	 * @param db a database
+	 * @param name the name of the schema
+	 * @return the schema
+	 * @throws Exception
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static UpdatableSchema createSchema(JDBCDatabase db, String name) throws Exception {
+		UpdatableValueType<String> vt = db.createValueType("numeric", false, "NUMBER");
+		vt.applyUpdates();
+		UpdatableValueType types = db.getTypeBuiltInProperty().getValueType().edit();
+		types.addValue(types.getScanner().scan("numeric"), "numbers");
+		types.applyUpdates();
+		UpdatableSchema schema = db.createSchema(name, null);
+		schema.addSeries(1);
+		schema.setSeriesName(1, "price");
+		schema.setSeriesType(1, "numeric");
+		schema.setSeriesTimeDomain(1, Day.DOMAIN);
+		schema.addSeries(2);
+		schema.setSeriesName(2, "vol");
+		schema.setSeriesType(2, "numeric");
+		schema.setSeriesTimeDomain(2, Day.DOMAIN);
+		schema.applyUpdates();
+		db.commit();
+		return schema;
+	}
+
+	/**
+	 * Create a top level chronicle with a schema and commit.
+	 *
+	 * @param db a database
+	 * @param name the name of the chronicle
+	 * @param schema a schema
+	 * @return the chronicle
+	 * @throws Exception
+	 */
+	public static UpdatableChronicle createChronicle(JDBCDatabase db, String name, UpdatableSchema schema) throws Exception {
+		UpdatableChronicle chronicle = db.getTopChronicle().edit().createChronicle(name, false, name, null, schema.resolve());
+		chronicle.applyUpdates();
+		db.commit();
+		return chronicle;
+	}
+
+	/**
+	 * Create a top level chronicle with a schema, create its series
+	 * <q>price</q>, and commit.
+	 *
+	 * @param db a database
+	 * @param name the name of the chronicle
+	 * @param schema a schema created with {@link #createSchema}
+	 * @return the series
+	 * @throws Exception
+	 */
+	public static UpdatableSeries<Double> createSeries(JDBCDatabase db, String name, UpdatableSchema schema) throws Exception {
+		createChronicle(db, name, schema);
+		UpdatableSeries<Double> series = db.getUpdatableSeries(name + ".price", true);
+		series.applyUpdates();
+		db.commit();
+		return series;
+	}
+
+	/**
+	 * Return a regular daily series. Times are given as offsets from
+	 * 2017-01-01 and values as doubles, NaN for missing values. Days
+	 * between the given ones are missing.
+	 *
+	 * @param data pairs of day offsets and values
+	 * @return a time addressable
+	 * @throws Exception
+	 */
+	public static TimeAddressable<Double> days(double... data) throws Exception {
+		TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+		TimeIndex base = Day.DOMAIN.time("2017-01-01");
+		for (int i = 0; i < data.length; i += 2) {
+			ts.put(base.add((int) data[i]), data[i + 1]);
+		}
+		return ts;
+	}
+
+	/**
+	 * Return a day given as an offset from 2017-01-01.
+	 *
+	 * @param day a day offset
+	 * @return a time index
+	 * @throws Exception
+	 */
+	public static TimeIndex day(int day) throws Exception {
+		return Day.DOMAIN.time("2017-01-01").add(day);
+	}
+
+}
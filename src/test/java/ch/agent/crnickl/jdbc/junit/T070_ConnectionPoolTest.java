@@ -0,0 +1,269 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Chronicle;
+import ch.agent.crnickl.api.DBObjectType;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableChronicle;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.api.UpdateEvent;
+import ch.agent.crnickl.api.UpdateEventSubscriber;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T070_ConnectionPoolTest extends TestCase {
+
+	private static final int THREADS = 4;
+	private static final int SERIES = 8;
+	private JDBCDatabase db;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open("session.poolMaxSize=" + THREADS, "session.poolMaxWait=2");
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "pool");
+		UpdatableChronicle top = db.getTopChronicle().edit();
+		for (int i = 0; i < SERIES; i++) {
+			UpdatableChronicle c = top.createChronicle("c" + i, false, "chronicle " + i, null, schema.resolve());
+			c.applyUpdates();
+			UpdatableSeries<Double> s = db.getUpdatableSeries("c" + i + ".price", true);
+			s.applyUpdates();
+			TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+			for (int j = 0; j < 50; j++) {
+				ts.put(Day.DOMAIN.time("2017-01-01").add(j), (double) (i * 1000 + j));
+			}
+			s.setValues(ts);
+			s.applyUpdates();
+		}
+		db.commit();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private void read(int i) throws Exception {
+		Series<Double> s = db.getSeries("c" + i + ".price", true);
+		TimeAddressable<Double> values = s.getValues(null);
+		assertEquals(50, values.getValueCount());
+		assertEquals(i * 1000 + 49.0, s.getLastObservation(null).getValue());
+		Chronicle c = db.getChronicle("c" + i, true);
+		assertEquals("chronicle " + i, c.getDescription(false));
+	}
+
+	public void test_concurrent_readers() throws Exception {
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int k = 0; k < 100; k++) {
+							read((offset + k) % SERIES);
+							db.release();
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (errors.size() > 0)
+			throw new AssertionError(errors.get(0));
+	}
+
+	public void test_release_returns_connection() throws Exception {
+		db.commit();
+		// more read-only units of work than connections
+		for (int t = 0; t < 3 * THREADS; t++) {
+			final int i = t % SERIES;
+			final Throwable[] error = new Throwable[1];
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						read(i);
+						db.release();
+					} catch (Throwable e) {
+						error[0] = e;
+					}
+				}
+			};
+			thread.start();
+			thread.join();
+			if (error[0] != null)
+				throw new AssertionError(error[0]);
+		}
+	}
+
+	public void test_release_without_pool() throws Exception {
+		JDBCDatabase single = JDBCTestDatabase.open();
+		try {
+			single.getConnection();
+			single.release();
+			assertNotNull(single.getTopChronicle());
+		} finally {
+			JDBCTestDatabase.close(single);
+		}
+	}
+
+
+	/**
+	 * Record comments of chronicle events. Writers need row locks, so that
+	 * they do not wait for each other.
+	 */
+	private List<String> subscribe() throws Exception {
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			stmt.execute("set database transaction control mvcc");
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+		final List<String> comments = new ArrayList<String>();
+		db.getUpdateEventPublisher().subscribe(new UpdateEventSubscriber() {
+			@Override
+			public void notify(UpdateEvent event) {
+				synchronized (comments) {
+					comments.add(event.getComment());
+				}
+			}
+		}, DBObjectType.CHRONICLE, false);
+		return comments;
+	}
+
+	private void create(String name) throws Exception {
+		UpdatableChronicle c = db.getTopChronicle().edit().createChronicle(name, false, "written by " + name, null, null);
+		c.applyUpdates();
+	}
+
+	private void end(boolean commit) throws Exception {
+		if (commit)
+			db.commit();
+		else
+			db.rollback();
+	}
+
+	/**
+	 * The first writer writes and waits until the second writer has written
+	 * and ended its unit of work before ending its own.
+	 */
+	private void writers(final String first, final boolean commitFirst, final String second,
+			final boolean commitSecond) throws Exception {
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		final CountDownLatch firstWritten = new CountDownLatch(1);
+		final CountDownLatch secondDone = new CountDownLatch(1);
+		Thread a = new Thread() {
+			@Override
+			public void run() {
+				try {
+					create(first);
+					firstWritten.countDown();
+					assertTrue(secondDone.await(10, TimeUnit.SECONDS));
+					end(commitFirst);
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			}
+		};
+		Thread b = new Thread() {
+			@Override
+			public void run() {
+				try {
+					assertTrue(firstWritten.await(10, TimeUnit.SECONDS));
+					create(second);
+					end(commitSecond);
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				} finally {
+					secondDone.countDown();
+				}
+			}
+		};
+		a.start();
+		b.start();
+		a.join();
+		b.join();
+		if (errors.size() > 0)
+			throw new AssertionError(errors.get(0));
+	}
+
+	public void test_commit_releases_only_own_events() throws Exception {
+		List<String> comments = subscribe();
+		// a writes, b writes and commits, a rolls back
+		writers("wa", false, "wb", true);
+		assertEquals(1, comments.size());
+		assertEquals("written by wb", comments.get(0));
+		assertNull(db.getChronicle("wa", false));
+		assertNotNull(db.getChronicle("wb", false));
+		db.release();
+	}
+
+	public void test_rollback_discards_only_own_events() throws Exception {
+		List<String> comments = subscribe();
+		// a writes, b writes and rolls back, a commits
+		writers("wa", true, "wb", false);
+		assertEquals(1, comments.size());
+		assertEquals("written by wa", comments.get(0));
+		assertNotNull(db.getChronicle("wa", false));
+		assertNull(db.getChronicle("wb", false));
+		db.release();
+	}
+
+	public void test_concurrent_writers() throws Exception {
+		final List<String> comments = subscribe();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int k = 0; k < 20; k++) {
+							create("w" + offset + "_" + k);
+							end(k % 2 == 0);
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (errors.size() > 0)
+			throw new AssertionError(errors.get(0));
+		assertEquals(THREADS * 10, comments.size());
+		for (String comment : comments) {
+			int k = Integer.parseInt(comment.substring(comment.indexOf('_') + 1));
+			assertEquals(0, k % 2);
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+
+public class T071_IndependentDatabasesTest extends TestCase {
+
+	private JDBCDatabase db1;
+	private JDBCDatabase db2;
+
+	@Override
+	protected void setUp() throws Exception {
+		db1 = JDBCTestDatabase.open();
+		db2 = JDBCTestDatabase.open();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db1);
+		JDBCTestDatabase.close(db2);
+	}
+
+	public void test_separate_connections() throws Exception {
+		assertNotSame(db1.getConnection(), db2.getConnection());
+	}
+
+	public void test_separate_content() throws Exception {
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db1, "one");
+		JDBCTestDatabase.createChronicle(db1, "only1", schema);
+		assertNotNull(db1.getChronicle("only1", false));
+		assertNull(db2.getChronicle("only1", false));
+		assertTrue(db2.getSchemas("one").isEmpty());
+	}
+
+	public void test_rollback_is_separate() throws Exception {
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db2, "two");
+		JDBCTestDatabase.createChronicle(db2, "kept", schema);
+		db1.getTopChronicle().edit().createChronicle("lost", false, "lost", null, null).applyUpdates();
+		db1.rollback();
+		assertNull(db1.getChronicle("lost", false));
+		assertNotNull(db2.getChronicle("kept", false));
+	}
+
+	public void test_close_and_reopen() throws Exception {
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db1, "three");
+		JDBCTestDatabase.createChronicle(db1, "again", schema);
+		db2.close();
+		// closing one database leaves the other open
+		assertNotNull(db1.getChronicle("again", false));
+		db2.open();
+		assertNotNull(db2.getTopChronicle());
+	}
+
+}
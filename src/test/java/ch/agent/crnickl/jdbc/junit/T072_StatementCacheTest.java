@@ -0,0 +1,91 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.JDBCStatementCache;
+
+public class T072_StatementCacheTest extends TestCase {
+
+	private static final String SQL = "select name from chronicle order by name";
+	private JDBCDatabase db;
+	private Connection connection;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open("session.statementCacheSize=4");
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "cache");
+		JDBCTestDatabase.createChronicle(db, "a", schema);
+		JDBCTestDatabase.createChronicle(db, "b", schema);
+		connection = db.getConnection();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	public void test_statement_reused() throws Exception {
+		JDBCStatementCache cache = new JDBCStatementCache(2);
+		PreparedStatement stmt = cache.take(connection, SQL, false);
+		cache.release(stmt);
+		assertSame(stmt, cache.take(connection, SQL, false));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	public void test_statement_reset_on_release() throws Exception {
+		JDBCStatementCache cache = new JDBCStatementCache(2);
+		PreparedStatement stmt = cache.take(connection, SQL, false);
+		stmt.setMaxRows(1);
+		stmt.setFetchSize(1);
+		ResultSet rs = stmt.executeQuery();
+		assertTrue(rs.next());
+		// released with the result set still open
+		cache.release(stmt);
+		assertSame(stmt, cache.take(connection, SQL, false));
+		assertEquals(0, stmt.getMaxRows());
+		rs = stmt.executeQuery();
+		int count = 0;
+		while (rs.next())
+			count++;
+		rs.close();
+		assertTrue(count > 1);
+		cache.release(stmt);
+	}
+
+	public void test_eviction() throws Exception {
+		JDBCStatementCache cache = new JDBCStatementCache(1);
+		PreparedStatement stmt1 = cache.take(connection, SQL, false);
+		PreparedStatement stmt2 = cache.take(connection, SQL + " desc", false);
+		cache.release(stmt1);
+		cache.release(stmt2);
+		assertEquals(1, cache.getEvictions());
+		assertTrue(stmt1.isClosed());
+		assertFalse(stmt2.isClosed());
+		cache.clear(connection);
+		assertTrue(stmt2.isClosed());
+	}
+
+	public void test_no_caching() throws Exception {
+		JDBCStatementCache cache = new JDBCStatementCache(0);
+		PreparedStatement stmt = cache.take(connection, SQL, false);
+		cache.release(stmt);
+		assertTrue(stmt.isClosed());
+	}
+
+	public void test_database_cache() throws Exception {
+		JDBCStatementCache cache = db.getStatementCache();
+		db.getChronicle("a", true);
+		long hits = cache.getHits();
+		for (int i = 0; i < 5; i++) {
+			db.getChronicle("b", true);
+		}
+		assertTrue(cache.getHits() > hits);
+	}
+
+}
@@ -0,0 +1,55 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.sql.PreparedStatement;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Chronicle;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.JDBCDatabaseMethods;
+
+public class T073_GeneratedKeysTest extends TestCase {
+
+	private static final String SQL = "select id from chronicle where name = ?";
+	private JDBCDatabase db;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	public void test_new_ids() throws Exception {
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "keys");
+		Chronicle c1 = JDBCTestDatabase.createChronicle(db, "k1", schema);
+		Chronicle c2 = JDBCTestDatabase.createChronicle(db, "k2", schema);
+		JDBCDatabaseMethods methods = db.getNumberAccessMethods();
+		int id1 = methods.getId(c1.getSurrogate());
+		int id2 = methods.getId(c2.getSurrogate());
+		assertTrue(id1 > 0);
+		assertTrue(id2 > id1);
+		db.getUpdatableSeries("k1.price", true).applyUpdates();
+		db.commit();
+		Series<Double> s = db.getSeries("k1.price", true);
+		assertTrue(methods.getId(s.getSurrogate()) > 0);
+	}
+
+	public void test_statements_keyed_by_flag() throws Exception {
+		JDBCDatabaseMethods methods = new JDBCDatabaseMethods();
+		PreparedStatement plain = methods.open(SQL, db, null);
+		methods.close(plain);
+		PreparedStatement keys = methods.openWithGeneratedKeys(SQL, db, null);
+		assertNotSame(plain, keys);
+		methods.close(keys);
+		assertSame(plain, methods.open(SQL, db, null));
+		assertSame(keys, methods.openWithGeneratedKeys(SQL, db, null));
+		methods.close(plain);
+		methods.close(keys);
+	}
+
+}
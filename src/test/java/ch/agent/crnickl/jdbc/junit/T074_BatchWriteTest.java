@@ -0,0 +1,70 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.day;
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.days;
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.AccessMethodsForNumber;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T074_BatchWriteTest extends TestCase {
+
+	private static final double NaN = Double.NaN;
+	private JDBCDatabase db;
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private UpdatableSeries<Double> open(String... parameters) throws Exception {
+		db = JDBCTestDatabase.open(parameters);
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "batch");
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "b", schema);
+		s.setValues(days(0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9));
+		s.applyUpdates();
+		db.commit();
+		return s;
+	}
+
+	private void update(UpdatableSeries<Double> s) throws Exception {
+		AccessMethodsForNumber methods = db.getNumberAccessMethods();
+		// 5 and 9 unchanged, 6 and 8 updated, 7 deleted, 10 and 12 inserted, 11 missing and absent
+		long count = methods.updateValues(s, days(5, 5, 6, 60, 7, NaN, 8, 80, 9, 9, 10, 10, 12, 12),
+				db.getChronicleUpdatePolicy());
+		assertEquals(5, count);
+		db.commit();
+		Series<Double> series = db.getSeries("b.price", true);
+		TimeAddressable<Double> values = series.getValues(null);
+		assertEquals(11, values.getValueCount());
+		assertEquals(4.0, values.get(day(4)));
+		assertEquals(5.0, values.get(day(5)));
+		assertEquals(60.0, values.get(day(6)));
+		assertTrue(values.isMissing(values.get(day(7))));
+		assertEquals(80.0, values.get(day(8)));
+		assertEquals(9.0, values.get(day(9)));
+		assertEquals(10.0, values.get(day(10)));
+		assertEquals(12.0, values.get(day(12)));
+	}
+
+	public void test_batches_generic() throws Exception {
+		update(open("session.batchSize=2", "session.dialect=generic"));
+	}
+
+	public void test_one_batch_generic() throws Exception {
+		update(open("session.batchSize=1000", "session.dialect=generic"));
+	}
+
+	public void test_point_by_point() throws Exception {
+		update(open("session.batchSize=0", "session.dialect=generic"));
+	}
+
+	public void test_batch_size() throws Exception {
+		open("session.batchSize=7");
+		assertEquals(7, db.getNumberAccessMethods().getBatchSize());
+	}
+
+}
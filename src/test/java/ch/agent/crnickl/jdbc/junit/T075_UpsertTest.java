@@ -0,0 +1,78 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.day;
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.days;
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.DB;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.JDBCDialect;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T075_UpsertTest extends TestCase {
+
+	private static final double NaN = Double.NaN;
+	private JDBCDatabase db;
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private UpdatableSeries<Double> open(String... parameters) throws Exception {
+		db = JDBCTestDatabase.open(parameters);
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "upsert");
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "u", schema);
+		s.setValues(days(0, 0, 1, 1, 2, 2, 3, 3, 4, 4));
+		s.applyUpdates();
+		db.commit();
+		return s;
+	}
+
+	private void update(UpdatableSeries<Double> s) throws Exception {
+		// 1 unchanged, 2 updated, 3 deleted, 4 updated, 5 inserted
+		long count = db.getNumberAccessMethods().updateValues(s, days(1, 1, 2, 20, 3, NaN, 4, 40, 5, 5),
+				db.getChronicleUpdatePolicy());
+		assertEquals(4, count);
+		db.commit();
+		Series<Double> series = db.getSeries("u.price", true);
+		TimeAddressable<Double> values = series.getValues(null);
+		assertEquals(5, values.getValueCount());
+		assertEquals(1.0, values.get(day(1)));
+		assertEquals(20.0, values.get(day(2)));
+		assertTrue(values.isMissing(values.get(day(3))));
+		assertEquals(40.0, values.get(day(4)));
+		assertEquals(5.0, values.get(day(5)));
+	}
+
+	public void test_dialect_from_url() throws Exception {
+		open();
+		assertTrue(db.getDialect() instanceof JDBCDialect.HSQLDB);
+		assertNotNull(db.getDialect().getUpsertValueSQL(DB.VALUE_DOUBLE));
+	}
+
+	public void test_dialect_by_name() throws Exception {
+		assertTrue(JDBCDialect.forName("PostgreSQL") instanceof JDBCDialect.PostgreSQL);
+		assertTrue(JDBCDialect.forURL("jdbc:mysql://localhost/db") instanceof JDBCDialect.MySQL);
+		assertTrue(JDBCDialect.forURL("jdbc:mariadb://localhost/db") instanceof JDBCDialect.MariaDB);
+		assertTrue(JDBCDialect.forName("mariadb") instanceof JDBCDialect.MariaDB);
+		assertNull(JDBCDialect.forURL("jdbc:unknown:db").getUpsertValueSQL(DB.VALUE_DOUBLE));
+	}
+
+	public void test_upsert_in_batches() throws Exception {
+		update(open("session.batchSize=2"));
+	}
+
+	public void test_upsert_point_by_point() throws Exception {
+		update(open("session.batchSize=0"));
+	}
+
+	public void test_upsert_unchanged() throws Exception {
+		UpdatableSeries<Double> s = open("session.batchSize=0");
+		assertEquals(0, db.getNumberAccessMethods().updateValues(s, days(0, 0, 1, 1),
+				db.getChronicleUpdatePolicy()));
+	}
+
+}
@@ -0,0 +1,74 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.day;
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.JDBCDialect;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T076_FetchSizeTest extends TestCase {
+
+	private static final int SIZE = 500;
+	private JDBCDatabase db;
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private Series<Double> open(String... parameters) throws Exception {
+		db = JDBCTestDatabase.open(parameters);
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "fetch");
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "f", schema);
+		TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+		for (int i = 0; i < SIZE; i++) {
+			ts.put(day(i), (double) i);
+		}
+		s.setValues(ts);
+		s.applyUpdates();
+		db.commit();
+		return db.getSeries("f.price", true);
+	}
+
+	private void read(Series<Double> s) throws Exception {
+		TimeAddressable<Double> all = s.getValues(null);
+		assertEquals(SIZE, all.getValueCount());
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals((double) i, all.get(day(i)));
+		}
+		TimeAddressable<Double> some = s.getValues(new Range(day(100), day(109)));
+		assertEquals(10, some.getValueCount());
+		assertEquals(100.0, some.get(day(100)));
+		assertEquals(109.0, some.get(day(109)));
+	}
+
+	public void test_small_fetch_size() throws Exception {
+		Series<Double> s = open("session.fetchSize=7");
+		assertEquals(7, db.getNumberAccessMethods().getFetchSize());
+		read(s);
+	}
+
+	public void test_driver_fetch_size() throws Exception {
+		Series<Double> s = open("session.fetchSize=0");
+		assertEquals(0, db.getNumberAccessMethods().getFetchSize());
+		read(s);
+	}
+
+	public void test_default_fetch_size() throws Exception {
+		read(open());
+	}
+
+	public void test_dialect_fetch_size() throws Exception {
+		assertEquals(100, new JDBCDialect().getFetchSize(100));
+		assertEquals(Integer.MIN_VALUE, new JDBCDialect.MySQL().getFetchSize(100));
+		assertEquals(0, new JDBCDialect.MySQL().getFetchSize(0));
+		assertEquals(100, new JDBCDialect.MariaDB().getFetchSize(100));
+	}
+
+}
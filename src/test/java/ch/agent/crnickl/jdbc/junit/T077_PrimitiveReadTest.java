@@ -0,0 +1,96 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.day;
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.days;
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.AccessMethodsForNumber;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.SparseTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T077_PrimitiveReadTest extends TestCase {
+
+	private JDBCDatabase db;
+	private Series<Double> series;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open();
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "primitive");
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "p", schema);
+		// 0 to 9, then 20 to 29
+		s.setValues(days(0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9));
+		s.applyUpdates();
+		s.setValues(days(20, 20, 21, 21, 22, 22, 23, 23, 24, 24, 25, 25, 26, 26, 27, 27, 28, 28, 29, 29));
+		s.applyUpdates();
+		db.commit();
+		series = db.getSeries("p.price", true);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	public void test_pages() throws Exception {
+		AccessMethodsForNumber methods = db.getNumberAccessMethods();
+		int[] offsets = new int[7];
+		double[] values = new double[7];
+		int first = day(0).asOffset();
+		int last = day(29).asOffset();
+		int total = 0;
+		int pages = 0;
+		while (true) {
+			int count = methods.getValues(series, first, last, offsets, values);
+			for (int i = 0; i < count; i++) {
+				assertEquals((double) (offsets[i] - day(0).asOffset()), values[i]);
+			}
+			total += count;
+			pages++;
+			if (count < offsets.length)
+				break;
+			first = offsets[count - 1] + 1;
+		}
+		assertEquals(20, total);
+		assertEquals(3, pages);
+	}
+
+	public void test_empty_arguments() throws Exception {
+		AccessMethodsForNumber methods = db.getNumberAccessMethods();
+		assertEquals(0, methods.getValues(series, 10, 9, new int[3], new double[3]));
+		assertEquals(0, methods.getValues(series, 0, 9, new int[0], new double[0]));
+		assertEquals(0, methods.getValues(series, day(10).asOffset(), day(19).asOffset(), new int[3], new double[3]));
+		try {
+			methods.getValues(series, 0, 9, new int[3], new double[2]);
+			fail("exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void test_put_values() throws Exception {
+		AccessMethodsForNumber methods = db.getNumberAccessMethods();
+		int[] offsets = new int[30];
+		double[] values = new double[30];
+		int count = methods.getValues(series, day(0).asOffset(), day(29).asOffset(), offsets, values);
+		assertEquals(20, count);
+		TimeAddressable<Double> regular = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+		AccessMethodsForNumber.putValues(regular, offsets, values, count);
+		TimeAddressable<Double> sparse = new SparseTimeSeries<Double>(Double.class, Day.DOMAIN);
+		AccessMethodsForNumber.putValues(sparse, offsets, values, count);
+		check(regular);
+		check(sparse);
+	}
+
+	private void check(TimeAddressable<Double> ts) throws Exception {
+		assertEquals(20, ts.getValueCount());
+		assertEquals(9.0, ts.get(day(9)));
+		assertTrue(ts.isMissing(ts.get(day(10))));
+		assertEquals(20.0, ts.get(day(20)));
+	}
+
+}
@@ -0,0 +1,92 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.day;
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.days;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T078_PanelReadTest extends TestCase {
+
+	private static final int SERIES = 12;
+	private JDBCDatabase db;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open();
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "panel");
+		for (int i = 0; i < SERIES; i++) {
+			UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "p" + i, schema);
+			// series i has i + 1 values
+			TimeAddressable<Double> ts = days();
+			for (int j = 0; j <= i; j++) {
+				ts.put(day(j), (double) (100 * i + j));
+			}
+			s.setValues(ts);
+			s.applyUpdates();
+		}
+		db.commit();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private Series<Double> series(int i) throws Exception {
+		return db.getSeries("p" + i + ".price", true);
+	}
+
+	private TimeAddressable<Double> empty() {
+		return new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+	}
+
+	public void test_all_values() throws Exception {
+		Map<Series<Double>, TimeAddressable<Double>> panel = new LinkedHashMap<Series<Double>, TimeAddressable<Double>>();
+		for (int i = 0; i < SERIES; i++) {
+			panel.put(series(i), empty());
+		}
+		assertEquals(SERIES * (SERIES + 1) / 2, db.getValues(panel, null));
+		for (Map.Entry<Series<Double>, TimeAddressable<Double>> entry : panel.entrySet()) {
+			int i = Integer.parseInt(entry.getKey().getChronicle().getName(false).substring(1));
+			assertEquals(i + 1, entry.getValue().getValueCount());
+			assertEquals(100.0 * i + i, entry.getValue().get(day(i)));
+		}
+	}
+
+	public void test_range() throws Exception {
+		Map<Series<Double>, TimeAddressable<Double>> panel = new LinkedHashMap<Series<Double>, TimeAddressable<Double>>();
+		panel.put(series(0), empty());
+		panel.put(series(5), empty());
+		assertEquals(1 + 2, db.getValues(panel, new Range(day(0), day(1))));
+		assertTrue(db.getValues(panel, new Range(day(0), day(-1))) == 0);
+	}
+
+	public void test_same_series_twice() throws Exception {
+		Map<Series<Double>, TimeAddressable<Double>> panel = new IdentityHashMap<Series<Double>, TimeAddressable<Double>>();
+		TimeAddressable<Double> ts1 = empty();
+		TimeAddressable<Double> ts2 = empty();
+		TimeAddressable<Double> ts3 = empty();
+		panel.put(series(3), ts1);
+		panel.put(series(3), ts2);
+		panel.put(series(4), ts3);
+		assertEquals(3, panel.size());
+		assertEquals(4 + 5, db.getValues(panel, null));
+		assertEquals(4, ts1.getValueCount());
+		assertEquals(4, ts2.getValueCount());
+		assertEquals(303.0, ts2.get(day(3)));
+		assertEquals(5, ts3.getValueCount());
+	}
+
+}
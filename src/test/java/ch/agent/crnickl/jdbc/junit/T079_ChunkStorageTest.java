@@ -0,0 +1,151 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.day;
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.days;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.AccessMethodsForNumber;
+import ch.agent.crnickl.jdbc.AccessMethodsForNumberChunks;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.ValueChunkMigration;
+import ch.agent.crnickl.jdbc.ValuePartitionMigration;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T079_ChunkStorageTest extends TestCase {
+
+	private static final double NaN = Double.NaN;
+	private JDBCDatabase db;
+	private UpdatableSchema schema;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open("session.numberStorage=chunk", "session.chunkSize=8", "session.batchSize=2",
+				"feature.DDL=sql/HyperSQL_DDL_base.sql, sql/HyperSQL_DDL_chunk.sql");
+		schema = JDBCTestDatabase.createSchema(db, "chunk");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private TimeAddressable<Double> values(Series<Double> s) throws Exception {
+		Series<Double> read = db.getSeries(s.getName(true), true);
+		return read.getValues(null);
+	}
+
+	public void test_write_and_read() throws Exception {
+		assertTrue(db.getNumberAccessMethods() instanceof AccessMethodsForNumberChunks);
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "c", schema);
+		TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+		for (int i = 0; i < 30; i++) {
+			ts.put(day(i), (double) i);
+		}
+		s.setValues(ts);
+		s.applyUpdates();
+		db.commit();
+		s.setValues(days(3, 30, 4, NaN, 5, 50));
+		s.applyUpdates();
+		db.commit();
+		TimeAddressable<Double> values = values(s);
+		assertEquals(29, values.getValueCount());
+		assertEquals(30.0, values.get(day(3)));
+		assertTrue(values.isMissing(values.get(day(4))));
+		assertEquals(29.0, values.get(day(29)));
+		Series<Double> read = db.getSeries("c.price", true);
+		assertEquals(new Range(day(0), day(29)), read.getRange());
+		assertEquals(10, read.getValues(new Range(day(10), day(19))).getValueCount());
+		assertEquals(29.0, read.getLastObservation(null).getValue());
+		assertEquals(0.0, read.getFirstObservation(null).getValue());
+	}
+
+	private void insert(String table, Series<Double> s, int count) throws Exception {
+		int id = db.getNumberAccessMethods().getId(s.getSurrogate());
+		PreparedStatement stmt = db.getConnection().prepareStatement(
+				"insert into " + table + " (series, date, element) values(?, ?, ?)");
+		try {
+			for (int i = 0; i < count; i++) {
+				stmt.setInt(1, id);
+				stmt.setInt(2, day(i).asOffset());
+				stmt.setDouble(3, 1000 * id + i);
+				stmt.execute();
+			}
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+	}
+
+	private int rows(String table) throws Exception {
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery("select count(*) from " + table);
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	public void test_migration() throws Exception {
+		UpdatableSeries<Double> s1 = JDBCTestDatabase.createSeries(db, "m1", schema);
+		UpdatableSeries<Double> s2 = JDBCTestDatabase.createSeries(db, "m2", schema);
+		insert("value_double", s1, 20);
+		insert("value_double", s2, 3);
+		assertEquals(0, values(s1).getValueCount());
+		assertEquals(23, new ValueChunkMigration(db).migrate(true));
+		assertEquals(0, rows("value_double"));
+		assertEquals(20, values(s1).getValueCount());
+		assertEquals(3, values(s2).getValueCount());
+		int id = db.getNumberAccessMethods().getId(s1.getSurrogate());
+		assertEquals(1000.0 * id + 19, values(s1).get(day(19)));
+		// again, nothing left to copy
+		assertEquals(0, new ValueChunkMigration(db).migrate(false));
+		assertEquals(20, values(s1).getValueCount());
+	}
+
+	public void test_migration_from_partitions() throws Exception {
+		Connection c = db.getConnection();
+		Statement stmt = c.createStatement();
+		try {
+			for (String ddl : ValuePartitionMigration.getDDL(2).split(";")) {
+				if (ddl.trim().length() > 0)
+					stmt.execute(ddl);
+			}
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+		UpdatableSeries<Double> s1 = JDBCTestDatabase.createSeries(db, "p1", schema);
+		UpdatableSeries<Double> s2 = JDBCTestDatabase.createSeries(db, "p2", schema);
+		AccessMethodsForNumber methods = db.getNumberAccessMethods();
+		insert(AccessMethodsForNumber.valueTable(2, methods.getId(s1.getSurrogate()) % 2), s1, 10);
+		insert(AccessMethodsForNumber.valueTable(2, methods.getId(s2.getSurrogate()) % 2), s2, 12);
+		assertEquals(22, new ValueChunkMigration(db, 2).migrate(false));
+		assertEquals(10, values(s1).getValueCount());
+		assertEquals(12, values(s2).getValueCount());
+	}
+
+	public void test_migration_requires_chunks() throws Exception {
+		JDBCDatabase rows = JDBCTestDatabase.open();
+		try {
+			new ValueChunkMigration(rows);
+			fail("exception expected");
+		} catch (IllegalArgumentException e) {
+		} finally {
+			JDBCTestDatabase.close(rows);
+		}
+	}
+
+}
@@ -0,0 +1,167 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.day;
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.days;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.AccessMethodsForNumber;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+import ch.agent.t2.timeseries.Observation;
+
+public class T080_SeriesStatsTest extends TestCase {
+
+	private static final double NaN = Double.NaN;
+	private JDBCDatabase db;
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private UpdatableSeries<Double> open(String... parameters) throws Exception {
+		db = JDBCTestDatabase.open(parameters);
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "stats");
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "s", schema);
+		s.setValues(days(1, 1, 2, 2, 3, 3, 4, 4, 5, 5));
+		s.applyUpdates();
+		db.commit();
+		return s;
+	}
+
+	private void check(int count, int first, double firstValue, int last, double lastValue) throws Exception {
+		Series<Double> s = db.getSeries("s.price", true);
+		AccessMethodsForNumber methods = db.getNumberAccessMethods();
+		assertEquals(count, methods.getCount(s));
+		assertEquals(new Range(day(first), day(last)), s.getRange());
+		Observation<Double> obs = s.getFirstObservation(null);
+		assertEquals(day(first), obs.getTime());
+		assertEquals(firstValue, obs.getValue());
+		obs = s.getLastObservation(null);
+		assertEquals(day(last), obs.getTime());
+		assertEquals(lastValue, obs.getValue());
+	}
+
+	private void scenario(UpdatableSeries<Double> s) throws Exception {
+		assertTrue(db.getNumberAccessMethods().isSeriesStats());
+		check(5, 1, 1, 5, 5);
+		// update first, insert after last
+		s.setValues(days(1, 10, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6));
+		s.applyUpdates();
+		db.commit();
+		check(6, 1, 10, 6, 6);
+		// delete first and last
+		s.setRange(new Range(day(2), day(5)));
+		s.applyUpdates();
+		db.commit();
+		check(4, 2, 2, 5, 5);
+		// delete inside
+		s.setValues(days(2, 2, 3, NaN, 4, 4));
+		s.applyUpdates();
+		db.commit();
+		check(3, 2, 2, 5, 5);
+		// rebuild after the headers were lost
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			stmt.executeUpdate("delete from series_stats");
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+		assertEquals(1, db.rebuildSeriesStats());
+		check(3, 2, 2, 5, 5);
+	}
+
+	public void test_row_storage() throws Exception {
+		scenario(open("session.seriesStats=true"));
+	}
+
+	public void test_row_storage_point_by_point() throws Exception {
+		scenario(open("session.seriesStats=true", "session.batchSize=0"));
+	}
+
+	public void test_chunk_storage() throws Exception {
+		scenario(open("session.seriesStats=true", "session.numberStorage=chunk", "session.chunkSize=4",
+				"feature.DDL=sql/HyperSQL_DDL_base.sql, sql/HyperSQL_DDL_chunk.sql"));
+	}
+
+	public void test_without_stats() throws Exception {
+		open();
+		assertFalse(db.getNumberAccessMethods().isSeriesStats());
+		check(5, 1, 1, 5, 5);
+	}
+
+	public void test_concurrent_writers() throws Exception {
+		final int threads = 4;
+		final int writes = 10;
+		open("session.seriesStats=true", "session.poolMaxSize=" + threads, "session.poolMaxWait=5");
+		// writers need row locks, so that they wait for each other only on the series
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			stmt.execute("set database transaction control mvcc");
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int offset = 100 * (t + 1);
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int k = 0; k < writes; k++) {
+							UpdatableSeries<Double> s = db.getUpdatableSeries("s.price", true);
+							TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+							ts.put(day(offset + k), (double) (offset + k));
+							s.setValues(ts);
+							s.applyUpdates();
+							db.commit();
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+						try {
+							db.rollback();
+						} catch (Exception e2) {
+						}
+					}
+				}
+			};
+			writers[t].start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		if (errors.size() > 0)
+			throw new AssertionError(errors.get(0));
+		int count = 0;
+		stmt = db.getConnection().createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery("select count(*) from value_double");
+			rs.next();
+			count = rs.getInt(1);
+			rs.close();
+		} finally {
+			stmt.close();
+		}
+		assertEquals(5 + threads * writes, count);
+		int last = 100 * threads + writes - 1;
+		check(count, 1, 1, last, last);
+		db.release();
+	}
+
+}
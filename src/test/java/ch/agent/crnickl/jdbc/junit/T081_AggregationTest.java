@@ -0,0 +1,105 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.day;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.AccessMethodsForNumber.Aggregation;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.JDBCDialect;
+import ch.agent.t2.applied.Month;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T081_AggregationTest extends TestCase {
+
+	// 2017-01-01 to 2017-03-10, value = day offset
+	private static final int DAYS = 31 + 28 + 10;
+	private JDBCDatabase db;
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private Series<Double> open(String... parameters) throws Exception {
+		db = JDBCTestDatabase.open(parameters);
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "aggregation");
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "a", schema);
+		TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+		for (int i = 0; i < DAYS; i++) {
+			ts.put(day(i), (double) i);
+		}
+		s.setValues(ts);
+		s.applyUpdates();
+		db.commit();
+		return db.getSeries("a.price", true);
+	}
+
+	private Map<Aggregation, TimeAddressable<Double>> results() {
+		Map<Aggregation, TimeAddressable<Double>> results = new EnumMap<Aggregation, TimeAddressable<Double>>(Aggregation.class);
+		for (Aggregation a : Aggregation.values()) {
+			results.put(a, new RegularTimeSeries<Double>(Double.class, Month.DOMAIN));
+		}
+		return results;
+	}
+
+	private void check(Map<Aggregation, TimeAddressable<Double>> results, String month, int first, int last) throws Exception {
+		int n = last - first + 1;
+		double sum = (first + last) * n / 2.0;
+		assertEquals((double) n, results.get(Aggregation.COUNT).get(Month.DOMAIN.time(month)));
+		assertEquals(sum, results.get(Aggregation.SUM).get(Month.DOMAIN.time(month)));
+		assertEquals((double) first, results.get(Aggregation.MIN).get(Month.DOMAIN.time(month)));
+		assertEquals((double) last, results.get(Aggregation.MAX).get(Month.DOMAIN.time(month)));
+		assertEquals(sum / n, results.get(Aggregation.MEAN).get(Month.DOMAIN.time(month)), 1e-9);
+		assertEquals((double) first, results.get(Aggregation.FIRST).get(Month.DOMAIN.time(month)));
+		assertEquals((double) last, results.get(Aggregation.LAST).get(Month.DOMAIN.time(month)));
+	}
+
+	private void scenario(Series<Double> s) throws Exception {
+		Map<Aggregation, TimeAddressable<Double>> results = results();
+		assertEquals(3, db.getNumberAccessMethods().getAggregates(s, null, results));
+		check(results, "2017-01", 0, 30);
+		check(results, "2017-02", 31, 58);
+		check(results, "2017-03", 59, 68);
+		results = results();
+		assertEquals(2, db.getNumberAccessMethods().getAggregates(s, new Range(day(20), day(40)), results));
+		check(results, "2017-01", 20, 30);
+		check(results, "2017-02", 31, 40);
+		assertEquals(2, results.get(Aggregation.COUNT).getValueCount());
+	}
+
+	public void test_row_storage() throws Exception {
+		scenario(open());
+	}
+
+	public void test_chunk_storage() throws Exception {
+		scenario(open("session.numberStorage=chunk", "session.chunkSize=16",
+				"feature.DDL=sql/HyperSQL_DDL_base.sql, sql/HyperSQL_DDL_chunk.sql"));
+	}
+
+	public void test_partial_results() throws Exception {
+		Series<Double> s = open();
+		Map<Aggregation, TimeAddressable<Double>> results = new EnumMap<Aggregation, TimeAddressable<Double>>(Aggregation.class);
+		results.put(Aggregation.MAX, new RegularTimeSeries<Double>(Double.class, Month.DOMAIN));
+		assertEquals(3, db.getNumberAccessMethods().getAggregates(s, null, results));
+		assertEquals(68.0, results.get(Aggregation.MAX).get(Month.DOMAIN.time("2017-03")));
+	}
+
+	public void test_bucket_tables() throws Exception {
+		assertEquals("(values (cast(? as int), cast(? as int)), (cast(? as int), cast(? as int))) as b(lo, hi)",
+				new JDBCDialect().getIntegerTable(2, "b", "lo", "hi"));
+		String mysql = "(select cast(? as signed) as lo, cast(? as signed) as hi " +
+				"union all select cast(? as signed), cast(? as signed)) as b";
+		assertEquals(mysql, new JDBCDialect.MySQL().getIntegerTable(2, "b", "lo", "hi"));
+		assertEquals(mysql, new JDBCDialect.MariaDB().getIntegerTable(2, "b", "lo", "hi"));
+	}
+
+}
@@ -0,0 +1,82 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.day;
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.days;
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T082_AppendTest extends TestCase {
+
+	private JDBCDatabase db;
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private UpdatableSeries<Double> open(String... parameters) throws Exception {
+		db = JDBCTestDatabase.open(parameters);
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "append");
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "a", schema);
+		s.setValues(days(0, 0, 1, 1, 2, 2));
+		s.applyUpdates();
+		db.commit();
+		return s;
+	}
+
+	private TimeAddressable<Double> range(int first, int last, double offset) throws Exception {
+		TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+		for (int i = first; i <= last; i++) {
+			ts.put(day(i), i + offset);
+		}
+		return ts;
+	}
+
+	private long update(UpdatableSeries<Double> s, TimeAddressable<Double> values) throws Exception {
+		long count = db.getNumberAccessMethods().updateValues(s, values, db.getChronicleUpdatePolicy());
+		db.commit();
+		return count;
+	}
+
+	private void scenario(UpdatableSeries<Double> s) throws Exception {
+		// tiny append
+		assertEquals(2, update(s, days(3, 3, 4, 4)));
+		// large append
+		assertEquals(45, update(s, range(5, 49, 0)));
+		// large update overlapping the last value
+		assertEquals(20, update(s, range(40, 59, 0.5)));
+		// tiny update of existing values
+		assertEquals(2, update(s, days(0, 10, 1, 11)));
+		Series<Double> read = db.getSeries("a.price", true);
+		TimeAddressable<Double> values = read.getValues(null);
+		assertEquals(60, values.getValueCount());
+		assertEquals(10.0, values.get(day(0)));
+		assertEquals(2.0, values.get(day(2)));
+		assertEquals(39.0, values.get(day(39)));
+		assertEquals(40.5, values.get(day(40)));
+		assertEquals(59.5, values.get(day(59)));
+	}
+
+	public void test_append_in_batches() throws Exception {
+		scenario(open("session.batchSize=8"));
+	}
+
+	public void test_append_one_by_one() throws Exception {
+		scenario(open("session.batchSize=0"));
+	}
+
+	public void test_append_with_stats() throws Exception {
+		scenario(open("session.batchSize=8", "session.seriesStats=true"));
+	}
+
+	public void test_append_one_by_one_with_stats() throws Exception {
+		scenario(open("session.batchSize=0", "session.seriesStats=true"));
+	}
+
+}
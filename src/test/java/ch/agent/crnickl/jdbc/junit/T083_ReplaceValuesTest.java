@@ -0,0 +1,105 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import static ch.agent.crnickl.jdbc.junit.JDBCTestDatabase.day;
+
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.AccessMethodsForNumber.Changes;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T083_ReplaceValuesTest extends TestCase {
+
+	private JDBCDatabase db;
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private UpdatableSeries<Double> open(String... parameters) throws Exception {
+		db = JDBCTestDatabase.open(parameters);
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "replace");
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "r", schema);
+		s.setValues(content());
+		s.applyUpdates();
+		db.commit();
+		return s;
+	}
+
+	private TimeAddressable<Double> content() throws Exception {
+		TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+		for (int i = 0; i < 20; i++) {
+			ts.put(day(i), (double) i);
+		}
+		return ts;
+	}
+
+	private Changes replace(UpdatableSeries<Double> s, TimeAddressable<Double> values) throws Exception {
+		Changes changes = db.getNumberAccessMethods().replaceValues(s, values, db.getChronicleUpdatePolicy());
+		db.commit();
+		return changes;
+	}
+
+	private void scenario(UpdatableSeries<Double> s) throws Exception {
+		// drop 0 to 4, change 10 to 12, add 20 to 24
+		TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+		for (int i = 5; i < 25; i++) {
+			ts.put(day(i), i >= 10 && i <= 12 ? -i : (double) i);
+		}
+		Changes changes = replace(s, ts);
+		assertEquals(5, changes.getInserted());
+		assertEquals(3, changes.getUpdated());
+		assertEquals(5, changes.getDeleted());
+		Series<Double> read = db.getSeries("r.price", true);
+		TimeAddressable<Double> values = read.getValues(null);
+		assertEquals(20, values.getValueCount());
+		assertEquals(-11.0, values.get(day(11)));
+		assertEquals(24.0, values.get(day(24)));
+		assertTrue(values.isMissing(values.get(day(4))));
+		// nothing to do the second time
+		assertEquals(0, replace(s, ts).getTotal());
+	}
+
+	public void test_rows_in_batches() throws Exception {
+		scenario(open("session.batchSize=2"));
+	}
+
+	public void test_rows_one_by_one() throws Exception {
+		scenario(open("session.batchSize=0"));
+	}
+
+	public void test_chunks() throws Exception {
+		scenario(open("session.numberStorage=chunk", "session.chunkSize=4",
+				"feature.DDL=sql/HyperSQL_DDL_base.sql, sql/HyperSQL_DDL_chunk.sql"));
+	}
+
+	private void staleStats(UpdatableSeries<Double> s) throws Exception {
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			assertEquals(1, stmt.executeUpdate("update series_stats set nvalues = 3"));
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+		assertEquals(0, replace(s, content()).getTotal());
+		Series<Double> read = db.getSeries("r.price", true);
+		assertEquals(20, read.getValues(null).getValueCount());
+	}
+
+	public void test_rows_with_stale_stats() throws Exception {
+		staleStats(open("session.seriesStats=true"));
+	}
+
+	public void test_chunks_with_stale_stats() throws Exception {
+		staleStats(open("session.seriesStats=true", "session.numberStorage=chunk", "session.chunkSize=4",
+				"feature.DDL=sql/HyperSQL_DDL_base.sql, sql/HyperSQL_DDL_chunk.sql"));
+	}
+
+}
@@ -0,0 +1,185 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.api.DBObjectType;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableValueType;
+import ch.agent.crnickl.api.UpdateEvent;
+import ch.agent.crnickl.api.UpdateEventOperation;
+import ch.agent.crnickl.api.UpdateEventSubscriber;
+import ch.agent.crnickl.jdbc.IntegerValueScanner;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.ValueIngest;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.timeseries.Observation;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T084_ValueIngestTest extends TestCase {
+
+	private JDBCDatabase db;
+	private UpdatableSchema schema;
+	private List<File> files = new ArrayList<File>();
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open();
+		schema = JDBCTestDatabase.createSchema(db, "ingest");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	private File file(String suffix) throws Exception {
+		File file = File.createTempFile("T084", suffix);
+		files.add(file);
+		return file;
+	}
+
+	private File csv(String... lines) throws Exception {
+		return csv(file(".csv"), lines);
+	}
+
+	private File csv(File file, String... lines) throws Exception {
+		Writer out = new FileWriter(file);
+		try {
+			for (String line : lines) {
+				out.write(line);
+				out.write("\n");
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private double[] read(String name) throws Exception {
+		Series<Double> s = db.getSeries(name, true);
+		TimeAddressable<Double> values = s.getValues(null);
+		double[] result = new double[(int) values.getValueCount()];
+		int i = 0;
+		for (Observation<Double> obs : values) {
+			if (!values.isMissing(obs.getValue()))
+				result[i++] = obs.getValue();
+		}
+		return result;
+	}
+
+	public void test_csv_creates_series() throws Exception {
+		JDBCTestDatabase.createChronicle(db, "a", schema);
+		JDBCTestDatabase.createChronicle(db, "b", schema);
+		File file = csv("a.price,2017-01-01,1", "a.price,2017-01-02,2", "b.price,2017-01-01,10");
+		ValueIngest ingest = new ValueIngest(db);
+		ingest.setCreate(true);
+		assertEquals(3, ingest.ingest(file, ValueIngest.Format.CSV));
+		assertEquals(3, ingest.getRecords());
+		assertEquals(2, read("a.price").length);
+		assertEquals(10d, read("b.price")[0]);
+	}
+
+	public void test_binary_and_delete() throws Exception {
+		JDBCTestDatabase.createSeries(db, "a", schema);
+		File file = file(".bin");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		try {
+			for (int i = 0; i < 5; i++) {
+				out.writeUTF("a.price");
+				out.writeUTF(Day.DOMAIN.time("2017-01-01").add(i).toString());
+				out.writeDouble(i + 1);
+			}
+			out.writeUTF("a.price");
+			out.writeUTF("2017-01-03");
+			out.writeDouble(Double.NaN);
+		} finally {
+			out.close();
+		}
+		ValueIngest ingest = new ValueIngest(db);
+		assertEquals(6, ingest.ingest(file, ValueIngest.Format.BINARY));
+		double[] values = read("a.price");
+		assertEquals(4, values.length);
+		assertEquals(5d, values[3]);
+	}
+
+	public void test_checkpoint_resume() throws Exception {
+		JDBCTestDatabase.createSeries(db, "a", schema);
+		File file = csv("a.price,2017-01-01,1", "a.price,2017-01-02,2", "a.price,2017-01-03,3", "a.price,2017-01-04,x");
+		File checkpoint = file(".checkpoint");
+		checkpoint.delete();
+		ValueIngest ingest = new ValueIngest(db);
+		ingest.setTransactionSize(2);
+		ingest.setCheckpoint(checkpoint);
+		try {
+			ingest.ingest(file, ValueIngest.Format.CSV);
+			fail("exception expected");
+		} catch (T2DBException e) {
+			assertTrue(checkpoint.exists());
+		}
+		assertEquals(2, read("a.price").length);
+		// fix the file and resume after the last commit
+		csv(file, "a.price,2017-01-01,1", "a.price,2017-01-02,2", "a.price,2017-01-03,3", "a.price,2017-01-04,4");
+		ingest.ingest(file, ValueIngest.Format.CSV);
+		assertEquals(2, ingest.getSkipped());
+		assertEquals(4, read("a.price").length);
+		assertFalse(checkpoint.exists());
+	}
+
+	public void test_events_published() throws Exception {
+		JDBCTestDatabase.createSeries(db, "a", schema);
+		final List<UpdateEvent> events = new ArrayList<UpdateEvent>();
+		db.getUpdateEventPublisher().subscribe(new UpdateEventSubscriber() {
+			@Override
+			public void notify(UpdateEvent event) {
+				events.add(event);
+			}
+		}, DBObjectType.SERIES, false);
+		File file = csv("a.price,2017-01-01,1", "a.price,2017-01-02,2", "a.price,2017-01-01,");
+		new ValueIngest(db).ingest(file, ValueIngest.Format.CSV);
+		assertEquals(2, events.size());
+		for (UpdateEvent event : events) {
+			assertEquals(UpdateEventOperation.MODIFY, event.getOperation());
+			assertEquals(DBObjectType.SERIES, event.getType());
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void test_reject_non_numeric_series() throws Exception {
+		UpdatableValueType<String> vt = db.createValueType("count", false, IntegerValueScanner.class.getName());
+		vt.applyUpdates();
+		UpdatableValueType types = db.getTypeBuiltInProperty().getValueType().edit();
+		types.addValue(types.getScanner().scan("count"), "counts");
+		types.applyUpdates();
+		UpdatableSchema counts = db.createSchema("counts", null);
+		counts.addSeries(1);
+		counts.setSeriesName(1, "n");
+		counts.setSeriesType(1, "count");
+		counts.setSeriesTimeDomain(1, Day.DOMAIN);
+		counts.applyUpdates();
+		db.commit();
+		JDBCTestDatabase.createChronicle(db, "c", counts);
+		File file = csv("c.n,2017-01-01,1");
+		ValueIngest ingest = new ValueIngest(db);
+		ingest.setCreate(true);
+		try {
+			ingest.ingest(file, ValueIngest.Format.CSV);
+			fail("exception expected");
+		} catch (T2DBException e) {
+			assertEquals("series not numeric: c.n", e.getCause().getMessage());
+		}
+		assertNull(db.getSeries("c.n", false));
+	}
+
+}
@@ -0,0 +1,174 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.AccessMethodsForNumber;
+import ch.agent.crnickl.jdbc.HeapValueCache;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.MappedValueCache;
+import ch.agent.crnickl.jdbc.ValueCache;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T085_ValueCacheTest extends TestCase {
+
+	private JDBCDatabase db;
+	private UpdatableSeries<Double> series;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open("session.seriesStats=true");
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "cache");
+		series = JDBCTestDatabase.createSeries(db, "a", schema);
+		series.setValues(JDBCTestDatabase.days(0, 1, 1, 2, 2, 3));
+		series.applyUpdates();
+		db.commit();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private long read() throws Exception {
+		Series<Double> s = db.getSeries("a.price", true);
+		return s.getValues(null).getValueCount();
+	}
+
+	public void test_stale_count_does_not_truncate() throws Exception {
+		AccessMethodsForNumber methods = db.getNumberAccessMethods();
+		HeapValueCache cache = new HeapValueCache(1024 * 1024);
+		methods.setValueCache(cache);
+		// add values behind the back of the statistics
+		PreparedStatement stmt = db.getConnection().prepareStatement("insert into value_double (series, date, element) values(?, ?, ?)");
+		try {
+			int sid = methods.getId(series.getSurrogate());
+			for (int i = 3; i < 100; i++) {
+				stmt.setInt(1, sid);
+				stmt.setInt(2, JDBCTestDatabase.day(i).asOffset());
+				stmt.setDouble(3, i + 1);
+				stmt.executeUpdate();
+			}
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+		assertEquals(3, methods.getCount(series));
+		assertEquals(100, read());
+		assertEquals(1, cache.getMisses());
+		assertEquals(100, read());
+		assertEquals(1, cache.getHits());
+	}
+
+	public void test_series_too_large_for_cache() throws Exception {
+		HeapValueCache cache = new HeapValueCache(16);
+		db.getNumberAccessMethods().setValueCache(cache);
+		assertEquals(3, read());
+		assertEquals(3, read());
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getHits());
+	}
+
+	/**
+	 * A cache whose entry invalidates the series while it is being read.
+	 */
+	private static class InvalidatingCache extends ValueCache {
+		private boolean discarded;
+		private boolean discardedDuringRead;
+		public InvalidatingCache() {
+			super(1024);
+		}
+		@Override
+		protected Entry makeEntry(final int series, long token, final int[] offsets, final double[] values, final int count) {
+			return new Entry() {
+				@Override
+				public int getCount() {
+					return count;
+				}
+				@Override
+				public int getOffset(int i) {
+					return offsets[i];
+				}
+				@Override
+				public double getValue(int i) {
+					invalidate(series);
+					discardedDuringRead |= discarded;
+					return values[i];
+				}
+				@Override
+				public long getSize() {
+					return sizeOf(count);
+				}
+				@Override
+				public void discard() {
+					discarded = true;
+				}
+			};
+		}
+		@Override
+		protected long sizeOf(int count) {
+			return 12L * count;
+		}
+	}
+
+	public void test_entry_not_discarded_while_read() throws Exception {
+		InvalidatingCache cache = new InvalidatingCache();
+		assertTrue(cache.put(42, cache.getToken(), new int[] { 1, 2, 3 }, new double[] { 1, 2, 3 }, 3));
+		TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+		assertEquals(3, cache.get(42, Integer.MIN_VALUE, Integer.MAX_VALUE, ts));
+		assertFalse(cache.discardedDuringRead);
+		assertTrue(cache.discarded);
+		assertEquals(0, cache.getSize());
+		assertEquals(-1, cache.get(42, Integer.MIN_VALUE, Integer.MAX_VALUE, ts));
+	}
+
+	public void test_mapped_cache_directory() throws Exception {
+		File directory = File.createTempFile("T085", "");
+		assertTrue(directory.delete());
+		File other = new File(directory, "1-1.values");
+		MappedValueCache a = new MappedValueCache(directory, 1024);
+		MappedValueCache b = new MappedValueCache(directory, 1024);
+		try {
+			assertTrue(other.createNewFile());
+			assertFalse(a.getDirectory().equals(b.getDirectory()));
+			assertEquals(directory, a.getDirectory().getParentFile());
+			assertTrue(a.put(1, a.getToken(), new int[] { 1, 2 }, new double[] { 1, 2 }, 2));
+			assertTrue(b.put(1, b.getToken(), new int[] { 3 }, new double[] { 3 }, 1));
+			a.close();
+			assertFalse(a.getDirectory().exists());
+			assertTrue(other.exists());
+			TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+			assertEquals(1, b.get(1, Integer.MIN_VALUE, Integer.MAX_VALUE, ts));
+		} finally {
+			a.close();
+			b.close();
+			other.delete();
+			directory.delete();
+		}
+		assertFalse(directory.exists());
+	}
+
+	public void test_mapped_cache_closed_with_database() throws Exception {
+		File directory = File.createTempFile("T085", "");
+		assertTrue(directory.delete());
+		JDBCDatabase mapped = JDBCTestDatabase.open("session.valueCache=" + directory.getPath());
+		try {
+			MappedValueCache cache = (MappedValueCache) mapped.getNumberAccessMethods().getValueCache();
+			assertTrue(cache.getDirectory().isDirectory());
+			JDBCTestDatabase.close(mapped);
+			mapped = null;
+			assertFalse(cache.getDirectory().exists());
+		} finally {
+			if (mapped != null)
+				JDBCTestDatabase.close(mapped);
+			directory.delete();
+		}
+	}
+
+}
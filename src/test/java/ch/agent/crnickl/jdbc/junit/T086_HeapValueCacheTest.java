@@ -0,0 +1,184 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.HeapValueCache;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.ValueCache;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.time.Range;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T086_HeapValueCacheTest extends TestCase {
+
+	private JDBCDatabase db;
+	private UpdatableSchema schema;
+	private ValueCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open("session.valueCache=heap", "session.valueCacheSize=1");
+		schema = JDBCTestDatabase.createSchema(db, "heap");
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "a", schema);
+		s.setValues(JDBCTestDatabase.days(0, 1, 1, 2, 2, 3, 3, 4));
+		s.applyUpdates();
+		db.commit();
+		cache = db.getNumberAccessMethods().getValueCache();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private Series<Double> series() throws Exception {
+		return db.getSeries("a.price", true);
+	}
+
+	public void test_configured() throws Exception {
+		assertTrue(cache instanceof HeapValueCache);
+		assertEquals(1024 * 1024, cache.getCapacity());
+	}
+
+	public void test_hit_after_miss() throws Exception {
+		assertEquals(4, series().getValues(null).getValueCount());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0, cache.getHits());
+		assertTrue(cache.getSize() > 0);
+		Range range = new Range(JDBCTestDatabase.day(1), JDBCTestDatabase.day(2));
+		TimeAddressable<Double> values = series().getValues(range);
+		assertEquals(2, values.getValueCount());
+		assertEquals(2d, values.get(JDBCTestDatabase.day(1)));
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+	}
+
+	public void test_range_miss_not_cached() throws Exception {
+		Range range = new Range(JDBCTestDatabase.day(1), JDBCTestDatabase.day(2));
+		assertEquals(2, series().getValues(range).getValueCount());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0, cache.getSize());
+		assertEquals(4, series().getValues(null).getValueCount());
+		assertTrue(cache.getSize() > 0);
+		assertEquals(2, series().getValues(range).getValueCount());
+		assertEquals(1, cache.getHits());
+	}
+
+	public void test_invalidated_by_update() throws Exception {
+		series().getValues(null);
+		UpdatableSeries<Double> s = db.getUpdatableSeries("a.price", true);
+		s.setValue(JDBCTestDatabase.day(4), 5d);
+		s.applyUpdates();
+		db.commit();
+		assertEquals(0, cache.getSize());
+		assertEquals(5, series().getValues(null).getValueCount());
+		assertEquals(2, cache.getMisses());
+	}
+
+	public void test_written_series_not_cached() throws Exception {
+		UpdatableSeries<Double> s = db.getUpdatableSeries("a.price", true);
+		s.setValue(JDBCTestDatabase.day(4), 5d);
+		s.applyUpdates();
+		assertEquals(5, series().getValues(null).getValueCount());
+		assertEquals(0, cache.getSize());
+		db.commit();
+		assertEquals(5, series().getValues(null).getValueCount());
+		assertTrue(cache.getSize() > 0);
+		assertEquals(5, series().getValues(null).getValueCount());
+		assertEquals(1, cache.getHits());
+	}
+
+	public void test_no_dirty_reads_when_pooled() throws Exception {
+		JDBCTestDatabase.close(db);
+		db = JDBCTestDatabase.open("session.valueCache=heap", "session.poolMaxSize=2", "session.poolMaxWait=5");
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			stmt.execute("set database transaction control mvcc");
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "a", JDBCTestDatabase.createSchema(db, "heap"));
+		s.setValues(JDBCTestDatabase.days(0, 1, 1, 2, 2, 3, 3, 4));
+		s.applyUpdates();
+		db.commit();
+		cache = db.getNumberAccessMethods().getValueCache();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		final CountDownLatch written = new CountDownLatch(1);
+		final CountDownLatch read = new CountDownLatch(1);
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					UpdatableSeries<Double> s = db.getUpdatableSeries("a.price", true);
+					s.setValue(JDBCTestDatabase.day(4), 5d);
+					s.applyUpdates();
+					// the writer sees its own values
+					assertEquals(5, series().getValues(null).getValueCount());
+					written.countDown();
+					assertTrue(read.await(10, TimeUnit.SECONDS));
+					assertEquals(5, series().getValues(null).getValueCount());
+					db.rollback();
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				} finally {
+					written.countDown();
+				}
+			}
+		};
+		writer.start();
+		assertTrue(written.await(10, TimeUnit.SECONDS));
+		// the reader fills the cache with committed values only
+		assertEquals(4, series().getValues(null).getValueCount());
+		assertTrue(cache.getSize() > 0);
+		assertEquals(4, series().getValues(null).getValueCount());
+		db.release();
+		read.countDown();
+		writer.join();
+		if (errors.size() > 0)
+			throw new AssertionError(errors.get(0));
+		assertEquals(4, series().getValues(null).getValueCount());
+		db.release();
+	}
+
+	public void test_cleared_by_rollback() throws Exception {
+		series().getValues(null);
+		assertTrue(cache.getSize() > 0);
+		db.rollback();
+		assertEquals(0, cache.getSize());
+	}
+
+	public void test_lru_eviction() throws Exception {
+		HeapValueCache small = new HeapValueCache(200);
+		TimeAddressable<Double> ts = new RegularTimeSeries<Double>(Double.class, Day.DOMAIN);
+		// each entry takes 64 + 12 * 5 bytes
+		int[] offsets = new int[] { 1, 2, 3, 4, 5 };
+		double[] values = new double[] { 1, 2, 3, 4, 5 };
+		assertTrue(small.put(1, small.getToken(), offsets, values, 5));
+		assertTrue(small.put(2, small.getToken(), offsets, values, 5));
+		assertEquals(1, small.getEvictions());
+		assertEquals(-1, small.get(1, 0, 10, ts));
+		assertEquals(5, small.get(2, 0, 10, ts));
+		assertFalse(small.put(3, small.getToken(), new int[100], new double[100], 100));
+	}
+
+	public void test_refused_after_invalidation() throws Exception {
+		HeapValueCache heap = new HeapValueCache(1024);
+		long token = heap.getToken();
+		heap.invalidate(7);
+		assertFalse(heap.put(1, token, new int[] { 1 }, new double[] { 1 }, 1));
+		assertEquals(0, heap.getSize());
+	}
+
+}
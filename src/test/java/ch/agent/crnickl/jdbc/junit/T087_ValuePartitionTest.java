@@ -0,0 +1,106 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.ValuePartitionMigration;
+
+public class T087_ValuePartitionTest extends TestCase {
+
+	private static final int PARTITIONS = 3;
+	private JDBCDatabase db;
+	private UpdatableSchema schema;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open("session.valuePartitions=" + PARTITIONS);
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			for (String ddl : ValuePartitionMigration.getDDL(PARTITIONS).split(";")) {
+				if (ddl.trim().length() > 0)
+					stmt.execute(ddl);
+			}
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+		schema = JDBCTestDatabase.createSchema(db, "partitions");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private int count(String table, int series) throws Exception {
+		PreparedStatement stmt = db.getConnection().prepareStatement("select count(*) from " + table + " where series = ?");
+		try {
+			stmt.setInt(1, series);
+			ResultSet rs = stmt.executeQuery();
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	private int id(Series<Double> series) throws Exception {
+		return db.getNumberAccessMethods().getId(series.getSurrogate());
+	}
+
+	public void test_values_in_partition_of_series() throws Exception {
+		for (int i = 0; i < PARTITIONS; i++) {
+			UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "c" + i, schema);
+			s.setValues(JDBCTestDatabase.days(0, i, 1, i + 1));
+			s.applyUpdates();
+			db.commit();
+			int sid = id(s);
+			assertEquals(2, count(String.format("value_double_%02d", sid % PARTITIONS), sid));
+			assertEquals(0, count(String.format("value_double_%02d", (sid + 1) % PARTITIONS), sid));
+			Series<Double> read = db.getSeries("c" + i + ".price", true);
+			assertEquals((double) i + 1, read.getLastObservation(null).getValue());
+		}
+	}
+
+	public void test_migrate_from_single_table() throws Exception {
+		UpdatableSeries<Double> s = JDBCTestDatabase.createSeries(db, "a", schema);
+		int sid = id(s);
+		PreparedStatement stmt = db.getConnection().prepareStatement("insert into value_double (series, date, element) values(?, ?, ?)");
+		try {
+			for (int i = 0; i < 10; i++) {
+				stmt.setInt(1, sid);
+				stmt.setInt(2, JDBCTestDatabase.day(i).asOffset());
+				stmt.setDouble(3, i);
+				stmt.executeUpdate();
+			}
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+		assertEquals(10, new ValuePartitionMigration(db, 0).migrate());
+		assertEquals(0, count("value_double", sid));
+		Series<Double> read = db.getSeries("a.price", true);
+		assertEquals(10, read.getValues(null).getValueCount());
+	}
+
+	public void test_partitions_rejected_with_chunks() throws Exception {
+		JDBCDatabase chunks = null;
+		try {
+			chunks = JDBCTestDatabase.open("session.numberStorage=chunk", "session.valuePartitions=2",
+					"feature.DDL=sql/HyperSQL_DDL_base.sql, sql/HyperSQL_DDL_chunk.sql");
+			fail("exception expected");
+		} catch (T2DBException e) {
+			assertTrue(e.getMessage().contains("session.valuePartitions"));
+		} finally {
+			JDBCTestDatabase.close(chunks);
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.api.Series;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.UpdatableSeries;
+import ch.agent.crnickl.api.UpdatableValueType;
+import ch.agent.crnickl.jdbc.AccessMethodsForInteger;
+import ch.agent.crnickl.jdbc.IntegerValueScanner;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.t2.time.Day;
+import ch.agent.t2.timeseries.RegularTimeSeries;
+import ch.agent.t2.timeseries.TimeAddressable;
+
+public class T088_CompactNumberTest extends TestCase {
+
+	private static final int SIZE = 40;
+	private JDBCDatabase db;
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private UpdatableSeries<Integer> open(String... parameters) throws Exception {
+		String[] all = new String[parameters.length + 2];
+		all[0] = "session.compactNumbers=true";
+		all[1] = "feature.DDL=sql/HyperSQL_DDL_base.sql, sql/HyperSQL_DDL_compact.sql";
+		System.arraycopy(parameters, 0, all, 2, parameters.length);
+		return create(all);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private UpdatableSeries<Integer> create(String... parameters) throws Exception {
+		db = JDBCTestDatabase.open(parameters);
+		UpdatableValueType<String> vt = db.createValueType("count", false, IntegerValueScanner.class.getName());
+		vt.applyUpdates();
+		UpdatableValueType types = db.getTypeBuiltInProperty().getValueType().edit();
+		types.addValue(types.getScanner().scan("count"), "counts");
+		types.applyUpdates();
+		UpdatableSchema schema = db.createSchema("counts", null);
+		schema.addSeries(1);
+		schema.setSeriesName(1, "n");
+		schema.setSeriesType(1, "count");
+		schema.setSeriesTimeDomain(1, Day.DOMAIN);
+		schema.applyUpdates();
+		db.commit();
+		JDBCTestDatabase.createChronicle(db, "c", schema);
+		UpdatableSeries<Integer> series = db.getUpdatableSeries("c.n", true);
+		series.applyUpdates();
+		db.commit();
+		return series;
+	}
+
+	private TimeAddressable<Integer> read() throws Exception {
+		Series<Integer> series = db.getSeries("c.n", true);
+		return series.getValues(null);
+	}
+
+	private void update(UpdatableSeries<Integer> series) throws Exception {
+		// append
+		TimeAddressable<Integer> values = new RegularTimeSeries<Integer>(Integer.class, Day.DOMAIN);
+		for (int i = 0; i < SIZE; i++) {
+			values.put(JDBCTestDatabase.day(2 * i), i);
+		}
+		assertEquals(SIZE, db.getAccessMethods(series.getValueType()).updateValues(series, values, db.getChronicleUpdatePolicy()));
+		db.commit();
+		assertEquals(SIZE, read().getValueCount());
+		// insert one, update one, delete one, leave two unchanged
+		values = new RegularTimeSeries<Integer>(Integer.class, Day.DOMAIN);
+		values.put(JDBCTestDatabase.day(0), 0);
+		values.put(JDBCTestDatabase.day(1), 100);
+		values.put(JDBCTestDatabase.day(2), 200);
+		values.put(JDBCTestDatabase.day(4), values.getMissingValue());
+		values.put(JDBCTestDatabase.day(6), 3);
+		assertEquals(3, db.getAccessMethods(series.getValueType()).updateValues(series, values, db.getChronicleUpdatePolicy()));
+		db.commit();
+		TimeAddressable<Integer> stored = read();
+		assertEquals(SIZE, stored.getValueCount());
+		assertEquals(Integer.valueOf(0), stored.get(JDBCTestDatabase.day(0)));
+		assertEquals(Integer.valueOf(100), stored.get(JDBCTestDatabase.day(1)));
+		assertEquals(Integer.valueOf(200), stored.get(JDBCTestDatabase.day(2)));
+		assertTrue(stored.isMissing(stored.get(JDBCTestDatabase.day(4))));
+		assertEquals(Integer.valueOf(SIZE - 1), stored.get(JDBCTestDatabase.day(2 * (SIZE - 1))));
+	}
+
+	public void test_upsert_in_batches() throws Exception {
+		UpdatableSeries<Integer> series = open("session.batchSize=3");
+		assertEquals(3, ((AccessMethodsForInteger) db.getAccessMethods(series.getValueType())).getBatchSize());
+		update(series);
+	}
+
+	public void test_diff_in_batches() throws Exception {
+		update(open("session.batchSize=3", "session.dialect=generic"));
+	}
+
+	public void test_point_by_point() throws Exception {
+		update(open("session.batchSize=0"));
+	}
+
+	public void test_not_configured() throws Exception {
+		UpdatableSeries<Integer> series = create();
+		assertNull(db.getAccessMethods(series.getValueType()));
+		try {
+			create("session.compactNumbers=yes");
+			fail("exception expected");
+		} catch (T2DBException e) {
+		}
+	}
+
+	public void test_ddl_resources() throws Exception {
+		for (String database : new String[] { "HyperSQL", "PostgreSQL", "MySQL" }) {
+			InputStream in = getClass().getResourceAsStream("/sql/" + database + "_DDL_compact.sql");
+			assertNotNull(database, in);
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Chronicle;
+import ch.agent.crnickl.api.DBObjectType;
+import ch.agent.crnickl.api.UpdatableChronicle;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.jdbc.ChronicleCache;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+
+public class T089_ChronicleCacheTest extends TestCase {
+
+	private JDBCDatabase db;
+	private ChronicleCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open("session.chronicleCache=10");
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "names");
+		JDBCTestDatabase.createChronicle(db, "x", schema);
+		cache = db.getChronicleCache();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private int id(Chronicle chronicle) {
+		return db.getNumberAccessMethods().getId(chronicle.getSurrogate());
+	}
+
+	private void sql(String sql, Object... parameters) throws Exception {
+		PreparedStatement stmt = db.getConnection().prepareStatement(sql);
+		try {
+			for (int i = 0; i < parameters.length; i++) {
+				stmt.setObject(i + 1, parameters[i]);
+			}
+			stmt.execute();
+		} finally {
+			stmt.close();
+		}
+	}
+
+	private int select(String name) throws Exception {
+		PreparedStatement stmt = db.getConnection().prepareStatement("select id from chronicle where name = ?");
+		try {
+			stmt.setString(1, name);
+			ResultSet rs = stmt.executeQuery();
+			assertTrue(rs.next());
+			return rs.getInt(1);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	public void test_lookup_by_name_is_cached() throws Exception {
+		Chronicle x = db.getChronicle("x", true);
+		long hits = cache.getHits();
+		assertEquals(id(x), id(db.getChronicle("x", true)));
+		assertTrue(cache.getHits() > hits);
+	}
+
+	public void test_invalidation_keeps_name_of_other_chronicle() throws Exception {
+		Chronicle a = db.getChronicle("x", true);
+		int idA = id(a);
+		// rename and reuse the name behind the back of the cache
+		sql("update chronicle set name = ? where id = ?", "y", idA);
+		sql("insert into chronicle (parent, name, schema_id, descrip) select parent, ?, schema_id, descrip from chronicle where id = ?", "x", idA);
+		db.commit();
+		int idB = select("x");
+		Chronicle b = db.getChronicle(db.getNumberAccessMethods().makeSurrogate(db, DBObjectType.CHRONICLE, idB));
+		assertEquals("x", b.getName(false));
+		// the row of the first chronicle still has the old name
+		cache.invalidate(idA);
+		long hits = cache.getHits();
+		long misses = cache.getMisses();
+		assertEquals(idB, id(db.getChronicle("x", true)));
+		assertTrue(cache.getHits() > hits);
+		assertEquals(misses, cache.getMisses());
+	}
+
+	public void test_written_chronicle_not_cached() throws Exception {
+		UpdatableChronicle x = db.getChronicle("x", true).edit();
+		x.setDescription("modified");
+		x.applyUpdates();
+		long hits = cache.getHits();
+		assertEquals("modified", db.getChronicle("x", true).getDescription(false));
+		assertEquals("modified", db.getChronicle("x", true).getDescription(false));
+		assertEquals(hits, cache.getHits());
+		db.commit();
+		assertEquals("modified", db.getChronicle("x", true).getDescription(false));
+		assertEquals("modified", db.getChronicle("x", true).getDescription(false));
+		assertTrue(cache.getHits() > hits);
+	}
+
+	public void test_no_dirty_reads_when_pooled() throws Exception {
+		JDBCTestDatabase.close(db);
+		db = JDBCTestDatabase.open("session.chronicleCache=10", "session.poolMaxSize=2", "session.poolMaxWait=5");
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			stmt.execute("set database transaction control mvcc");
+		} finally {
+			stmt.close();
+		}
+		db.commit();
+		JDBCTestDatabase.createChronicle(db, "x", JDBCTestDatabase.createSchema(db, "names"));
+		cache = db.getChronicleCache();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		final CountDownLatch written = new CountDownLatch(1);
+		final CountDownLatch read = new CountDownLatch(1);
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					UpdatableChronicle x = db.getChronicle("x", true).edit();
+					x.setDescription("modified");
+					x.applyUpdates();
+					db.getTopChronicle().edit().createChronicle("y", false, "new", null, null).applyUpdates();
+					// the writer sees its own rows
+					assertEquals("modified", db.getChronicle("x", true).getDescription(false));
+					assertNotNull(db.getChronicle("y", false));
+					written.countDown();
+					assertTrue(read.await(10, TimeUnit.SECONDS));
+					assertEquals("modified", db.getChronicle("x", true).getDescription(false));
+					assertNotNull(db.getChronicle("y", false));
+					db.rollback();
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				} finally {
+					written.countDown();
+				}
+			}
+		};
+		writer.start();
+		assertTrue(written.await(10, TimeUnit.SECONDS));
+		// the reader fills the cache with committed rows only
+		assertEquals("x", db.getChronicle("x", true).getDescription(false));
+		assertNull(db.getChronicle("y", false));
+		long hits = cache.getHits();
+		assertEquals("x", db.getChronicle("x", true).getDescription(false));
+		assertNull(db.getChronicle("y", false));
+		assertTrue(cache.getHits() > hits);
+		db.release();
+		read.countDown();
+		writer.join();
+		if (errors.size() > 0)
+			throw new AssertionError(errors.get(0));
+		assertEquals("x", db.getChronicle("x", true).getDescription(false));
+		assertNull(db.getChronicle("y", false));
+		db.release();
+	}
+
+}
@@ -0,0 +1,93 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.T2DBException;
+import ch.agent.crnickl.api.Chronicle;
+import ch.agent.crnickl.api.UpdatableChronicle;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+import ch.agent.crnickl.jdbc.ValueIngest;
+
+public class T090_ChroniclePathTest extends TestCase {
+
+	private JDBCDatabase db;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open();
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "path");
+		UpdatableChronicle a = JDBCTestDatabase.createChronicle(db, "a", schema);
+		UpdatableChronicle b = a.edit().createChronicle("b", false, "b", null, null);
+		b.applyUpdates();
+		b.edit().createChronicle("c", false, "c", null, null).applyUpdates();
+		db.commit();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	public void test_full_path() throws Exception {
+		Chronicle c = db.getChronicle("a.b.c", true);
+		assertEquals("c", c.getName(false));
+		assertEquals("a.b", c.getCollection().getName(true));
+		assertEquals("a.b.c", c.getName(true));
+	}
+
+	public void test_last_missing() throws Exception {
+		assertNull(db.getChronicle("a.b.x", false));
+		try {
+			db.getChronicle("a.b.x", true);
+			fail("exception expected");
+		} catch (T2DBException e) {
+		}
+	}
+
+	public void test_top_chronicle() throws Exception {
+		Chronicle top = db.getTopChronicle();
+		assertEquals(top, db.getChronicle(top.getName(false), false));
+		assertEquals(top, db.getChronicle(top.getName(false), true));
+	}
+
+	public void test_ancestor_missing() throws Exception {
+		try {
+			db.getChronicle("a.x.c", false);
+			fail("exception expected");
+		} catch (T2DBException e) {
+			assertTrue(e.getMessage().contains("\"x\""));
+		}
+	}
+
+	public void test_empty_simple_name() throws Exception {
+		try {
+			db.getChronicle("a..c", false);
+			fail("exception expected");
+		} catch (T2DBException e) {
+		}
+	}
+
+	public void test_ingest_creates_nested_chronicles() throws Exception {
+		File file = File.createTempFile("T090", ".csv");
+		try {
+			Writer out = new FileWriter(file);
+			try {
+				out.write("a.p.q.price,2017-01-01,1\n");
+			} finally {
+				out.close();
+			}
+			ValueIngest ingest = new ValueIngest(db);
+			ingest.setCreate(true);
+			assertEquals(1, ingest.ingest(file, ValueIngest.Format.CSV));
+		} finally {
+			file.delete();
+		}
+		assertEquals("a.p.q", db.getChronicle("a.p.q", true).getName(true));
+		assertNotNull(db.getSeries("a.p.q.price", true));
+	}
+
+}
@@ -0,0 +1,104 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Attribute;
+import ch.agent.crnickl.api.Chronicle;
+import ch.agent.crnickl.api.Property;
+import ch.agent.crnickl.api.UpdatableChronicle;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.ValueType;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+
+public class T091_InheritedAttributeTest extends TestCase {
+
+	// deeper than the number of levels joined per round trip
+	private static final int DEPTH = 9;
+	private JDBCDatabase db;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open();
+		ValueType<String> text = db.createValueType("text", false, "TEXT");
+		text.edit().applyUpdates();
+		Property<String> color = db.createProperty("color", text, false);
+		color.edit().applyUpdates();
+		Property<String> size = db.createProperty("size", text, false);
+		size.edit().applyUpdates();
+		UpdatableSchema schema = db.createSchema("attributes", null);
+		schema.addAttribute(1);
+		schema.setAttributeProperty(1, color);
+		schema.setAttributeDefault(1, "none");
+		schema.addAttribute(2);
+		schema.setAttributeProperty(2, size);
+		schema.setAttributeDefault(2, "none");
+		schema.applyUpdates();
+		db.commit();
+		UpdatableChronicle chronicle = JDBCTestDatabase.createChronicle(db, "l0", schema);
+		for (int i = 1; i < DEPTH; i++) {
+			chronicle = chronicle.edit().createChronicle("l" + i, false, "level " + i, null, null);
+			chronicle.applyUpdates();
+		}
+		db.commit();
+		set("l0", "color", "red");
+		set(path(7), "color", "blue");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private void set(String chronicle, String property, String value) throws Exception {
+		UpdatableChronicle c = db.getChronicle(chronicle, true).edit();
+		Attribute<?> attribute = c.getAttribute(property, true);
+		attribute.scan(value);
+		c.setAttribute(attribute);
+		c.applyUpdates();
+		db.commit();
+	}
+
+	private String path(int depth) {
+		StringBuilder path = new StringBuilder("l0");
+		for (int i = 1; i <= depth; i++) {
+			path.append(".l").append(i);
+		}
+		return path.toString();
+	}
+
+	private Attribute<?> lookup(Chronicle chronicle, String property) throws Exception {
+		Attribute<?> attribute = chronicle.getAttribute(property, true);
+		attribute.reset();
+		assertTrue(db.getAttributeValue(chronicle, attribute));
+		return attribute;
+	}
+
+	public void test_own_value() throws Exception {
+		assertEquals("red", lookup(db.getChronicle("l0", true), "color").get());
+	}
+
+	public void test_inherited_value() throws Exception {
+		assertEquals("red", lookup(db.getChronicle(path(3), true), "color").get());
+	}
+
+	public void test_overriding_value() throws Exception {
+		assertEquals("blue", lookup(db.getChronicle(path(7), true), "color").get());
+		assertEquals("blue", lookup(db.getChronicle(path(DEPTH - 1), true), "color").get());
+	}
+
+	public void test_beyond_one_round_trip() throws Exception {
+		// the parent of l1 is the first level of the second round trip
+		assertEquals("red", lookup(db.getChronicle(path(6), true), "color").get());
+	}
+
+	public void test_no_value() throws Exception {
+		Chronicle chronicle = db.getChronicle(path(DEPTH - 1), true);
+		Attribute<?> attribute = chronicle.getAttribute("size", true);
+		assertFalse(db.getAttributeValue(chronicle, attribute));
+	}
+
+	public void test_same_as_list_lookup() throws Exception {
+		Chronicle chronicle = db.getChronicle(path(DEPTH - 1), true);
+		assertEquals(chronicle.getAttribute("color", true).get(), lookup(chronicle, "color").get());
+	}
+
+}
@@ -0,0 +1,163 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Attribute;
+import ch.agent.crnickl.api.Chronicle;
+import ch.agent.crnickl.api.Property;
+import ch.agent.crnickl.api.UpdatableChronicle;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.ValueType;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+
+public class T092_AttributeValuesTest extends TestCase {
+
+	private static final int CHILDREN = 20;
+	private JDBCDatabase db;
+	private List<Property<?>> properties;
+
+	private void open(String... parameters) throws Exception {
+		db = JDBCTestDatabase.open(parameters);
+		ValueType<String> text = db.createValueType("text", false, "TEXT");
+		text.edit().applyUpdates();
+		properties = new ArrayList<Property<?>>();
+		UpdatableSchema schema = db.createSchema("attributes", null);
+		String[] names = new String[] { "color", "size", "shape" };
+		for (int i = 0; i < names.length; i++) {
+			Property<String> property = db.createProperty(names[i], text, false);
+			property.edit().applyUpdates();
+			properties.add(property);
+			schema.addAttribute(i + 1);
+			schema.setAttributeProperty(i + 1, property);
+			schema.setAttributeDefault(i + 1, "none");
+		}
+		schema.applyUpdates();
+		db.commit();
+		// a and b with children a.a0 ... a.a19 and b.b0 ... b.b19, and a.a0.x
+		for (String top : new String[] { "a", "b" }) {
+			UpdatableChronicle parent = JDBCTestDatabase.createChronicle(db, top, schema);
+			for (int i = 0; i < CHILDREN; i++) {
+				parent.edit().createChronicle(top + i, false, top + i, null, null).applyUpdates();
+			}
+		}
+		db.getChronicle("a.a0", true).edit().createChronicle("x", false, "x", null, null).applyUpdates();
+		db.commit();
+		set("a", "color", "red");
+		set("a", "size", "small");
+		set("b", "color", "blue");
+		set("a.a0", "color", "green");
+		set("b.b1", "shape", "round");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private void set(String chronicle, String property, String value) throws Exception {
+		UpdatableChronicle c = db.getChronicle(chronicle, true).edit();
+		Attribute<?> attribute = c.getAttribute(property, true);
+		attribute.scan(value);
+		c.setAttribute(attribute);
+		c.applyUpdates();
+		db.commit();
+	}
+
+	private List<Chronicle> chronicles(String... names) throws Exception {
+		List<Chronicle> chronicles = new ArrayList<Chronicle>();
+		for (String name : names) {
+			chronicles.add(db.getChronicle(name, true));
+		}
+		return chronicles;
+	}
+
+	private void verify(String[][] expected, Object[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].length, actual[i].length);
+			for (int j = 0; j < expected[i].length; j++) {
+				assertEquals("[" + i + "][" + j + "]", expected[i][j], actual[i][j]);
+			}
+		}
+	}
+
+	public void test_effective_values() throws Exception {
+		open();
+		Object[][] values = db.getAttributeValues(chronicles("a", "a.a0", "a.a0.x", "a.a5", "b.b1", "b.b2"), properties);
+		verify(new String[][] {
+				{ "red", "small", null },
+				{ "green", "small", null },
+				{ "green", "small", null },
+				{ "red", "small", null },
+				{ "blue", null, "round" },
+				{ "blue", null, null },
+		}, values);
+	}
+
+	public void test_same_as_single_lookup() throws Exception {
+		open();
+		List<Chronicle> chronicles = new ArrayList<Chronicle>();
+		for (String top : new String[] { "a", "b" }) {
+			for (int i = 0; i < CHILDREN; i++) {
+				chronicles.add(db.getChronicle(top + "." + top + i, true));
+			}
+		}
+		chronicles.add(db.getChronicle("a.a0.x", true));
+		Object[][] values = db.getAttributeValues(chronicles, properties);
+		for (int i = 0; i < chronicles.size(); i++) {
+			for (int j = 0; j < properties.size(); j++) {
+				Attribute<?> attribute = chronicles.get(i).getAttribute(properties.get(j).getName(), true);
+				attribute.reset();
+				if (db.getAttributeValue(chronicles.get(i), attribute))
+					assertEquals(attribute.get(), values[i][j]);
+				else
+					assertNull(values[i][j]);
+			}
+		}
+	}
+
+	public void test_repeated_elements() throws Exception {
+		open();
+		List<Property<?>> repeated = new ArrayList<Property<?>>();
+		repeated.add(properties.get(1));
+		repeated.add(properties.get(0));
+		repeated.add(properties.get(1));
+		Object[][] values = db.getAttributeValues(chronicles("a.a3", "b.b1", "a.a3"), repeated);
+		verify(new String[][] {
+				{ "small", "red", "small" },
+				{ null, "blue", null },
+				{ "small", "red", "small" },
+		}, values);
+	}
+
+	public void test_empty_lists() throws Exception {
+		open();
+		assertEquals(0, db.getAttributeValues(new ArrayList<Chronicle>(), properties).length);
+		Object[][] values = db.getAttributeValues(chronicles("a"), new ArrayList<Property<?>>());
+		assertEquals(1, values.length);
+		assertEquals(0, values[0].length);
+	}
+
+	public void test_with_chronicle_cache() throws Exception {
+		open("session.chronicleCache=100");
+		List<Chronicle> chronicles = chronicles("a.a0.x", "b.b1");
+		db.getChronicleCache().clear();
+		long misses = db.getChronicleCache().getMisses();
+		Object[][] values = db.getAttributeValues(chronicles, properties);
+		verify(new String[][] {
+				{ "green", "small", null },
+				{ "blue", null, "round" },
+		}, values);
+		assertTrue(db.getChronicleCache().getMisses() > misses);
+		// ancestors read by the first call are now in the cache
+		misses = db.getChronicleCache().getMisses();
+		verify(new String[][] {
+				{ "green", "small", null },
+				{ "blue", null, "round" },
+		}, db.getAttributeValues(chronicles, properties));
+		assertEquals(misses, db.getChronicleCache().getMisses());
+	}
+
+}
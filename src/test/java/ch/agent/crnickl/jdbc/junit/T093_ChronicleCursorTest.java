@@ -0,0 +1,111 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Chronicle;
+import ch.agent.crnickl.api.UpdatableChronicle;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.jdbc.ChronicleCursor;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+
+public class T093_ChronicleCursorTest extends TestCase {
+
+	private static final int CHILDREN = 25;
+	private JDBCDatabase db;
+
+	private Chronicle open(String... parameters) throws Exception {
+		db = JDBCTestDatabase.open(parameters);
+		UpdatableSchema schema = JDBCTestDatabase.createSchema(db, "cursor");
+		UpdatableChronicle parent = JDBCTestDatabase.createChronicle(db, "p", schema);
+		// created in reverse order of names
+		for (int i = CHILDREN - 1; i >= 0; i--) {
+			parent.edit().createChronicle(name(i), false, name(i), null, null).applyUpdates();
+		}
+		db.commit();
+		return db.getChronicle("p", true);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private String name(int i) {
+		return String.format("c%02d", i);
+	}
+
+	public void test_pages() throws Exception {
+		Chronicle parent = open("session.fetchSize=4");
+		List<String> names = new ArrayList<String>();
+		String after = null;
+		while (true) {
+			List<Chronicle> page = db.getChroniclesByParent(parent, after, 10);
+			if (page.isEmpty())
+				break;
+			assertTrue(page.size() <= 10);
+			for (Chronicle c : page) {
+				names.add(c.getName(false));
+			}
+			after = names.get(names.size() - 1);
+		}
+		assertEquals(CHILDREN, names.size());
+		for (int i = 0; i < CHILDREN; i++) {
+			assertEquals(name(i), names.get(i));
+		}
+		assertEquals(CHILDREN, db.getChroniclesByParent(parent, null, 0).size());
+	}
+
+	public void test_cursor() throws Exception {
+		Chronicle parent = open("session.fetchSize=4");
+		ChronicleCursor cursor = db.getChronicleCursor(parent);
+		try {
+			for (int i = 0; i < CHILDREN; i++) {
+				assertTrue(cursor.next());
+				assertEquals(name(i), cursor.get().getName(false));
+				assertEquals("p." + name(i), cursor.get().getName(true));
+			}
+			assertFalse(cursor.next());
+			assertEquals(CHILDREN, cursor.getCount());
+		} finally {
+			cursor.close();
+		}
+	}
+
+	public void test_pooled_cursor_survives_end_of_unit_of_work() throws Exception {
+		Chronicle parent = open("session.poolMaxSize=2", "session.poolMaxWait=1", "session.fetchSize=2");
+		ChronicleCursor cursor = db.getChronicleCursor(parent);
+		try {
+			int count = 0;
+			while (cursor.next()) {
+				assertEquals(name(count), cursor.get().getName(false));
+				count++;
+				if (count % 3 == 0)
+					db.commit();
+				else if (count % 3 == 1)
+					db.rollback();
+				else
+					db.release();
+			}
+			assertEquals(CHILDREN, count);
+		} finally {
+			cursor.close();
+		}
+	}
+
+	public void test_pooled_cursor_returns_connection() throws Exception {
+		Chronicle parent = open("session.poolMaxSize=2", "session.poolMaxWait=1");
+		// with a pool of 2, a connection not returned makes the third cursor wait and fail
+		for (int i = 0; i < 5; i++) {
+			ChronicleCursor cursor = db.getChronicleCursor(parent);
+			try {
+				assertTrue(cursor.next());
+			} finally {
+				cursor.close();
+			}
+			db.release();
+		}
+	}
+
+}
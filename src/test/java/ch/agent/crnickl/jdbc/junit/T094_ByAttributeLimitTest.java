@@ -0,0 +1,94 @@
+package ch.agent.crnickl.jdbc.junit;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import ch.agent.crnickl.api.Attribute;
+import ch.agent.crnickl.api.Chronicle;
+import ch.agent.crnickl.api.Property;
+import ch.agent.crnickl.api.UpdatableChronicle;
+import ch.agent.crnickl.api.UpdatableSchema;
+import ch.agent.crnickl.api.ValueType;
+import ch.agent.crnickl.jdbc.JDBCDatabase;
+
+public class T094_ByAttributeLimitTest extends TestCase {
+
+	private static final int RED = 5;
+	private JDBCDatabase db;
+	private Property<String> color;
+
+	@Override
+	protected void setUp() throws Exception {
+		db = JDBCTestDatabase.open("session.chronicleCache=100");
+		ValueType<String> text = db.createValueType("text", false, "TEXT");
+		text.edit().applyUpdates();
+		color = db.createProperty("color", text, true);
+		color.edit().applyUpdates();
+		UpdatableSchema schema = db.createSchema("attributes", null);
+		schema.addAttribute(1);
+		schema.setAttributeProperty(1, color);
+		schema.setAttributeDefault(1, "none");
+		schema.applyUpdates();
+		db.commit();
+		for (int i = 0; i <= RED; i++) {
+			UpdatableChronicle c = JDBCTestDatabase.createChronicle(db, "c" + i, schema).edit();
+			Attribute<?> attribute = c.getAttribute("color", true);
+			attribute.scan(i < RED ? "red" : "blue");
+			c.setAttribute(attribute);
+			c.applyUpdates();
+		}
+		db.commit();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JDBCTestDatabase.close(db);
+	}
+
+	private Set<String> names(List<Chronicle> chronicles) throws Exception {
+		Set<String> names = new HashSet<String>();
+		for (Chronicle c : chronicles) {
+			names.add(c.getName(true));
+		}
+		return names;
+	}
+
+	public void test_no_limit() throws Exception {
+		assertEquals(RED, db.getChroniclesByAttributeValue(color, "red", 0).size());
+		assertEquals(1, db.getChroniclesByAttributeValue(color, "blue", 0).size());
+		assertEquals(0, db.getChroniclesByAttributeValue(color, "green", 0).size());
+	}
+
+	public void test_negative_is_no_limit() throws Exception {
+		assertEquals(RED, db.getChroniclesByAttributeValue(color, "red", -1).size());
+		assertEquals(RED, db.getChroniclesByAttributeValue(color, "red", -1, false).size());
+	}
+
+	public void test_limit() throws Exception {
+		assertEquals(3, db.getChroniclesByAttributeValue(color, "red", 3).size());
+		assertEquals(3, db.getChroniclesByAttributeValue(color, "red", 3, false).size());
+		assertEquals(RED, db.getChroniclesByAttributeValue(color, "red", RED + 1).size());
+	}
+
+	public void test_eager_and_lazy_agree() throws Exception {
+		Set<String> eager = names(db.getChroniclesByAttributeValue(color, "red", 0, true));
+		Set<String> lazy = names(db.getChroniclesByAttributeValue(color, "red", 0, false));
+		assertEquals(RED, eager.size());
+		assertEquals(eager, lazy);
+		assertFalse(eager.contains("c" + RED));
+	}
+
+	public void test_eager_fills_chronicle_cache() throws Exception {
+		db.getChronicleCache().clear();
+		List<Chronicle> chronicles = db.getChroniclesByAttributeValue(color, "red", 0, true);
+		long misses = db.getChronicleCache().getMisses();
+		for (Chronicle c : chronicles) {
+			assertEquals("red", db.getChronicle(c.getSurrogate()).getAttribute("color", true).get());
+			assertNotNull(db.getChronicle(c.getName(true), true));
+		}
+		assertEquals(misses, db.getChronicleCache().getMisses());
+	}
+
+}